@@ -352,8 +352,10 @@ public class FtcRobotControllerActivity extends Activity
      */
     if (permissionsValidated) {
       ClassManager.getInstance().setOnBotJavaClassHelper(onBotJavaHelper);
+      StartupTiming.getInstance().begin(StartupTiming.Phase.CLASS_SCAN);
       ClassManagerFactory.registerFilters();
       ClassManagerFactory.processAllClasses();
+      StartupTiming.getInstance().end(StartupTiming.Phase.CLASS_SCAN);
     }
 
     cfgFileMgr = new RobotConfigFileManager(this);
@@ -488,6 +490,7 @@ public class FtcRobotControllerActivity extends Activity
     readNetworkType();
     Intent intent = new Intent(this, FtcRobotControllerService.class);
     intent.putExtra(NetworkConnectionFactory.NETWORK_CONNECTION_TYPE, networkType);
+    StartupTiming.getInstance().begin(StartupTiming.Phase.SERVICE_BIND);
     serviceShouldUnbind = bindService(intent, connection, Context.BIND_AUTO_CREATE);
   }
 
@@ -666,6 +669,7 @@ public class FtcRobotControllerActivity extends Activity
 
   public void onServiceBind(final FtcRobotControllerService service) {
     RobotLog.vv(FtcRobotControllerService.TAG, "%s.controllerService=bound", TAG);
+    StartupTiming.getInstance().end(StartupTiming.Phase.SERVICE_BIND);
     controllerService = service;
     updateUI.setControllerService(controllerService);
 
@@ -691,8 +695,10 @@ public class FtcRobotControllerActivity extends Activity
       }
     });
 
+    StartupTiming.getInstance().begin(StartupTiming.Phase.WEB_HANDLER_REGISTRATION);
     AnnotatedHooksClassFilter.getInstance().callWebHandlerRegistrarMethods(this,
         service.getWebServer().getWebHandlerManager());
+    StartupTiming.getInstance().end(StartupTiming.Phase.WEB_HANDLER_REGISTRATION);
   }
 
   private void updateUIAndRequestRobotSetup() {
@@ -710,9 +716,11 @@ public class FtcRobotControllerActivity extends Activity
     }
   }
 
-  private void requestRobotSetup(@Nullable Runnable runOnComplete) {
+  private void requestRobotSetup(@Nullable final Runnable runOnComplete) {
     if (controllerService == null) return;
 
+    StartupTiming.getInstance().begin(StartupTiming.Phase.HARDWARE_SETUP);
+
     RobotConfigFile file = cfgFileMgr.getActiveConfigAndUpdateUI();
     HardwareFactory hardwareFactory = new HardwareFactory(context);
     try {
@@ -733,7 +741,13 @@ public class FtcRobotControllerActivity extends Activity
     FtcEventLoopIdle idleLoop = new FtcEventLoopIdle(hardwareFactory, userOpModeRegister, callback, this);
 
     controllerService.setCallback(callback);
-    controllerService.setupRobot(eventLoop, idleLoop, runOnComplete);
+    controllerService.setupRobot(eventLoop, idleLoop, new Runnable() {
+      @Override public void run() {
+        StartupTiming.getInstance().end(StartupTiming.Phase.HARDWARE_SETUP);
+        StartupTiming.getInstance().logSummary();
+        if (runOnComplete != null) runOnComplete.run();
+      }
+    });
 
     passReceivedUsbAttachmentsToEventLoop();
     AndroidBoard.showErrorIfUnknownControlHub();
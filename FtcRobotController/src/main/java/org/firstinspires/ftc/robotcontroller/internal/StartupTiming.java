@@ -0,0 +1,98 @@
+/* Copyright (c) 2024 FIRST. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted (subject to the limitations in the disclaimer below) provided that
+ * the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list
+ * of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice, this
+ * list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ *
+ * Neither the name of FIRST nor the names of its contributors may be used to endorse or
+ * promote products derived from this software without specific prior written permission.
+ *
+ * NO EXPRESS OR IMPLIED LICENSES TO ANY PARTY'S PATENT RIGHTS ARE GRANTED BY THIS
+ * LICENSE. THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.firstinspires.ftc.robotcontroller.internal;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+/**
+ * {@link StartupTiming} records how long each phase of robot controller startup takes, so
+ * that changes to the startup path can be measured on a real device.
+ *
+ * Each phase is bracketed by {@link #begin(Phase)} and {@link #end(Phase)}; the elapsed time is
+ * written to the robot log as the phase ends, and {@link #logSummary()} writes all phases at once
+ * when the robot reports that setup is complete.
+ */
+@SuppressWarnings("WeakerAccess")
+public class StartupTiming {
+
+    public static final String TAG = "StartupTiming";
+
+    public enum Phase {
+        CLASS_SCAN,                 // ClassManager scan of the APK, which also finds the annotated OpModes
+        SERVICE_BIND,               // bindService() until onServiceBind()
+        HARDWARE_SETUP,             // requestRobotSetup() until the robot reports setup complete
+        WEB_HANDLER_REGISTRATION    // @WebHandlerRegistrar methods
+    }
+
+    private static final StartupTiming theInstance = new StartupTiming();
+
+    private final long[] startNanos   = new long[Phase.values().length];
+    private final long[] elapsedNanos = new long[Phase.values().length];
+
+    public static StartupTiming getInstance() {
+        return theInstance;
+    }
+
+    /**
+     * Marks the start of a phase. Calling this again for a phase that has already run
+     * (eg: on a robot restart) starts a fresh measurement of that phase.
+     */
+    public synchronized void begin(Phase phase) {
+        startNanos[phase.ordinal()] = System.nanoTime();
+        elapsedNanos[phase.ordinal()] = 0;
+    }
+
+    /**
+     * Marks the end of a phase and logs its duration. Has no effect if the phase was not begun.
+     */
+    public synchronized void end(Phase phase) {
+        long start = startNanos[phase.ordinal()];
+        if (start == 0) return;
+
+        elapsedNanos[phase.ordinal()] = System.nanoTime() - start;
+        startNanos[phase.ordinal()] = 0;
+        RobotLog.vv(TAG, "%s took %.1f ms", phase, getMilliseconds(phase));
+    }
+
+    /**
+     * @return duration of the most recent completed run of the phase, or 0 if it has not completed.
+     */
+    public synchronized double getMilliseconds(Phase phase) {
+        return elapsedNanos[phase.ordinal()] / 1.0e6;
+    }
+
+    public synchronized void logSummary() {
+        StringBuilder builder = new StringBuilder("startup phases:");
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format(" %s=%.1fms", phase, getMilliseconds(phase)));
+        }
+        RobotLog.ii(TAG, builder.toString());
+    }
+}
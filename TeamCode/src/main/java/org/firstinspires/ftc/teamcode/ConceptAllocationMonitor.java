@@ -0,0 +1,161 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.profiler.AllocationMonitor;
+import org.firstinspires.ftc.teamcode.profiler.AndroidMemoryCounters;
+import org.firstinspires.ftc.teamcode.profiler.Profiler;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/*
+ * This OpMode drives a mecanum robot while an AllocationMonitor counts what its loop allocates, and
+ * the garbage collections that run while it does.
+ *
+ * The loop is written the usual way, which allocates: the IMU returns a new YawPitchRollAngles each
+ * read, and telemetry formats its lines.  Telemetry shows the bytes allocated in each loop, the
+ * collections so far, and the loops that took longer than CYCLE_BUDGET_MILLIS while a collection ran.
+ * The Robot Controller collects concurrently, so a collection during a slow loop is a suspect, not
+ * proof, and the time collecting is mostly spent alongside the loop rather than stopping it.  The
+ * time blocking is what the app waited for collections, and a slow loop during which a collection
+ * blocked is the stronger suspect.
+ * When the OpMode stops, the monitor's summary, with the sections blamed for the slowest loops, and
+ * the profiler's summary, with the bytes each section allocates, are written to the robot log and to
+ * the "profiles" folder of the Robot Controller.
+ *
+ * Counting allocations makes every allocation a little slower while this OpMode runs.
+ *
+ * This OpMode requires drive motors named as in RobotAutoDriveToAprilTagOmni, and an IMU named imu.
+ */
+@TeleOp(name = "Concept: Allocation Monitor", group = "Concept")
+public class ConceptAllocationMonitor extends LinearOpMode {
+
+    static final String TAG = "ConceptAllocationMonitor";
+    static final double CYCLE_BUDGET_MILLIS = 20.0;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        DcMotor leftFrontDrive  = hardwareMap.get(DcMotor.class, "leftfront_drive");
+        DcMotor rightFrontDrive = hardwareMap.get(DcMotor.class, "rightfront_drive");
+        DcMotor leftBackDrive   = hardwareMap.get(DcMotor.class, "leftback_drive");
+        DcMotor rightBackDrive  = hardwareMap.get(DcMotor.class, "rightback_drive");
+        leftFrontDrive.setDirection(DcMotor.Direction.REVERSE);
+        leftBackDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightFrontDrive.setDirection(DcMotor.Direction.FORWARD);
+        rightBackDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        IMU imu = hardwareMap.get(IMU.class, "imu");
+        imu.initialize(new IMU.Parameters(new RevHubOrientationOnRobot(
+                RevHubOrientationOnRobot.LogoFacingDirection.UP, RevHubOrientationOnRobot.UsbFacingDirection.FORWARD)));
+
+        Profiler profiler = Profiler.getInstance();
+        int encoders = profiler.section("encoders");
+        int imuRead  = profiler.section("imu");
+        int drive    = profiler.section("drive");
+        int report   = profiler.section("telemetry");
+        profiler.reset();
+
+        telemetry.addData(">", "Press START to drive and monitor allocations");
+        telemetry.update();
+        waitForStart();
+
+        AndroidMemoryCounters counters = new AndroidMemoryCounters();
+        AllocationMonitor.Parameters parameters = new AllocationMonitor.Parameters();
+        parameters.cycleBudgetMillis = CYCLE_BUDGET_MILLIS;
+        AllocationMonitor monitor = new AllocationMonitor(counters, profiler, parameters);
+        profiler.setEnabled(true);
+        monitor.start();
+        try {
+            while (opModeIsActive()) {
+                profiler.enter(encoders);
+                int leftFront  = leftFrontDrive.getCurrentPosition();
+                int rightFront = rightFrontDrive.getCurrentPosition();
+                profiler.exit(encoders);
+
+                profiler.enter(imuRead);
+                YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+                profiler.exit(imuRead);
+
+                profiler.enter(drive);
+                double axial   = -gamepad1.left_stick_y;
+                double lateral =  gamepad1.left_stick_x;
+                double yaw     =  gamepad1.right_stick_x;
+                double leftFrontPower  = axial + lateral + yaw;
+                double rightFrontPower = axial - lateral - yaw;
+                double leftBackPower   = axial - lateral + yaw;
+                double rightBackPower  = axial + lateral - yaw;
+                double max = Math.max(Math.max(Math.abs(leftFrontPower), Math.abs(rightFrontPower)),
+                        Math.max(Math.abs(leftBackPower), Math.abs(rightBackPower)));
+                if (max > 1.0) {
+                    leftFrontPower  /= max;
+                    rightFrontPower /= max;
+                    leftBackPower   /= max;
+                    rightBackPower  /= max;
+                }
+                leftFrontDrive.setPower(leftFrontPower);
+                rightFrontDrive.setPower(rightFrontPower);
+                leftBackDrive.setPower(leftBackPower);
+                rightBackDrive.setPower(rightBackPower);
+                profiler.exit(drive);
+
+                profiler.enter(report);
+                telemetry.addData("Encoders", "%d %d", leftFront, rightFront);
+                telemetry.addData("Heading", "%.1f deg", angles.getYaw(AngleUnit.DEGREES));
+                telemetry.addData("Last loop", "%.1f ms, %d bytes%s", monitor.getLastMillis(), monitor.getLastBytes(),
+                        monitor.isLastBlockedOverrun() ? ", a collection blocked"
+                                : monitor.isLastCollectionOverrun() ? ", a collection ran" : "");
+                telemetry.addData("Per loop", "%.0f bytes on average, %d loops allocated nothing",
+                        monitor.getMeanBytes(), monitor.getCleanCycles());
+                telemetry.addData("Collections", "%d, %d ms, %d ms blocking; %d of %d slow loops during one, %d blocked",
+                        monitor.getCollections(), monitor.getCollectionMillis(), monitor.getBlockingMillis(),
+                        monitor.getCollectionOverruns(), monitor.getOverruns(), monitor.getBlockedOverruns());
+                telemetry.update();
+                profiler.exit(report);
+
+                monitor.cycle();
+            }
+        } finally {
+            leftFrontDrive.setPower(0);
+            rightFrontDrive.setPower(0);
+            leftBackDrive.setPower(0);
+            rightBackDrive.setPower(0);
+            profiler.setEnabled(false);
+            String summary = monitor.summary() + "\n" + profiler.summary();
+            profiler.setMemoryCounters(null);
+            counters.close();
+            save(summary);
+        }
+    }
+
+    /**
+     * Write the summaries to the robot log, and to the profiles folder named after the time.
+     */
+    void save(String summary) {
+        RobotLog.ii(TAG, "Allocations:%n%s", summary);
+        File folder = new File(AppUtil.ROOT_FOLDER, "profiles");
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            RobotLog.ee(TAG, "Could not create %s", folder);
+            return;
+        }
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        try (Writer out = new FileWriter(new File(folder, name + "-allocations.txt"))) {
+            out.write(summary);
+        } catch (IOException e) {
+            RobotLog.ee(TAG, e, "Could not write the allocation summary");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.firstinspires.ftc.teamcode.mechanism.MechanismController;
+
+/*
+ * This OpMode moves an arm and a lift to set positions with MechanismControllers, and holds them
+ * there against gravity.
+ *
+ * Unlike RobotHardware.setArmPower(), which drives the arm with a fixed power and lets it sag when
+ * released, each controller sends the voltage its mechanism needs to follow a motion profile, and
+ * corrects from the encoder.  Interlocks keep the arm clear of the lift: the arm waits above
+ * ARM_CLEAR while the lift is up, and the lift waits below LIFT_CLEAR while the arm is folded.
+ *
+ * D-pad up and down raise the arm or fold it; Y and A raise and lower the lift.  Both must start
+ * at rest, the arm folded at ARM_START and the lift down.
+ *
+ * The k constants are for a particular arm and lift: measure your own.  kG is the voltage that just
+ * holds the arm level (or the lift still), kS the voltage that just starts it moving, and kV and kA
+ * come from the speed it reaches and how fast it gets there.
+ *
+ * This OpMode requires motors named arm and lift, with encoders.
+ */
+@TeleOp(name = "Concept: Arm Controller", group = "Concept")
+public class ConceptArmController extends LinearOpMode {
+
+    // goBILDA 5203 312 rpm motor (537.7 ticks per revolution) through a further 5:1 reduction.
+    static final double ARM_TICKS_PER_RADIAN = 537.7 * 5 / (2 * Math.PI);
+    static final double ARM_START  = Math.toRadians(-30);
+    static final double ARM_UP     = Math.toRadians(70);
+    static final double ARM_FOLDED = Math.toRadians(-25);
+    static final double ARM_CLEAR  = Math.toRadians(20);
+
+    // 1.5 inch spool on a 435 rpm motor (384.5 ticks per revolution).
+    static final double LIFT_TICKS_PER_INCH = 384.5 / (1.5 * Math.PI);
+    static final double LIFT_UP    = 20.0;
+    static final double LIFT_DOWN  = 0.0;
+    static final double LIFT_CLEAR = 3.0;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        DcMotor armMotor  = hardwareMap.get(DcMotor.class, "arm");
+        DcMotor liftMotor = hardwareMap.get(DcMotor.class, "lift");
+        for (DcMotor motor : new DcMotor[] { armMotor, liftMotor }) {
+            motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+            motor.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+            motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+        }
+
+        MechanismController.Parameters armParameters = new MechanismController.Parameters();
+        armParameters.arm = true;
+        armParameters.kS = 0.3;
+        armParameters.kG = 1.5;
+        armParameters.kV = 1.2;
+        armParameters.kA = 0.08;
+        armParameters.minPosition = ARM_FOLDED;
+        armParameters.maxPosition = Math.toRadians(100);
+        final MechanismController arm = new MechanismController(armParameters);
+
+        MechanismController.Parameters liftParameters = new MechanismController.Parameters();
+        liftParameters.arm = false;
+        liftParameters.kS = 0.4;
+        liftParameters.kG = 0.9;
+        liftParameters.kV = 0.5;
+        liftParameters.kA = 0.02;
+        liftParameters.maxVelocity = 20;
+        liftParameters.maxAcceleration = 80;
+        liftParameters.minPosition = LIFT_DOWN;
+        liftParameters.maxPosition = 24;
+        liftParameters.qPosition = 0.2;
+        liftParameters.qVelocity = 5;
+        liftParameters.modelPosition = 0.01;
+        liftParameters.modelVelocity = 0.5;
+        liftParameters.measurementNoise = 0.02;
+        final MechanismController lift = new MechanismController(liftParameters);
+
+        arm.addInterlock(new MechanismController.Interlock() {
+            @Override public void limit(double[] range) {
+                if (lift.getPosition() > LIFT_CLEAR + 0.5 || lift.getTarget() > LIFT_CLEAR) {
+                    range[0] = Math.max(range[0], ARM_CLEAR);
+                }
+            }
+        });
+        lift.addInterlock(new MechanismController.Interlock() {
+            @Override public void limit(double[] range) {
+                if (arm.getPosition() < ARM_CLEAR - Math.toRadians(3) || arm.getTarget() < ARM_CLEAR) {
+                    range[1] = Math.min(range[1], LIFT_CLEAR);
+                }
+            }
+        });
+
+        telemetry.addData(">", "Arm folded and lift down?  Press START");
+        telemetry.update();
+        waitForStart();
+
+        arm.reset(ARM_START);
+        lift.reset(LIFT_DOWN);
+        try {
+            while (opModeIsActive()) {
+                if (gamepad1.dpad_up) {
+                    arm.setGoal(ARM_UP);
+                } else if (gamepad1.dpad_down) {
+                    arm.setGoal(ARM_FOLDED);
+                }
+                if (gamepad1.y) {
+                    lift.setGoal(LIFT_UP);
+                } else if (gamepad1.a) {
+                    lift.setGoal(LIFT_DOWN);
+                }
+
+                double volts = getBatteryVoltage();
+                long now = System.nanoTime();
+                armMotor.setPower(arm.update(
+                        ARM_START + armMotor.getCurrentPosition() / ARM_TICKS_PER_RADIAN, volts, now));
+                liftMotor.setPower(lift.update(
+                        LIFT_DOWN + liftMotor.getCurrentPosition() / LIFT_TICKS_PER_INCH, volts, now));
+
+                telemetry.addData("Arm", "%.0f deg, going to %.0f deg%s, %.1f V",
+                        Math.toDegrees(arm.getPosition()), Math.toDegrees(arm.getTarget()),
+                        arm.isLimited() ? " (waiting for the lift)" : "", arm.getVolts());
+                telemetry.addData("Lift", "%.1f in, going to %.1f in%s, %.1f V",
+                        lift.getPosition(), lift.getTarget(),
+                        lift.isLimited() ? " (waiting for the arm)" : "", lift.getVolts());
+                telemetry.addData("Disturbance", "arm %.2f V, lift %.2f V", arm.getDisturbance(), lift.getDisturbance());
+                telemetry.update();
+            }
+        } finally {
+            armMotor.setPower(0);
+            liftMotor.setPower(0);
+        }
+    }
+
+    // Computes the current battery voltage, or NaN if there is no voltage sensor: the controllers
+    // then assume a nominal voltage.
+    double getBatteryVoltage() {
+        double result = Double.POSITIVE_INFINITY;
+        for (VoltageSensor sensor : hardwareMap.voltageSensor) {
+            double voltage = sensor.getVoltage();
+            if (voltage > 0) {
+                result = Math.min(result, voltage);
+            }
+        }
+        return Double.isInfinite(result) ? Double.NaN : result;
+    }
+}
@@ -0,0 +1,82 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.util.Size;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.NormalizedColorSensor;
+import com.qualcomm.robotcore.hardware.SwitchableLight;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.teamcode.color.ColorClassifier;
+import org.firstinspires.ftc.teamcode.color.ColorClassifierProcessor;
+import org.firstinspires.ftc.teamcode.color.ColorSensorClassifier;
+import org.firstinspires.ftc.vision.VisionPortal;
+
+/*
+ * This OpMode tells red, yellow and blue game pieces apart with a ColorClassifier, both with a color
+ * sensor and with a webcam.
+ *
+ * Unlike SensorColor, it does not convert each reading to HSV and compare it with thresholds: the
+ * classes are compiled into a lookup table during init, and each reading or pixel is classified
+ * with one array access.  The color sensor's gain is set automatically from how bright the readings
+ * are, so do not tune it by hand, and the answer is voted over the last few readings so that it
+ * does not flicker at the edges of a piece.
+ *
+ * The webcam looks at a rectangle in the middle of the image, and reports the class covering most
+ * of it, with how long each frame took to classify.
+ *
+ * This OpMode requires a color sensor named "sensor_color" and a webcam named "Webcam 1".
+ */
+@TeleOp(name = "Concept: Color Classifier", group = "Concept")
+public class ConceptColorClassifier extends LinearOpMode {
+
+    static final int RESOLUTION_WIDTH  = 640;
+    static final int RESOLUTION_HEIGHT = 480;
+    static final int DECIMATION        = 2;
+    static final int VOTE_WINDOW       = 5;
+
+    @Override
+    public void runOpMode() {
+        ColorClassifier classifier = new ColorClassifier.Builder()
+                .add("red",    340,  20, 0.45f, 0.10f)
+                .add("yellow",  35,  75, 0.45f, 0.10f)
+                .add("blue",   190, 250, 0.45f, 0.10f)
+                .build();
+
+        NormalizedColorSensor colorSensor = hardwareMap.get(NormalizedColorSensor.class, "sensor_color");
+        if (colorSensor instanceof SwitchableLight) {
+            ((SwitchableLight) colorSensor).enableLight(true);
+        }
+        ColorSensorClassifier sensorClassifier = new ColorSensorClassifier(colorSensor, classifier);
+
+        ColorClassifierProcessor processor = new ColorClassifierProcessor(classifier, DECIMATION, VOTE_WINDOW);
+        processor.setRegion(RESOLUTION_WIDTH / 4, RESOLUTION_HEIGHT / 4, RESOLUTION_WIDTH / 2, RESOLUTION_HEIGHT / 2);
+        VisionPortal portal = new VisionPortal.Builder()
+                .setCamera(hardwareMap.get(WebcamName.class, "Webcam 1"))
+                .setCameraResolution(new Size(RESOLUTION_WIDTH, RESOLUTION_HEIGHT))
+                .addProcessor(processor)
+                .build();
+
+        telemetry.addData("Table", "%d classes, %d KB", classifier.getClassCount(), classifier.getTableSize() / 1024);
+        telemetry.update();
+        waitForStart();
+
+        try {
+            while (opModeIsActive()) {
+                sensorClassifier.update();
+
+                telemetry.addData("Sensor", "%s (%.0f%% of votes)", sensorClassifier.getName(),
+                        100 * sensorClassifier.getFilter().getVote().getAgreement());
+                telemetry.addData("Sensor gain", "%.1f, brightness %.2f", sensorClassifier.getFilter().getGain(),
+                        sensorClassifier.getFilter().getBrightness());
+                telemetry.addData("Camera", "%s (last frame: %.0f%% %s)", classifier.getName(processor.getStable()),
+                        100 * processor.getFraction(), classifier.getName(processor.getDominant()));
+                telemetry.addData("Camera time", "%.2f ms per frame", processor.getProcessNanos() / 1e6);
+                telemetry.update();
+            }
+        } finally {
+            portal.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.util.ElapsedTime;
+import com.qualcomm.robotcore.util.Range;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.teamcode.dashboard.Dashboard;
+import org.firstinspires.ftc.teamcode.dashboard.Gain;
+
+/*
+ * This OpMode streams robot state to the browser dashboard, and takes its heading gain from it.
+ *
+ * Drive with the left stick (forward/back).  The robot holds the heading it had when the stick was
+ * last centered, using a proportional controller like the one in RobotAutoDriveByGyro_Linear.
+ * The gain is "heading.kP" on the dashboard page, and can be changed while the OpMode is running.
+ *
+ * Open http://192.168.43.1:8080/dashboard from a laptop connected to the robot's WiFi.
+ *
+ * This OpMode requires drive motors named left_drive and right_drive, and an IMU named imu.
+ */
+@TeleOp(name = "Concept: Dashboard Telemetry", group = "Concept")
+public class ConceptDashboardTelemetry extends LinearOpMode {
+
+    static final double DEFAULT_HEADING_GAIN = 0.03;
+
+    @Override
+    public void runOpMode() {
+        DcMotor leftDrive  = hardwareMap.get(DcMotor.class, "left_drive");
+        DcMotor rightDrive = hardwareMap.get(DcMotor.class, "right_drive");
+        leftDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        IMU imu = hardwareMap.get(IMU.class, "imu");
+        imu.initialize(new IMU.Parameters(new RevHubOrientationOnRobot(
+                RevHubOrientationOnRobot.LogoFacingDirection.UP, RevHubOrientationOnRobot.UsbFacingDirection.FORWARD)));
+
+        // Register the channels once; the loop below only writes values by index.
+        Dashboard dashboard = Dashboard.getInstance();
+        dashboard.reset();
+        int headingChannel = dashboard.channel("pose.heading");
+        int loopChannel    = dashboard.channel("loop.ms");
+        int leftChannel    = dashboard.channel("drive.left");
+        int rightChannel   = dashboard.channel("drive.right");
+        int errorChannel   = dashboard.channel("heading.error");
+        int pTermChannel   = dashboard.channel("heading.p");
+        Gain headingGain   = dashboard.gain("heading.kP", DEFAULT_HEADING_GAIN);
+
+        telemetry.addData(">", "Dashboard at http://192.168.43.1:8080" + Dashboard.ROOT);
+        telemetry.update();
+        waitForStart();
+        imu.resetYaw();
+
+        double targetHeading = 0;
+        ElapsedTime loopTimer = new ElapsedTime();
+
+        while (opModeIsActive()) {
+            double heading = imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES);
+            double drive = -gamepad1.left_stick_y;
+            double turnStick = gamepad1.right_stick_x;
+
+            double turn;
+            double headingError = 0;
+            if (Math.abs(turnStick) > 0.05) {
+                // Driver is turning: follow the stick and remember where we end up.
+                turn = -turnStick;
+                targetHeading = heading;
+            } else {
+                headingError = AngleUnit.normalizeDegrees(targetHeading - heading);
+                turn = Range.clip(headingError * headingGain.get(), -1, 1);
+            }
+
+            double left  = drive - turn;
+            double right = drive + turn;
+            double max = Math.max(1.0, Math.max(Math.abs(left), Math.abs(right)));
+            leftDrive.setPower(left / max);
+            rightDrive.setPower(right / max);
+
+            dashboard.put(headingChannel, heading);
+            dashboard.put(loopChannel, loopTimer.milliseconds());
+            dashboard.put(leftChannel, left / max);
+            dashboard.put(rightChannel, right / max);
+            dashboard.put(errorChannel, headingError);
+            dashboard.put(pTermChannel, turn);
+            dashboard.publish();
+            loopTimer.reset();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+import org.firstinspires.ftc.teamcode.dashboard.Dashboard;
+import org.firstinspires.ftc.teamcode.odometry.DeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.odometry.OctoQuadOdometry;
+
+/*
+ * This OpMode turns the three odometry pod readings of the SensorOctoQuad sample into a field pose.
+ *
+ * The pods are read once per loop into a reused data block, and a DeadWheelLocalizer integrates them.
+ * The pose is shown on the Driver Station and on the dashboard field (see ConceptDashboardTelemetry).
+ * Push the robot around by hand: the pose should follow, and come back to where it started.
+ * Press X to set the pose back to zero.
+ *
+ * Measure TRACK_WIDTH (between the left and right pods) and PERPENDICULAR_OFFSET (perpendicular pod
+ * forward of the center of rotation) on your robot.  To fine tune TRACK_WIDTH, spin the robot ten
+ * times on the spot, and scale it by the heading shown over the heading turned.
+ *
+ * This OpMode assumes that the OctoQuad is attached to an I2C interface named "octoquad", with the
+ * pods on channels 0 (left), 1 (right) and 2 (perpendicular), as in SensorOctoQuad.
+ */
+@TeleOp(name = "Concept: Dead Wheel Odometry", group = "Concept")
+public class ConceptDeadWheelOdometry extends LinearOpMode {
+
+    private final int ODO_LEFT  = 0;
+    private final int ODO_RIGHT = 1;
+    private final int ODO_PERP  = 2;
+
+    // REV Through Bore encoder (8192 counts per revolution) on a 35mm odometry wheel.
+    static final double INCHES_PER_TICK      = Math.PI * 35.0 / 25.4 / 8192;
+    static final double TRACK_WIDTH          = 13.0;
+    static final double PERPENDICULAR_OFFSET = -4.5;
+
+    @Override
+    public void runOpMode() {
+        OctoQuad octoquad = hardwareMap.get(OctoQuad.class, "octoquad");
+        DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        OctoQuadOdometry odometry = new OctoQuadOdometry(octoquad, ODO_LEFT, ODO_RIGHT, ODO_PERP, localizer);
+
+        // Reverse any pod whose count goes down when the robot moves forward (or left).
+        // The OctoQuad's flash is only written when this changes something.
+        boolean saved = odometry.configure(true, false, false);
+
+        Dashboard dashboard = Dashboard.getInstance();
+        dashboard.reset();
+        int xChannel       = dashboard.channel("pose.x");
+        int yChannel       = dashboard.channel("pose.y");
+        int headingChannel = dashboard.channel("pose.heading");
+        int readChannel    = dashboard.channel("odometry.read.ms");
+
+        telemetry.addData("OctoQuad Firmware", octoquad.getFirmwareVersion());
+        telemetry.addData("OctoQuad Parameters", saved ? "changed, saved to flash" : "already set");
+        telemetry.addLine("\nPress START to track the pose");
+        telemetry.update();
+        waitForStart();
+
+        telemetry.setDisplayFormat(Telemetry.DisplayFormat.MONOSPACE);
+        telemetry.setMsTransmissionInterval(50);
+
+        // The first updates only record the counts.
+        odometry.update();
+
+        while (opModeIsActive()) {
+            if (gamepad1.x) {
+                localizer.setPose(0, 0, 0);
+            }
+
+            odometry.update();
+
+            double headingDegrees = Math.toDegrees(localizer.getHeading());
+            dashboard.put(xChannel, localizer.getX());
+            dashboard.put(yChannel, localizer.getY());
+            dashboard.put(headingChannel, headingDegrees);
+            dashboard.put(readChannel, odometry.getLastReadNanos() / 1e6);
+            dashboard.publish();
+
+            telemetry.addData(">", "Press X to reset the pose\n");
+            telemetry.addData("X      ", "%8.2f in", localizer.getX());
+            telemetry.addData("Y      ", "%8.2f in", localizer.getY());
+            telemetry.addData("Heading", "%8.2f deg", headingDegrees);
+            telemetry.addData("Speed  ", "%8.2f in/s  %6.1f deg/s",
+                    Math.hypot(localizer.getVelocityX(), localizer.getVelocityY()), Math.toDegrees(localizer.getAngularVelocity()));
+            telemetry.addData("Read   ", "%8.2f ms, %d rejected", odometry.getLastReadNanos() / 1e6, odometry.getRejectedReads());
+            telemetry.update();
+        }
+    }
+}
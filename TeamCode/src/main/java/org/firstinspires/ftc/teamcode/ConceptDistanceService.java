@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DistanceSensor;
+import com.qualcomm.robotcore.util.Range;
+
+import org.firstinspires.ftc.teamcode.distance.DistanceSensorSource;
+import org.firstinspires.ftc.teamcode.distance.DistanceService;
+
+/*
+ * This OpMode squares a mecanum robot up to a wall and stops it a set distance away, using two
+ * distance sensors on its front read by a DistanceService.
+ *
+ * Unlike SensorREV2mDistance, the loop never waits for a sensor: the service reads the sensors one
+ * at a time on its own thread, filters out bad readings, and the loop takes the latest distances
+ * with how confident the service is in them.  The robot only moves while both front distances are
+ * trusted.  A third sensor on the side is read half as often, and only shown on telemetry.
+ *
+ * Hold the A button to drive up to the wall; the left stick drives the robot otherwise.
+ *
+ * SENSOR_SPACING is the distance between the two front sensors, in inches.
+ *
+ * This OpMode requires drive motors named as in RobotAutoDriveToAprilTagOmni, and distance sensors
+ * named "front_left_distance", "front_right_distance" and "side_distance".
+ */
+@TeleOp(name = "Concept: Distance Service", group = "Concept")
+public class ConceptDistanceService extends LinearOpMode {
+
+    static final double WALL_DISTANCE    = 4.0;
+    static final double SENSOR_SPACING   = 12.0;
+    static final double MIN_CONFIDENCE   = 0.5;
+    static final double DRIVE_GAIN       = 0.05;
+    static final double TURN_GAIN        = 1.0;
+    static final double MAX_AUTO_POWER   = 0.4;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        DcMotor leftFrontDrive  = hardwareMap.get(DcMotor.class, "leftfront_drive");
+        DcMotor rightFrontDrive = hardwareMap.get(DcMotor.class, "rightfront_drive");
+        DcMotor leftBackDrive   = hardwareMap.get(DcMotor.class, "leftback_drive");
+        DcMotor rightBackDrive  = hardwareMap.get(DcMotor.class, "rightback_drive");
+        leftFrontDrive.setDirection(DcMotor.Direction.REVERSE);
+        leftBackDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightFrontDrive.setDirection(DcMotor.Direction.FORWARD);
+        rightBackDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        DistanceService service = new DistanceService(new DistanceService.Parameters());
+        int frontLeft  = service.add("front left",
+                new DistanceSensorSource(hardwareMap.get(DistanceSensor.class, "front_left_distance")), 2);
+        int frontRight = service.add("front right",
+                new DistanceSensorSource(hardwareMap.get(DistanceSensor.class, "front_right_distance")), 2);
+        int side       = service.add("side",
+                new DistanceSensorSource(hardwareMap.get(DistanceSensor.class, "side_distance")), 1);
+        DistanceService.Reading left = new DistanceService.Reading();
+        DistanceService.Reading right = new DistanceService.Reading();
+        DistanceService.Reading sideReading = new DistanceService.Reading();
+
+        service.start();
+        try {
+            while (!isStarted() && !isStopRequested()) {
+                telemetry.addData(">", "Press START, then hold A to drive up to the wall");
+                telemetry.addLine(service.toString());
+                telemetry.update();
+                sleep(50);
+            }
+
+            while (opModeIsActive()) {
+                boolean leftOk  = service.get(frontLeft, left) && left.confidence >= MIN_CONFIDENCE;
+                boolean rightOk = service.get(frontRight, right) && right.confidence >= MIN_CONFIDENCE;
+                service.get(side, sideReading);
+
+                double axial = -gamepad1.left_stick_y;
+                double lateral = gamepad1.left_stick_x;
+                double yaw = gamepad1.right_stick_x;
+                if (gamepad1.a) {
+                    lateral = 0;
+                    if (leftOk && rightOk) {
+                        double error = 0.5 * (left.distance + right.distance) - WALL_DISTANCE;
+                        // Positive when the left side is further from the wall: turn right to square up.
+                        double skew = (left.distance - right.distance) / SENSOR_SPACING;
+                        axial = Range.clip(DRIVE_GAIN * error, -MAX_AUTO_POWER, MAX_AUTO_POWER);
+                        yaw = Range.clip(TURN_GAIN * skew, -MAX_AUTO_POWER, MAX_AUTO_POWER);
+                    } else {
+                        // Not sure where the wall is: wait for better readings.
+                        axial = 0;
+                        yaw = 0;
+                    }
+                }
+
+                double leftFrontPower  = axial + lateral + yaw;
+                double rightFrontPower = axial - lateral - yaw;
+                double leftBackPower   = axial - lateral + yaw;
+                double rightBackPower  = axial + lateral - yaw;
+                double max = Math.max(Math.max(Math.abs(leftFrontPower), Math.abs(rightFrontPower)),
+                        Math.max(Math.abs(leftBackPower), Math.abs(rightBackPower)));
+                if (max > 1.0) {
+                    leftFrontPower  /= max;
+                    rightFrontPower /= max;
+                    leftBackPower   /= max;
+                    rightBackPower  /= max;
+                }
+                leftFrontDrive.setPower(leftFrontPower);
+                rightFrontDrive.setPower(rightFrontPower);
+                leftBackDrive.setPower(leftBackPower);
+                rightBackDrive.setPower(rightBackPower);
+
+                long now = System.nanoTime();
+                telemetry.addData("Front left",  "%.1f in, %.0f%%, %.0f ms old", left.distance, 100 * left.confidence, (now - left.nanos) / 1e6);
+                telemetry.addData("Front right", "%.1f in, %.0f%%, %.0f ms old", right.distance, 100 * right.confidence, (now - right.nanos) / 1e6);
+                telemetry.addData("Side",        "%.1f in, %.0f%%", sideReading.distance, 100 * sideReading.confidence);
+                telemetry.addData("Reads", "%.1f rounds/s, %.1f ms per read",
+                        service.getCycles() / Math.max(getRuntime(), 1e-3), service.getAverageReadMillis(frontLeft));
+                telemetry.update();
+            }
+        } finally {
+            leftFrontDrive.setPower(0);
+            rightFrontDrive.setPower(0);
+            leftBackDrive.setPower(0);
+            rightBackDrive.setPower(0);
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.teamcode.dashboard.Dashboard;
+import org.firstinspires.ftc.teamcode.odometry.DeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.odometry.OctoQuadOdometry;
+import org.firstinspires.ftc.teamcode.path.DriveMixer;
+import org.firstinspires.ftc.teamcode.path.PurePursuitFollower;
+import org.firstinspires.ftc.teamcode.planner.FieldPlanner;
+import org.firstinspires.ftc.teamcode.planner.IncrementalPlanner;
+import org.firstinspires.ftc.teamcode.planner.OccupancyGrid;
+
+/*
+ * This OpMode drives a mecanum robot to points on the field chosen with the gamepad, planning a route
+ * around the central structure and around obstacles found along the way.
+ *
+ * The field is an OccupancyGrid with cells of CELL_SIZE inches, grown by the robot's radius so the
+ * planner can treat the robot as a point.  Press Y, B, A or X to plan to one of four goals with an
+ * IncrementalPlanner; the route becomes a Path followed by a PurePursuitFollower, as in
+ * ConceptPathFollower.  Press the left bumper to drop an obstacle two feet in front of the robot, the
+ * way a vision detection would: the planner repairs the route in a fraction of a millisecond instead
+ * of planning it again.  Press the right bumper to clear the dropped obstacles.
+ *
+ * The robot must start at START_X, START_Y facing START_HEADING (degrees, field coordinates in
+ * inches with the origin at the center of the field).
+ *
+ * This OpMode requires drive motors named as in RobotAutoDriveToAprilTagOmni, and an OctoQuad named
+ * "octoquad" with odometry pods as in SensorOctoQuad.
+ */
+@TeleOp(name = "Concept: Field Planner", group = "Concept")
+public class ConceptFieldPlanner extends LinearOpMode {
+
+    static final double MAX_SPEED     = 50.0;
+    static final double TURN_RADIUS   = 14.0;
+    static final double CELL_SIZE     = 2.0;
+    static final double ROBOT_RADIUS  = 9.0;
+    static final double OBSTACLE_SIZE = 6.0;
+
+    static final double START_X       = -36.0;
+    static final double START_Y       = -60.0;
+    static final double START_HEADING = 90.0;
+
+    // Goals for the Y, B, A and X buttons.
+    static final double[] GOAL_X = { -36.0, 48.0, 36.0, -48.0 };
+    static final double[] GOAL_Y = {  48.0,  0.0, -48.0,  0.0 };
+
+    // Odometry geometry, as in ConceptDeadWheelOdometry.
+    static final double INCHES_PER_TICK      = Math.PI * 35.0 / 25.4 / 8192;
+    static final double TRACK_WIDTH          = 13.0;
+    static final double PERPENDICULAR_OFFSET = -4.5;
+
+    @Override
+    public void runOpMode() {
+        DcMotor leftFrontDrive  = hardwareMap.get(DcMotor.class, "leftfront_drive");
+        DcMotor rightFrontDrive = hardwareMap.get(DcMotor.class, "rightfront_drive");
+        DcMotor leftBackDrive   = hardwareMap.get(DcMotor.class, "leftback_drive");
+        DcMotor rightBackDrive  = hardwareMap.get(DcMotor.class, "rightback_drive");
+        leftFrontDrive.setDirection(DcMotor.Direction.REVERSE);
+        leftBackDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightFrontDrive.setDirection(DcMotor.Direction.FORWARD);
+        rightBackDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        OctoQuadOdometry odometry = new OctoQuadOdometry(hardwareMap.get(OctoQuad.class, "octoquad"), 0, 1, 2, localizer);
+        odometry.configure(true, false, false);
+
+        OccupancyGrid grid = new OccupancyGrid(CELL_SIZE, ROBOT_RADIUS);
+        grid.addRectangle(-22, -14.5, 22, 14.5);
+        IncrementalPlanner planner = new IncrementalPlanner(grid);
+        int[] dropped = new int[OccupancyGrid.MAX_OBSTACLES];
+        int droppedCount = 0;
+
+        DriveMixer mixer = new DriveMixer(MAX_SPEED, TURN_RADIUS);
+        double[] powers = new double[4];
+        PurePursuitFollower follower = null;
+        double goalX = 0, goalY = 0;
+        int builtVersion = -1;
+        double replanMicros = 0;
+
+        Dashboard dashboard = Dashboard.getInstance();
+        dashboard.reset();
+        int xChannel         = dashboard.channel("pose.x");
+        int yChannel         = dashboard.channel("pose.y");
+        int headingChannel   = dashboard.channel("pose.heading");
+        int lookaheadX       = dashboard.channel("path.lookahead.x");
+        int lookaheadY       = dashboard.channel("path.lookahead.y");
+        int replanChannel    = dashboard.channel("planner.replan.us");
+
+        telemetry.addData("Grid", "%d x %d cells", grid.getColumns(), grid.getRows());
+        telemetry.addData(">", "Y/B/A/X pick a goal, left bumper drops an obstacle, right bumper clears them");
+        telemetry.update();
+        waitForStart();
+
+        odometry.update();
+        localizer.setPose(START_X, START_Y, Math.toRadians(START_HEADING));
+        boolean lastLeftBumper = false;
+        boolean lastRightBumper = false;
+
+        while (opModeIsActive()) {
+            odometry.update();
+            double x = localizer.getX();
+            double y = localizer.getY();
+            double heading = localizer.getHeading();
+            // The robot may be inside a freshly dropped obstacle's margin: start from the closest free cell.
+            int start = grid.nearestFree(grid.cell(x, y));
+
+            int goal = -1;
+            if (gamepad1.y) goal = 0;
+            if (gamepad1.b) goal = 1;
+            if (gamepad1.a) goal = 2;
+            if (gamepad1.x) goal = 3;
+            if (goal >= 0 && start >= 0) {
+                goalX = GOAL_X[goal];
+                goalY = GOAL_Y[goal];
+                int goalCell = grid.nearestFree(grid.cell(goalX, goalY));
+                if (goalCell >= 0) {
+                    planner.plan(start, goalCell);
+                    builtVersion = -1;
+                }
+            }
+
+            if (gamepad1.left_bumper && !lastLeftBumper && droppedCount < dropped.length) {
+                int id = grid.addCircle(x + 24 * Math.cos(heading), y + 24 * Math.sin(heading), OBSTACLE_SIZE / 2);
+                if (id >= 0) {
+                    dropped[droppedCount++] = id;
+                }
+            }
+            if (gamepad1.right_bumper && !lastRightBumper) {
+                while (droppedCount > 0) {
+                    grid.remove(dropped[--droppedCount]);
+                }
+            }
+            lastLeftBumper = gamepad1.left_bumper;
+            lastRightBumper = gamepad1.right_bumper;
+
+            if (planner.getGoal() >= 0 && start >= 0) {
+                long t0 = System.nanoTime();
+                planner.setStart(start);
+                int count = planner.replan();
+                replanMicros = (System.nanoTime() - t0) / 1e3;
+
+                // Only a new goal or a changed grid means a new route: otherwise keep following the
+                // current one, so the follower's progress along it is not lost.
+                if (grid.getVersion() != builtVersion) {
+                    builtVersion = grid.getVersion();
+                    follower = count > 0
+                            ? new PurePursuitFollower(FieldPlanner.toPath(grid, planner.getWaypoints(), count, x, y, goalX, goalY))
+                            : null;
+                }
+            }
+
+            if (follower != null && !follower.isFinished()) {
+                follower.update(x, y, heading);
+                mixer.mecanum(follower.getForward(), follower.getLeft(), follower.getTurn(), powers);
+                dashboard.put(lookaheadX, follower.getLookaheadX());
+                dashboard.put(lookaheadY, follower.getLookaheadY());
+            } else {
+                powers[0] = powers[1] = powers[2] = powers[3] = 0;
+            }
+            leftFrontDrive.setPower(powers[DriveMixer.LEFT_FRONT]);
+            rightFrontDrive.setPower(powers[DriveMixer.RIGHT_FRONT]);
+            leftBackDrive.setPower(powers[DriveMixer.LEFT_BACK]);
+            rightBackDrive.setPower(powers[DriveMixer.RIGHT_BACK]);
+
+            dashboard.put(xChannel, x);
+            dashboard.put(yChannel, y);
+            dashboard.put(headingChannel, Math.toDegrees(heading));
+            dashboard.put(replanChannel, replanMicros);
+            dashboard.publish();
+
+            telemetry.addData("Pose", "(%.1f, %.1f) %.1f deg", x, y, Math.toDegrees(heading));
+            if (planner.getGoal() < 0) {
+                telemetry.addData("Route", "press Y, B, A or X");
+            } else if (follower == null) {
+                telemetry.addData("Route", "none to (%.0f, %.0f)", goalX, goalY);
+            } else {
+                telemetry.addData("Route", "%d waypoints, %.1f in to (%.0f, %.0f)%s", planner.getWaypointCount(),
+                        planner.getLength(), goalX, goalY, follower.isFinished() ? ", arrived" : "");
+            }
+            telemetry.addData("Replan", "%.0f us, %d cells", replanMicros, planner.getExpanded());
+            telemetry.addData("Obstacles", droppedCount);
+            telemetry.update();
+        }
+
+        leftFrontDrive.setPower(0);
+        rightFrontDrive.setPower(0);
+        leftBackDrive.setPower(0);
+        rightBackDrive.setPower(0);
+    }
+}
@@ -0,0 +1,109 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.teamcode.hardware.InitOrchestrator;
+import org.firstinspires.ftc.teamcode.hardware.LazyDevice;
+
+/*
+ * This OpMode performs the same hardware setup as RobotAutoDriveByGyro_Linear, but through an InitOrchestrator.
+ *
+ * The motor setup on each hub, and the IMU initialization, run at the same time rather than one after another.
+ * The IMU sits on an I2C port of a hub, and its traffic goes through that hub, so it is queued with that hub's motors.
+ * Motor direction is only kept by the SDK, not written to the hub, so it is set directly rather than as a step.
+ * The run mode and zero power behavior are only written if the motor does not already have them, so pressing INIT
+ * again after a previous OpMode skips them.  The encoders are not reset: like RobotAutoDriveByGyro_Linear, any
+ * drive targets are taken relative to getCurrentPosition(), so only the run mode matters.
+ * The hand servo is not needed until the match starts, so it is only set up the first time it is used.
+ *
+ * The time from INIT to ready is shown on the Driver Station, together with how many steps were skipped.
+ *
+ * This OpMode requires drive motors named left_drive and right_drive, a servo named left_hand and an IMU named imu.
+ */
+@Autonomous(name = "Concept: Parallel Init", group = "Concept")
+public class ConceptParallelInit extends LinearOpMode {
+
+    private DcMotor leftDrive  = null;
+    private DcMotor rightDrive = null;
+    private IMU     imu        = null;
+
+    private final LazyDevice<Servo> hand = new LazyDevice<>(() -> {
+        Servo servo = hardwareMap.get(Servo.class, "left_hand");
+        servo.setDirection(Servo.Direction.FORWARD);
+        servo.setPosition(0.5);
+        return servo;
+    });
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        // hardwareMap.get() is only a lookup, so it is cheap.  It is the device writes that take time.
+        leftDrive  = hardwareMap.get(DcMotor.class, "left_drive");
+        rightDrive = hardwareMap.get(DcMotor.class, "right_drive");
+        imu        = hardwareMap.get(IMU.class, "imu");
+
+        InitOrchestrator init = new InitOrchestrator();
+        addMotorSteps(init, "left",  leftDrive,  DcMotor.Direction.REVERSE);
+        addMotorSteps(init, "right", rightDrive, DcMotor.Direction.FORWARD);
+
+        RevHubOrientationOnRobot orientationOnRobot = new RevHubOrientationOnRobot(
+                RevHubOrientationOnRobot.LogoFacingDirection.UP, RevHubOrientationOnRobot.UsbFacingDirection.FORWARD);
+        init.addStep("imu", hubOf(imu), () -> imu.initialize(new IMU.Parameters(orientationOnRobot)));
+
+        InitOrchestrator.Report report = init.run();
+
+        while (opModeInInit()) {
+            telemetry.addData("Init", report.toString());
+            telemetry.addData("Heading", "%4.0f", imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.DEGREES));
+            telemetry.update();
+        }
+
+        // First use of the hand: its setup happens here.
+        hand.get().setPosition(0.8);
+
+        while (opModeIsActive()) {
+            telemetry.addData("Init", report.toString());
+            telemetry.addData("Hand", "%4.2f", hand.get().getPosition());
+            telemetry.update();
+        }
+    }
+
+    /**
+     * Add the setup steps for one drive motor.  Steps are keyed on the hub, so motors on different
+     * hubs are set up in parallel.  The SDK remembers the run mode and zero power behavior it last
+     * wrote to a motor, so checking them on a re-init costs no hub transaction.
+     */
+    private void addMotorSteps(InitOrchestrator init, String name, DcMotor motor, DcMotor.Direction direction) {
+        String bus = hubOf(motor);
+
+        motor.setDirection(direction);
+        init.addStep(name + " run mode", bus, () -> motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER))
+                .skipIf(() -> motor.getMode() == DcMotor.RunMode.RUN_USING_ENCODER);
+        init.addStep(name + " brake", bus, () -> motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE))
+                .skipIf(() -> motor.getZeroPowerBehavior() == DcMotor.ZeroPowerBehavior.BRAKE);
+    }
+
+    /**
+     * @return the connection info of the hub a device is on, whether directly or through one of the
+     *         hub's I2C ports, or the device's own connection info if it is not on a hub
+     */
+    private String hubOf(HardwareDevice device) {
+        // A device's connection info is its hub's, followed by "; port n" (or "; bus n; addr7=..").
+        // Compare up to the separator: "module 2" is also a prefix of "module 20".
+        String connection = device.getConnectionInfo();
+        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
+            String hub = module.getConnectionInfo();
+            if (connection.equals(hub) || connection.startsWith(hub + ";")) {
+                return hub;
+            }
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,122 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.teamcode.dashboard.Dashboard;
+import org.firstinspires.ftc.teamcode.odometry.DeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.odometry.OctoQuadOdometry;
+import org.firstinspires.ftc.teamcode.path.DriveMixer;
+import org.firstinspires.ftc.teamcode.path.Path;
+import org.firstinspires.ftc.teamcode.path.PurePursuitFollower;
+
+/*
+ * This OpMode drives a mecanum robot along a curved path with a PurePursuitFollower, instead of the
+ * sequence of driveStraight() and turnToHeading() calls used by RobotAutoDriveByGyro_Linear.
+ *
+ * The path is an S: forward 24 inches, a half circle to the left, a half circle to the right, then
+ * forward again, made of many short segments.  The robot's pose comes from dead-wheel odometry, as in
+ * ConceptDeadWheelOdometry, and is shown with the lookahead point on the dashboard.
+ *
+ * MAX_SPEED is the robot's speed at full power, and TURN_RADIUS half its track width plus half its
+ * wheel base; both set how velocities become wheel powers.
+ *
+ * This OpMode requires drive motors named as in RobotAutoDriveToAprilTagOmni, and an OctoQuad named
+ * "octoquad" with odometry pods as in SensorOctoQuad.
+ */
+@Autonomous(name = "Concept: Path Follower", group = "Concept")
+public class ConceptPathFollower extends LinearOpMode {
+
+    static final double MAX_SPEED   = 50.0;
+    static final double TURN_RADIUS = 14.0;
+    static final double ARC_RADIUS  = 18.0;
+    static final int    ARC_SEGMENTS = 36;
+
+    // Odometry geometry, as in ConceptDeadWheelOdometry.
+    static final double INCHES_PER_TICK      = Math.PI * 35.0 / 25.4 / 8192;
+    static final double TRACK_WIDTH          = 13.0;
+    static final double PERPENDICULAR_OFFSET = -4.5;
+
+    @Override
+    public void runOpMode() {
+        DcMotor leftFrontDrive  = hardwareMap.get(DcMotor.class, "leftfront_drive");
+        DcMotor rightFrontDrive = hardwareMap.get(DcMotor.class, "rightfront_drive");
+        DcMotor leftBackDrive   = hardwareMap.get(DcMotor.class, "leftback_drive");
+        DcMotor rightBackDrive  = hardwareMap.get(DcMotor.class, "rightback_drive");
+        leftFrontDrive.setDirection(DcMotor.Direction.REVERSE);
+        leftBackDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightFrontDrive.setDirection(DcMotor.Direction.FORWARD);
+        rightBackDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        OctoQuadOdometry odometry = new OctoQuadOdometry(hardwareMap.get(OctoQuad.class, "octoquad"), 0, 1, 2, localizer);
+        odometry.configure(true, false, false);
+
+        Path path = buildPath();
+        PurePursuitFollower follower = new PurePursuitFollower(path);
+        DriveMixer mixer = new DriveMixer(MAX_SPEED, TURN_RADIUS);
+        double[] powers = new double[4];
+
+        Dashboard dashboard = Dashboard.getInstance();
+        dashboard.reset();
+        int xChannel         = dashboard.channel("pose.x");
+        int yChannel         = dashboard.channel("pose.y");
+        int headingChannel   = dashboard.channel("pose.heading");
+        int lookaheadX       = dashboard.channel("path.lookahead.x");
+        int lookaheadY       = dashboard.channel("path.lookahead.y");
+        int errorChannel     = dashboard.channel("path.error");
+
+        telemetry.addData("Path", "%d segments, %.1f inches", path.getSegmentCount(), path.getLength());
+        telemetry.update();
+        waitForStart();
+
+        odometry.update();
+        localizer.setPose(0, 0, 0);
+
+        while (opModeIsActive() && !follower.isFinished()) {
+            odometry.update();
+            follower.update(localizer.getX(), localizer.getY(), localizer.getHeading());
+            mixer.mecanum(follower.getForward(), follower.getLeft(), follower.getTurn(), powers);
+
+            leftFrontDrive.setPower(powers[DriveMixer.LEFT_FRONT]);
+            rightFrontDrive.setPower(powers[DriveMixer.RIGHT_FRONT]);
+            leftBackDrive.setPower(powers[DriveMixer.LEFT_BACK]);
+            rightBackDrive.setPower(powers[DriveMixer.RIGHT_BACK]);
+
+            dashboard.put(xChannel, localizer.getX());
+            dashboard.put(yChannel, localizer.getY());
+            dashboard.put(headingChannel, Math.toDegrees(localizer.getHeading()));
+            dashboard.put(lookaheadX, follower.getLookaheadX());
+            dashboard.put(lookaheadY, follower.getLookaheadY());
+            dashboard.put(errorChannel, follower.getCrossTrackError());
+            dashboard.publish();
+
+            telemetry.addData("Progress", "%.1f of %.1f in", follower.getDistanceAlong(), path.getLength());
+            telemetry.addData("Off path", "%.2f in", follower.getCrossTrackError());
+            telemetry.addData("Pose", "(%.1f, %.1f) %.1f deg", localizer.getX(), localizer.getY(), Math.toDegrees(localizer.getHeading()));
+            telemetry.update();
+        }
+
+        leftFrontDrive.setPower(0);
+        rightFrontDrive.setPower(0);
+        leftBackDrive.setPower(0);
+        rightBackDrive.setPower(0);
+    }
+
+    static Path buildPath() {
+        Path.Builder builder = new Path.Builder(0, 0).lineTo(24, 0);
+        // Half circle to the left, centered above the end of the first line...
+        for (int i = 1; i <= ARC_SEGMENTS; i++) {
+            double angle = -Math.PI / 2 + Math.PI * i / ARC_SEGMENTS;
+            builder.lineTo(24 + ARC_RADIUS * Math.cos(angle), ARC_RADIUS + ARC_RADIUS * Math.sin(angle));
+        }
+        // ...then to the right, centered above that, ending heading forward again.
+        for (int i = 1; i <= ARC_SEGMENTS; i++) {
+            double angle = -Math.PI / 2 - Math.PI * i / ARC_SEGMENTS;
+            builder.lineTo(24 + ARC_RADIUS * Math.cos(angle), 3 * ARC_RADIUS + ARC_RADIUS * Math.sin(angle));
+        }
+        return builder.lineTo(48, 4 * ARC_RADIUS).build();
+    }
+}
@@ -0,0 +1,110 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorEx;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.firstinspires.ftc.teamcode.power.PowerLimiter;
+
+/*
+ * This OpMode sends the drive and arm powers through a PowerLimiter, so that a hard reversal or an
+ * arm lift on a tired battery does not brown out the hubs.
+ *
+ * The limiter learns the battery's internal resistance while the robot runs, predicts the voltage
+ * the next powers would pull the battery down to, and scales them down when that is below
+ * PowerLimiter.DEFAULT_MINIMUM_VOLTS.  The arm has the highest priority, so it keeps holding while
+ * the drive gives way; both drive sides are scaled together, so the robot keeps its heading.
+ *
+ * Drive with the left stick (forward/back) and right stick (turn), as in RobotTeleopPOV_Linear.
+ * Raise and lower the arm with the right and left triggers.  Press B to turn the limiter on and off,
+ * and compare the lowest voltage shown.
+ *
+ * This OpMode requires motors named left_drive, right_drive and arm, with encoders.
+ */
+@TeleOp(name = "Concept: Power Limiter", group = "Concept")
+public class ConceptPowerLimiter extends LinearOpMode {
+
+    // goBILDA 5203 312 RPM: stall current, and encoder ticks per second at free speed.
+    static final double STALL_AMPS       = 9.2;
+    static final double FREE_TICKS_PER_S = 537.7 * 312 / 60;
+
+    @Override
+    public void runOpMode() {
+        DcMotorEx leftDrive  = hardwareMap.get(DcMotorEx.class, "left_drive");
+        DcMotorEx rightDrive = hardwareMap.get(DcMotorEx.class, "right_drive");
+        DcMotorEx arm        = hardwareMap.get(DcMotorEx.class, "arm");
+        leftDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightDrive.setDirection(DcMotor.Direction.FORWARD);
+        leftDrive.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        rightDrive.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        arm.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
+        arm.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
+
+        PowerLimiter limiter = new PowerLimiter();
+        int leftLoad  = limiter.addLoad("drive.left",  STALL_AMPS, 1);
+        int rightLoad = limiter.addLoad("drive.right", STALL_AMPS, 1);
+        int armLoad   = limiter.addLoad("arm",         STALL_AMPS, 2);
+
+        // First sample at rest: sets the open circuit voltage.
+        limiter.update(getBatteryVoltage());
+
+        telemetry.addData(">", "Press START");
+        telemetry.update();
+        waitForStart();
+
+        double lowestVolts = Double.POSITIVE_INFINITY;
+        boolean lastB = false;
+
+        while (opModeIsActive()) {
+            if (gamepad1.b && !lastB) {
+                limiter.setEnabled(!limiter.isEnabled());
+                lowestVolts = Double.POSITIVE_INFINITY;
+            }
+            lastB = gamepad1.b;
+
+            double drive = -gamepad1.left_stick_y;
+            double turn  =  gamepad1.right_stick_x;
+            double left  = drive + turn;
+            double right = drive - turn;
+            double max = Math.max(1.0, Math.max(Math.abs(left), Math.abs(right)));
+
+            limiter.setDemand(leftLoad,  left / max);
+            limiter.setDemand(rightLoad, right / max);
+            limiter.setDemand(armLoad,   gamepad1.right_trigger - gamepad1.left_trigger);
+            limiter.setSpeed(leftLoad,  leftDrive.getVelocity() / FREE_TICKS_PER_S);
+            limiter.setSpeed(rightLoad, rightDrive.getVelocity() / FREE_TICKS_PER_S);
+            limiter.setSpeed(armLoad,   arm.getVelocity() / FREE_TICKS_PER_S);
+
+            double volts = getBatteryVoltage();
+            lowestVolts = Math.min(lowestVolts, volts);
+            limiter.update(volts);
+
+            leftDrive.setPower(limiter.getOutput(leftLoad));
+            rightDrive.setPower(limiter.getOutput(rightLoad));
+            arm.setPower(limiter.getOutput(armLoad));
+
+            telemetry.addData("Limiter", limiter.isEnabled() ? "on (B to turn off)" : "off (B to turn on)");
+            telemetry.addData("Battery", "%.2fV, lowest %.2fV", volts, lowestVolts);
+            telemetry.addData("Estimate", limiter.toString());
+            for (int load = 0; load < limiter.getLoadCount(); load++) {
+                telemetry.addData(limiter.getName(load), "power %.2f (%.0f%% of demand)", limiter.getOutput(load), 100 * limiter.getScale(load));
+            }
+            telemetry.update();
+        }
+    }
+
+    // Computes the current battery voltage, or NaN if there is no voltage sensor: the limiter then
+    // passes the powers through unchanged.
+    double getBatteryVoltage() {
+        double result = Double.POSITIVE_INFINITY;
+        for (VoltageSensor sensor : hardwareMap.voltageSensor) {
+            double voltage = sensor.getVoltage();
+            if (voltage > 0) {
+                result = Math.min(result, voltage);
+            }
+        }
+        return Double.isInfinite(result) ? Double.NaN : result;
+    }
+}
@@ -0,0 +1,171 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.IMU;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.profiler.Profiler;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * This OpMode drives a mecanum robot with the sections of its loop timed by a Profiler: the bulk
+ * read, the encoder and IMU reads, the drive control and telemetry.
+ *
+ * Telemetry shows each section's count, mean and percentiles, refreshed twice a second.  Press X to
+ * pause or resume profiling.  When the OpMode stops, the profile is written to the "profiles"
+ * folder of the Robot Controller as a flame graph input (.folded, for flamegraph.pl or
+ * https://www.speedscope.app) and a trace of the last loops (.json, for https://ui.perfetto.dev),
+ * and the summary is written to the robot log.
+ *
+ * This OpMode requires drive motors named as in RobotAutoDriveToAprilTagOmni, and an IMU named imu.
+ */
+@TeleOp(name = "Concept: Profiler", group = "Concept")
+public class ConceptProfiler extends LinearOpMode {
+
+    static final String TAG = "ConceptProfiler";
+    static final double SUMMARY_SECONDS = 0.5;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        List<LynxModule> hubs = hardwareMap.getAll(LynxModule.class);
+        for (LynxModule hub : hubs) {
+            hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+
+        DcMotor leftFrontDrive  = hardwareMap.get(DcMotor.class, "leftfront_drive");
+        DcMotor rightFrontDrive = hardwareMap.get(DcMotor.class, "rightfront_drive");
+        DcMotor leftBackDrive   = hardwareMap.get(DcMotor.class, "leftback_drive");
+        DcMotor rightBackDrive  = hardwareMap.get(DcMotor.class, "rightback_drive");
+        leftFrontDrive.setDirection(DcMotor.Direction.REVERSE);
+        leftBackDrive.setDirection(DcMotor.Direction.REVERSE);
+        rightFrontDrive.setDirection(DcMotor.Direction.FORWARD);
+        rightBackDrive.setDirection(DcMotor.Direction.FORWARD);
+
+        IMU imu = hardwareMap.get(IMU.class, "imu");
+        imu.initialize(new IMU.Parameters(new RevHubOrientationOnRobot(
+                RevHubOrientationOnRobot.LogoFacingDirection.UP, RevHubOrientationOnRobot.UsbFacingDirection.FORWARD)));
+
+        Profiler profiler = Profiler.getInstance();
+        int loop      = profiler.section("loop");
+        int bulkRead  = profiler.section("bulk read");
+        int encoders  = profiler.section("encoders");
+        int imuRead   = profiler.section("imu");
+        int drive     = profiler.section("drive");
+        int report    = profiler.section("telemetry");
+        profiler.reset();
+
+        telemetry.addData(">", "Press START to drive and profile the loop, X to pause profiling");
+        telemetry.update();
+        waitForStart();
+
+        profiler.setEnabled(true);
+        String summary = "";
+        double summaryTime = 0;
+        boolean wasX = false;
+        try {
+            while (opModeIsActive()) {
+                profiler.enter(loop);
+
+                profiler.enter(bulkRead);
+                for (LynxModule hub : hubs) {
+                    hub.clearBulkCache();
+                }
+                profiler.exit(bulkRead);
+
+                profiler.enter(encoders);
+                int leftFront  = leftFrontDrive.getCurrentPosition();
+                int rightFront = rightFrontDrive.getCurrentPosition();
+                int leftBack   = leftBackDrive.getCurrentPosition();
+                int rightBack  = rightBackDrive.getCurrentPosition();
+                profiler.exit(encoders);
+
+                profiler.enter(imuRead);
+                YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+                profiler.exit(imuRead);
+
+                profiler.enter(drive);
+                double axial   = -gamepad1.left_stick_y;
+                double lateral =  gamepad1.left_stick_x;
+                double yaw     =  gamepad1.right_stick_x;
+                double leftFrontPower  = axial + lateral + yaw;
+                double rightFrontPower = axial - lateral - yaw;
+                double leftBackPower   = axial - lateral + yaw;
+                double rightBackPower  = axial + lateral - yaw;
+                double max = Math.max(Math.max(Math.abs(leftFrontPower), Math.abs(rightFrontPower)),
+                        Math.max(Math.abs(leftBackPower), Math.abs(rightBackPower)));
+                if (max > 1.0) {
+                    leftFrontPower  /= max;
+                    rightFrontPower /= max;
+                    leftBackPower   /= max;
+                    rightBackPower  /= max;
+                }
+                leftFrontDrive.setPower(leftFrontPower);
+                rightFrontDrive.setPower(rightFrontPower);
+                leftBackDrive.setPower(leftBackPower);
+                rightBackDrive.setPower(rightBackPower);
+                profiler.exit(drive);
+
+                profiler.enter(report);
+                if (gamepad1.x && !wasX) {
+                    profiler.setEnabled(!profiler.isEnabled());
+                }
+                wasX = gamepad1.x;
+                // Building the summary allocates: only do it now and then.
+                if (getRuntime() - summaryTime > SUMMARY_SECONDS) {
+                    summary = profiler.summary();
+                    summaryTime = getRuntime();
+                }
+                telemetry.addData("Profiler", profiler.isEnabled() ? "on (X to pause)" : "paused (X to resume)");
+                telemetry.addData("Encoders", "%d %d %d %d", leftFront, rightFront, leftBack, rightBack);
+                telemetry.addData("Heading", "%.1f deg", angles.getYaw(AngleUnit.DEGREES));
+                telemetry.addLine(summary);
+                telemetry.update();
+                profiler.exit(report);
+
+                profiler.exit(loop);
+            }
+        } finally {
+            leftFrontDrive.setPower(0);
+            rightFrontDrive.setPower(0);
+            leftBackDrive.setPower(0);
+            rightBackDrive.setPower(0);
+            profiler.setEnabled(false);
+            save(profiler);
+        }
+    }
+
+    /**
+     * Write the profile to the profiles folder, named after the time.
+     */
+    void save(Profiler profiler) {
+        File folder = new File(AppUtil.ROOT_FOLDER, "profiles");
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            RobotLog.ee(TAG, "Could not create %s", folder);
+            return;
+        }
+        String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        try (Writer folded = new FileWriter(new File(folder, name + ".folded"));
+             Writer trace = new FileWriter(new File(folder, name + ".json"))) {
+            profiler.writeFoldedStacks(folded);
+            profiler.writeChromeTrace(trace);
+        } catch (IOException e) {
+            RobotLog.ee(TAG, e, "Could not write the profile");
+        }
+        RobotLog.ii(TAG, "Profile %s written to %s%n%s", name, folder, profiler.summary());
+    }
+}
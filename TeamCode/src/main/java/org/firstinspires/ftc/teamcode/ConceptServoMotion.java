@@ -0,0 +1,77 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import org.firstinspires.ftc.teamcode.servo.ServoMotionService;
+import org.firstinspires.ftc.teamcode.servo.ServoOutput;
+
+/*
+ * This OpMode moves two servos smoothly with a ServoMotionService, while the loop keeps running.
+ *
+ * Like ConceptScanServo, it scans the left hand servo back and forth over its range, but without
+ * sleep(): the service speeds the servo up, cruises and slows it down on its own thread, and the loop
+ * sends it back the other way once it has arrived.  The right hand servo opens with A and closes
+ * with B, and may be sent either way while it is still moving.  Telemetry shows where each servo is
+ * going, how long until it gets there, and how many positions were sent to it.
+ *
+ * HAND_SPEED and HAND_ACCELERATION set how fast the right hand may move and speed up, in servo
+ * positions per second.
+ *
+ * This OpMode requires servos named left_hand and right_hand, as in RobotHardware.
+ */
+@TeleOp(name = "Concept: Servo Motion", group = "Concept")
+public class ConceptServoMotion extends LinearOpMode {
+
+    static final double MIN_POS    = 0.0;
+    static final double MAX_POS    = 1.0;
+    static final double HAND_OPEN  = 0.8;
+    static final double HAND_CLOSE = 0.3;
+    static final double HAND_SPEED        = 1.5;
+    static final double HAND_ACCELERATION = 6.0;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        ServoMotionService.Limits handLimits = new ServoMotionService.Limits();
+        handLimits.maxVelocity = HAND_SPEED;
+        handLimits.maxAcceleration = HAND_ACCELERATION;
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        int leftHand  = service.add("left hand",
+                new ServoOutput(hardwareMap.get(Servo.class, "left_hand")), new ServoMotionService.Limits(), 0.5);
+        int rightHand = service.add("right hand",
+                new ServoOutput(hardwareMap.get(Servo.class, "right_hand")), handLimits, HAND_CLOSE);
+
+        telemetry.addData(">", "Press START to scan the left hand; A and B open and close the right hand");
+        telemetry.update();
+        waitForStart();
+
+        service.start();
+        try {
+            boolean rampUp = true;
+            service.moveTo(leftHand, MAX_POS);
+            long loops = 0;
+            while (opModeIsActive()) {
+                if (service.isArrived(leftHand)) {
+                    rampUp = !rampUp;
+                    service.moveTo(leftHand, rampUp ? MAX_POS : MIN_POS);
+                }
+                if (gamepad1.a) {
+                    service.moveTo(rightHand, HAND_OPEN);
+                } else if (gamepad1.b) {
+                    service.moveTo(rightHand, HAND_CLOSE);
+                }
+                loops++;
+
+                telemetry.addData("Left hand",  "%.2f to %.2f, %.0f ms to go, %d writes", service.getPosition(leftHand),
+                        service.getTarget(leftHand), service.getRemainingMillis(leftHand), service.getWrites(leftHand));
+                telemetry.addData("Right hand", "%.2f to %.2f, %.0f ms to go, %d writes", service.getPosition(rightHand),
+                        service.getTarget(rightHand), service.getRemainingMillis(rightHand), service.getWrites(rightHand));
+                telemetry.addData("Loop", "%.1f loops/s", loops / Math.max(getRuntime(), 1e-3));
+                telemetry.update();
+            }
+        } finally {
+            service.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.util.Size;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.firstinspires.ftc.robotcore.external.hardware.camera.WebcamName;
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.firstinspires.ftc.teamcode.capture.FrameRecorder;
+import org.firstinspires.ftc.teamcode.capture.FrameRecorderProcessor;
+import org.firstinspires.ftc.vision.VisionPortal;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * This OpMode records camera frames continuously, for offline vision tuning.
+ * Unlike UtilityCameraFrameCapture, which saves one frame per button press, it keeps recording
+ * while the OpMode runs, and so can be left running through a practice match.
+ *
+ * Frames are downscaled, compressed and written on a background thread to FIRST/captures on the
+ * Robot Controller.  Frames are dropped (and counted) rather than slowing the camera down.
+ * Press X (or Square) to pause and resume recording.
+ *
+ * Use FrameRecording to read the files back on a laptop, or label frames for VisionTuner, in the test
+ * sources (see LabelledFrame), to tune color blob settings on them.
+ *
+ * This OpMode requires a webcam named "Webcam 1".
+ */
+@TeleOp(name = "Utility: Camera Frame Recorder", group = "Utility")
+public class UtilityCameraFrameRecorder extends LinearOpMode {
+
+    final int RESOLUTION_WIDTH  = 640;
+    final int RESOLUTION_HEIGHT = 480;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        FrameRecorder.Parameters parameters = new FrameRecorder.Parameters();
+        parameters.maxWidth  = RESOLUTION_WIDTH;
+        parameters.maxHeight = RESOLUTION_HEIGHT;
+
+        FrameRecorder recorder;
+        try {
+            recorder = new FrameRecorder(new File(AppUtil.ROOT_FOLDER, "captures"), parameters);
+        } catch (IOException e) {
+            telemetry.addData("Error", e.getMessage());
+            telemetry.update();
+            waitForStart();
+            return;
+        }
+        FrameRecorderProcessor recorderProcessor = new FrameRecorderProcessor(recorder);
+
+        VisionPortal portal = new VisionPortal.Builder()
+                .setCamera(hardwareMap.get(WebcamName.class, "Webcam 1"))
+                .setCameraResolution(new Size(RESOLUTION_WIDTH, RESOLUTION_HEIGHT))
+                .addProcessor(recorderProcessor)
+                .build();
+
+        boolean recording = true;
+        boolean lastX = false;
+
+        try {
+            while (!isStopRequested()) {
+                boolean x = gamepad1.x;
+                if (x && !lastX) {
+                    recording = !recording;
+                    portal.setProcessorEnabled(recorderProcessor, recording);
+                }
+                lastX = x;
+
+                telemetry.addData("Recording", recording ? "yes (X to pause)" : "paused (X to resume)");
+                telemetry.addData("Camera", portal.getCameraState());
+                telemetry.addData("Recorder", recorder.toString());
+                if (recorder.getLastError() != null) {
+                    telemetry.addData("Error", recorder.getLastError().getMessage());
+                }
+                telemetry.addData("Directory", recorder.getDirectory());
+                telemetry.update();
+                sleep(100);
+            }
+        } finally {
+            portal.close();
+            recorder.close();
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package org.firstinspires.ftc.teamcode.capture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/*
+ * FrameRecorder records camera frames continuously during a match, for offline vision tuning.
+ *
+ * Frames are handed over by the vision pipeline (see FrameRecorderProcessor) through a small, fixed
+ * pool of slots.  If no slot is free the frame is dropped and counted: recording never blocks the
+ * vision pipeline or the control loop, and never allocates on their threads.  The slots are sized
+ * for the first frame offered (eg: 3 channels for RGB, 4 for RGBA), and allocated by the worker, so
+ * the first frame or two are dropped while it does.
+ *
+ * A single low priority worker thread downscales each frame, compresses it (row delta filter and
+ * Deflate) and appends it to the current segment file.  Segments roll over at a size limit and only
+ * the newest few in the directory are kept, including those left by earlier recordings, so a
+ * recording can be left running for a whole event.
+ *
+ * Each frame is stored with its capture time from System.nanoTime(), the same clock as ElapsedTime
+ * and the control loop timing.  Each segment header also stores the wall clock and System.nanoTime()
+ * when it was opened, so frames can be lined up with logs written on either clock.
+ *
+ * Segment file format (big-endian), read back by FrameRecording:
+ *
+ *     header:  "FRC1"  i32 version  i64 wall clock ms  i64 nanoTime
+ *     frame:   i32 frame number  i64 capture nanoTime  i16 width  i16 height  i8 channels  i8 scale
+ *              i32 compressed length, compressed bytes
+ *
+ * Frame numbers count every frame offered to the recorder, so gaps show where frames were dropped.
+ * Once every frame has been encoded, the frames dropped and written add up to the frames offered.
+ */
+public class FrameRecorder {
+
+    public static final int    FORMAT_VERSION = 1;
+    public static final byte[] MAGIC = { 'F', 'R', 'C', '1' };
+    public static final String SEGMENT_PREFIX = "frames-";
+    public static final String SEGMENT_SUFFIX = ".rec";
+
+    /**
+     * A preallocated frame buffer, filled by the producer and consumed by the worker.
+     */
+    public static class Slot {
+        public final byte[] pixels;
+        int  frameNumber;
+        int  width;
+        int  height;
+        int  channels;
+        long captureNanos;
+
+        Slot(int capacity) {
+            pixels = new byte[capacity];
+        }
+    }
+
+    /**
+     * Recording options.  The defaults suit a 640x480 camera.
+     */
+    public static class Parameters {
+        public int  maxWidth        = 640;           // larger frames are rejected
+        public int  maxHeight       = 480;
+        public int  queueSize       = 4;             // frames waiting to be encoded
+        public int  downscale       = 2;             // 1, 2 or 4: 2 turns 640x480 into 320x240
+        public int  compressionLevel = Deflater.BEST_SPEED;
+        public long maxSegmentBytes = 32L << 20;     // 32 MiB per file
+        public int  maxSegments     = 8;             // oldest files are deleted beyond this
+    }
+
+    private final File directory;
+    private final Parameters parameters;
+
+    private final ArrayBlockingQueue<Slot> freeSlots;
+    private final ArrayBlockingQueue<Slot> filledSlots;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Sent to the worker by the first frame, to have the slots allocated for its size.
+    private final Slot sizeRequest = new Slot(0);
+    private boolean sizeRequested = false;           // producer only
+    private volatile int slotBytes = 0;              // 0 until the slots are allocated
+
+    // Worker-only state
+    private byte[] scaled;
+    private byte[] compressed;
+    private final Deflater deflater;
+    private final ArrayDeque<File> segments = new ArrayDeque<>();
+    private DataOutputStream out = null;
+    private long segmentBytes = 0;
+    private int  segmentNumber = 0;
+
+    // Statistics, written by one thread each and read by any
+    private volatile int  framesOffered  = 0;
+    private volatile int  framesDropped  = 0;    // by the producer
+    private volatile int  framesLost     = 0;    // by the worker, after a file error
+    private volatile int  framesWritten  = 0;
+    private volatile long bytesWritten   = 0;
+    private volatile long encodeNanos    = 0;
+    private volatile IOException lastError = null;
+
+    public FrameRecorder(File directory, Parameters parameters) throws IOException {
+        if (parameters.downscale != 1 && parameters.downscale != 2 && parameters.downscale != 4) {
+            throw new IllegalArgumentException("downscale must be 1, 2 or 4");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        this.directory = directory;
+        this.parameters = parameters;
+
+        // Segments from earlier recordings count towards maxSegments too.
+        segments.addAll(FrameRecording.listSegments(directory));
+
+        freeSlots = new ArrayBlockingQueue<>(parameters.queueSize);
+        filledSlots = new ArrayBlockingQueue<>(parameters.queueSize + 1);
+        deflater = new Deflater(parameters.compressionLevel);
+
+        worker = new Thread(new Runnable() {
+            @Override public void run() {
+                workerLoop();
+            }
+        }, "frame recorder");
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Producer side: called from the vision thread.  Neither call blocks or allocates.
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Take a free slot to copy a frame into.
+     *
+     * @param width     frame width in pixels, at most Parameters.maxWidth
+     * @param height    frame height in pixels, at most Parameters.maxHeight
+     * @param channels  bytes per pixel
+     * @return the slot, or null if this frame must be dropped: the encoder has fallen behind, the
+     *         slots are not allocated yet, or the frame is larger than the first one or than the
+     *         parameters allow
+     */
+    public Slot acquire(int width, int height, int channels) {
+        int frameNumber = framesOffered++;
+        int bytes = width * height * channels;
+        if (!sizeRequested && running && width <= parameters.maxWidth && height <= parameters.maxHeight) {
+            sizeRequested = true;
+            sizeRequest.width = width;
+            sizeRequest.height = height;
+            sizeRequest.channels = channels;
+            filledSlots.offer(sizeRequest);
+        }
+        Slot slot = running && bytes <= slotBytes ? freeSlots.poll() : null;
+        if (slot == null) {
+            framesDropped++;
+            return null;
+        }
+        slot.frameNumber = frameNumber;
+        return slot;
+    }
+
+    /**
+     * Queue a filled slot for encoding.
+     *
+     * @param width         frame width in pixels, as given to acquire()
+     * @param height        frame height in pixels, as given to acquire()
+     * @param channels      bytes per pixel, as given to acquire()
+     * @param captureNanos  capture time, on the System.nanoTime() clock
+     */
+    public void submit(Slot slot, int width, int height, int channels, long captureNanos) {
+        slot.width = width;
+        slot.height = height;
+        slot.channels = channels;
+        slot.captureNanos = captureNanos;
+        filledSlots.offer(slot);
+    }
+
+    /**
+     * Give back a slot without recording anything in it.  The frame is counted as dropped.
+     */
+    public void release(Slot slot) {
+        framesDropped++;
+        freeSlots.offer(slot);
+    }
+
+    /**
+     * Convenience for callers that already have the pixels in an array: copies them into a slot.
+     *
+     * @return false if the frame was dropped
+     */
+    public boolean record(byte[] pixels, int width, int height, int channels, long captureNanos) {
+        Slot slot = acquire(width, height, channels);
+        if (slot == null) return false;
+        System.arraycopy(pixels, 0, slot.pixels, 0, width * height * channels);
+        submit(slot, width, height, channels, captureNanos);
+        return true;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Control
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Stop accepting frames, encode any that are queued, and close the current file.
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        worker.join();
+    }
+
+    public int  getFramesOffered()  { return framesOffered; }
+    public int  getFramesDropped()  { return framesDropped + framesLost; }
+    public int  getFramesWritten()  { return framesWritten; }
+    public long getBytesWritten()   { return bytesWritten; }
+    public File getDirectory()      { return directory; }
+
+    /**
+     * @return the last file error, or null.  Recording stops after a file error: the frame being
+     *         written and every later frame are counted as dropped.
+     */
+    public IOException getLastError() { return lastError; }
+
+    /** @return average time to downscale, compress and write one frame */
+    public double getAverageEncodeMilliseconds() {
+        int written = framesWritten;
+        return written == 0 ? 0 : encodeNanos / 1.0e6 / written;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d offered, %d dropped, %d written, %.1f MiB, %.1f ms/frame",
+                framesOffered, getFramesDropped(), framesWritten, bytesWritten / 1048576.0, getAverageEncodeMilliseconds());
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Worker
+    //----------------------------------------------------------------------------------------------
+
+    private void workerLoop() {
+        try {
+            while (running || !filledSlots.isEmpty()) {
+                Slot slot = filledSlots.poll(100, TimeUnit.MILLISECONDS);
+                if (slot == null) continue;
+                if (slot == sizeRequest) {
+                    allocateSlots(slot.width * slot.height * slot.channels);
+                    continue;
+                }
+                try {
+                    if (lastError == null) {
+                        long start = System.nanoTime();
+                        write(slot);
+                        encodeNanos += System.nanoTime() - start;
+                        framesWritten++;
+                    } else {
+                        framesLost++;
+                    }
+                } catch (IOException e) {
+                    lastError = e;
+                    framesLost++;
+                } finally {
+                    freeSlots.offer(slot);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+            deflater.end();
+        }
+    }
+
+    private void allocateSlots(int bytes) {
+        scaled = new byte[bytes];
+        compressed = new byte[bytes + bytes / 100 + 1024];
+        for (int i = 0; i < parameters.queueSize; i++) {
+            freeSlots.add(new Slot(bytes));
+        }
+        slotBytes = bytes;
+    }
+
+    private void write(Slot slot) throws IOException {
+        int scale = parameters.downscale;
+        int width = slot.width / scale;
+        int height = slot.height / scale;
+        int channels = slot.channels;
+
+        downscale(slot, scale, width, height);
+        filterRows(width * channels, height);
+
+        deflater.reset();
+        deflater.setInput(scaled, 0, width * height * channels);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            length += deflater.deflate(compressed, length, compressed.length - length);
+            if (length == compressed.length) throw new IOException("compressed frame too large");
+        }
+
+        if (out == null || segmentBytes >= parameters.maxSegmentBytes) {
+            openSegment();
+        }
+        out.writeInt(slot.frameNumber);
+        out.writeLong(slot.captureNanos);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeByte(channels);
+        out.writeByte(scale);
+        out.writeInt(length);
+        out.write(compressed, 0, length);
+
+        int recordBytes = 4 + 8 + 2 + 2 + 1 + 1 + 4 + length;
+        segmentBytes += recordBytes;
+        bytesWritten += recordBytes;
+    }
+
+    /**
+     * Box filter the slot's frame down by an integer factor into the scratch buffer.
+     */
+    private void downscale(Slot slot, int scale, int width, int height) {
+        int channels = slot.channels;
+        if (scale == 1) {
+            System.arraycopy(slot.pixels, 0, scaled, 0, width * height * channels);
+            return;
+        }
+        int shift = (scale == 2) ? 2 : 4;   // log2(scale * scale)
+        int sourceStride = slot.width * channels;
+        int destination = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * scale * sourceStride;
+            for (int x = 0; x < width; x++) {
+                int pixelStart = rowStart + x * scale * channels;
+                for (int c = 0; c < channels; c++) {
+                    int sum = 0;
+                    for (int dy = 0; dy < scale; dy++) {
+                        int index = pixelStart + dy * sourceStride + c;
+                        for (int dx = 0; dx < scale; dx++) {
+                            sum += slot.pixels[index + dx * channels] & 0xFF;
+                        }
+                    }
+                    scaled[destination++] = (byte) (sum >> shift);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace each row by its difference from the row above (the PNG "Up" filter), working from the
+     * bottom so the rows above are still unfiltered.  Camera images compress much better this way.
+     */
+    private void filterRows(int stride, int height) {
+        for (int y = height - 1; y > 0; y--) {
+            int row = y * stride;
+            for (int i = 0; i < stride; i++) {
+                scaled[row + i] -= scaled[row - stride + i];
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        closeSegment();
+        File file = new File(directory, String.format(Locale.US, "%s%d-%04d%s",
+                SEGMENT_PREFIX, System.currentTimeMillis(), segmentNumber++, SEGMENT_SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.write(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeLong(System.nanoTime());
+        segmentBytes = MAGIC.length + 4 + 8 + 8;
+
+        segments.addLast(file);
+        while (segments.size() > parameters.maxSegments) {
+            // Not being able to delete an old file is no reason to stop recording.
+            //noinspection ResultOfMethodCallIgnored
+            segments.removeFirst().delete();
+        }
+    }
+
+    private void closeSegment() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            lastError = e;
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,56 @@
+package org.firstinspires.ftc.teamcode.capture;
+
+import android.graphics.Canvas;
+
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+/*
+ * FrameRecorderProcessor feeds every camera frame seen by a VisionPortal into a FrameRecorder.
+ *
+ * Add it to the portal alongside the processors that do the real work (eg: AprilTagProcessor).
+ * On the vision thread it only copies the frame into a free recorder slot, and when the recorder
+ * is busy the frame is dropped, so it never slows the other processors down.
+ * Use VisionPortal.setProcessorEnabled() to start and stop recording.
+ */
+public class FrameRecorderProcessor implements VisionProcessor {
+
+    private final FrameRecorder recorder;
+
+    public FrameRecorderProcessor(FrameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public FrameRecorder getRecorder() {
+        return recorder;
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+    }
+
+    @Override
+    public Object processFrame(Mat frame, long captureTimeNanos) {
+        int width = frame.cols();
+        int height = frame.rows();
+        int channels = frame.channels();
+
+        FrameRecorder.Slot slot = recorder.acquire(width, height, channels);
+        if (slot == null) return null;
+
+        if (!frame.isContinuous() || width * height * channels > slot.pixels.length) {
+            // Not something we can copy in one go.
+            recorder.release(slot);
+            return null;
+        }
+        frame.get(0, 0, slot.pixels);
+        recorder.submit(slot, width, height, channels, captureTimeNanos);
+        return null;
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight,
+                            float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+    }
+}
@@ -0,0 +1,147 @@
+package org.firstinspires.ftc.teamcode.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * FrameRecording reads back the segment files written by FrameRecorder, for offline vision tuning
+ * on a laptop.  Copy the recording directory off the robot, then:
+ *
+ *     try (FrameRecording recording = new FrameRecording(FrameRecording.listSegments(directory))) {
+ *         FrameRecording.Frame frame;
+ *         while ((frame = recording.next()) != null) {
+ *             ... frame.pixels holds width * height * channels bytes, row by row
+ *         }
+ *     }
+ */
+public class FrameRecording implements Closeable {
+
+    /**
+     * One decoded frame.  The same Frame object is reused for every call to next().
+     */
+    public static class Frame {
+        public int    frameNumber;
+        public long   captureNanos;     // System.nanoTime() on the robot when the frame was captured
+        public long   captureWallMillis; // the same instant on the robot's wall clock
+        public int    width;
+        public int    height;
+        public int    channels;
+        public int    downscale;        // the recorded frame is this many times smaller than the camera frame
+        public byte[] pixels = new byte[0];
+    }
+
+    private final List<File> files;
+    private int fileIndex = 0;
+    private DataInputStream in = null;
+    private long segmentWallMillis;
+    private long segmentNanos;
+
+    private final Frame frame = new Frame();
+    private byte[] compressed = new byte[0];
+    private final Inflater inflater = new Inflater();
+
+    public FrameRecording(List<File> files) {
+        this.files = new ArrayList<>(files);
+    }
+
+    /**
+     * @return the segment files in a recording directory, oldest first
+     */
+    public static List<File> listSegments(File directory) {
+        File[] files = directory.listFiles();
+        List<File> result = new ArrayList<>();
+        if (files == null) return result;
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FrameRecorder.SEGMENT_PREFIX) && name.endsWith(FrameRecorder.SEGMENT_SUFFIX)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the next frame, or null at the end of the recording.  A truncated final frame (from
+     *         the robot being switched off mid-write) is treated as the end of its segment.
+     */
+    public Frame next() throws IOException {
+        while (true) {
+            if (in == null) {
+                if (fileIndex == files.size()) return null;
+                openSegment(files.get(fileIndex++));
+            }
+            try {
+                readFrame();
+                return frame;
+            } catch (EOFException e) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        if (in != null) in.close();
+    }
+
+    private void openSegment(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        byte[] magic = new byte[FrameRecorder.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, FrameRecorder.MAGIC) || in.readInt() != FrameRecorder.FORMAT_VERSION) {
+            in.close();
+            throw new IOException(file + " is not a frame recording");
+        }
+        segmentWallMillis = in.readLong();
+        segmentNanos = in.readLong();
+    }
+
+    private void readFrame() throws IOException {
+        frame.frameNumber = in.readInt();
+        frame.captureNanos = in.readLong();
+        frame.captureWallMillis = segmentWallMillis + (frame.captureNanos - segmentNanos) / 1000000;
+        frame.width = in.readShort() & 0xFFFF;
+        frame.height = in.readShort() & 0xFFFF;
+        frame.channels = in.readByte();
+        frame.downscale = in.readByte();
+        int length = in.readInt();
+        if (compressed.length < length) compressed = new byte[length];
+        in.readFully(compressed, 0, length);
+
+        int stride = frame.width * frame.channels;
+        int size = stride * frame.height;
+        if (frame.pixels.length != size) frame.pixels = new byte[size];
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            int total = 0;
+            while (total < size && !inflater.finished()) {
+                int count = inflater.inflate(frame.pixels, total, size - total);
+                if (count == 0 && inflater.needsInput()) break;
+                total += count;
+            }
+            if (total != size) throw new IOException("frame " + frame.frameNumber + " is damaged");
+        } catch (DataFormatException e) {
+            throw new IOException("frame " + frame.frameNumber + " is damaged", e);
+        }
+
+        // Undo the row delta filter.
+        for (int i = stride; i < size; i++) {
+            frame.pixels[i] += frame.pixels[i - stride];
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * ColorClassifier sorts colors into named classes (eg: "red", "blue" and "yellow" game pieces)
+ * with a single array lookup.
+ *
+ * The classes are given as hue, saturation and value ranges, like the thresholds an OpMode would
+ * compare after Color.colorToHSV().  build() does that conversion and comparison once for every
+ * quantized RGB color, and keeps the answer in a table indexed by red, green and blue: 5 bits per
+ * channel makes a 32 KB table, built in a few milliseconds during init.  After that, classifying a
+ * color sensor reading or a camera pixel costs a few shifts and array loads.
+ *
+ * Channels are quantized by their square root, so that the table has as many levels below 0.25 as
+ * above it.  Dim colors, such as a color sensor reading at a fixed gain of a game piece a little too
+ * far away, then still fall in levels that tell hues apart, where equal steps would put them all
+ * in the bottom one or two.
+ *
+ * Classes are numbered from 1 in the order they were added; NONE (0) is any color outside them.
+ * When ranges overlap, the first class added wins.  Build one with ColorClassifier.Builder:
+ *
+ *     ColorClassifier classifier = new ColorClassifier.Builder()
+ *             .add("red",    340,  20, 0.45f, 0.10f)
+ *             .add("yellow",  35,  75, 0.45f, 0.10f)
+ *             .add("blue",   190, 250, 0.45f, 0.10f)
+ *             .build();
+ */
+public class ColorClassifier {
+
+    public static final int NONE         = 0;
+    public static final int MAX_CLASSES  = 127;
+    public static final int DEFAULT_BITS = 5;
+
+    private final byte[]   table;
+    private final int      bits;
+    private final float    scale;
+    // Table level of each 0 to 255 channel value.
+    private final int[]    levels;
+    private final String[] names;
+    // Ranges, 6 floats each: hue low and high (degrees), then saturation and value low and high.
+    private final float[]  ranges;
+    private final int[]    rangeClass;
+
+    /**
+     * Builds a ColorClassifier from a list of HSV ranges.
+     */
+    public static class Builder {
+        private final ArrayList<String> names = new ArrayList<>();
+        private float[] ranges = new float[6 * 8];
+        private int[] rangeClass = new int[8];
+        private int rangeCount = 0;
+        private int bits = DEFAULT_BITS;
+
+        /**
+         * Add a range to a class, with no upper limit on saturation and value.
+         */
+        public Builder add(String name, float hueLow, float hueHigh, float minSaturation, float minValue) {
+            return add(name, hueLow, hueHigh, minSaturation, 1, minValue, 1);
+        }
+
+        /**
+         * Add a range to a class.  Hues are in degrees, 0 to 360 as from Color.colorToHSV(), and a
+         * range with hueLow above hueHigh goes through 0, as red does.  Saturation and value are 0 to 1.
+         * Adding several ranges under one name makes them the same class.
+         */
+        public Builder add(String name, float hueLow, float hueHigh, float minSaturation, float maxSaturation,
+                           float minValue, float maxValue) {
+            int id = names.indexOf(name);
+            if (id < 0) {
+                if (names.size() == MAX_CLASSES) {
+                    throw new IllegalStateException("Too many color classes");
+                }
+                names.add(name);
+                id = names.size() - 1;
+            }
+            if (rangeCount == rangeClass.length) {
+                ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+                rangeClass = Arrays.copyOf(rangeClass, 2 * rangeClass.length);
+            }
+            float[] r = ranges;
+            int i = 6 * rangeCount;
+            r[i] = hueLow;
+            r[i + 1] = hueHigh;
+            r[i + 2] = minSaturation;
+            r[i + 3] = maxSaturation;
+            r[i + 4] = minValue;
+            r[i + 5] = maxValue;
+            rangeClass[rangeCount++] = id + 1;
+            return this;
+        }
+
+        /**
+         * Bits kept per channel, 4 to 8.  Each extra bit makes the table 8 times bigger and slower to
+         * build, and moves class boundaries closer to where the ranges put them.
+         */
+        public Builder bits(int bits) {
+            if (bits < 4 || bits > 8) {
+                throw new IllegalArgumentException("Bits per channel must be 4 to 8");
+            }
+            this.bits = bits;
+            return this;
+        }
+
+        public ColorClassifier build() {
+            return new ColorClassifier(names.toArray(new String[0]), Arrays.copyOf(ranges, 6 * rangeCount),
+                    Arrays.copyOf(rangeClass, rangeCount), bits);
+        }
+    }
+
+    private ColorClassifier(String[] names, float[] ranges, int[] rangeClass, int bits) {
+        this.names = names;
+        this.ranges = ranges;
+        this.rangeClass = rangeClass;
+        this.bits = bits;
+        this.scale = (1 << bits) - 0.001f;
+        this.table = new byte[1 << (3 * bits)];
+        this.levels = new int[256];
+        for (int i = 0; i < 256; i++) {
+            levels[i] = level(i / 255f);
+        }
+
+        // Classify the middle of each quantization cell.
+        int count = 1 << bits;
+        float[] middle = new float[count];
+        for (int i = 0; i < count; i++) {
+            float root = (i + 0.5f) / count;
+            middle[i] = root * root;
+        }
+        float[] hsv = new float[3];
+        int index = 0;
+        for (int r = 0; r < count; r++) {
+            for (int g = 0; g < count; g++) {
+                for (int b = 0; b < count; b++) {
+                    toHsv(middle[r], middle[g], middle[b], hsv);
+                    table[index++] = (byte) classifyHsv(hsv[0], hsv[1], hsv[2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the table level of a 0 to 1 channel value, which goes with its square root
+     */
+    private int level(float value) {
+        return (int) ((float) Math.sqrt(Math.min(Math.max(value, 0f), 1f)) * scale);
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Classify a color with 0 to 255 channels, as in a camera frame.
+     */
+    public int classify(int red, int green, int blue) {
+        return table[(levels[red] << (2 * bits)) | (levels[green] << bits) | levels[blue]];
+    }
+
+    /**
+     * Classify a color with 0 to 1 channels, as in NormalizedRGBA.  Values out of range are clipped.
+     */
+    public int classify(float red, float green, float blue) {
+        return table[(level(red) << (2 * bits)) | (level(green) << bits) | level(blue)];
+    }
+
+    /**
+     * Classify an Android color int, as from NormalizedRGBA.toColor() or a Bitmap pixel.
+     */
+    public int classifyColor(int color) {
+        return classify((color >> 16) & 0xff, (color >> 8) & 0xff, color & 0xff);
+    }
+
+    /**
+     * Classify pixels of a packed frame, stride bytes apart, and add them up by class.
+     *
+     * @param pixels red, green and blue bytes of each pixel, in that order, as in a VisionPortal frame
+     * @param offset index of the first pixel's red byte
+     * @param count number of pixels to classify
+     * @param stride bytes from one classified pixel to the next: 3 for every pixel of an RGB row,
+     *               6 for every other one, 4 for every pixel of an RGBA row...
+     * @param counts incremented at the class of each pixel; at least getClassCount() + 1 long
+     */
+    public void count(byte[] pixels, int offset, int count, int stride, int[] counts) {
+        final byte[] table = this.table;
+        final int[] levels = this.levels;
+        final int bits = this.bits;
+        int i = offset;
+        for (int n = 0; n < count; n++, i += stride) {
+            int index = (levels[pixels[i] & 0xff] << (2 * bits))
+                    | (levels[pixels[i + 1] & 0xff] << bits)
+                    | levels[pixels[i + 2] & 0xff];
+            counts[table[index]]++;
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Classify a color with 0 to 1 channels by converting it to HSV and comparing it with every range,
+     * which is what the table stands for.  Much slower than classify(): for checking the table.
+     *
+     * @param hsv scratch array of 3 floats
+     */
+    public int classifyExact(float red, float green, float blue, float[] hsv) {
+        toHsv(red, green, blue, hsv);
+        return classifyHsv(hsv[0], hsv[1], hsv[2]);
+    }
+
+    private int classifyHsv(float hue, float saturation, float value) {
+        final float[] r = ranges;
+        for (int i = 0; i < rangeClass.length; i++) {
+            int k = 6 * i;
+            boolean inHue = r[k] <= r[k + 1]
+                    ? hue >= r[k] && hue <= r[k + 1]
+                    : hue >= r[k] || hue <= r[k + 1];
+            if (inHue && saturation >= r[k + 2] && saturation <= r[k + 3] && value >= r[k + 4] && value <= r[k + 5]) {
+                return rangeClass[i];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Convert 0 to 1 RGB to HSV the same way as Color.colorToHSV(): hue in degrees, 0 to 360,
+     * saturation and value 0 to 1.
+     */
+    public static void toHsv(float red, float green, float blue, float[] hsv) {
+        float max = Math.max(red, Math.max(green, blue));
+        float min = Math.min(red, Math.min(green, blue));
+        float range = max - min;
+        float hue;
+        if (range == 0) {
+            hue = 0;
+        } else if (max == red) {
+            hue = (green - blue) / range;
+        } else if (max == green) {
+            hue = 2 + (blue - red) / range;
+        } else {
+            hue = 4 + (red - green) / range;
+        }
+        hue *= 60;
+        if (hue < 0) {
+            hue += 360;
+        }
+        hsv[0] = hue;
+        hsv[1] = max == 0 ? 0 : range / max;
+        hsv[2] = max;
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return number of classes, not counting NONE
+     */
+    public int getClassCount() {
+        return names.length;
+    }
+
+    /**
+     * @return the name of a class, or "none" for NONE
+     */
+    public String getName(int id) {
+        return id == NONE ? "none" : names[id - 1];
+    }
+
+    /**
+     * @return the id of a class, or NONE if there is no class with this name
+     */
+    public int getId(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i + 1;
+            }
+        }
+        return NONE;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @return size of the table, in bytes
+     */
+    public int getTableSize() {
+        return table.length;
+    }
+}
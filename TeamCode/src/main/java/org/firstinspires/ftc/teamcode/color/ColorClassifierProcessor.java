@@ -0,0 +1,158 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import android.graphics.Canvas;
+import org.firstinspires.ftc.robotcore.internal.camera.calibration.CameraCalibration;
+import org.firstinspires.ftc.vision.VisionProcessor;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+
+/*
+ * ColorClassifierProcessor tells which ColorClassifier class fills a region of the camera image, eg:
+ * the color of the game piece sitting in the robot's intake.
+ *
+ * Every frame, it classifies the pixels in the region through the table, skipping all but every
+ * decimation-th pixel of every decimation-th row, counts them by class, and votes on the class with
+ * the most pixels over the last few frames.  It does no color conversion, blurring or contour
+ * finding, so it takes a fraction of a millisecond where a ColorBlobLocatorProcessor takes several.
+ *
+ * Results are read from the OpMode thread with getStable(), getDominant() and getFraction().
+ */
+public class ColorClassifierProcessor implements VisionProcessor {
+
+    private final ColorClassifier classifier;
+    private final int             decimation;
+    private final ColorVote       vote;
+    private final int[]           counts;
+    private float minimumFraction = 0.25f;
+
+    // Region of interest, in pixels; clipped to the frame.
+    private int left = 0, top = 0, right = Integer.MAX_VALUE, bottom = Integer.MAX_VALUE;
+
+    private byte[] row = new byte[0];
+
+    private volatile int   dominant = ColorClassifier.NONE;
+    private volatile float fraction = 0;
+    private volatile int   stable = ColorClassifier.NONE;
+    private volatile long  processNanos = 0;
+    private volatile long  frameCount = 0;
+
+    /**
+     * @param decimation classify one pixel out of decimation in each direction: 1 for all of them
+     * @param voteWindow number of frames to vote on
+     */
+    public ColorClassifierProcessor(ColorClassifier classifier, int decimation, int voteWindow) {
+        this.classifier = classifier;
+        this.decimation = Math.max(1, decimation);
+        this.vote = new ColorVote(voteWindow, classifier.getClassCount());
+        this.counts = new int[classifier.getClassCount() + 1];
+    }
+
+    /**
+     * Look only at a rectangle of the image, in pixels.  Call before adding the processor to a
+     * VisionPortal.
+     */
+    public void setRegion(int left, int top, int width, int height) {
+        this.left = left;
+        this.top = top;
+        this.right = left + width;
+        this.bottom = top + height;
+    }
+
+    /**
+     * A class must cover at least this fraction of the region to be seen, otherwise it is NONE.
+     */
+    public void setMinimumFraction(float fraction) {
+        this.minimumFraction = fraction;
+    }
+
+    @Override
+    public void init(int width, int height, CameraCalibration calibration) {
+    }
+
+    @Override
+    public Object processFrame(Mat frame, long captureTimeNanos) {
+        long start = System.nanoTime();
+        int channels = frame.channels();
+        int x0 = Math.max(left, 0), x1 = Math.min(right, frame.cols());
+        int y0 = Math.max(top, 0), y1 = Math.min(bottom, frame.rows());
+        if (channels < 3 || x1 <= x0 || y1 <= y0) {
+            return null;
+        }
+        int rowBytes = (x1 - x0) * channels;
+        if (row.length != rowBytes) {
+            row = new byte[rowBytes];
+        }
+        Arrays.fill(counts, 0);
+
+        int pixelsPerRow = (x1 - x0 + decimation - 1) / decimation;
+        int total = 0;
+        for (int y = y0; y < y1; y += decimation) {
+            frame.get(y, x0, row);
+            classifier.count(row, 0, pixelsPerRow, channels * decimation, counts);
+            total += pixelsPerRow;
+        }
+
+        int best = ColorClassifier.NONE, bestCount = 0;
+        for (int id = 1; id < counts.length; id++) {
+            if (counts[id] > bestCount) {
+                best = id;
+                bestCount = counts[id];
+            }
+        }
+        float bestFraction = (float) bestCount / total;
+        if (bestFraction < minimumFraction) {
+            best = ColorClassifier.NONE;
+        }
+
+        dominant = best;
+        fraction = bestFraction;
+        stable = vote.add(best);
+        processNanos = System.nanoTime() - start;
+        frameCount++;
+        return null;
+    }
+
+    @Override
+    public void onDrawFrame(Canvas canvas, int onscreenWidth, int onscreenHeight,
+                            float scaleBmpPxToCanvasPx, float scaleCanvasDensity, Object userContext) {
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the voted class over the last few frames
+     */
+    public int getStable() {
+        return stable;
+    }
+
+    /**
+     * @return the class covering most of the region in the last frame, before voting
+     */
+    public int getDominant() {
+        return dominant;
+    }
+
+    /**
+     * @return fraction of the region covered by the dominant class in the last frame
+     */
+    public float getFraction() {
+        return fraction;
+    }
+
+    /**
+     * @return time spent in the last processFrame(), in nanoseconds
+     */
+    public long getProcessNanos() {
+        return processNanos;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public ColorClassifier getClassifier() {
+        return classifier;
+    }
+}
@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import com.qualcomm.robotcore.hardware.NormalizedColorSensor;
+import com.qualcomm.robotcore.hardware.NormalizedRGBA;
+
+/*
+ * ColorSensorClassifier reads a NormalizedColorSensor and tells which ColorClassifier class it sees,
+ * in place of the Color.colorToHSV() call and threshold comparisons of SensorColor.
+ *
+ * Each update() takes one reading, classifies it through the table, and votes on the last few
+ * readings.  The sensor's gain is managed by a ColorSensorFilter, so do not call setGain() yourself.
+ */
+public class ColorSensorClassifier {
+
+    private final NormalizedColorSensor sensor;
+    private final ColorSensorFilter     filter;
+
+    public ColorSensorClassifier(NormalizedColorSensor sensor, ColorClassifier classifier) {
+        this(sensor, new ColorSensorFilter(classifier));
+    }
+
+    public ColorSensorClassifier(NormalizedColorSensor sensor, ColorSensorFilter filter) {
+        this.sensor = sensor;
+        this.filter = filter;
+    }
+
+    /**
+     * Read the sensor.
+     *
+     * @return the voted class
+     */
+    public int update() {
+        if (filter.isGainChanged()) {
+            sensor.setGain(filter.getGain());
+        }
+        NormalizedRGBA colors = sensor.getNormalizedColors();
+        return filter.update(colors.red, colors.green, colors.blue);
+    }
+
+    /**
+     * @return the voted class, as returned by the last update
+     */
+    public int getStable() {
+        return filter.getStable();
+    }
+
+    /**
+     * @return the name of the voted class
+     */
+    public String getName() {
+        return filter.getClassifier().getName(filter.getStable());
+    }
+
+    public ColorSensorFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,151 @@
+package org.firstinspires.ftc.teamcode.color;
+
+/*
+ * ColorSensorFilter turns a stream of color sensor readings into a steady color class.
+ *
+ * Normalized color sensor readings are the raw counts times a gain.  With a fixed gain, a game
+ * piece a little too far from the sensor reads 0.01 to 0.05, where only a few levels of a
+ * ColorClassifier table tell hues apart, while one pressed against it can clip at 1.  So the filter
+ * picks the gain from what it sees: when the brightest channel strays out of a band around
+ * targetBrightness, it sets the gain that would have put it on target.  Clipped readings, and dark
+ * ones while the gain can still go up, are not classified.  The rest go through the table and a
+ * ColorVote.
+ *
+ * Because the gain keeps readings near the same brightness, classes should be told apart by hue and
+ * saturation; their value limits only need to keep out the dark readings of an empty sensor.
+ *
+ * ColorSensorFilter does not use the sensor itself: ColorSensorClassifier reads a NormalizedColorSensor
+ * through it and applies the gain.
+ */
+public class ColorSensorFilter {
+
+    public static class Parameters {
+        /** Brightness, as the largest of red, green and blue, that the gain aims for */
+        public float targetBrightness    = 0.5f;
+        /** The gain is left alone while brightness is within this ratio of the target */
+        public float brightnessTolerance = 1.5f;
+        /** Readings this bright are assumed clipped */
+        public float clippedBrightness   = 0.98f;
+        /** Readings darker than this are not classified unless the gain is at its maximum */
+        public float minimumBrightness   = 0.05f;
+        public float initialGain         = 2f;
+        public float minimumGain         = 1f;
+        public float maximumGain         = 250f;
+        /** Largest factor the gain changes by from one reading to the next */
+        public float maximumGainStep     = 8f;
+        /** Number of readings to vote on */
+        public int   voteWindow          = 5;
+    }
+
+    private final ColorClassifier classifier;
+    private final Parameters      parameters;
+    private final ColorVote       vote;
+
+    private float   gain;
+    private boolean gainChanged = true;
+    private float   brightness = 0;
+    private int     latest = ColorClassifier.NONE;
+    private boolean classified = false;
+    private int     unclassified = 0;
+
+    public ColorSensorFilter(ColorClassifier classifier) {
+        this(classifier, new Parameters());
+    }
+
+    public ColorSensorFilter(ColorClassifier classifier, Parameters parameters) {
+        this.classifier = classifier;
+        this.parameters = parameters;
+        this.vote = new ColorVote(parameters.voteWindow, classifier.getClassCount());
+        this.gain = parameters.initialGain;
+    }
+
+    /**
+     * Take a reading made with the current gain.  Afterwards, apply getGain() to the sensor if
+     * isGainChanged().
+     *
+     * @return the voted class
+     */
+    public int update(float red, float green, float blue) {
+        final Parameters p = parameters;
+        brightness = Math.max(red, Math.max(green, blue));
+        boolean clipped = brightness >= p.clippedBrightness;
+        classified = !clipped && (brightness >= p.minimumBrightness || gain >= p.maximumGain);
+        if (classified) {
+            latest = classifier.classify(red, green, blue);
+            vote.add(latest);
+        } else {
+            unclassified++;
+        }
+
+        float newGain = gain;
+        if (clipped) {
+            // No telling how bright it really is.
+            newGain = gain / p.maximumGainStep;
+        } else if (brightness * p.brightnessTolerance < p.targetBrightness
+                || brightness > p.targetBrightness * p.brightnessTolerance) {
+            newGain = brightness > 0 ? gain * p.targetBrightness / brightness : gain * p.maximumGainStep;
+            newGain = Math.min(Math.max(newGain, gain / p.maximumGainStep), gain * p.maximumGainStep);
+        }
+        newGain = Math.min(Math.max(newGain, p.minimumGain), p.maximumGain);
+        gainChanged = newGain != gain;
+        gain = newGain;
+        return vote.getStable();
+    }
+
+    /**
+     * @return the gain to use for the next reading
+     */
+    public float getGain() {
+        return gain;
+    }
+
+    /**
+     * @return true if the last update changed the gain, or if no update was made yet
+     */
+    public boolean isGainChanged() {
+        return gainChanged;
+    }
+
+    /**
+     * @return the voted class, as returned by the last update
+     */
+    public int getStable() {
+        return vote.getStable();
+    }
+
+    /**
+     * @return the class of the last reading that was classified, before voting
+     */
+    public int getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return true if the last reading was classified; false if it was clipped or too dark
+     */
+    public boolean isClassified() {
+        return classified;
+    }
+
+    /**
+     * @return the largest of red, green and blue in the last reading
+     */
+    public float getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * @return number of readings not classified because they were clipped or too dark
+     */
+    public int getUnclassifiedCount() {
+        return unclassified;
+    }
+
+    public ColorVote getVote() {
+        return vote;
+    }
+
+    public ColorClassifier getClassifier() {
+        return classifier;
+    }
+}
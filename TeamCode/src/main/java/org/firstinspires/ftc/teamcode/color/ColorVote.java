@@ -0,0 +1,86 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import java.util.Arrays;
+
+/*
+ * ColorVote steadies a stream of color classes, from a color sensor or a camera, by majority vote
+ * over the last few.
+ *
+ * A single reading taken across the edge of a game piece, or a frame with a glare, can land in the
+ * wrong class.  ColorVote only changes its answer once a class has a majority of the window, and
+ * otherwise keeps the last one, so the answer changes once per real change instead of flickering.
+ */
+public class ColorVote {
+
+    private final byte[] history;
+    private final int[]  counts;
+    private final int    majority;
+    private int next = 0;
+    private int filled = 0;
+    private int stable = ColorClassifier.NONE;
+
+    /**
+     * @param window number of recent classes to vote on
+     * @param classCount number of classes, not counting NONE, as from ColorClassifier.getClassCount()
+     */
+    public ColorVote(int window, int classCount) {
+        this(window, classCount, window / 2 + 1);
+    }
+
+    /**
+     * @param majority votes a class needs to become the answer, more than half the window
+     */
+    public ColorVote(int window, int classCount, int majority) {
+        if (window < 1 || majority <= window / 2 || majority > window) {
+            throw new IllegalArgumentException("The majority must be more than half the window");
+        }
+        this.history = new byte[window];
+        this.counts = new int[classCount + 1];
+        this.majority = majority;
+    }
+
+    /**
+     * Add the latest class.
+     *
+     * @return the class with a majority, or the previous one if no class has one yet
+     */
+    public int add(int id) {
+        if (filled == history.length) {
+            counts[history[next]]--;
+        } else {
+            filled++;
+        }
+        history[next] = (byte) id;
+        counts[id]++;
+        next = next + 1 == history.length ? 0 : next + 1;
+
+        if (counts[id] >= majority) {
+            stable = id;
+        }
+        return stable;
+    }
+
+    /**
+     * @return the class with a majority, as returned by the last add()
+     */
+    public int getStable() {
+        return stable;
+    }
+
+    /**
+     * @return fraction of the window that voted for the current answer
+     */
+    public float getAgreement() {
+        return filled == 0 ? 0 : (float) counts[stable] / filled;
+    }
+
+    /**
+     * Forget all votes, eg: when the sensor is moved somewhere else.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        next = 0;
+        filled = 0;
+        stable = ColorClassifier.NONE;
+    }
+}
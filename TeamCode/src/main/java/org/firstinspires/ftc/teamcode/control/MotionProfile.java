@@ -0,0 +1,155 @@
+package org.firstinspires.ftc.teamcode.control;
+
+/*
+ * MotionProfile plans the fastest move from a position and velocity to a target, at rest, within a
+ * maximum velocity and acceleration: a trapezoid of speeding up, cruising and slowing down.
+ *
+ * A move may start while the last one is still going.  If the mechanism is moving away from the new
+ * target, or too fast to stop before it, the profile first slows to a stop, then moves back, so the
+ * velocity never jumps.
+ *
+ * The plan is at most four phases of constant acceleration, kept in arrays: planning and evaluating
+ * do not allocate.  Times are on the System.nanoTime() clock.
+ *
+ * ServoMotionService and MechanismController both plan their moves with it.
+ */
+public class MotionProfile {
+
+    static final int MAX_PHASES = 4;
+
+    // Phase i starts phaseTimes[i] seconds after startNanos, from phasePositions[i] and
+    // phaseVelocities[i], and accelerates at phaseAccelerations[i] until the next phase.
+    private final double[] phaseTimes         = new double[MAX_PHASES];
+    private final double[] phasePositions     = new double[MAX_PHASES];
+    private final double[] phaseVelocities    = new double[MAX_PHASES];
+    private final double[] phaseAccelerations = new double[MAX_PHASES];
+    private int    phases = 0;
+    private long   startNanos = 0;
+    private double duration = 0;
+    private double target = 0;
+
+    /**
+     * Start at rest at a position.
+     */
+    public void reset(double position) {
+        phases = 0;
+        duration = 0;
+        target = position;
+    }
+
+    /**
+     * Plan a move.
+     *
+     * @param position        where the mechanism is now
+     * @param velocity        how fast it moves now, in position units per second
+     * @param maxVelocity     greater than 0
+     * @param maxAcceleration greater than 0
+     */
+    public void plan(double position, double velocity, double target,
+                     double maxVelocity, double maxAcceleration, long nowNanos) {
+        this.startNanos = nowNanos;
+        this.target = target;
+        phases = 0;
+        double a = maxAcceleration;
+        double t = 0, p = position, v = velocity;
+
+        // Moving away from the target, or too fast to stop before it: stop first.
+        double d = target - p;
+        double stopping = v * Math.abs(v) / (2 * a);
+        if (v != 0 && (v * d < 0 || Math.abs(stopping) > Math.abs(d))) {
+            add(t, p, v, -Math.signum(v) * a);
+            t += Math.abs(v) / a;
+            p += stopping;
+            v = 0;
+            d = target - p;
+        }
+        if (d == 0) {
+            duration = t;
+            return;
+        }
+
+        // Speed up or slow down to the peak speed, cruise at it, then slow down to stop at the target.
+        double s = Math.signum(d);
+        double distance = Math.abs(d);
+        double u = Math.abs(v);
+        double peak = u > maxVelocity ? maxVelocity : Math.min(maxVelocity, Math.sqrt(a * distance + u * u / 2));
+        if (peak != u) {
+            double time = Math.abs(peak - u) / a;
+            add(t, p, s * u, s * Math.signum(peak - u) * a);
+            t += time;
+            p += s * (u + peak) / 2 * time;
+        }
+        double cruise = Math.abs(target - p) - peak * peak / (2 * a);
+        if (cruise > 0) {
+            add(t, p, s * peak, 0);
+            t += cruise / peak;
+            p += s * cruise;
+        }
+        add(t, p, s * peak, -s * a);
+        t += peak / a;
+        duration = t;
+    }
+
+    private void add(double time, double position, double velocity, double acceleration) {
+        phaseTimes[phases]         = time;
+        phasePositions[phases]     = position;
+        phaseVelocities[phases]    = velocity;
+        phaseAccelerations[phases] = acceleration;
+        phases++;
+    }
+
+    /**
+     * @return the phase at a time in seconds from the start, or -1 after the end
+     */
+    private int phase(double seconds) {
+        if (seconds >= duration) return -1;
+        int i = 0;
+        while (i + 1 < phases && phaseTimes[i + 1] <= seconds) i++;
+        return i;
+    }
+
+    private double seconds(long nanos) {
+        return Math.max(0, (nanos - startNanos) / 1e9);
+    }
+
+    public double getPosition(long nanos) {
+        double seconds = seconds(nanos);
+        int i = phase(seconds);
+        if (i < 0) return target;
+        double dt = seconds - phaseTimes[i];
+        return phasePositions[i] + (phaseVelocities[i] + 0.5 * phaseAccelerations[i] * dt) * dt;
+    }
+
+    /**
+     * @return velocity in position units per second
+     */
+    public double getVelocity(long nanos) {
+        double seconds = seconds(nanos);
+        int i = phase(seconds);
+        if (i < 0) return 0;
+        return phaseVelocities[i] + phaseAccelerations[i] * (seconds - phaseTimes[i]);
+    }
+
+    /**
+     * @return acceleration in position units per second per second
+     */
+    public double getAcceleration(long nanos) {
+        int i = phase(seconds(nanos));
+        return i < 0 ? 0 : phaseAccelerations[i];
+    }
+
+    public double getTarget() {
+        return target;
+    }
+
+    /**
+     * @return when the move ends, on the System.nanoTime() clock
+     */
+    public long getArrivalNanos() {
+        return startNanos + (long) (duration * 1e9);
+    }
+
+    public boolean isDone(long nanos) {
+        return seconds(nanos) >= duration;
+    }
+}
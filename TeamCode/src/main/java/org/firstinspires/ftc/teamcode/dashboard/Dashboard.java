@@ -0,0 +1,270 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Dashboard is the robot side of the browser dashboard.  OpModes publish robot state into it once
+ * per loop, and browsers stream that state over the web server (see DashboardWebHandlers on the
+ * robot, or LocalDashboardServer in src/test when there is no robot).
+ *
+ * Robot state is a set of named numeric channels (eg: "pose.x", "loop.ms", "drive.left").  Channels
+ * are registered once, normally during INIT, and then written by index each loop, so publishing
+ * state never allocates.  The dashboard outlives OpModes, so each OpMode starts by clearing the
+ * previous OpMode's channels and gains:
+ *
+ *     dashboard.reset();
+ *     int poseX = dashboard.channel("pose.x");
+ *     ...
+ *     dashboard.put(poseX, x);
+ *     dashboard.publish();          // once per loop, after all the puts
+ *
+ * Each browser gets its own DashboardStream, which sends only the channels it subscribed to,
+ * only the values that changed since it last sent them, and no faster than the rate it asked for.
+ *
+ * The dashboard also holds tunable gains.  An OpMode reads a Gain each loop, and the browser can
+ * change its value while the OpMode runs, without rebuilding the code.
+ */
+public class Dashboard {
+
+    public static final int MAX_CHANNELS = 256;
+
+    /** URL of the page; the schema, stream and gains URLs are below it. */
+    public static final String ROOT = "/dashboard";
+
+    static final double DEFAULT_RATE_HZ = 50;
+    static final double MAX_RATE_HZ     = 100;
+
+    private static final Dashboard theInstance = new Dashboard();
+
+    private final long startNanos = System.nanoTime();
+
+    // Channel registry
+    private final String[] channelNames = new String[MAX_CHANNELS];
+    private int channelCount  = 0;
+    private int schemaVersion = 0;
+
+    // Values being filled in by the OpMode for the next frame.  Only written by the OpMode thread.
+    private final double[] values = new double[MAX_CHANNELS];
+
+    // Most recently published frame, guarded by this.
+    private final double[] published = new double[MAX_CHANNELS];
+    private long publishedSequence = 0;
+    private int  publishedMillis   = 0;
+
+    private final Map<String, Gain> gains = new LinkedHashMap<>();
+
+    public static Dashboard getInstance() {
+        return theInstance;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Publishing (OpMode side)
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Forget all channels and gains, so that a new OpMode starts with only its own.  Open streams
+     * see the schema change and stop sending the old channels.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < channelCount; i++) {
+            channelNames[i] = null;
+            values[i] = 0;
+            published[i] = 0;
+        }
+        channelCount = 0;
+        schemaVersion++;
+        gains.clear();
+        publishedSequence++;
+        publishedMillis = (int) ((System.nanoTime() - startNanos) / 1000000);
+        notifyAll();
+    }
+
+    /**
+     * Register a channel, or look up the index of an existing channel with the same name.
+     *
+     * @throws IllegalStateException if MAX_CHANNELS channels are already registered
+     */
+    public synchronized int channel(String name) {
+        for (int i = 0; i < channelCount; i++) {
+            if (channelNames[i].equals(name)) return i;
+        }
+        if (channelCount == MAX_CHANNELS) {
+            throw new IllegalStateException("too many dashboard channels, can't add " + name);
+        }
+        channelNames[channelCount] = name;
+        schemaVersion++;
+        return channelCount++;
+    }
+
+    /**
+     * Set the value of a channel for the next published frame.
+     */
+    public void put(int channel, double value) {
+        values[channel] = value;
+    }
+
+    /**
+     * Publish the current channel values as one frame, and wake up any waiting streams.
+     */
+    public synchronized void publish() {
+        System.arraycopy(values, 0, published, 0, channelCount);
+        publishedSequence++;
+        publishedMillis = (int) ((System.nanoTime() - startNanos) / 1000000);
+        notifyAll();
+    }
+
+    /**
+     * Register a gain which can be changed from the browser, or return the existing gain with
+     * that name (keeping its current value).
+     */
+    public synchronized Gain gain(String name, double initialValue) {
+        Gain gain = gains.get(name);
+        if (gain == null) {
+            gain = new Gain(name, initialValue);
+            gains.put(name, gain);
+        }
+        return gain;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Serving (web server side)
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return false if there is no gain with that name
+     * @throws IllegalArgumentException if the value is NaN or infinite
+     */
+    public synchronized boolean setGain(String name, double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("gain " + name + " must be finite, not " + value);
+        }
+        Gain gain = gains.get(name);
+        if (gain == null) return false;
+        gain.set(value);
+        return true;
+    }
+
+    /**
+     * Open a stream of binary frames for one browser.
+     *
+     * @param channelFilter comma separated list of channel name prefixes, or empty for all channels
+     * @param maxRateHz     highest frame rate to send
+     */
+    public DashboardStream openStream(String channelFilter, double maxRateHz) {
+        List<String> prefixes = new ArrayList<>();
+        if (channelFilter != null) {
+            for (String prefix : channelFilter.split(",")) {
+                prefix = prefix.trim();
+                if (!prefix.isEmpty()) prefixes.add(prefix);
+            }
+        }
+        return new DashboardStream(this, prefixes.toArray(new String[0]), maxRateHz);
+    }
+
+    /**
+     * @return the channel names and gains as JSON:  {"version":3,"channels":["pose.x",...],"gains":{"kP":0.02}}
+     *         A gain which the OpMode set to NaN or infinity is written as null, as JSON has no such numbers.
+     */
+    public synchronized String schemaJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"version\":").append(schemaVersion).append(",\"channels\":[");
+        for (int i = 0; i < channelCount; i++) {
+            if (i > 0) builder.append(',');
+            appendJsonString(builder, channelNames[i]);
+        }
+        builder.append("],\"gains\":{");
+        boolean first = true;
+        for (Gain gain : gains.values()) {
+            if (!first) builder.append(',');
+            first = false;
+            appendJsonString(builder, gain.getName());
+            double value = gain.get();
+            builder.append(':').append(Double.isFinite(value) ? String.format(Locale.US, "%s", value) : "null");
+        }
+        builder.append("}}");
+        return builder.toString();
+    }
+
+    /**
+     * @return the browser page, which is packaged as a Java resource next to this class.
+     */
+    public static InputStream openPage() throws IOException {
+        InputStream page = Dashboard.class.getResourceAsStream("dashboard.html");
+        if (page == null) throw new IOException("dashboard.html resource is missing");
+        return page;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Used by DashboardStream
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Snapshot of one published frame, owned by a DashboardStream.  The channel names are taken
+     * together with the values, under the same lock, so they always describe the same schema.
+     */
+    static class Frame {
+        final double[] values = new double[MAX_CHANNELS];
+        final String[] channelNames = new String[MAX_CHANNELS];
+        long sequence = 0;
+        int  millis   = 0;
+        int  channelCount  = 0;
+        int  schemaVersion = -1;
+    }
+
+    /**
+     * Wait for a frame newer than the one already held in frame, and copy it in.  The channel
+     * names are only copied when the schema has changed since the frame was last filled in.
+     *
+     * @return false if no new frame was published before the timeout
+     */
+    synchronized boolean awaitFrame(Frame frame, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (publishedSequence <= frame.sequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return false;
+            wait(remaining);
+        }
+        System.arraycopy(published, 0, frame.values, 0, channelCount);
+        frame.sequence = publishedSequence;
+        frame.millis = publishedMillis;
+        frame.channelCount = channelCount;
+        if (frame.schemaVersion != schemaVersion) {
+            System.arraycopy(channelNames, 0, frame.channelNames, 0, channelCount);
+            frame.schemaVersion = schemaVersion;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number in text, or defaultValue if it is missing, malformed, NaN or infinite
+     */
+    static double parseDouble(String text, double defaultValue) {
+        if (text == null) return defaultValue;
+        try {
+            double value = Double.parseDouble(text);
+            return Double.isFinite(value) ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') builder.append('\\');
+            if (c < 0x20) {
+                builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+}
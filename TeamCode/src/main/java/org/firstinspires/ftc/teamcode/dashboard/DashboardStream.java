@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/*
+ * DashboardStream is the binary frame stream sent to one browser.  It is an InputStream so that
+ * it can be handed directly to the web server as the body of a chunked HTTP response; each read
+ * blocks until the next frame is due.
+ *
+ * Every message is big-endian:
+ *
+ *     u16  length of the rest of the message
+ *     u8   kind: 0 = key frame (all subscribed channels), 1 = delta (changed channels), 2 = heartbeat
+ *     u16  schema version (fetch the schema again when this changes)
+ *     u32  frame sequence number
+ *     u32  frame time, ms since the robot controller started the dashboard
+ *     u16  value count, followed by that many (u16 channel, f32 value) pairs
+ *
+ * A key frame is sent first, every KEY_FRAME_INTERVAL frames after that, and whenever the schema
+ * changes, so a browser that misses part of the stream recovers quickly.
+ */
+public class DashboardStream extends InputStream {
+
+    public static final int KIND_KEY_FRAME = 0;
+    public static final int KIND_DELTA     = 1;
+    public static final int KIND_HEARTBEAT = 2;
+
+    static final int KEY_FRAME_INTERVAL = 50;
+    static final int HEADER_BYTES       = 15;
+    static final int VALUE_BYTES        = 6;
+    static final long HEARTBEAT_MILLIS  = 1000;
+
+    private final Dashboard dashboard;
+    private final String[]  prefixes;
+    private final long      minIntervalNanos;
+
+    private final Dashboard.Frame frame = new Dashboard.Frame();
+    private final boolean[] subscribed = new boolean[Dashboard.MAX_CHANNELS];
+    private final float[]   lastSent   = new float[Dashboard.MAX_CHANNELS];
+    private int subscribedVersion = -1;
+    private int framesSinceKeyFrame = KEY_FRAME_INTERVAL;
+
+    private final byte[] buffer = new byte[HEADER_BYTES + Dashboard.MAX_CHANNELS * VALUE_BYTES];
+    private int position = 0;
+    private int limit    = 0;
+
+    private long lastSendNanos = 0;
+    private volatile boolean closed = false;
+
+    // Statistics
+    private long framesSent    = 0;
+    private long framesDropped = 0;
+    private long bytesSent     = 0;
+
+    DashboardStream(Dashboard dashboard, String[] prefixes, double maxRateHz) {
+        this.dashboard = dashboard;
+        this.prefixes = prefixes;
+        this.minIntervalNanos = (long) (1.0e9 / Math.max(1.0, maxRateHz));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!ensureData()) return -1;
+        int count = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public long getFramesSent()    { return framesSent; }
+    public long getFramesDropped() { return framesDropped; }
+    public long getBytesSent()     { return bytesSent; }
+
+    private boolean ensureData() throws IOException {
+        if (position < limit) return true;
+        if (closed) return false;
+        try {
+            waitForNextMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("dashboard stream interrupted");
+        }
+        return !closed;
+    }
+
+    /**
+     * Block until a frame is due, then encode it into the buffer.
+     */
+    private void waitForNextMessage() throws InterruptedException {
+        long wait = lastSendNanos + minIntervalNanos - System.nanoTime();
+        if (wait > 0) {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+
+        long previousSequence = frame.sequence;
+        boolean newFrame = dashboard.awaitFrame(frame, HEARTBEAT_MILLIS);
+        lastSendNanos = System.nanoTime();
+
+        if (!newFrame) {
+            encode(KIND_HEARTBEAT);
+            return;
+        }
+        if (previousSequence != 0) {
+            framesDropped += frame.sequence - previousSequence - 1;
+        }
+
+        if (frame.schemaVersion != subscribedVersion) {
+            updateSubscription();
+            framesSinceKeyFrame = KEY_FRAME_INTERVAL;
+        }
+
+        if (framesSinceKeyFrame >= KEY_FRAME_INTERVAL) {
+            framesSinceKeyFrame = 0;
+            encode(KIND_KEY_FRAME);
+        } else {
+            framesSinceKeyFrame++;
+            encode(KIND_DELTA);
+        }
+        framesSent++;
+    }
+
+    private void updateSubscription() {
+        for (int i = 0; i < frame.channelCount; i++) {
+            subscribed[i] = matches(frame.channelNames[i]);
+        }
+        subscribedVersion = frame.schemaVersion;
+    }
+
+    private boolean matches(String channelName) {
+        if (prefixes.length == 0) return true;
+        for (String prefix : prefixes) {
+            if (channelName.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private void encode(int kind) {
+        int count = 0;
+        int offset = HEADER_BYTES;
+
+        if (kind != KIND_HEARTBEAT) {
+            for (int channel = 0; channel < frame.channelCount; channel++) {
+                if (!subscribed[channel]) continue;
+                float value = (float) frame.values[channel];
+                // Compare bit patterns so that NaN values are sent once, not every frame.
+                if (kind == KIND_DELTA && Float.floatToIntBits(value) == Float.floatToIntBits(lastSent[channel])) continue;
+                lastSent[channel] = value;
+                offset = putShort(offset, channel);
+                offset = putInt(offset, Float.floatToIntBits(value));
+                count++;
+            }
+        }
+
+        int header = 0;
+        header = putShort(header, offset - 2);
+        buffer[header++] = (byte) kind;
+        header = putShort(header, subscribedVersion);
+        header = putInt(header, (int) frame.sequence);
+        header = putInt(header, frame.millis);
+        putShort(header, count);
+
+        position = 0;
+        limit = offset;
+        bytesSent += offset;
+    }
+
+    private int putShort(int offset, int value) {
+        buffer[offset]     = (byte) (value >> 8);
+        buffer[offset + 1] = (byte) value;
+        return offset + 2;
+    }
+
+    private int putInt(int offset, int value) {
+        buffer[offset]     = (byte) (value >> 24);
+        buffer[offset + 1] = (byte) (value >> 16);
+        buffer[offset + 2] = (byte) (value >> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+}
@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+import android.content.Context;
+
+import org.firstinspires.ftc.ftccommon.external.WebHandlerRegistrar;
+import org.firstinspires.ftc.robotcore.internal.webserver.WebHandler;
+import org.firstinspires.ftc.robotcore.internal.webserver.WebHandlerManager;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+
+/*
+ * Serves the dashboard from the robot controller's own web server (the one that hosts OnBot Java
+ * and the Manage page), at http://192.168.43.1:8080/dashboard on a Control Hub.
+ *
+ *     GET  /dashboard                              the browser page
+ *     GET  /dashboard/schema                       channel names and gain values, as JSON
+ *     GET  /dashboard/stream?channels=pose,loop&hz=50
+ *                                                  binary frames (see DashboardStream) as chunked HTTP
+ *     POST /dashboard/gains?name=heading.kP&value=0.03
+ *                                                  change a gain
+ *
+ * The handlers are registered by FtcRobotControllerActivity through the @WebHandlerRegistrar hook.
+ */
+public class DashboardWebHandlers {
+
+    @WebHandlerRegistrar
+    public static void attachWebServer(Context context, WebHandlerManager manager) {
+        final Dashboard dashboard = Dashboard.getInstance();
+
+        manager.register(Dashboard.ROOT, new WebHandler() {
+            @Override public NanoHTTPD.Response getResponse(NanoHTTPD.IHTTPSession session) throws IOException {
+                return NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK, "text/html", Dashboard.openPage());
+            }
+        });
+
+        manager.register(Dashboard.ROOT + "/schema", new WebHandler() {
+            @Override public NanoHTTPD.Response getResponse(NanoHTTPD.IHTTPSession session) {
+                return noCache(NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", dashboard.schemaJson()));
+            }
+        });
+
+        manager.register(Dashboard.ROOT + "/stream", new WebHandler() {
+            @Override public NanoHTTPD.Response getResponse(NanoHTTPD.IHTTPSession session) {
+                Map<String, List<String>> parameters = session.getParameters();
+                double hz = Math.min(Dashboard.MAX_RATE_HZ, Dashboard.parseDouble(first(parameters, "hz"), Dashboard.DEFAULT_RATE_HZ));
+                DashboardStream stream = dashboard.openStream(first(parameters, "channels"), hz);
+                return noCache(NanoHTTPD.newChunkedResponse(NanoHTTPD.Response.Status.OK, "application/octet-stream", stream));
+            }
+        });
+
+        manager.register(Dashboard.ROOT + "/gains", new WebHandler() {
+            @Override public NanoHTTPD.Response getResponse(NanoHTTPD.IHTTPSession session) {
+                return postGain(dashboard, session.getMethod(), session.getParameters());
+            }
+        });
+    }
+
+    /**
+     * Change a gain.  The value must be a finite number: NaN or infinity would stop the OpMode's
+     * controller, and could not be written back in the schema JSON.
+     */
+    static NanoHTTPD.Response postGain(Dashboard dashboard, NanoHTTPD.Method method, Map<String, List<String>> parameters) {
+        if (method != NanoHTTPD.Method.POST) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.METHOD_NOT_ALLOWED, NanoHTTPD.MIME_PLAINTEXT, "use POST");
+        }
+        String name = first(parameters, "name");
+        double value = Dashboard.parseDouble(first(parameters, "value"), Double.NaN);
+        if (name == null || !Double.isFinite(value)) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.BAD_REQUEST, NanoHTTPD.MIME_PLAINTEXT, "name and a finite value are required");
+        }
+        if (!dashboard.setGain(name, value)) {
+            return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.NOT_FOUND, NanoHTTPD.MIME_PLAINTEXT, "no gain named " + name);
+        }
+        return NanoHTTPD.newFixedLengthResponse(NanoHTTPD.Response.Status.OK, "application/json", dashboard.schemaJson());
+    }
+
+    private static NanoHTTPD.Response noCache(NanoHTTPD.Response response) {
+        response.addHeader("Cache-Control", "no-cache");
+        return response;
+    }
+
+    private static String first(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return (values == null || values.isEmpty()) ? null : values.get(0);
+    }
+}
@@ -0,0 +1,28 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+/*
+ * A controller gain (or any other tuning constant) that can be changed from the dashboard
+ * while an OpMode is running.  Read it with get() every loop rather than copying it into a field.
+ */
+public class Gain {
+
+    private final String name;
+    private volatile double value;
+
+    Gain(String name, double value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double get() {
+        return value;
+    }
+
+    public void set(double value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,221 @@
+package org.firstinspires.ftc.teamcode.distance;
+
+/*
+ * DistanceFilter cleans up the readings of one distance sensor.
+ *
+ * The last few readings are kept in primitive ring buffers, with the time each was taken.  Their
+ * median, and the median distance of the readings from it (MAD), tell what the sensor is looking at
+ * and how noisy it is; readings further than outlierThreshold spreads from the median, such as a
+ * time-of-flight sensor catching a robot's shiny side or the far wall, are rejected, and the result
+ * is the average of the others.  Its time is the average time of those readings, which is later
+ * than the oldest and earlier than the newest: use it to tell how old the distance really is.
+ *
+ * Each result comes with a confidence from 0 to 1: the fraction of recent reads that returned a
+ * distance, times the fraction of readings that were kept, lowered further when the readings are
+ * spread more than expectedNoise.  It is 0 when there is no recent reading at all.
+ *
+ * update() neither allocates nor uses the clock, so filters can be tested with simulated readings.
+ */
+public class DistanceFilter {
+
+    public static class Parameters {
+        /** Number of readings the median is taken over */
+        public int    window           = 5;
+        /** Number of recent reads the fraction of valid ones is counted over */
+        public int    attempts         = 10;
+        /** Readings further than this many spreads from the median are rejected */
+        public double outlierThreshold = 3.0;
+        /** ...but readings this close to the median are always kept, in inches */
+        public double minimumBand      = 0.5;
+        /** Spread of the readings of a steady target, in inches */
+        public double expectedNoise    = 0.3;
+        /** Readings older than this are dropped from the window */
+        public long   maxAgeNanos      = 250_000_000L;
+    }
+
+    // MAD times this is the standard deviation of normally distributed readings.
+    static final double MAD_TO_SIGMA = 1.4826;
+
+    private final Parameters parameters;
+    private final double[] values;
+    private final long[]   times;
+    private final boolean[] attempts;
+    private final double[] sorted;
+    private final double[] deviations;
+    private int next = 0;
+    private int count = 0;
+    private int nextAttempt = 0;
+    private int attemptCount = 0;
+    private int validAttempts = 0;
+
+    private double distance = Double.NaN;
+    private long   nanos = 0;
+    private double spread = 0;
+    private double confidence = 0;
+    private int    inliers = 0;
+    private int    outliers = 0;
+
+    public DistanceFilter() {
+        this(new Parameters());
+    }
+
+    public DistanceFilter(Parameters parameters) {
+        this.parameters = parameters;
+        this.values = new double[parameters.window];
+        this.times = new long[parameters.window];
+        this.attempts = new boolean[parameters.attempts];
+        this.sorted = new double[parameters.window];
+        this.deviations = new double[parameters.window];
+    }
+
+    /**
+     * Add a reading.
+     *
+     * @param inches the distance read, or NaN (or infinity) if the sensor saw nothing in range
+     * @param nanos  when it was read, on the System.nanoTime() clock
+     * @return true if there is a filtered distance
+     */
+    public boolean update(double inches, long nanos) {
+        boolean valid = !Double.isNaN(inches) && !Double.isInfinite(inches);
+        if (attemptCount == attempts.length) {
+            if (attempts[nextAttempt]) validAttempts--;
+        } else {
+            attemptCount++;
+        }
+        attempts[nextAttempt] = valid;
+        if (valid) validAttempts++;
+        nextAttempt = nextAttempt + 1 == attempts.length ? 0 : nextAttempt + 1;
+
+        int newest = -1;
+        if (valid) {
+            newest = next;
+            values[next] = inches;
+            times[next] = nanos;
+            next = next + 1 == values.length ? 0 : next + 1;
+            if (count < values.length) count++;
+        }
+        return filter(nanos, newest);
+    }
+
+    private boolean filter(long now, int newest) {
+        // Gather the readings that are recent enough.
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (now - times[i] <= parameters.maxAgeNanos) {
+                sorted[n++] = values[i];
+            }
+        }
+        if (n == 0) {
+            distance = Double.NaN;
+            spread = 0;
+            inliers = 0;
+            confidence = 0;
+            return false;
+        }
+
+        insertionSort(sorted, n);
+        double median = median(sorted, n);
+        for (int i = 0; i < n; i++) {
+            deviations[i] = Math.abs(sorted[i] - median);
+        }
+        insertionSort(deviations, n);
+        spread = MAD_TO_SIGMA * median(deviations, n);
+        double band = Math.max(parameters.outlierThreshold * spread, parameters.minimumBand);
+
+        // Average the readings near the median, and their times.
+        double sum = 0;
+        long timeSum = 0;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (now - times[i] <= parameters.maxAgeNanos) {
+                if (Math.abs(values[i] - median) <= band) {
+                    sum += values[i];
+                    timeSum += now - times[i];
+                    kept++;
+                } else if (i == newest) {
+                    outliers++;
+                }
+            }
+        }
+        distance = sum / kept;
+        nanos = now - timeSum / kept;
+        inliers = kept;
+
+        double noise = Math.max(spread, parameters.expectedNoise);
+        confidence = (double) validAttempts / attemptCount
+                * kept / n
+                * parameters.expectedNoise / noise;
+        return true;
+    }
+
+    static void insertionSort(double[] a, int n) {
+        for (int i = 1; i < n; i++) {
+            double v = a[i];
+            int j = i - 1;
+            while (j >= 0 && a[j] > v) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    static double median(double[] sorted, int n) {
+        return (n & 1) == 1 ? sorted[n / 2] : 0.5 * (sorted[n / 2 - 1] + sorted[n / 2]);
+    }
+
+    /**
+     * Forget all readings.
+     */
+    public void reset() {
+        count = next = 0;
+        attemptCount = nextAttempt = validAttempts = 0;
+        distance = Double.NaN;
+        spread = confidence = 0;
+        inliers = 0;
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return filtered distance in inches, or NaN if there is no recent reading
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the time the filtered distance stands for, on the System.nanoTime() clock
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return confidence in the filtered distance, from 0 to 1, as of the last update
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return spread of the readings, as a standard deviation in inches
+     */
+    public double getSpread() {
+        return spread;
+    }
+
+    /**
+     * @return number of readings averaged into the filtered distance
+     */
+    public int getInliers() {
+        return inliers;
+    }
+
+    /**
+     * @return number of readings rejected as outliers when they were added
+     */
+    public int getOutlierCount() {
+        return outliers;
+    }
+}
@@ -0,0 +1,36 @@
+package org.firstinspires.ftc.teamcode.distance;
+
+import com.qualcomm.robotcore.hardware.DistanceSensor;
+
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+
+/*
+ * DistanceSensorSource lets a DistanceService read any DistanceSensor, eg: a REV 2m Distance Sensor
+ * or a MaxBotix ultrasonic sensor.
+ *
+ * Sensors report nothing in range in different ways: DistanceSensor.distanceOutOfRange, or a
+ * distance well past what they can measure.  Anything beyond maxInches is reported as NaN.
+ */
+public class DistanceSensorSource implements DistanceService.Source {
+
+    // The REV 2m Distance Sensor's range, with some margin.
+    public static final double DEFAULT_MAX_INCHES = 80.0;
+
+    private final DistanceSensor sensor;
+    private final double maxInches;
+
+    public DistanceSensorSource(DistanceSensor sensor) {
+        this(sensor, DEFAULT_MAX_INCHES);
+    }
+
+    public DistanceSensorSource(DistanceSensor sensor, double maxInches) {
+        this.sensor = sensor;
+        this.maxInches = maxInches;
+    }
+
+    @Override
+    public double readInches() {
+        double inches = sensor.getDistance(DistanceUnit.INCH);
+        return inches >= 0 && inches <= maxInches ? inches : Double.NaN;
+    }
+}
@@ -0,0 +1,316 @@
+package org.firstinspires.ftc.teamcode.distance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * DistanceService reads several distance sensors on its own thread, so that the control loop gets
+ * clean, recent distances without waiting for a sensor.
+ *
+ * Reading a time-of-flight sensor takes milliseconds, and sensors that range at the same time can
+ * see each other's light.  So the service reads one sensor at a time, in a fixed round-robin order,
+ * and waits guardMillis after each read before starting the next.  A sensor added with a higher
+ * weight comes up more often in the order, eg: the two front sensors used to square up to a wall
+ * twice as often as a side one.
+ *
+ * Each sensor's readings go through a DistanceFilter, and the result is published with its time and
+ * confidence.  get() copies the latest result of a sensor without locking: the service thread never
+ * waits for the control loop, and the control loop never waits for a sensor.
+ *
+ *     DistanceService service = new DistanceService(new DistanceService.Parameters());
+ *     int front = service.add("front", new DistanceSensorSource(frontSensor), 2);
+ *     service.start();
+ *     ...
+ *     service.get(front, reading);
+ *     ...
+ *     service.close();
+ */
+public class DistanceService {
+
+    /**
+     * Something that measures a distance, eg: a DistanceSensorSource.
+     */
+    public interface Source {
+        /**
+         * Take a reading.  May take several milliseconds.
+         *
+         * @return the distance in inches, or NaN if nothing is in range
+         */
+        double readInches();
+    }
+
+    public static class Parameters {
+        /** Quiet time after each read, before the next sensor is read */
+        public double guardMillis = 2.0;
+        public DistanceFilter.Parameters filter = new DistanceFilter.Parameters();
+        /** Results lose confidence as they age, down to 0 at this age */
+        public double staleMillis = 200.0;
+    }
+
+    /**
+     * A copy of a sensor's latest filtered distance.
+     */
+    public static class Reading {
+        /** Filtered distance in inches, or NaN if there is no recent reading */
+        public double distance = Double.NaN;
+        /** Time the distance stands for, on the System.nanoTime() clock */
+        public long   nanos;
+        /** From 0 to 1; see DistanceFilter */
+        public double confidence;
+        /** Spread of the recent readings, as a standard deviation in inches */
+        public double spread;
+        /** Number of reads of this sensor so far */
+        public int    reads;
+
+        public boolean isValid() {
+            return !Double.isNaN(distance);
+        }
+    }
+
+    /**
+     * One published result.  Written by the service thread between two increments of sequence,
+     * which is odd while it is being written.
+     */
+    private static class Snapshot {
+        volatile int    sequence = 0;
+        volatile double distance = Double.NaN;
+        volatile long   nanos;
+        volatile double confidence;
+        volatile double spread;
+        volatile int    reads;
+    }
+
+    private class Channel {
+        final String name;
+        final Source source;
+        final int    weight;
+        final DistanceFilter filter;
+
+        // The service thread writes the snapshot that is not current, then makes it current, so a
+        // reader never has to wait for a write that was interrupted halfway.
+        final Snapshot[] snapshots = { new Snapshot(), new Snapshot() };
+        volatile int     current = 0;
+        volatile int     reads;
+        volatile long    readNanos;
+        volatile int     failures;
+
+        Channel(String name, Source source, int weight) {
+            this.name = name;
+            this.source = source;
+            this.weight = weight;
+            this.filter = new DistanceFilter(parameters.filter);
+        }
+    }
+
+    private final Parameters parameters;
+    private final List<Channel> channels = new ArrayList<>();
+    private Channel[] order;
+    private Thread worker;
+    private volatile boolean running = false;
+    private volatile long cycles = 0;
+
+    public DistanceService(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Add a sensor.  Call before start().
+     *
+     * @param weight how many times the sensor is read in each round, 1 or more
+     * @return the sensor's channel, to pass to get()
+     */
+    public int add(String name, Source source, int weight) {
+        if (worker != null) {
+            throw new IllegalStateException("Sensors must be added before start()");
+        }
+        channels.add(new Channel(name, source, Math.max(1, weight)));
+        return channels.size() - 1;
+    }
+
+    /**
+     * Start reading the sensors.
+     */
+    public void start() {
+        if (channels.isEmpty()) {
+            throw new IllegalStateException("No sensors to read");
+        }
+        order = roundRobin(channels);
+        running = true;
+        worker = new Thread(new Runnable() {
+            @Override public void run() {
+                workerLoop();
+            }
+        }, "distance service");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop reading the sensors, and wait for the current read to finish.
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Spread each sensor's reads evenly over a round, in proportion to its weight: weights 2, 2 and 1
+     * give the order A B C A B.
+     */
+    private Channel[] roundRobin(List<Channel> channels) {
+        int total = 0;
+        for (Channel channel : channels) {
+            total += channel.weight;
+        }
+        Channel[] order = new Channel[total];
+        int[] credit = new int[channels.size()];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int i = 0; i < credit.length; i++) {
+                credit[i] += channels.get(i).weight;
+                if (credit[i] > credit[best]) {
+                    best = i;
+                }
+            }
+            credit[best] -= total;
+            order[slot] = channels.get(best);
+        }
+        return order;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Control loop side
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Copy a sensor's latest filtered distance.  Never blocks.  The confidence is lowered for the
+     * age of the distance.
+     *
+     * @return true if there is a recent distance
+     */
+    public boolean get(int channel, Reading out) {
+        Channel c = channels.get(channel);
+        Snapshot s;
+        int before;
+        do {
+            // Only retried if the service published twice while we were copying.
+            s = c.snapshots[c.current];
+            before = s.sequence;
+            out.distance = s.distance;
+            out.nanos = s.nanos;
+            out.confidence = s.confidence;
+            out.spread = s.spread;
+            out.reads = s.reads;
+        } while ((before & 1) != 0 || s.sequence != before);
+
+        if (out.isValid()) {
+            double age = (System.nanoTime() - out.nanos) / 1e6;
+            out.confidence *= Math.max(0, 1 - age / parameters.staleMillis);
+        }
+        return out.isValid();
+    }
+
+    /**
+     * @return a sensor's latest filtered distance in inches, or NaN if there is none
+     */
+    public double getDistance(int channel) {
+        Channel c = channels.get(channel);
+        return c.snapshots[c.current].distance;
+    }
+
+    public String getName(int channel) {
+        return channels.get(channel).name;
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * @return average time a read of the sensor takes, in milliseconds
+     */
+    public double getAverageReadMillis(int channel) {
+        Channel c = channels.get(channel);
+        int reads = c.reads;
+        return reads == 0 ? 0 : c.readNanos / 1e6 / reads;
+    }
+
+    /**
+     * @return number of reads that threw an exception
+     */
+    public int getFailures(int channel) {
+        return channels.get(channel).failures;
+    }
+
+    /**
+     * @return number of complete rounds of reads
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Channel c : channels) {
+            Snapshot s = c.snapshots[c.current];
+            out.append(String.format(Locale.US, "%s: %.1f in (%.0f%%), %d reads, %.1f ms each%n",
+                    c.name, s.distance, 100 * s.confidence, c.reads, c.reads == 0 ? 0 : c.readNanos / 1e6 / c.reads));
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Service thread
+    //----------------------------------------------------------------------------------------------
+
+    private void workerLoop() {
+        long guardNanos = (long) (parameters.guardMillis * 1e6);
+        while (running) {
+            for (Channel c : order) {
+                if (!running) break;
+                long start = System.nanoTime();
+                double inches;
+                try {
+                    inches = c.source.readInches();
+                } catch (RuntimeException e) {
+                    // Eg: the sensor was unplugged.  Count it as a read that saw nothing.
+                    c.failures++;
+                    inches = Double.NaN;
+                }
+                long end = System.nanoTime();
+                // The middle of the read is the best guess of when the sensor saw the distance.
+                c.filter.update(inches, start + (end - start) / 2);
+                publish(c, end - start);
+
+                // parkNanos() may return early, and a short guard lets sensors see each other.
+                long guardEnd = System.nanoTime() + guardNanos;
+                long remaining;
+                while ((remaining = guardEnd - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+            cycles++;
+        }
+    }
+
+    private void publish(Channel c, long readNanos) {
+        DistanceFilter filter = c.filter;
+        c.reads++;
+        c.readNanos += readNanos;
+        int next = 1 - c.current;
+        Snapshot s = c.snapshots[next];
+        s.sequence++;
+        s.distance = filter.getDistance();
+        s.nanos = filter.getNanos();
+        s.confidence = filter.getConfidence();
+        s.spread = filter.getSpread();
+        s.reads = c.reads;
+        s.sequence++;
+        c.current = next;
+    }
+}
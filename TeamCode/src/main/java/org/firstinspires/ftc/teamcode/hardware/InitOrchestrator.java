@@ -0,0 +1,266 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * InitOrchestrator runs the hardware setup steps of an OpMode (eg: setMode(STOP_AND_RESET_ENCODER),
+ * setZeroPowerBehavior(), imu.initialize(), OctoQuad configuration writes) as a dependency graph rather than
+ * as one long list of calls.
+ *
+ * Each step names the bus it talks over.  Steps on the same bus still run one after another, in the
+ * order they were added (a hub can only process one transaction at a time), but steps on different
+ * buses run in parallel.  A hub's I2C ports go through the hub too, so I2C devices belong on their
+ * hub's bus.  A step may also depend on steps on other buses.
+ *
+ * A step can be given a check which reads the current device setting.  If the device already holds
+ * the desired value the write is skipped.  This only pays off when the check is much cheaper than
+ * the write, eg: configuration written to flash, or a motor's run mode and zero power behavior,
+ * which the SDK remembers from its last write; a check that costs a transaction to skip a single
+ * transaction write saves nothing.
+ *
+ * Devices that are not needed during INIT should be wrapped in a LazyDevice instead of being
+ * added here, so their setup cost is only paid on first use.
+ *
+ * Typical use:
+ *
+ *     InitOrchestrator init = new InitOrchestrator();
+ *     init.addStep("left reset", "Control Hub", () -> leftDrive.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER));
+ *     init.addStep("left brake", "Control Hub", () -> leftDrive.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE))
+ *         .skipIf(() -> leftDrive.getZeroPowerBehavior() == DcMotor.ZeroPowerBehavior.BRAKE);
+ *     init.addStep("imu",        "Control Hub", () -> imu.initialize(parameters));
+ *     InitOrchestrator.Report report = init.run();
+ */
+public class InitOrchestrator {
+
+    /** The work performed by a step. */
+    public interface Action {
+        void run() throws InterruptedException;
+    }
+
+    /** Returns true if the device is already in the state a step would put it in. */
+    public interface Check {
+        boolean isSatisfied() throws InterruptedException;
+    }
+
+    /**
+     * A single setup step.  Returned by {@link #addStep} so dependencies and checks can be chained.
+     */
+    public static class Step {
+        private final String name;
+        private final String bus;
+        private final Action action;
+        private final List<String> dependencies = new ArrayList<>();
+        private Check check = null;
+
+        // Filled in while running
+        private final CountDownLatch done = new CountDownLatch(1);
+        private long elapsedNanos;
+        private boolean skipped;
+
+        private Step(String name, String bus, Action action) {
+            this.name = name;
+            this.bus = bus;
+            this.action = action;
+        }
+
+        /** This step will not start until all the named steps have completed. */
+        public Step dependsOn(String... stepNames) {
+            for (String stepName : stepNames) {
+                dependencies.add(stepName);
+            }
+            return this;
+        }
+
+        /** Skip the action if the check reports that the device is already set up. */
+        public Step skipIf(Check check) {
+            this.check = check;
+            return this;
+        }
+
+        public String getName()          { return name; }
+        public String getBus()           { return bus; }
+        public boolean wasSkipped()      { return skipped; }
+        public double getMilliseconds()  { return elapsedNanos / 1.0e6; }
+    }
+
+    /**
+     * Timing summary of a call to {@link #run()}.
+     */
+    public static class Report {
+        public final double totalMilliseconds;
+        public final int    stepsRun;
+        public final int    stepsSkipped;
+        public final int    busCount;
+        public final List<Step> steps;
+
+        Report(double totalMilliseconds, int stepsRun, int stepsSkipped, int busCount, List<Step> steps) {
+            this.totalMilliseconds = totalMilliseconds;
+            this.stepsRun = stepsRun;
+            this.stepsSkipped = stepsSkipped;
+            this.busCount = busCount;
+            this.steps = steps;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f ms, %d steps run, %d skipped, %d buses",
+                    totalMilliseconds, stepsRun, stepsSkipped, busCount);
+        }
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    /**
+     * Add a setup step.
+     *
+     * @param name   unique name, used for dependencies and the report
+     * @param bus    name of the bus the step talks over (eg: the hub's connection info)
+     * @param action the work to do
+     */
+    public Step addStep(String name, String bus, Action action) {
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("duplicate init step: " + name);
+        }
+        Step step = new Step(name, bus, action);
+        steps.put(name, step);
+        return step;
+    }
+
+    /**
+     * Run all the steps, and wait for them to complete.
+     *
+     * @throws IllegalArgumentException if a step depends on an unknown step
+     * @throws IllegalStateException    if the dependencies contain a cycle
+     * @throws RuntimeException         wrapping the first failure thrown by a step
+     */
+    public Report run() throws InterruptedException {
+        List<Step> order = sortSteps();
+
+        // One queue per bus, each in dependency order.  Because every queue follows the same
+        // global order, a step only ever waits on steps that come earlier, so buses can't deadlock.
+        Map<String, List<Step>> queues = new LinkedHashMap<>();
+        for (Step step : order) {
+            List<Step> queue = queues.get(step.bus);
+            if (queue == null) {
+                queue = new ArrayList<>();
+                queues.put(step.bus, queue);
+            }
+            queue.add(step);
+        }
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        List<Thread> threads = new ArrayList<>();
+        for (Map.Entry<String, List<Step>> entry : queues.entrySet()) {
+            final List<Step> queue = entry.getValue();
+            Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    runQueue(queue, failure);
+                }
+            }, "init " + entry.getKey());
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw e;
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        if (t != null) throw new RuntimeException(t);
+
+        int run = 0, skipped = 0;
+        for (Step step : order) {
+            if (step.skipped) skipped++; else run++;
+        }
+        return new Report((System.nanoTime() - start) / 1.0e6, run, skipped, queues.size(), order);
+    }
+
+    private void runQueue(List<Step> queue, AtomicReference<Throwable> failure) {
+        for (Step step : queue) {
+            try {
+                for (String dependency : step.dependencies) {
+                    steps.get(dependency).done.await();
+                }
+                // Once anything has failed, just release the remaining steps so nobody waits forever.
+                if (failure.get() == null) {
+                    long start = System.nanoTime();
+                    step.skipped = step.check != null && step.check.isSatisfied();
+                    if (!step.skipped) {
+                        step.action.run();
+                    }
+                    step.elapsedNanos = System.nanoTime() - start;
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, new RuntimeException("init step \"" + step.name + "\" failed", t));
+            } finally {
+                step.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Topological sort of the steps which keeps the order they were added wherever it can.
+     */
+    private List<Step> sortSteps() {
+        Map<String, Integer> waitingOn = new LinkedHashMap<>();
+        Map<String, List<Step>> dependents = new LinkedHashMap<>();
+        for (Step step : steps.values()) {
+            waitingOn.put(step.name, step.dependencies.size());
+            for (String dependency : step.dependencies) {
+                if (!steps.containsKey(dependency)) {
+                    throw new IllegalArgumentException("init step \"" + step.name + "\" depends on unknown step \"" + dependency + "\"");
+                }
+                List<Step> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    dependents.put(dependency, list);
+                }
+                list.add(step);
+            }
+        }
+
+        ArrayDeque<Step> ready = new ArrayDeque<>();
+        for (Step step : steps.values()) {
+            if (step.dependencies.isEmpty()) ready.add(step);
+        }
+
+        List<Step> order = new ArrayList<>(steps.size());
+        while (!ready.isEmpty()) {
+            Step step = ready.poll();
+            order.add(step);
+            List<Step> list = dependents.get(step.name);
+            if (list == null) continue;
+            for (Step dependent : list) {
+                int remaining = waitingOn.get(dependent.name) - 1;
+                waitingOn.put(dependent.name, remaining);
+                if (remaining == 0) ready.add(dependent);
+            }
+        }
+
+        if (order.size() != steps.size()) {
+            throw new IllegalStateException("init steps have a dependency cycle");
+        }
+        return order;
+    }
+}
@@ -0,0 +1,54 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+/*
+ * LazyDevice defers the lookup and setup of a device that is not needed during INIT
+ * (eg: an intake motor or a rarely used sensor) until the first time it is used.
+ *
+ *     LazyDevice<DcMotor> intake = new LazyDevice<>(() -> {
+ *         DcMotor motor = hardwareMap.get(DcMotor.class, "intake");
+ *         motor.setDirection(DcMotor.Direction.REVERSE);
+ *         return motor;
+ *     });
+ *     ...
+ *     intake.get().setPower(1.0);   // setup happens here, once
+ *
+ * The setup runs at most once, even if get() is first called from several threads at the same time.
+ */
+public class LazyDevice<T> {
+
+    /** Looks up and configures the device. */
+    public interface Factory<T> {
+        T create();
+    }
+
+    private final Factory<T> factory;
+    private volatile T device = null;
+
+    public LazyDevice(Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return the device, creating and configuring it on the first call.
+     */
+    public T get() {
+        T result = device;
+        if (result == null) {
+            synchronized (this) {
+                result = device;
+                if (result == null) {
+                    result = factory.create();
+                    device = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true once the device has been set up.  Does not trigger the setup.
+     */
+    public boolean isInitialized() {
+        return device != null;
+    }
+}
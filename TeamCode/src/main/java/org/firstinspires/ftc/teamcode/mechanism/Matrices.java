@@ -0,0 +1,91 @@
+package org.firstinspires.ftc.teamcode.mechanism;
+
+/*
+ * The few matrix operations MechanismController needs to work out its gains during INIT.  Matrices
+ * are double[rows][columns].  These allocate, and are not used in the loop.
+ */
+final class Matrices {
+
+    private Matrices() {
+    }
+
+    static double[][] identity(int n) {
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) m[i][i] = 1;
+        return m;
+    }
+
+    static double[][] multiply(double[][] a, double[][] b) {
+        double[][] m = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b[0].length; j++) {
+                double sum = 0;
+                for (int k = 0; k < b.length; k++) sum += a[i][k] * b[k][j];
+                m[i][j] = sum;
+            }
+        }
+        return m;
+    }
+
+    static double[][] multiply(double[][] a, double[][] b, double[][] c) {
+        return multiply(multiply(a, b), c);
+    }
+
+    static double[][] transpose(double[][] a) {
+        double[][] m = new double[a[0].length][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) m[j][i] = a[i][j];
+        }
+        return m;
+    }
+
+    /**
+     * @return a + scale * b
+     */
+    static double[][] add(double[][] a, double scale, double[][] b) {
+        double[][] m = new double[a.length][a[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) m[i][j] = a[i][j] + scale * b[i][j];
+        }
+        return m;
+    }
+
+    static double[][] diagonal(double... values) {
+        double[][] m = new double[values.length][values.length];
+        for (int i = 0; i < values.length; i++) m[i][i] = values[i];
+        return m;
+    }
+
+    /**
+     * @return the largest difference between elements of a and b
+     */
+    static double distance(double[][] a, double[][] b) {
+        double max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) max = Math.max(max, Math.abs(a[i][j] - b[i][j]));
+        }
+        return max;
+    }
+
+    /**
+     * Solve the discrete algebraic Riccati equation of a system with one input, by iterating it
+     * until it settles:  P = Q + A'PA - A'PB (R + B'PB)^-1 B'PA
+     *
+     * @param b a column
+     * @return P
+     */
+    static double[][] riccati(double[][] a, double[][] b, double[][] q, double r) {
+        double[][] at = transpose(a), bt = transpose(b);
+        double[][] p = q;
+        for (int iteration = 0; iteration < 100_000; iteration++) {
+            double[][] pb = multiply(p, b);
+            double s = r + multiply(bt, pb)[0][0];
+            double[][] atpb = multiply(at, pb);
+            double[][] next = add(add(q, 1, multiply(at, p, a)), -1 / s, multiply(atpb, transpose(atpb)));
+            double change = distance(next, p);
+            p = next;
+            if (change <= 1e-12 * (1 + Math.abs(p[0][0]))) break;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,365 @@
+package org.firstinspires.ftc.teamcode.mechanism;
+
+import org.firstinspires.ftc.teamcode.control.MotionProfile;
+
+import java.util.Locale;
+
+/*
+ * MechanismController moves an arm or a linear slide to a position and holds it there, against
+ * gravity, from the motor's encoder.
+ *
+ * A motor driving a mechanism needs a voltage of
+ *
+ *     V = kS sign(velocity) + kG gravity(position) + kV velocity + kA acceleration
+ *
+ * where gravity() is cos(position) for an arm, with position the angle in radians from horizontal,
+ * and 1 for a slide.  The controller sends that feedforward for a trapezoidal motion profile to the
+ * goal, so the mechanism does not sag when holding or overshoot when stopping, and corrects what is
+ * left with state feedback:
+ *
+ *  - the model without its friction and gravity is linear, with state (position, velocity).  It is
+ *    discretized for the loop period, and LQR gains that weigh position and velocity errors against
+ *    voltage are computed when the controller is made, during INIT.
+ *  - a Kalman observer estimates the position, velocity and a voltage disturbance (eg: a game
+ *    element in the claw, or a wrong kG) from the encoder.  Its steady state gains are computed
+ *    during INIT too.  The disturbance is taken off the voltage, which removes the steady state
+ *    error integral action would.
+ *
+ * The goal is kept between the soft limits and within what the Interlocks allow: eg: an arm may not
+ * fold down while its lift is up.  A goal outside them waits at the nearest allowed position until it
+ * is allowed.  Past a soft limit, the voltage only holds the mechanism up: it never pushes further.
+ *
+ * update() is a few operations on two and three element states, with no allocation.
+ *
+ *     MechanismController arm = new MechanismController(parameters);
+ *     arm.reset(startAngle);
+ *     ...
+ *     arm.setGoal(Math.toRadians(60));
+ *     motor.setPower(arm.update(motor.getCurrentPosition() / TICKS_PER_RADIAN, batteryVolts, System.nanoTime()));
+ */
+public class MechanismController {
+
+    public static final int MAX_INTERLOCKS = 8;
+
+    public static class Parameters {
+        /** An arm, where gravity goes with the cosine of the angle, or a slide where it is constant */
+        public boolean arm = true;
+        /** Volts to overcome friction */
+        public double kS = 0.3;
+        /** Volts to hold against gravity: with the arm horizontal, for an arm */
+        public double kG = 1.5;
+        /** Volts per unit of velocity, eg: per radian per second */
+        public double kV = 1.2;
+        /** Volts per unit of acceleration; must be more than 0 */
+        public double kA = 0.08;
+
+        /** Motion profile limits, in units per second and per second per second */
+        public double maxVelocity = 3.0;
+        public double maxAcceleration = 12.0;
+
+        /** Soft limits */
+        public double minPosition = -Math.PI / 2;
+        public double maxPosition = Math.PI / 2;
+        /** Largest voltage ever sent */
+        public double maxVoltage = 12.0;
+        /** The battery voltage assumed when update() is not given one */
+        public double nominalVoltage = 12.0;
+
+        /** The loop period the gains are worked out for */
+        public double periodMillis = 20.0;
+        /** LQR: the position and velocity errors worth a voltage of rVoltage */
+        public double qPosition = 0.02;
+        public double qVelocity = 0.5;
+        public double rVoltage = 12.0;
+        /** Observer: how far the model may be off in one period, and how noisy the encoder is */
+        public double modelPosition = 0.001;
+        public double modelVelocity = 0.05;
+        public double modelDisturbance = 0.05;
+        public double measurementNoise = 0.005;
+    }
+
+    /**
+     * Narrows where a mechanism may go, given the state of others.
+     */
+    public interface Interlock {
+        /**
+         * @param range the lowest and highest positions allowed so far: narrow them, never widen
+         */
+        void limit(double[] range);
+    }
+
+    private final Parameters parameters;
+
+    // Gains, worked out in the constructor: u = K (r - x), x += L (y - x0).
+    private final double k0, k1;
+    private final double l0, l1, l2;
+
+    private final MotionProfile profile = new MotionProfile();
+    private final Interlock[] interlocks = new Interlock[MAX_INTERLOCKS];
+    private int interlockCount = 0;
+    private final double[] range = new double[2];
+
+    // Estimate: position, velocity, disturbance in volts.
+    private double position, velocity, disturbance;
+    private double goal;
+    private double volts = 0;
+    private double power = 0;
+    private long lastNanos = 0;
+    private boolean limited = false;
+
+    public MechanismController(Parameters parameters) {
+        if (!(parameters.kA > 0)) {
+            throw new IllegalArgumentException("kA must be more than 0");
+        }
+        this.parameters = parameters;
+        double dt = parameters.periodMillis / 1000;
+
+        // LQR on (position, velocity), with Bryson's rule weights.
+        double[][] a = plantA(dt, parameters);
+        double[][] b = plantB(dt, parameters);
+        double[][] q = Matrices.diagonal(1 / sq(parameters.qPosition), 1 / sq(parameters.qVelocity));
+        double r = 1 / sq(parameters.rVoltage);
+        double[][] p = Matrices.riccati(a, b, q, r);
+        double[][] bt = Matrices.transpose(b);
+        double s = r + Matrices.multiply(bt, p, b)[0][0];
+        double[][] k = Matrices.multiply(bt, p, a);
+        k0 = k[0][0] / s;
+        k1 = k[0][1] / s;
+
+        // Steady state Kalman gains on (position, velocity, disturbance), by duality with LQR.
+        double[][] a3 = {
+            { a[0][0], a[0][1], b[0][0] },
+            { a[1][0], a[1][1], b[1][0] },
+            { 0,       0,       1       },
+        };
+        double[][] h = { { 1 }, { 0 }, { 0 } };
+        double[][] prior = Matrices.riccati(Matrices.transpose(a3), h,
+                Matrices.diagonal(sq(parameters.modelPosition), sq(parameters.modelVelocity), sq(parameters.modelDisturbance)),
+                sq(parameters.measurementNoise));
+        double innovation = prior[0][0] + sq(parameters.measurementNoise);
+        l0 = prior[0][0] / innovation;
+        l1 = prior[1][0] / innovation;
+        l2 = prior[2][0] / innovation;
+
+        reset(0);
+    }
+
+    static double sq(double x) {
+        return x * x;
+    }
+
+    /**
+     * @return the linear model's state transition over dt
+     */
+    static double[][] plantA(double dt, Parameters parameters) {
+        double rate = parameters.kV / parameters.kA;
+        double decay = Math.exp(-rate * dt);
+        double gain = rate > 1e-9 ? (1 - decay) / rate : dt;
+        return new double[][] { { 1, gain }, { 0, decay } };
+    }
+
+    /**
+     * @return the linear model's response to a volt held over dt
+     */
+    static double[][] plantB(double dt, Parameters parameters) {
+        double rate = parameters.kV / parameters.kA;
+        double decay = Math.exp(-rate * dt);
+        double gain = rate > 1e-9 ? (1 - decay) / rate : dt;
+        double toPosition = rate > 1e-9 ? (dt - gain) / rate : dt * dt / 2;
+        return new double[][] { { toPosition / parameters.kA }, { gain / parameters.kA } };
+    }
+
+    /**
+     * Add an interlock, during INIT.
+     */
+    public void addInterlock(Interlock interlock) {
+        if (interlockCount == MAX_INTERLOCKS) {
+            throw new IllegalStateException("too many interlocks");
+        }
+        interlocks[interlockCount++] = interlock;
+    }
+
+    /**
+     * Start at rest at a position, eg: where the mechanism rests at the start of a match.
+     */
+    public void reset(double position) {
+        this.position = position;
+        this.velocity = 0;
+        this.disturbance = 0;
+        this.goal = position;
+        this.volts = 0;
+        this.power = 0;
+        this.lastNanos = 0;
+        profile.reset(position);
+    }
+
+    /**
+     * Go to a position.  The move is planned on the next update(), from where the profile is then.
+     */
+    public void setGoal(double goal) {
+        this.goal = goal;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Control
+    //----------------------------------------------------------------------------------------------
+
+    double gravity(double position) {
+        return parameters.arm ? Math.cos(position) : 1;
+    }
+
+    /**
+     * Estimate the state from the encoder, and work out the power to send.  Call once per loop.
+     *
+     * @param measured      the mechanism's position from its encoder
+     * @param batteryVolts  the battery voltage, to turn volts into power, or NaN if there is no
+     *                      voltage sensor: nominalVoltage is assumed
+     * @return the power to send to the motor, from -1 to 1
+     */
+    public double update(double measured, double batteryVolts, long nowNanos) {
+        Parameters c = parameters;
+        double dt = lastNanos == 0 ? c.periodMillis / 1000 : Math.min(0.1, (nowNanos - lastNanos) / 1e9);
+        lastNanos = nowNanos;
+
+        // Predict, with the volts sent over the last period less what friction and gravity took.
+        double rate = c.kV / c.kA;
+        double decay = Math.exp(-rate * dt);
+        double gain = rate > 1e-9 ? (1 - decay) / rate : dt;
+        double toPosition = (rate > 1e-9 ? (dt - gain) / rate : dt * dt / 2) / c.kA;
+        double toVelocity = gain / c.kA;
+        double input = volts + disturbance - c.kS * Math.signum(velocity) - c.kG * gravity(position);
+        position += gain * velocity + toPosition * input;
+        velocity = decay * velocity + toVelocity * input;
+
+        // Correct from the encoder.
+        double error = measured - position;
+        position += l0 * error;
+        velocity += l1 * error;
+        disturbance += l2 * error;
+
+        // Where the goal may be now.
+        range[0] = c.minPosition;
+        range[1] = c.maxPosition;
+        for (int i = 0; i < interlockCount; i++) {
+            interlocks[i].limit(range);
+        }
+        double target = Math.max(range[0], Math.min(range[1], goal));
+        limited = target != goal;
+        if (target != profile.getTarget()) {
+            profile.plan(profile.getPosition(nowNanos), profile.getVelocity(nowNanos), target,
+                    c.maxVelocity, c.maxAcceleration, nowNanos);
+        }
+
+        double rp = profile.getPosition(nowNanos);
+        double rv = profile.getVelocity(nowNanos);
+        double ra = profile.getAcceleration(nowNanos);
+        double hold = c.kG * gravity(position);
+        double u = c.kS * Math.signum(rv) + c.kG * gravity(rp) + c.kV * rv + c.kA * ra
+                + k0 * (rp - position) + k1 * (rv - velocity)
+                - disturbance;
+
+        // Past a soft limit, only hold up.
+        if (position >= c.maxPosition && u > hold) u = hold;
+        if (position <= c.minPosition && u < hold) u = hold;
+
+        if (!(batteryVolts > 0) || Double.isInfinite(batteryVolts)) {
+            batteryVolts = c.nominalVoltage;
+        }
+        double maxVolts = Math.min(c.maxVoltage, batteryVolts);
+        volts = Math.max(-maxVolts, Math.min(maxVolts, u));
+        power = volts / batteryVolts;
+        return power;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Results
+    //----------------------------------------------------------------------------------------------
+
+    public double getGoal() {
+        return goal;
+    }
+
+    /**
+     * @return where the mechanism is going now: the goal, unless a limit or interlock holds it back
+     */
+    public double getTarget() {
+        return profile.getTarget();
+    }
+
+    /**
+     * @return true if a limit or interlock holds the mechanism short of its goal
+     */
+    public boolean isLimited() {
+        return limited;
+    }
+
+    /**
+     * @return the estimated position
+     */
+    public double getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the estimated velocity
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return the estimated voltage disturbance: positive when the mechanism gets help
+     */
+    public double getDisturbance() {
+        return disturbance;
+    }
+
+    /**
+     * @return the profile's position now
+     */
+    public double getReference(long nowNanos) {
+        return profile.getPosition(nowNanos);
+    }
+
+    public double getVolts() {
+        return volts;
+    }
+
+    public double getPower() {
+        return power;
+    }
+
+    /**
+     * @return when the profile reaches the target, on the System.nanoTime() clock
+     */
+    public long getArrivalNanos() {
+        return profile.getArrivalNanos();
+    }
+
+    /**
+     * @return true once the profile has reached the target and the estimate is within tolerance of it
+     */
+    public boolean isAtTarget(double tolerance, long nowNanos) {
+        return profile.isDone(nowNanos) && Math.abs(position - profile.getTarget()) <= tolerance;
+    }
+
+    /**
+     * @return the LQR gains on the position and velocity errors, in volts per unit
+     */
+    public double[] getFeedbackGains() {
+        return new double[] { k0, k1 };
+    }
+
+    /**
+     * @return the observer gains on the encoder error for position, velocity and disturbance
+     */
+    public double[] getObserverGains() {
+        return new double[] { l0, l1, l2 };
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "at %.3f (%.3f/s), going to %.3f%s, %.2f V, disturbance %.2f V",
+                position, velocity, profile.getTarget(), limited ? " (limited)" : "", volts, disturbance);
+    }
+}
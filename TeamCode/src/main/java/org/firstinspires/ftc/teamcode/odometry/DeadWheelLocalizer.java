@@ -0,0 +1,237 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+/*
+ * DeadWheelLocalizer tracks the robot's pose from three unpowered odometry pods ("dead wheels"):
+ * two parallel to the direction of travel, left and right of the center of rotation, and one
+ * perpendicular to it.  This is the layout read by the SensorOctoQuad sample.
+ *
+ * Each update takes the raw encoder counts.  The change since the last update is taken with 32 bit
+ * integer arithmetic, so an encoder wrapping from Integer.MAX_VALUE to Integer.MIN_VALUE is just
+ * one more count.  The changes give the robot's motion in its own frame (forward, left and turn),
+ * which is applied to the pose as a constant curvature arc (the pose exponential) rather than as a
+ * straight line followed by a turn.  That keeps the pose right when turning while driving, even with
+ * long gaps between updates.
+ *
+ * When the encoder velocities are given too (the OctoQuad measures them itself), they give the
+ * robot's current twist, which is used by predict() to estimate the pose between updates, e.g. for
+ * a vision frame captured halfway through a loop.  Otherwise the twist is the change over the last
+ * update.
+ *
+ * Updates allocate nothing, and cost four sines and cosines; see DeadWheelSimulation.
+ */
+public class DeadWheelLocalizer {
+
+    static final double SMALL_ANGLE = 1e-6;
+
+    private final double inchesPerTick;
+    private final double trackWidth;
+    private final double perpendicularOffset;
+
+    private double x;
+    private double y;
+    private double heading;
+
+    // Robot frame twist: inches/s forward and left, radians/s counter-clockwise.
+    private double forwardVelocity;
+    private double leftVelocity;
+    private double angularVelocity;
+
+    private int     lastLeft;
+    private int     lastRight;
+    private int     lastPerpendicular;
+    private long    lastNanos;
+    private boolean started = false;
+    private long    updateCount = 0;
+
+    /**
+     * @param inchesPerTick        pod wheel travel per encoder count, e.g. 35mm wheel on an 8192 count
+     *                             REV Through Bore encoder: PI * 35 / 25.4 / 8192
+     * @param trackWidth           distance between the left and right pods, inches
+     * @param perpendicularOffset  how far the perpendicular pod is forward of the center of rotation,
+     *                             inches (negative when behind)
+     */
+    public DeadWheelLocalizer(double inchesPerTick, double trackWidth, double perpendicularOffset) {
+        this.inchesPerTick = inchesPerTick;
+        this.trackWidth = trackWidth;
+        this.perpendicularOffset = perpendicularOffset;
+    }
+
+    /**
+     * Set the pose, e.g. the starting position on the field.
+     */
+    public void setPose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = Pose.normalizeRadians(heading);
+    }
+
+    /**
+     * Update from encoder counts and velocities.  The first call only records the counts.
+     *
+     * @param left                         left pod count, increasing when the robot moves forward
+     * @param right                        right pod count, increasing when the robot moves forward
+     * @param perpendicular                perpendicular pod count, increasing when the robot moves left
+     * @param leftTicksPerSecond           left pod velocity, counts per second
+     * @param rightTicksPerSecond          right pod velocity, counts per second
+     * @param perpendicularTicksPerSecond  perpendicular pod velocity, counts per second
+     * @param nanos                        System.nanoTime() at which the counts were read
+     */
+    public void update(int left, int right, int perpendicular,
+                       double leftTicksPerSecond, double rightTicksPerSecond, double perpendicularTicksPerSecond,
+                       long nanos) {
+        if (integrate(left, right, perpendicular, nanos)) {
+            setTwist(leftTicksPerSecond * inchesPerTick, rightTicksPerSecond * inchesPerTick,
+                    perpendicularTicksPerSecond * inchesPerTick, 1.0);
+        }
+    }
+
+    /**
+     * Update from encoder counts only.  The twist is the average over the time since the last update.
+     */
+    public void update(int left, int right, int perpendicular, long nanos) {
+        int dLeft  = left - lastLeft;
+        int dRight = right - lastRight;
+        int dPerp  = perpendicular - lastPerpendicular;
+        long dNanos = nanos - lastNanos;
+        if (integrate(left, right, perpendicular, nanos) && dNanos > 0) {
+            setTwist(dLeft * inchesPerTick, dRight * inchesPerTick, dPerp * inchesPerTick, dNanos * 1e-9);
+        }
+    }
+
+    /**
+     * Apply the change in counts since the last update to the pose.
+     *
+     * @return false on the first call, when there was nothing to apply
+     */
+    private boolean integrate(int left, int right, int perpendicular, long nanos) {
+        // int subtraction wraps, so this is right across a 32 bit rollover.
+        int dLeft  = left - lastLeft;
+        int dRight = right - lastRight;
+        int dPerp  = perpendicular - lastPerpendicular;
+        lastLeft = left;
+        lastRight = right;
+        lastPerpendicular = perpendicular;
+        lastNanos = nanos;
+        if (!started) {
+            started = true;
+            return false;
+        }
+        updateCount++;
+
+        double leftInches  = dLeft * inchesPerTick;
+        double rightInches = dRight * inchesPerTick;
+        double dTheta   = (rightInches - leftInches) / trackWidth;
+        double dForward = 0.5 * (leftInches + rightInches);
+        double dLeftward = dPerp * inchesPerTick - perpendicularOffset * dTheta;
+
+        double sin = Math.sin(heading);
+        double cos = Math.cos(heading);
+        applyExponential(dForward, dLeftward, dTheta, sin, cos);
+        x += exponentialX;
+        y += exponentialY;
+        heading = Pose.normalizeRadians(heading + dTheta);
+        return true;
+    }
+
+    // Output of applyExponential(), kept in fields to avoid allocating.
+    private double exponentialX;
+    private double exponentialY;
+
+    /**
+     * Field frame displacement of moving (forward, leftward) along an arc turning by dTheta, starting
+     * at a heading with the given sine and cosine.
+     */
+    private void applyExponential(double forward, double leftward, double dTheta, double sinHeading, double cosHeading) {
+        double s, c;
+        if (Math.abs(dTheta) < SMALL_ANGLE) {
+            s = 1.0 - dTheta * dTheta / 6.0;
+            c = 0.5 * dTheta;
+        } else {
+            s = Math.sin(dTheta) / dTheta;
+            c = (1.0 - Math.cos(dTheta)) / dTheta;
+        }
+        double robotX = s * forward - c * leftward;
+        double robotY = c * forward + s * leftward;
+        exponentialX = cosHeading * robotX - sinHeading * robotY;
+        exponentialY = sinHeading * robotX + cosHeading * robotY;
+    }
+
+    private void setTwist(double leftDistance, double rightDistance, double perpendicularDistance, double seconds) {
+        angularVelocity = (rightDistance - leftDistance) / trackWidth / seconds;
+        forwardVelocity = 0.5 * (leftDistance + rightDistance) / seconds;
+        leftVelocity    = perpendicularDistance / seconds - perpendicularOffset * angularVelocity;
+    }
+
+    /**
+     * Estimate the pose at a time after the last update, assuming the twist stays the same.
+     *
+     * @param nanos  System.nanoTime() of the moment of interest
+     * @param out    filled in with the estimate
+     * @return out
+     */
+    public Pose predict(long nanos, Pose out) {
+        double seconds = (nanos - lastNanos) * 1e-9;
+        double dTheta = angularVelocity * seconds;
+        applyExponential(forwardVelocity * seconds, leftVelocity * seconds, dTheta, Math.sin(heading), Math.cos(heading));
+        return out.set(x + exponentialX, y + exponentialY, Pose.normalizeRadians(heading + dTheta));
+    }
+
+    public Pose getPose(Pose out) {
+        return out.set(x, y, heading);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @return forward speed in the robot's frame, inches per second
+     */
+    public double getForwardVelocity() {
+        return forwardVelocity;
+    }
+
+    /**
+     * @return leftward speed in the robot's frame, inches per second
+     */
+    public double getLeftVelocity() {
+        return leftVelocity;
+    }
+
+    /**
+     * @return turn rate, radians per second counter-clockwise
+     */
+    public double getAngularVelocity() {
+        return angularVelocity;
+    }
+
+    /**
+     * @return field frame X velocity, inches per second
+     */
+    public double getVelocityX() {
+        return Math.cos(heading) * forwardVelocity - Math.sin(heading) * leftVelocity;
+    }
+
+    /**
+     * @return field frame Y velocity, inches per second
+     */
+    public double getVelocityY() {
+        return Math.sin(heading) * forwardVelocity + Math.cos(heading) * leftVelocity;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public long getLastUpdateNanos() {
+        return lastNanos;
+    }
+}
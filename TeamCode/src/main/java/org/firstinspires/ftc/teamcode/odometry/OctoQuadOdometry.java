@@ -0,0 +1,160 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+
+/*
+ * OctoQuadOdometry feeds a DeadWheelLocalizer from three odometry pods on an OctoQuad.
+ *
+ * Each update() is one I2C transaction: readAllEncoderData() fills a data block owned by this class,
+ * rather than readAllPositions() allocating a new array every loop as in the SensorOctoQuad sample.
+ * The block holds the OctoQuad's own velocity measurements too, which the localizer uses for its
+ * twist.
+ *
+ * The read is timestamped halfway through the transaction, which is the best guess at when the
+ * OctoQuad latched the counts.
+ *
+ * The encoder data block carries no checksum, so each read is checked against the one before it
+ * instead: a read in which a pod moved further than it could have at maxCountsPerSecond, or reports
+ * a faster velocity than that, is taken to be corrupt and is not given to the localizer.  Since the
+ * read after a corrupt one jumps back, it is rejected too; the localizer then carries on from the
+ * last good read, and loses nothing as it works from absolute counts.  For the same reason the
+ * localizer only starts once two reads agree.
+ */
+public class OctoQuadOdometry {
+
+    /** Velocity sample interval set on the pod channels; 25ms as in SensorOctoQuadAdv. */
+    public static final int VELOCITY_SAMPLE_INTERVAL_MS = 25;
+    static final double VELOCITY_SAMPLES_PER_S = 1000.0 / VELOCITY_SAMPLE_INTERVAL_MS;
+    /** About 3.3 m/s for a REV Through Bore encoder on a 35mm wheel, well past any FTC robot. */
+    public static final double DEFAULT_MAX_COUNTS_PER_SECOND = 250000;
+    /** Allowance for the uncertainty in the read timestamps. */
+    static final double TIMING_SLACK_SECONDS = 0.005;
+
+    private final OctoQuad octoquad;
+    private final DeadWheelLocalizer localizer;
+    private final int leftChannel;
+    private final int rightChannel;
+    private final int perpendicularChannel;
+    private final OctoQuad.EncoderDataBlock encoderDataBlock = new OctoQuad.EncoderDataBlock();
+    private double maxCountsPerSecond = DEFAULT_MAX_COUNTS_PER_SECOND;
+
+    // The previous read, good or not, to check the next one against.
+    private final int[] previousPositions = new int[3];
+    private long    previousNanos;
+    private boolean havePrevious = false;
+
+    private long lastReadNanos = 0;
+    private int  rejectedReads = 0;
+
+    public OctoQuadOdometry(OctoQuad octoquad, int leftChannel, int rightChannel, int perpendicularChannel, DeadWheelLocalizer localizer) {
+        this.octoquad = octoquad;
+        this.leftChannel = leftChannel;
+        this.rightChannel = rightChannel;
+        this.perpendicularChannel = perpendicularChannel;
+        this.localizer = localizer;
+    }
+
+    /**
+     * Set the pod directions and velocity sample intervals.  Reverse a pod whose count goes down when
+     * the robot moves forward (left for the perpendicular pod).
+     *
+     * The parameters are read back first, and only those that differ are written.  They are only
+     * saved to the OctoQuad's flash if something changed: flash wears out, and the save is slow, so
+     * it should not happen on every INIT.
+     *
+     * @return true if the parameters were changed and saved
+     */
+    public boolean configure(boolean reverseLeft, boolean reverseRight, boolean reversePerpendicular) {
+        boolean changed = configureChannel(leftChannel, reverseLeft);
+        changed |= configureChannel(rightChannel, reverseRight);
+        changed |= configureChannel(perpendicularChannel, reversePerpendicular);
+        if (changed) {
+            octoquad.saveParametersToFlash();
+        }
+        return changed;
+    }
+
+    private boolean configureChannel(int channel, boolean reverse) {
+        boolean changed = false;
+        OctoQuad.EncoderDirection direction = reverse ? OctoQuad.EncoderDirection.REVERSE : OctoQuad.EncoderDirection.FORWARD;
+        if (octoquad.getSingleEncoderDirection(channel) != direction) {
+            octoquad.setSingleEncoderDirection(channel, direction);
+            changed = true;
+        }
+        if (octoquad.getSingleVelocitySampleInterval(channel) != VELOCITY_SAMPLE_INTERVAL_MS) {
+            octoquad.setSingleVelocitySampleInterval(channel, VELOCITY_SAMPLE_INTERVAL_MS);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @param countsPerSecond  fastest a pod can turn; reads implying more are rejected as corrupt
+     */
+    public void setMaxCountsPerSecond(double countsPerSecond) {
+        this.maxCountsPerSecond = countsPerSecond;
+    }
+
+    /**
+     * Read the pods and update the localizer.  Call once per loop.
+     *
+     * @return false if the read was rejected (or was the first), and the localizer not updated
+     */
+    public boolean update() {
+        long before = System.nanoTime();
+        octoquad.readAllEncoderData(encoderDataBlock);
+        long after = System.nanoTime();
+        lastReadNanos = after - before;
+        long nanos = before + (after - before) / 2;
+
+        int[]   positions  = encoderDataBlock.positions;
+        short[] velocities = encoderDataBlock.velocities;
+        boolean plausible = havePrevious
+                && plausible(0, positions[leftChannel], velocities[leftChannel], nanos)
+                && plausible(1, positions[rightChannel], velocities[rightChannel], nanos)
+                && plausible(2, positions[perpendicularChannel], velocities[perpendicularChannel], nanos);
+        if (havePrevious && !plausible) {
+            rejectedReads++;
+        }
+        previousPositions[0] = positions[leftChannel];
+        previousPositions[1] = positions[rightChannel];
+        previousPositions[2] = positions[perpendicularChannel];
+        previousNanos = nanos;
+        havePrevious = true;
+        if (!plausible) return false;
+
+        localizer.update(
+                positions[leftChannel], positions[rightChannel], positions[perpendicularChannel],
+                velocities[leftChannel] * VELOCITY_SAMPLES_PER_S,
+                velocities[rightChannel] * VELOCITY_SAMPLES_PER_S,
+                velocities[perpendicularChannel] * VELOCITY_SAMPLES_PER_S,
+                nanos);
+        return true;
+    }
+
+    private boolean plausible(int pod, int position, short velocity, long nanos) {
+        // int subtraction wraps, as in DeadWheelLocalizer.
+        int counts = position - previousPositions[pod];
+        double seconds = (nanos - previousNanos) * 1e-9 + TIMING_SLACK_SECONDS;
+        return Math.abs((double) counts) <= maxCountsPerSecond * seconds
+                && Math.abs(velocity * VELOCITY_SAMPLES_PER_S) <= maxCountsPerSecond;
+    }
+
+    /**
+     * @return number of reads rejected as corrupt, counting the read after each corrupt one
+     */
+    public int getRejectedReads() {
+        return rejectedReads;
+    }
+
+    /**
+     * @return time taken by the last read, nanoseconds
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    public DeadWheelLocalizer getLocalizer() {
+        return localizer;
+    }
+}
@@ -0,0 +1,48 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+import java.util.Locale;
+
+/*
+ * Pose is a position and heading on the field: inches, and radians counter-clockwise from the +X axis.
+ *
+ * It is mutable on purpose, so that code running every loop can fill in a Pose it owns instead of
+ * allocating a new one.
+ */
+public class Pose {
+
+    public double x;
+    public double y;
+    public double heading;
+
+    public Pose() {
+    }
+
+    public Pose(double x, double y, double heading) {
+        set(x, y, heading);
+    }
+
+    public Pose set(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        return this;
+    }
+
+    public Pose set(Pose other) {
+        return set(other.x, other.y, other.heading);
+    }
+
+    /**
+     * @return the angle, wrapped into (-PI, PI]
+     */
+    public static double normalizeRadians(double angle) {
+        while (angle > Math.PI)   angle -= 2 * Math.PI;
+        while (angle <= -Math.PI) angle += 2 * Math.PI;
+        return angle;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "(%.2f, %.2f) %.1f deg", x, y, Math.toDegrees(heading));
+    }
+}
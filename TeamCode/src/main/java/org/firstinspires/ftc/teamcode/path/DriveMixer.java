@@ -0,0 +1,74 @@
+package org.firstinspires.ftc.teamcode.path;
+
+/*
+ * DriveMixer turns a velocity in the robot's frame into wheel powers for a tank or mecanum drive.
+ *
+ * Powers are the velocity divided by maxSpeed, the robot's speed at full power.  A turn rate becomes
+ * a wheel speed through turnRadius: half the track width for a tank drive, and half the track width
+ * plus half the wheel base for a mecanum drive.  When a wheel would need more than full power, all
+ * the powers are scaled down together, so the robot keeps its direction and slows down instead.
+ *
+ * The mecanum mix is the one used by moveRobot() in RobotAutoDriveToAprilTagOmni.
+ */
+public class DriveMixer {
+
+    public static final int LEFT  = 0;
+    public static final int RIGHT = 1;
+
+    public static final int LEFT_FRONT  = 0;
+    public static final int RIGHT_FRONT = 1;
+    public static final int LEFT_BACK   = 2;
+    public static final int RIGHT_BACK  = 3;
+
+    private final double maxSpeed;
+    private final double turnRadius;
+
+    /**
+     * @param maxSpeed    robot speed at full power, inches per second
+     * @param turnRadius  inches; see above
+     */
+    public DriveMixer(double maxSpeed, double turnRadius) {
+        this.maxSpeed = maxSpeed;
+        this.turnRadius = turnRadius;
+    }
+
+    /**
+     * @param forward  inches per second
+     * @param turn     radians per second, counter-clockwise
+     * @param powers   filled in with the LEFT and RIGHT powers
+     */
+    public void tank(double forward, double turn, double[] powers) {
+        double x   = forward / maxSpeed;
+        double yaw = turn * turnRadius / maxSpeed;
+        powers[LEFT]  = x - yaw;
+        powers[RIGHT] = x + yaw;
+        normalize(powers, 2);
+    }
+
+    /**
+     * @param forward  inches per second
+     * @param left     inches per second
+     * @param turn     radians per second, counter-clockwise
+     * @param powers   filled in with the LEFT_FRONT, RIGHT_FRONT, LEFT_BACK and RIGHT_BACK powers
+     */
+    public void mecanum(double forward, double left, double turn, double[] powers) {
+        double x   = forward / maxSpeed;
+        double y   = left / maxSpeed;
+        double yaw = turn * turnRadius / maxSpeed;
+        powers[LEFT_FRONT]  = x - y - yaw;
+        powers[RIGHT_FRONT] = x + y + yaw;
+        powers[LEFT_BACK]   = x + y - yaw;
+        powers[RIGHT_BACK]  = x - y + yaw;
+        normalize(powers, 4);
+    }
+
+    private static void normalize(double[] powers, int count) {
+        double max = 1.0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, Math.abs(powers[i]));
+        }
+        for (int i = 0; i < count; i++) {
+            powers[i] /= max;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode.path;
+
+import java.util.Arrays;
+
+/*
+ * Path is a chain of straight segments through a list of points on the field, in inches.
+ *
+ * Curves are paths with many short segments; a path may have thousands of them, and may cross
+ * itself.  The segments are kept in flat arrays along with their distance from the start of the
+ * path, and a PathIndex is built over them so that the segment nearest any point can be found
+ * without looking at every segment.
+ *
+ * Build one with Path.Builder:
+ *
+ *     Path path = new Path.Builder(0, 0).lineTo(24, 0).lineTo(48, 24).build();
+ */
+public class Path {
+
+    final int      segmentCount;
+    // Segment i goes from (startX[i], startY[i]) along the unit vector (directionX[i], directionY[i])
+    // for length[i] inches, and starts startDistance[i] inches along the path.
+    final double[] startX;
+    final double[] startY;
+    final double[] directionX;
+    final double[] directionY;
+    final double[] length;
+    final double[] startDistance;
+    final double   totalLength;
+    final PathIndex index;
+
+    /**
+     * Builds a Path from a starting point and the points it passes through.
+     */
+    public static class Builder {
+        private double[] xs = new double[16];
+        private double[] ys = new double[16];
+        private int count = 0;
+
+        public Builder(double x, double y) {
+            add(x, y);
+        }
+
+        /**
+         * Add a straight segment to the given point.  A point on top of the previous one is ignored.
+         */
+        public Builder lineTo(double x, double y) {
+            if (x != xs[count - 1] || y != ys[count - 1]) {
+                add(x, y);
+            }
+            return this;
+        }
+
+        private void add(double x, double y) {
+            if (count == xs.length) {
+                xs = Arrays.copyOf(xs, 2 * count);
+                ys = Arrays.copyOf(ys, 2 * count);
+            }
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+        }
+
+        public Path build() {
+            if (count < 2) {
+                throw new IllegalStateException("A path needs at least one segment");
+            }
+            return new Path(xs, ys, count);
+        }
+    }
+
+    private Path(double[] xs, double[] ys, int pointCount) {
+        segmentCount  = pointCount - 1;
+        startX        = new double[segmentCount];
+        startY        = new double[segmentCount];
+        directionX    = new double[segmentCount];
+        directionY    = new double[segmentCount];
+        length        = new double[segmentCount];
+        startDistance = new double[segmentCount];
+
+        double distance = 0;
+        for (int i = 0; i < segmentCount; i++) {
+            double dx = xs[i + 1] - xs[i];
+            double dy = ys[i + 1] - ys[i];
+            double segmentLength = Math.hypot(dx, dy);
+            startX[i] = xs[i];
+            startY[i] = ys[i];
+            directionX[i] = dx / segmentLength;
+            directionY[i] = dy / segmentLength;
+            length[i] = segmentLength;
+            startDistance[i] = distance;
+            distance += segmentLength;
+        }
+        totalLength = distance;
+        index = new PathIndex(this);
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return length of the whole path, inches
+     */
+    public double getLength() {
+        return totalLength;
+    }
+
+    public double getStartX() {
+        return startX[0];
+    }
+
+    public double getStartY() {
+        return startY[0];
+    }
+
+    public double getEndX() {
+        int last = segmentCount - 1;
+        return startX[last] + directionX[last] * length[last];
+    }
+
+    public double getEndY() {
+        int last = segmentCount - 1;
+        return startY[last] + directionY[last] * length[last];
+    }
+
+    /**
+     * @return how far along segment i the point nearest (x, y) is, in inches from its start
+     */
+    double project(int i, double x, double y) {
+        double along = (x - startX[i]) * directionX[i] + (y - startY[i]) * directionY[i];
+        return along < 0 ? 0 : (along > length[i] ? length[i] : along);
+    }
+
+    /**
+     * @return squared distance from (x, y) to segment i
+     */
+    double distanceSquared(int i, double x, double y) {
+        double along = project(i, x, y);
+        double dx = x - (startX[i] + directionX[i] * along);
+        double dy = y - (startY[i] + directionY[i] * along);
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Find the segment containing a distance along the path, starting from a segment known not to be
+     * past it.  Gallops forward then bisects, so the cost grows with the log of the segments skipped,
+     * not with the length of the path.
+     *
+     * @return the last segment starting at or before the distance
+     */
+    int segmentAt(double distance, int from) {
+        if (from >= segmentCount - 1 || startDistance[from + 1] > distance) {
+            return from;
+        }
+        int low = from + 1;
+        int step = 1;
+        int high = low + step;
+        while (high < segmentCount && startDistance[high] <= distance) {
+            low = high;
+            step *= 2;
+            high = low + step;
+        }
+        if (high > segmentCount) {
+            high = segmentCount;
+        }
+        // startDistance[low] <= distance, and high is past it or the end.
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (startDistance[middle] <= distance) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,198 @@
+package org.firstinspires.ftc.teamcode.path;
+
+import java.util.Arrays;
+
+/*
+ * PathIndex is a uniform grid over a Path: each cell lists the segments passing through it, so that
+ * the segment nearest a point is found by looking at the cells around that point, nearest first,
+ * rather than at every segment.
+ *
+ * Cells are sized so that each holds a few segments, with at most MAX_CELLS_PER_SIDE cells across.
+ * The cell lists are packed into one array (cellStart[c] to cellStart[c + 1] in cellSegments), so
+ * queries allocate nothing.
+ *
+ * Queries take a range of segment indices, so that a follower can keep to the part of the path it
+ * is on where the path crosses itself, and a maximum distance, beyond which they give up.
+ *
+ * A follower that is on the path does not need the grid at all: nearestAlong() walks the path on
+ * from the last nearest segment, and its cost depends on how far the robot moved, not on how
+ * finely the path is cut.
+ */
+class PathIndex {
+
+    static final int    MAX_CELLS_PER_SIDE  = 256;
+    static final double SEGMENTS_PER_CELL   = 2.0;
+
+    private final Path   path;
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int    columns;
+    private final int    rows;
+    private final int[]  cellStart;
+    private final int[]  cellSegments;
+
+    // Results of the last query.
+    int    foundSegment;
+    double foundDistanceSquared;
+
+    PathIndex(Path path) {
+        this.path = path;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < path.segmentCount; i++) {
+            double endX = path.startX[i] + path.directionX[i] * path.length[i];
+            double endY = path.startY[i] + path.directionY[i] * path.length[i];
+            minX = Math.min(minX, Math.min(path.startX[i], endX));
+            minY = Math.min(minY, Math.min(path.startY[i], endY));
+            maxX = Math.max(maxX, Math.max(path.startX[i], endX));
+            maxY = Math.max(maxY, Math.max(path.startY[i], endY));
+        }
+        double extent = Math.max(Math.max(maxX - minX, maxY - minY), 1e-3);
+        double meanLength = path.totalLength / path.segmentCount;
+        this.cellSize = Math.max(SEGMENTS_PER_CELL * meanLength, extent / MAX_CELLS_PER_SIDE);
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (int) (Math.ceil((maxX - minX) / cellSize)) + 1;
+        this.rows    = (int) (Math.ceil((maxY - minY) / cellSize)) + 1;
+
+        // Count the segments in each cell, then lay the lists out one after the other.
+        int cellCount = columns * rows;
+        cellStart = new int[cellCount + 1];
+        for (int i = 0; i < path.segmentCount; i++) {
+            for (int r = firstRow(i); r <= lastRow(i); r++) {
+                for (int c = firstColumn(i); c <= lastColumn(i); c++) {
+                    cellStart[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellSegments = new int[cellStart[cellCount]];
+        int[] fill = Arrays.copyOf(cellStart, cellCount);
+        for (int i = 0; i < path.segmentCount; i++) {
+            for (int r = firstRow(i); r <= lastRow(i); r++) {
+                for (int c = firstColumn(i); c <= lastColumn(i); c++) {
+                    cellSegments[fill[r * columns + c]++] = i;
+                }
+            }
+        }
+    }
+
+    // Cells covered by the bounding box of segment i.
+    private int firstColumn(int i) {
+        return column(Math.min(path.startX[i], path.startX[i] + path.directionX[i] * path.length[i]));
+    }
+
+    private int lastColumn(int i) {
+        return column(Math.max(path.startX[i], path.startX[i] + path.directionX[i] * path.length[i]));
+    }
+
+    private int firstRow(int i) {
+        return row(Math.min(path.startY[i], path.startY[i] + path.directionY[i] * path.length[i]));
+    }
+
+    private int lastRow(int i) {
+        return row(Math.max(path.startY[i], path.startY[i] + path.directionY[i] * path.length[i]));
+    }
+
+    private int column(double x) {
+        int c = (int) ((x - minX) / cellSize);
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    private int row(double y) {
+        int r = (int) ((y - minY) / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * Find the segment nearest (x, y) among segments first to last.  The result is in foundSegment
+     * (-1 if there is none within maxDistance) and foundDistanceSquared.
+     *
+     * Cells are visited in square rings around the point.  Every cell in ring r + 1 is at least
+     * r cells away, so once the best segment is closer than that, no further ring can beat it.
+     */
+    void nearest(double x, double y, int first, int last, double maxDistance) {
+        foundSegment = -1;
+        foundDistanceSquared = Double.MAX_VALUE;
+        double maxSquared = maxDistance * maxDistance;
+        int centerColumn = column(x);
+        int centerRow = row(y);
+        int maxRing = Math.max(columns, rows);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double ringDistance = (ring - 1) * cellSize;
+            if (ring > 0 && (ringDistance * ringDistance >= foundDistanceSquared || ringDistance * ringDistance > maxSquared)) {
+                break;
+            }
+            int r0 = centerRow - ring, r1 = centerRow + ring;
+            int c0 = centerColumn - ring, c1 = centerColumn + ring;
+            for (int r = Math.max(r0, 0); r <= Math.min(r1, rows - 1); r++) {
+                boolean edgeRow = r == r0 || r == r1;
+                int step = edgeRow ? 1 : c1 - c0;
+                for (int c = c0; c <= c1; c += Math.max(step, 1)) {
+                    if (c >= 0 && c < columns) {
+                        searchCell(r * columns + c, x, y, first, last);
+                    }
+                }
+            }
+        }
+        if (foundDistanceSquared > maxSquared) {
+            foundSegment = -1;
+        }
+    }
+
+    /**
+     * Find the segment nearest (x, y) by walking on from segment first, at most to last, while the
+     * distance keeps falling.  The result is in foundSegment and foundDistanceSquared.
+     *
+     * This assumes the distance falls and then rises along the walk, which holds near the path but
+     * not far from it, so callers should check foundDistanceSquared.  The walk gallops (1, 2, 4...
+     * segments) until the distance rises, then bisects the bracket on the direction of the slope,
+     * so it costs the log of the number of segments passed.
+     */
+    void nearestAlong(double x, double y, int first, int last) {
+        int low = first, bracketStart = first;
+        double lowSquared = path.distanceSquared(first, x, y);
+        int high = last;
+        for (int step = 1; low < last; step *= 2) {
+            int probe = Math.min(low + step, last);
+            double d = path.distanceSquared(probe, x, y);
+            if (d >= lowSquared) {
+                high = probe;
+                break;
+            }
+            bracketStart = low;
+            low = probe;
+            lowSquared = d;
+        }
+        // The nearest segment is in [bracketStart, high].  Ties go to the earlier segment.
+        while (bracketStart < high) {
+            int middle = (bracketStart + high) >>> 1;
+            if (path.distanceSquared(middle + 1, x, y) < path.distanceSquared(middle, x, y)) {
+                bracketStart = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        foundSegment = bracketStart;
+        foundDistanceSquared = path.distanceSquared(bracketStart, x, y);
+    }
+
+    private void searchCell(int cell, double x, double y, int first, int last) {
+        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+            int segment = cellSegments[k];
+            if (segment < first || segment > last) {
+                continue;
+            }
+            double d = path.distanceSquared(segment, x, y);
+            // Ties go to the earlier segment, so a point on a joint belongs to the segment ending there.
+            if (d < foundDistanceSquared || (d == foundDistanceSquared && segment < foundSegment)) {
+                foundDistanceSquared = d;
+                foundSegment = segment;
+            }
+        }
+    }
+}
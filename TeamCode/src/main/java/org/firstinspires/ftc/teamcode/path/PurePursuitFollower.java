@@ -0,0 +1,255 @@
+package org.firstinspires.ftc.teamcode.path;
+
+import org.firstinspires.ftc.teamcode.odometry.Pose;
+
+/*
+ * PurePursuitFollower drives a robot along a Path by steering, every loop, towards a point a fixed
+ * distance further along the path than the robot is (the lookahead point).
+ *
+ * Finding where the robot is on the path is the costly part on long paths.  Each loop it costs
+ * about the log of the number of segments the robot passed since the last loop:
+ *   - progress along the path only ever increases, so only segments from the current one onwards
+ *     are candidates (this keeps the follower on the right branch where the path crosses itself);
+ *   - of those, only the ones within windowLength inches of path ahead are candidates, and the
+ *     nearest is found by walking on from the current segment while the distance falls, with
+ *     galloping search;
+ *   - if that ends further than recoveryDistance from the robot (the robot was pushed off the
+ *     path), the window is searched through the path's spatial index, so the robot rejoins the
+ *     path where it left it rather than wherever a later part of the path happens to be nearest.
+ *     The search is limited to twice recoveryDistance at first, and the limit doubles each loop
+ *     the robot stays that far off, so one loop never scans the whole grid; until the search
+ *     reaches the window, the robot steers by where the walk ended.
+ * The end of the window and the lookahead point are also found from the current segment by
+ * galloping search.
+ *
+ * The output is a velocity in the robot's frame: forward and left in inches per second and turn in
+ * radians per second, for DriveMixer to turn into motor powers.  For a tank drive the robot follows
+ * the arc through the lookahead point; for a holonomic (mecanum) drive it moves straight at the
+ * lookahead point while turning to face along the path.  The speed is reduced towards the end so
+ * that the robot stops on the last point.
+ *
+ * Nothing is allocated by update().
+ */
+public class PurePursuitFollower {
+
+    public enum Drive { TANK, HOLONOMIC }
+
+    public static class Parameters {
+        public Drive  drive             = Drive.HOLONOMIC;
+        /** Distance along the path to the point steered towards, inches. */
+        public double lookahead         = 12.0;
+        /** Cruise speed, inches per second. */
+        public double maxSpeed          = 40.0;
+        /** Turn rate limit, radians per second. */
+        public double maxTurnRate       = 4.0;
+        /** Deceleration used to stop at the end of the path, inches per second squared. */
+        public double maxDeceleration   = 40.0;
+        /** Holonomic only: turn rate per radian of heading error. */
+        public double headingGain       = 3.0;
+        /** Length of path ahead searched for the robot's position each loop, inches. */
+        public double windowLength      = 24.0;
+        /** Distance off the path beyond which the whole rest of the path is searched, inches. */
+        public double recoveryDistance  = 12.0;
+        /** Distance from the end at which the path is finished, inches. */
+        public double endTolerance      = 1.0;
+    }
+
+    private final Path       path;
+    private final PathIndex  index;
+    private final Parameters parameters;
+
+    private boolean started;
+    private boolean finished;
+    private int     segment;
+    private int     lookaheadSegment;
+    private double  distanceAlong;
+    private double  crossTrackError;
+    private double  lookaheadX;
+    private double  lookaheadY;
+    private int     recoveries;
+    private double  recoveryRadius;
+
+    private double  forward;
+    private double  left;
+    private double  turn;
+
+    public PurePursuitFollower(Path path, Parameters parameters) {
+        this.path = path;
+        this.index = path.index;
+        this.parameters = parameters;
+        reset();
+    }
+
+    public PurePursuitFollower(Path path) {
+        this(path, new Parameters());
+    }
+
+    /**
+     * Start again from the beginning of the path.
+     */
+    public void reset() {
+        started = false;
+        finished = false;
+        segment = 0;
+        lookaheadSegment = 0;
+        distanceAlong = 0;
+        recoveries = 0;
+        recoveryRadius = 2 * parameters.recoveryDistance;
+        forward = left = turn = 0;
+    }
+
+    public void update(Pose pose) {
+        update(pose.x, pose.y, pose.heading);
+    }
+
+    /**
+     * Compute the velocity for the robot at the given pose.
+     */
+    public void update(double x, double y, double heading) {
+        int last = path.segmentCount - 1;
+        if (!started) {
+            // Anywhere on the path, but ties go to the earliest segment.
+            index.nearest(x, y, 0, last, Double.MAX_VALUE);
+            started = true;
+        } else {
+            int windowEnd = path.segmentAt(distanceAlong + parameters.windowLength, segment);
+            index.nearestAlong(x, y, segment, windowEnd);
+            if (index.foundDistanceSquared > parameters.recoveryDistance * parameters.recoveryDistance) {
+                int walkSegment = index.foundSegment;
+                double walkDistanceSquared = index.foundDistanceSquared;
+                index.nearest(x, y, segment, windowEnd, parameters.recoveryDistance);
+                if (index.foundSegment < 0) {
+                    recoveries++;
+                    index.nearest(x, y, segment, windowEnd, recoveryRadius);
+                    if (index.foundSegment < 0) {
+                        // Nothing that close: keep to where the walk ended, and look further next loop.
+                        index.foundSegment = walkSegment;
+                        index.foundDistanceSquared = walkDistanceSquared;
+                        recoveryRadius *= 2;
+                    }
+                }
+            } else {
+                recoveryRadius = 2 * parameters.recoveryDistance;
+            }
+        }
+        segment = Math.max(segment, index.foundSegment);
+        crossTrackError = Math.sqrt(index.foundDistanceSquared);
+        distanceAlong = Math.max(distanceAlong, path.startDistance[segment] + path.project(segment, x, y));
+
+        // Lookahead point, clamped to the end of the path.
+        double target = Math.min(distanceAlong + parameters.lookahead, path.totalLength);
+        lookaheadSegment = path.segmentAt(target, Math.max(lookaheadSegment, segment));
+        double along = Math.min(target - path.startDistance[lookaheadSegment], path.length[lookaheadSegment]);
+        lookaheadX = path.startX[lookaheadSegment] + path.directionX[lookaheadSegment] * along;
+        lookaheadY = path.startY[lookaheadSegment] + path.directionY[lookaheadSegment] * along;
+
+        double remaining = path.totalLength - distanceAlong;
+        double toEnd = Math.hypot(path.getEndX() - x, path.getEndY() - y);
+        if (finished || (remaining <= parameters.endTolerance && toEnd <= parameters.endTolerance)) {
+            finished = true;
+            forward = left = turn = 0;
+            return;
+        }
+
+        double speed = Math.min(parameters.maxSpeed, Math.sqrt(2 * parameters.maxDeceleration * Math.max(remaining, toEnd)));
+
+        // Lookahead point in the robot's frame.
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double dx = lookaheadX - x;
+        double dy = lookaheadY - y;
+        double robotX =  cos * dx + sin * dy;
+        double robotY = -sin * dx + cos * dy;
+        double distance = Math.hypot(robotX, robotY);
+
+        if (parameters.drive == Drive.HOLONOMIC) {
+            double scale = distance > 1e-9 ? speed / distance : 0;
+            forward = robotX * scale;
+            left    = robotY * scale;
+            double pathHeading = Math.atan2(path.directionY[lookaheadSegment], path.directionX[lookaheadSegment]);
+            turn = clip(parameters.headingGain * Pose.normalizeRadians(pathHeading - heading), parameters.maxTurnRate);
+        } else {
+            left = 0;
+            if (robotX <= 0) {
+                // Point behind: turn towards it on the spot.
+                forward = 0;
+                turn = robotY >= 0 ? parameters.maxTurnRate : -parameters.maxTurnRate;
+            } else {
+                double curvature = 2 * robotY / (distance * distance);
+                forward = speed;
+                turn = speed * curvature;
+                if (Math.abs(turn) > parameters.maxTurnRate) {
+                    // Keep the arc, slow down along it.
+                    forward *= parameters.maxTurnRate / Math.abs(turn);
+                    turn = clip(turn, parameters.maxTurnRate);
+                }
+            }
+        }
+    }
+
+    private static double clip(double value, double limit) {
+        return value > limit ? limit : (value < -limit ? -limit : value);
+    }
+
+    /**
+     * @return forward velocity in the robot's frame, inches per second
+     */
+    public double getForward() {
+        return forward;
+    }
+
+    /**
+     * @return leftward velocity in the robot's frame, inches per second (always 0 for a tank drive)
+     */
+    public double getLeft() {
+        return left;
+    }
+
+    /**
+     * @return turn rate, radians per second counter-clockwise
+     */
+    public double getTurn() {
+        return turn;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return distance from the robot to the path, inches
+     */
+    public double getCrossTrackError() {
+        return crossTrackError;
+    }
+
+    /**
+     * @return progress along the path, inches
+     */
+    public double getDistanceAlong() {
+        return distanceAlong;
+    }
+
+    public double getLookaheadX() {
+        return lookaheadX;
+    }
+
+    public double getLookaheadY() {
+        return lookaheadY;
+    }
+
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return number of loops in which the robot was further than recoveryDistance from the path
+     */
+    public int getRecoveries() {
+        return recoveries;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
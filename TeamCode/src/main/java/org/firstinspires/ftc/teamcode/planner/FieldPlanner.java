@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+import org.firstinspires.ftc.teamcode.path.Path;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * FieldPlanner plans routes between field positions with Theta*, and remembers them.
+ *
+ * Autonomous routines and TeleOp shortcuts tend to ask for the same few routes again and again
+ * (e.g. from the submersible to the observation zone), so routes are cached by their start and goal
+ * cells, least recently used out first.  A cached route is reused as is while the grid has not
+ * changed.  After a change, it is reused if every leg of it is still clear, which costs a few line
+ * of sight checks; otherwise it is planned again.  Finding that there is no route is cached too,
+ * but only until the grid changes.
+ *
+ * Routes come out as a Path for PurePursuitFollower, starting at the exact start position and ending
+ * at the exact goal position rather than at cell centers.
+ */
+public class FieldPlanner {
+
+    private static class Route {
+        int[] cells;
+        int   version;
+    }
+
+    private final OccupancyGrid grid;
+    private final GridPlanner   planner;
+    private final Map<Long, Route> cache;
+
+    private int[] waypoints = new int[0];
+    private int   waypointCount;
+    private double fromX, fromY, toX, toY;
+
+    private int hits;
+    private int rechecks;
+    private int misses;
+
+    /**
+     * @param cacheSize  number of routes remembered
+     */
+    public FieldPlanner(OccupancyGrid grid, final int cacheSize) {
+        this.grid = grid;
+        this.planner = new GridPlanner(grid);
+        this.cache = new LinkedHashMap<Long, Route>(2 * cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Route> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Plan a route between two field positions.  A position inside a blocked cell (e.g. the robot
+     * pressed against a wall) is moved to the nearest free cell.
+     *
+     * @return the number of waypoints, or 0 if there is no route
+     */
+    public int route(double fromX, double fromY, double toX, double toY) {
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.toX = toX;
+        this.toY = toY;
+        waypointCount = 0;
+
+        int start = grid.nearestFree(grid.cell(fromX, fromY));
+        int goal  = grid.nearestFree(grid.cell(toX, toY));
+        if (start < 0 || goal < 0) {
+            return 0;
+        }
+
+        Long key = ((long) start << 32) | goal;
+        Route cached = cache.get(key);
+        if (cached != null) {
+            if (cached.version == grid.getVersion()) {
+                hits++;
+                return use(cached.cells, cached.cells.length);
+            }
+            if (cached.cells.length > 0 && stillClear(cached.cells)) {
+                rechecks++;
+                cached.version = grid.getVersion();
+                return use(cached.cells, cached.cells.length);
+            }
+        }
+
+        misses++;
+        int count = planner.plan(start, goal, true);
+        Route route = cached != null ? cached : new Route();
+        route.cells = Arrays.copyOf(planner.getWaypoints(), count);
+        route.version = grid.getVersion();
+        cache.put(key, route);
+        return use(route.cells, count);
+    }
+
+    private boolean stillClear(int[] cells) {
+        for (int i = 1; i < cells.length; i++) {
+            if (!grid.lineOfSight(cells[i - 1], cells[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int use(int[] cells, int count) {
+        waypoints = cells;
+        waypointCount = count;
+        return count;
+    }
+
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    /**
+     * @return field X of waypoint i of the last route; the first and last are the requested positions
+     */
+    public double getWaypointX(int i) {
+        return i == 0 ? fromX : (i == waypointCount - 1 ? toX : grid.x(waypoints[i]));
+    }
+
+    public double getWaypointY(int i) {
+        return i == 0 ? fromY : (i == waypointCount - 1 ? toY : grid.y(waypoints[i]));
+    }
+
+    /**
+     * @return the last route as a Path, or null if there was none
+     */
+    public Path toPath() {
+        return toPath(grid, waypoints, waypointCount, fromX, fromY, toX, toY);
+    }
+
+    /**
+     * Make a Path through waypoint cells, replacing the first and last with exact positions.
+     */
+    public static Path toPath(OccupancyGrid grid, int[] cells, int count, double fromX, double fromY, double toX, double toY) {
+        if (count == 0) {
+            return null;
+        }
+        Path.Builder builder = new Path.Builder(fromX, fromY);
+        for (int i = 1; i < count - 1; i++) {
+            builder.lineTo(grid.x(cells[i]), grid.y(cells[i]));
+        }
+        builder.lineTo(toX, toY);
+        if (fromX == toX && fromY == toY) {
+            // Already there: a path needs a segment, so make a tiny one.
+            builder.lineTo(toX + 1e-3, toY);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return routes reused without any check
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return routes reused after checking them against a changed grid
+     */
+    public int getRechecks() {
+        return rechecks;
+    }
+
+    /**
+     * @return routes planned
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    public GridPlanner getPlanner() {
+        return planner;
+    }
+}
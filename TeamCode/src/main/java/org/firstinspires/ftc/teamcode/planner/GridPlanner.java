@@ -0,0 +1,286 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+/*
+ * GridPlanner finds the shortest route between two cells of an OccupancyGrid, with A* or Theta*.
+ *
+ * A* moves between the eight neighbours of each cell, so its routes zig-zag at 45 degree angles;
+ * they are straightened afterwards by dropping every waypoint the robot can see past.  Theta* lets a
+ * cell's parent be any cell in line of sight, so its routes are made of straight lines at any angle
+ * to begin with, and are usually a little shorter.
+ *
+ * Everything lives in arrays sized once for the grid.  Rather than clearing them before each search,
+ * each cell records the number of the search that last touched it, so a search costs only the cells
+ * it visits.  The open set is a binary heap of cells with lazy deletion: a cell whose cost improves
+ * is pushed again, and stale entries are skipped when popped.
+ */
+public class GridPlanner {
+
+    static final double SQRT2 = Math.sqrt(2.0);
+    static final float  INFINITY = Float.POSITIVE_INFINITY;
+
+    // Neighbour offsets: four sides, then four diagonals.
+    static final int[] NEIGHBOR_COLUMN = { 1, -1, 0, 0, 1, -1, 1, -1 };
+    static final int[] NEIGHBOR_ROW    = { 0, 0, 1, -1, 1, 1, -1, -1 };
+
+    private final OccupancyGrid grid;
+    private final int columns;
+
+    private final float[]   cost;
+    private final int[]     parent;
+    private final int[]     searchOf;
+    private final boolean[] closed;
+    private final int[]     heapCells;
+    private final float[]   heapKeys;
+    private int heapSize;
+    private int search = 0;
+
+    private final int[] route;
+    private final int[] waypoints;
+    private int   waypointCount;
+    private int   expanded;
+    private float goalCost;
+
+    public GridPlanner(OccupancyGrid grid) {
+        this.grid = grid;
+        this.columns = grid.columns;
+        int cells = grid.cellCount;
+        cost      = new float[cells];
+        parent    = new int[cells];
+        searchOf  = new int[cells];
+        closed    = new boolean[cells];
+        // Every cell can be pushed once per neighbour that improves it.
+        heapCells = new int[8 * cells + 1];
+        heapKeys  = new float[8 * cells + 1];
+        route     = new int[cells];
+        waypoints = new int[cells];
+    }
+
+    /**
+     * Plan a route.  Start and goal must be free cells (see OccupancyGrid.nearestFree()).
+     *
+     * @param anyAngle  true for Theta*, false for A*
+     * @return the number of waypoints (start and goal included), or 0 if there is no route
+     */
+    public int plan(int start, int goal, boolean anyAngle) {
+        waypointCount = 0;
+        expanded = 0;
+        if (grid.isBlocked(start) || grid.isBlocked(goal)) {
+            return 0;
+        }
+        search++;
+        heapSize = 0;
+        touch(start);
+        cost[start] = 0;
+        parent[start] = start;
+        push(start, heuristic(start, goal));
+
+        while (heapSize > 0) {
+            float key = heapKeys[0];
+            int cell = pop();
+            if (closed[cell] || key > cost[cell] + heuristic(cell, goal) + 1e-3f) {
+                continue;
+            }
+            closed[cell] = true;
+            expanded++;
+            if (cell == goal) {
+                goalCost = cost[goal];
+                return extract(start, goal, anyAngle);
+            }
+
+            int c = cell % columns, r = cell / columns;
+            for (int k = 0; k < 8; k++) {
+                int neighbor = neighbor(grid, c, r, k);
+                if (neighbor < 0) {
+                    continue;
+                }
+                touch(neighbor);
+                if (closed[neighbor]) {
+                    continue;
+                }
+                int from = cell;
+                float newCost;
+                int grandparent = parent[cell];
+                if (anyAngle && grandparent != cell && grid.lineOfSight(grandparent, neighbor)) {
+                    from = grandparent;
+                    newCost = cost[grandparent] + distance(grandparent, neighbor);
+                } else {
+                    newCost = cost[cell] + (k < 4 ? 1.0f : (float) SQRT2);
+                }
+                if (newCost < cost[neighbor]) {
+                    cost[neighbor] = newCost;
+                    parent[neighbor] = from;
+                    push(neighbor, newCost + heuristic(neighbor, goal));
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the neighbour of cell (c, r) in direction k, or -1 if it is off the grid or blocked.
+     *         Diagonal moves also need both cells beside them free, so routes do not cut corners.
+     */
+    static int neighbor(OccupancyGrid grid, int c, int r, int k) {
+        int nc = c + NEIGHBOR_COLUMN[k], nr = r + NEIGHBOR_ROW[k];
+        if (nc < 0 || nc >= grid.columns || nr < 0 || nr >= grid.rows) {
+            return -1;
+        }
+        int neighbor = nr * grid.columns + nc;
+        if (grid.isBlocked(neighbor)) {
+            return -1;
+        }
+        if (k >= 4 && (grid.isBlocked(r * grid.columns + nc) || grid.isBlocked(nr * grid.columns + c))) {
+            return -1;
+        }
+        return neighbor;
+    }
+
+    private void touch(int cell) {
+        if (searchOf[cell] != search) {
+            searchOf[cell] = search;
+            cost[cell] = INFINITY;
+            closed[cell] = false;
+        }
+    }
+
+    private float distance(int a, int b) {
+        int dc = a % columns - b % columns, dr = a / columns - b / columns;
+        return (float) Math.sqrt(dc * dc + dr * dr);
+    }
+
+    private float heuristic(int cell, int goal) {
+        // Straight line distance: admissible for both A* (eight neighbours) and Theta*.
+        return distance(cell, goal);
+    }
+
+    private int extract(int start, int goal, boolean anyAngle) {
+        int count = 0;
+        for (int cell = goal; ; cell = parent[cell]) {
+            route[count++] = cell;
+            if (cell == start) {
+                break;
+            }
+        }
+        // Reverse into start-to-goal order.
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int t = route[i];
+            route[i] = route[j];
+            route[j] = t;
+        }
+        if (anyAngle) {
+            System.arraycopy(route, 0, waypoints, 0, count);
+            waypointCount = count;
+        } else {
+            waypointCount = smooth(grid, route, count, waypoints);
+        }
+        return waypointCount;
+    }
+
+    /**
+     * Straighten a route: keep only the waypoints the robot cannot see past.
+     *
+     * @return the number of waypoints written to out
+     */
+    static int smooth(OccupancyGrid grid, int[] cells, int count, int[] out) {
+        if (count == 0) {
+            return 0;
+        }
+        int written = 0;
+        int anchor = 0;
+        out[written++] = cells[0];
+        while (anchor < count - 1) {
+            // Furthest cell along the route still in sight of the anchor.
+            int next = anchor + 1;
+            while (next + 1 < count && grid.lineOfSight(cells[anchor], cells[next + 1])) {
+                next++;
+            }
+            out[written++] = cells[next];
+            anchor = next;
+        }
+        return written;
+    }
+
+    /**
+     * @return the waypoints of the last plan, as cells; valid until the next plan
+     */
+    public int[] getWaypoints() {
+        return waypoints;
+    }
+
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    /**
+     * @return cost of the last route before straightening, in cells
+     */
+    double getCost() {
+        return waypointCount == 0 ? INFINITY : goalCost;
+    }
+
+    /**
+     * @return number of cells expanded by the last plan
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * @return length of the last route, inches
+     */
+    public double getLength() {
+        return length(grid, waypoints, waypointCount);
+    }
+
+    static double length(OccupancyGrid grid, int[] cells, int count) {
+        double length = 0;
+        for (int i = 1; i < count; i++) {
+            length += Math.hypot(grid.x(cells[i]) - grid.x(cells[i - 1]), grid.y(cells[i]) - grid.y(cells[i - 1]));
+        }
+        return length;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Binary heap of cells, smallest key first
+    //----------------------------------------------------------------------------------------------
+
+    private void push(int cell, float key) {
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heapKeys[up] <= key) {
+                break;
+            }
+            heapCells[i] = heapCells[up];
+            heapKeys[i] = heapKeys[up];
+            i = up;
+        }
+        heapCells[i] = cell;
+        heapKeys[i] = key;
+    }
+
+    private int pop() {
+        int top = heapCells[0];
+        int lastCell = heapCells[--heapSize];
+        float lastKey = heapKeys[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= lastKey) {
+                break;
+            }
+            heapCells[i] = heapCells[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapCells[i] = lastCell;
+        heapKeys[i] = lastKey;
+        return top;
+    }
+}
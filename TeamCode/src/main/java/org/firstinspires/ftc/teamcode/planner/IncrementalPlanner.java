@@ -0,0 +1,356 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+import java.util.Arrays;
+
+/*
+ * IncrementalPlanner keeps a route to one goal up to date as the robot moves and obstacles come and
+ * go, using D* Lite (Koenig and Likhachev, 2002).
+ *
+ * D* Lite searches backwards, from the goal, and remembers the cost to the goal of every cell it has
+ * looked at.  When cells of the OccupancyGrid change between blocked and free, only the costs that
+ * depend on those cells are repaired, which usually means re-examining a small patch of cells around
+ * the change rather than searching the field again.  As the robot moves, the start changes without
+ * any search at all.
+ *
+ * Moves are the same as GridPlanner's: eight neighbours, no cutting of blocked corners, and the
+ * route is straightened the same way afterwards.
+ *
+ * Use: plan() once for a goal, then every loop setStart() with the robot's cell and replan(), which
+ * takes the grid's changes and does nothing more when there are none.
+ */
+public class IncrementalPlanner {
+
+    static final float INFINITY = Float.POSITIVE_INFINITY;
+
+    private final OccupancyGrid grid;
+    private final int columns;
+
+    private final float[] g;
+    private final float[] rhs;
+    private final float[] key1;
+    private final float[] key2;
+    // Indexed binary heap, so that a cell's key can be changed or the cell removed in place.
+    private final int[]   heap;
+    private final int[]   heapIndex;
+    private int heapSize;
+
+    private int   start = -1;
+    private int   goal = -1;
+    private int   last;
+    private float km;
+
+    private final int[] changes;
+    private final int[] route;
+    private final int[] waypoints;
+    private int waypointCount;
+    private int expanded;
+
+    public IncrementalPlanner(OccupancyGrid grid) {
+        this.grid = grid;
+        this.columns = grid.columns;
+        int cells = grid.cellCount;
+        g         = new float[cells];
+        rhs       = new float[cells];
+        key1      = new float[cells];
+        key2      = new float[cells];
+        heap      = new int[cells];
+        heapIndex = new int[cells];
+        changes   = new int[cells];
+        route     = new int[cells];
+        waypoints = new int[cells];
+    }
+
+    /**
+     * Plan from scratch to a new goal.  Start and goal must be free cells.
+     *
+     * @return the number of waypoints, or 0 if there is no route
+     */
+    public int plan(int start, int goal) {
+        this.start = start;
+        this.goal = goal;
+        this.last = start;
+        this.km = 0;
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        Arrays.fill(heapIndex, -1);
+        heapSize = 0;
+        // Changes so far are already in the grid we are about to search.
+        grid.takeChanges(changes);
+
+        expanded = 0;
+        rhs[goal] = 0;
+        insert(goal, heuristic(start, goal), 0);
+        computeShortestPath();
+        return extract();
+    }
+
+    /**
+     * Move the start, e.g. to the robot's current cell.  Costs nothing until the next replan().
+     */
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    /**
+     * Repair the route for the grid's changes since the last plan or replan, and for the new start.
+     *
+     * @return the number of waypoints, or 0 if there is no route
+     */
+    public int replan() {
+        if (goal < 0) {
+            return 0;
+        }
+        expanded = 0;
+        int count = grid.takeChanges(changes);
+        if (count > 0) {
+            // Keys computed for the old start are still valid lower bounds once km is added.
+            km += heuristic(last, start);
+            last = start;
+            for (int i = 0; i < count; i++) {
+                int cell = changes[i];
+                updateVertex(cell);
+                int c = cell % columns, r = cell / columns;
+                for (int k = 0; k < 8; k++) {
+                    int nc = c + GridPlanner.NEIGHBOR_COLUMN[k], nr = r + GridPlanner.NEIGHBOR_ROW[k];
+                    if (nc >= 0 && nc < columns && nr >= 0 && nr < grid.rows) {
+                        updateVertex(nr * columns + nc);
+                    }
+                }
+            }
+        }
+        computeShortestPath();
+        return extract();
+    }
+
+    private void computeShortestPath() {
+        while (heapSize > 0) {
+            int u = heap[0];
+            float startKey1 = Math.min(g[start], rhs[start]) + km;
+            float startKey2 = Math.min(g[start], rhs[start]);
+            if (!less(key1[u], key2[u], startKey1, startKey2) && rhs[start] == g[start]) {
+                break;
+            }
+            expanded++;
+            float oldKey1 = key1[u], oldKey2 = key2[u];
+            float m = Math.min(g[u], rhs[u]);
+            float newKey1 = m + heuristic(start, u) + km, newKey2 = m;
+            if (less(oldKey1, oldKey2, newKey1, newKey2)) {
+                update(u, newKey1, newKey2);
+            } else if (g[u] > rhs[u]) {
+                // u got cheaper: its neighbours can only get cheaper through it.
+                g[u] = rhs[u];
+                remove(u);
+                int c = u % columns, r = u / columns;
+                for (int k = 0; k < 8; k++) {
+                    int neighbor = GridPlanner.neighbor(grid, c, r, k);
+                    if (neighbor >= 0 && neighbor != goal) {
+                        float through = g[u] + (k < 4 ? 1.0f : (float) GridPlanner.SQRT2);
+                        if (through < rhs[neighbor]) {
+                            rhs[neighbor] = through;
+                            queue(neighbor);
+                        }
+                    }
+                }
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u);
+                updateNeighbors(u);
+            }
+        }
+    }
+
+    private void updateNeighbors(int cell) {
+        int c = cell % columns, r = cell / columns;
+        for (int k = 0; k < 8; k++) {
+            int neighbor = GridPlanner.neighbor(grid, c, r, k);
+            if (neighbor >= 0) {
+                updateVertex(neighbor);
+            }
+        }
+    }
+
+    private void updateVertex(int u) {
+        if (u != goal) {
+            float best = INFINITY;
+            if (!grid.isBlocked(u)) {
+                int c = u % columns, r = u / columns;
+                for (int k = 0; k < 8; k++) {
+                    int neighbor = GridPlanner.neighbor(grid, c, r, k);
+                    if (neighbor >= 0) {
+                        float through = g[neighbor] + (k < 4 ? 1.0f : (float) GridPlanner.SQRT2);
+                        if (through < best) {
+                            best = through;
+                        }
+                    }
+                }
+            }
+            rhs[u] = best;
+        }
+        queue(u);
+    }
+
+    /**
+     * Put u in the queue, take it out, or change its key, depending on whether it is consistent.
+     */
+    private void queue(int u) {
+        boolean consistent = g[u] == rhs[u];
+        if (heapIndex[u] >= 0) {
+            if (consistent) {
+                remove(u);
+            } else {
+                float m = Math.min(g[u], rhs[u]);
+                update(u, m + heuristic(start, u) + km, m);
+            }
+        } else if (!consistent) {
+            float m = Math.min(g[u], rhs[u]);
+            insert(u, m + heuristic(start, u) + km, m);
+        }
+    }
+
+    private float heuristic(int a, int b) {
+        int dc = a % columns - b % columns, dr = a / columns - b / columns;
+        return (float) Math.sqrt(dc * dc + dr * dr);
+    }
+
+    /**
+     * Walk downhill in cost from the start to the goal, then straighten.
+     */
+    private int extract() {
+        waypointCount = 0;
+        if (grid.isBlocked(start) || g[start] == INFINITY) {
+            return 0;
+        }
+        int count = 0;
+        int cell = start;
+        route[count++] = cell;
+        while (cell != goal) {
+            int c = cell % columns, r = cell / columns;
+            int next = -1;
+            float best = INFINITY;
+            for (int k = 0; k < 8; k++) {
+                int neighbor = GridPlanner.neighbor(grid, c, r, k);
+                if (neighbor >= 0) {
+                    float through = g[neighbor] + (k < 4 ? 1.0f : (float) GridPlanner.SQRT2);
+                    if (through < best) {
+                        best = through;
+                        next = neighbor;
+                    }
+                }
+            }
+            if (next < 0 || count == route.length) {
+                return 0;
+            }
+            cell = next;
+            route[count++] = cell;
+        }
+        waypointCount = GridPlanner.smooth(grid, route, count, waypoints);
+        return waypointCount;
+    }
+
+    public int[] getWaypoints() {
+        return waypoints;
+    }
+
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    /**
+     * @return cost of the route before straightening, in cells
+     */
+    double getCost() {
+        return g[start];
+    }
+
+    /**
+     * @return number of cells taken off the queue by the last plan or replan
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    public double getLength() {
+        return GridPlanner.length(grid, waypoints, waypointCount);
+    }
+
+    public int getGoal() {
+        return goal;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Indexed binary heap of cells, ordered by (key1, key2)
+    //----------------------------------------------------------------------------------------------
+
+    private static boolean less(float a1, float a2, float b1, float b2) {
+        return a1 < b1 || (a1 == b1 && a2 < b2);
+    }
+
+    private boolean lessAt(int i, int j) {
+        return less(key1[heap[i]], key2[heap[i]], key1[heap[j]], key2[heap[j]]);
+    }
+
+    private void insert(int cell, float k1, float k2) {
+        key1[cell] = k1;
+        key2[cell] = k2;
+        heap[heapSize] = cell;
+        heapIndex[cell] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void update(int cell, float k1, float k2) {
+        key1[cell] = k1;
+        key2[cell] = k2;
+        int i = heapIndex[cell];
+        siftUp(i);
+        siftDown(heapIndex[cell]);
+    }
+
+    private void remove(int cell) {
+        int i = heapIndex[cell];
+        heapIndex[cell] = -1;
+        int lastCell = heap[--heapSize];
+        if (i == heapSize) {
+            return;
+        }
+        heap[i] = lastCell;
+        heapIndex[lastCell] = i;
+        siftUp(i);
+        siftDown(heapIndex[lastCell]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (!lessAt(i, up)) {
+                break;
+            }
+            swap(i, up);
+            i = up;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && lessAt(child + 1, child)) {
+                child++;
+            }
+            if (!lessAt(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i], b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        heapIndex[b] = i;
+        heapIndex[a] = j;
+    }
+}
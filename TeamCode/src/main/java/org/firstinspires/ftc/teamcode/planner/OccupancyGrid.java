@@ -0,0 +1,371 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+import java.util.Arrays;
+
+/*
+ * OccupancyGrid divides the field into square cells, and records which cells the center of the robot
+ * cannot go to: those within robotRadius of an obstacle or of the field walls.  Planning for a point
+ * on this "inflated" grid is then the same as planning for the whole robot on the real field.
+ *
+ * Coordinates are field coordinates in inches, with (0, 0) at the center of the field, so x and y go
+ * from -72 to +72.  Cells are numbered row by row from the (-72, -72) corner: cell = row * columns +
+ * column.
+ *
+ * Obstacles are circles or rectangles, and may be moved or removed at any time, e.g. as another robot
+ * is seen moving by a camera.  Each obstacle marks the cells under it; each marked cell blocks the
+ * cells within robotRadius of it, counted so that overlapping obstacles can come and go in any order.
+ * Cells that change between blocked and free are collected for IncrementalPlanner, and every change
+ * bumps getVersion() so that cached routes know to check themselves.
+ */
+public class OccupancyGrid {
+
+    public static final double FIELD_INCHES     = 144.0;
+    public static final int    MAX_OBSTACLES    = 64;
+
+    static final int CIRCLE    = 1;
+    static final int RECTANGLE = 2;
+
+    final int     columns;
+    final int     rows;
+    final int     cellCount;
+    final double  cellSize;
+    final double  robotRadius;
+
+    // Number of obstacles over each cell.
+    private final short[] markedBy;
+    // Number of marked cells (and walls) within robotRadius of each cell; blocked when not zero.
+    private final short[] blockedBy;
+    // Offsets of the cells within robotRadius, as (column, row) pairs.
+    private final int[]   inflation;
+
+    private final int[]    shapes = new int[MAX_OBSTACLES];
+    private final double[] shapeA = new double[MAX_OBSTACLES];
+    private final double[] shapeB = new double[MAX_OBSTACLES];
+    private final double[] shapeC = new double[MAX_OBSTACLES];
+    private final double[] shapeD = new double[MAX_OBSTACLES];
+
+    // Cells whose blocked state changed since takeChanges(), without duplicates.
+    private final int[]     changes;
+    private final boolean[] changed;
+    private int changeCount = 0;
+    private int version = 0;
+
+    /**
+     * @param cellSize     inches; 2 gives a 72 by 72 grid
+     * @param robotRadius  inches from the robot's center to its furthest corner, plus any margin
+     */
+    public OccupancyGrid(double cellSize, double robotRadius) {
+        this.cellSize = cellSize;
+        this.robotRadius = robotRadius;
+        this.columns = (int) Math.ceil(FIELD_INCHES / cellSize);
+        this.rows = columns;
+        this.cellCount = columns * rows;
+        this.markedBy = new short[cellCount];
+        this.blockedBy = new short[cellCount];
+        this.changes = new int[cellCount];
+        this.changed = new boolean[cellCount];
+
+        int reach = (int) Math.ceil(robotRadius / cellSize);
+        int[] offsets = new int[2 * (2 * reach + 1) * (2 * reach + 1)];
+        int count = 0;
+        for (int dr = -reach; dr <= reach; dr++) {
+            for (int dc = -reach; dc <= reach; dc++) {
+                if (Math.hypot(dc, dr) * cellSize <= robotRadius) {
+                    offsets[count++] = dc;
+                    offsets[count++] = dr;
+                }
+            }
+        }
+        this.inflation = Arrays.copyOf(offsets, count);
+
+        // The walls block every cell whose center is closer than robotRadius to them.
+        for (int cell = 0; cell < cellCount; cell++) {
+            double x = x(cell), y = y(cell);
+            double wall = FIELD_INCHES / 2 - Math.max(Math.abs(x), Math.abs(y));
+            if (wall < robotRadius) {
+                blockedBy[cell]++;
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Cells and coordinates
+    //----------------------------------------------------------------------------------------------
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public double getRobotRadius() {
+        return robotRadius;
+    }
+
+    /**
+     * @return the cell containing a field position, clamped to the field
+     */
+    public int cell(double x, double y) {
+        return row(y) * columns + column(x);
+    }
+
+    int column(double x) {
+        int c = (int) Math.floor((x + FIELD_INCHES / 2) / cellSize);
+        return c < 0 ? 0 : (c >= columns ? columns - 1 : c);
+    }
+
+    int row(double y) {
+        int r = (int) Math.floor((y + FIELD_INCHES / 2) / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    /**
+     * @return field X of the center of a cell
+     */
+    public double x(int cell) {
+        return (cell % columns + 0.5) * cellSize - FIELD_INCHES / 2;
+    }
+
+    /**
+     * @return field Y of the center of a cell
+     */
+    public double y(int cell) {
+        return (cell / columns + 0.5) * cellSize - FIELD_INCHES / 2;
+    }
+
+    public boolean isBlocked(int cell) {
+        return blockedBy[cell] != 0;
+    }
+
+    /**
+     * @return the free cell nearest to the given one (itself if free), or -1 if there is none
+     */
+    public int nearestFree(int cell) {
+        if (!isBlocked(cell)) {
+            return cell;
+        }
+        int c0 = cell % columns, r0 = cell / columns;
+        for (int ring = 1; ring < Math.max(columns, rows); ring++) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int r = r0 - ring; r <= r0 + ring; r++) {
+                for (int c = c0 - ring; c <= c0 + ring; c++) {
+                    boolean edge = r == r0 - ring || r == r0 + ring || c == c0 - ring || c == c0 + ring;
+                    if (!edge || r < 0 || r >= rows || c < 0 || c >= columns) {
+                        continue;
+                    }
+                    int candidate = r * columns + c;
+                    double distance = Math.hypot(c - c0, r - r0);
+                    if (!isBlocked(candidate) && distance < bestDistance) {
+                        best = candidate;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            if (best >= 0) {
+                return best;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the robot's center can move in a straight line between the centers of two cells,
+     * i.e. whether no cell the line passes through is blocked.  A line passing exactly through a
+     * corner must have both cells beside the corner free.
+     */
+    public boolean lineOfSight(int from, int to) {
+        int c = from % columns, r = from / columns;
+        int c1 = to % columns, r1 = to / columns;
+        int dc = Math.abs(c1 - c), dr = Math.abs(r1 - r);
+        int stepC = c1 > c ? 1 : -1, stepR = r1 > r ? 1 : -1;
+        // Walk the cells crossed by the line from center to center, in the order it crosses them.
+        // error > 0: the next crossing is a column boundary; < 0: a row boundary; 0: a corner.
+        int error = dc - dr;
+        dc *= 2;
+        dr *= 2;
+        if (isBlocked(from)) {
+            return false;
+        }
+        for (int n = (dc + dr) / 2; n > 0; n--) {
+            if (error > 0) {
+                c += stepC;
+                error -= dr;
+            } else if (error < 0) {
+                r += stepR;
+                error += dc;
+            } else {
+                // Through the corner: both side cells must be free.
+                if (isBlocked(r * columns + c + stepC) || isBlocked((r + stepR) * columns + c)) {
+                    return false;
+                }
+                c += stepC;
+                r += stepR;
+                error += dc - dr;
+                n--;
+            }
+            if (isBlocked(r * columns + c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Obstacles
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Add a circular obstacle, e.g. another robot.
+     *
+     * @return an id for moveCircle() and remove()
+     */
+    public int addCircle(double x, double y, double radius) {
+        int id = freeId();
+        shapes[id] = CIRCLE;
+        shapeA[id] = x;
+        shapeB[id] = y;
+        shapeC[id] = radius;
+        mark(id, 1);
+        return id;
+    }
+
+    /**
+     * Add a rectangular obstacle, aligned with the field, e.g. a field element.
+     *
+     * @return an id for remove()
+     */
+    public int addRectangle(double x0, double y0, double x1, double y1) {
+        int id = freeId();
+        shapes[id] = RECTANGLE;
+        shapeA[id] = Math.min(x0, x1);
+        shapeB[id] = Math.min(y0, y1);
+        shapeC[id] = Math.max(x0, x1);
+        shapeD[id] = Math.max(y0, y1);
+        mark(id, 1);
+        return id;
+    }
+
+    public void moveCircle(int id, double x, double y) {
+        if (shapes[id] != CIRCLE) {
+            throw new IllegalArgumentException("Obstacle " + id + " is not a circle");
+        }
+        if (x == shapeA[id] && y == shapeB[id]) {
+            return;
+        }
+        mark(id, -1);
+        shapeA[id] = x;
+        shapeB[id] = y;
+        mark(id, 1);
+    }
+
+    public void remove(int id) {
+        if (shapes[id] != 0) {
+            mark(id, -1);
+            shapes[id] = 0;
+        }
+    }
+
+    private int freeId() {
+        for (int id = 0; id < MAX_OBSTACLES; id++) {
+            if (shapes[id] == 0) {
+                return id;
+            }
+        }
+        throw new IllegalStateException("OccupancyGrid supports at most " + MAX_OBSTACLES + " obstacles");
+    }
+
+    /**
+     * Add (delta 1) or take away (delta -1) an obstacle's marks.
+     */
+    private void mark(int id, int delta) {
+        double x0, y0, x1, y1;
+        if (shapes[id] == CIRCLE) {
+            x0 = shapeA[id] - shapeC[id];
+            y0 = shapeB[id] - shapeC[id];
+            x1 = shapeA[id] + shapeC[id];
+            y1 = shapeB[id] + shapeC[id];
+        } else {
+            x0 = shapeA[id];
+            y0 = shapeB[id];
+            x1 = shapeC[id];
+            y1 = shapeD[id];
+        }
+        for (int r = row(y0); r <= row(y1); r++) {
+            for (int c = column(x0); c <= column(x1); c++) {
+                int cell = r * columns + c;
+                if (covers(id, x(cell), y(cell))) {
+                    markCell(c, r, delta);
+                }
+            }
+        }
+    }
+
+    private boolean covers(int id, double x, double y) {
+        if (shapes[id] == CIRCLE) {
+            double dx = x - shapeA[id], dy = y - shapeB[id];
+            // A cell is covered if any part of it may be: pad by half a cell diagonal.
+            double reach = shapeC[id] + cellSize * 0.7072;
+            return dx * dx + dy * dy <= reach * reach;
+        }
+        double pad = cellSize / 2;
+        return x >= shapeA[id] - pad && x <= shapeC[id] + pad && y >= shapeB[id] - pad && y <= shapeD[id] + pad;
+    }
+
+    private void markCell(int column, int row, int delta) {
+        int cell = row * columns + column;
+        markedBy[cell] += delta;
+        // Only the first obstacle onto a cell, and the last one off it, change the inflation.
+        if ((delta > 0 && markedBy[cell] != 1) || (delta < 0 && markedBy[cell] != 0)) {
+            return;
+        }
+        for (int k = 0; k < inflation.length; k += 2) {
+            int c = column + inflation[k], r = row + inflation[k + 1];
+            if (c < 0 || c >= columns || r < 0 || r >= rows) {
+                continue;
+            }
+            int neighbor = r * columns + c;
+            boolean wasBlocked = blockedBy[neighbor] != 0;
+            blockedBy[neighbor] += delta;
+            if (wasBlocked != (blockedBy[neighbor] != 0)) {
+                version++;
+                if (!changed[neighbor]) {
+                    changed[neighbor] = true;
+                    changes[changeCount++] = neighbor;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a number that changes whenever any cell changes between blocked and free
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Copy the cells changed since the last call into out, and forget them.
+     *
+     * @return the number of cells copied; out must have room for getCellCount() cells
+     */
+    public int takeChanges(int[] out) {
+        int count = changeCount;
+        for (int i = 0; i < count; i++) {
+            out[i] = changes[i];
+            changed[changes[i]] = false;
+        }
+        changeCount = 0;
+        return count;
+    }
+}
@@ -0,0 +1,197 @@
+package org.firstinspires.ftc.teamcode.power;
+
+/*
+ * BatterySagEstimator learns how far the battery voltage drops under load, while the robot runs.
+ *
+ * The battery is modelled as an open circuit voltage behind an internal resistance:
+ *
+ *     V = Voc - R * I
+ *
+ * Both Voc and R are estimated by recursive least squares from pairs of (measured voltage, estimated
+ * current).  A forgetting factor lets the estimate follow the battery as it discharges and warms up.
+ *
+ * The current is not measured: it is estimated from the commanded motor powers (see PowerLimiter).
+ * R is therefore "volts lost per estimated amp", and absorbs wiring, connectors and any error in
+ * the per-motor current figures, which is what we want for predicting sag from commands.
+ *
+ * The first sample, normally taken at rest during INIT, sets Voc.  R starts from a pessimistic
+ * nominal value, and only moves away from it as the current changes enough to tell Voc and R
+ * apart.  A sample far from the prediction (a hub reset while motors were commanded, a glitch in
+ * the sensor) is ignored, unless several in a row say the same thing.
+ *
+ * When the current estimates are known to be biased, R can be held at a fixed value instead (see
+ * setFixedResistance()), and only Voc is learned.
+ */
+public class BatterySagEstimator {
+
+    /** Typical fully charged FTC 12V NiMH pack, at rest. */
+    public static final double NOMINAL_OPEN_CIRCUIT_VOLTS = 13.0;
+    /** A tired pack plus wiring, switch and hub resistance; errs on the side of limiting. */
+    public static final double NOMINAL_RESISTANCE_OHMS    = 0.25;
+
+    static final double MIN_RESISTANCE_OHMS = 0.05;
+    static final double MAX_RESISTANCE_OHMS = 1.0;
+    static final double MIN_VOLTS           = 6.0;
+    static final double MAX_VOLTS           = 16.0;
+    // Largest variances allowed for Voc and R: about 1V and 0.1 ohm.
+    static final double MAX_VOLTS_VARIANCE  = 1.0;
+    static final double MAX_OHMS_VARIANCE   = 0.01;
+    static final double OUTLIER_VOLTS       = 2.0;
+    static final int    MAX_OUTLIERS        = 5;
+
+    private final double forgetting;
+
+    // Estimate [Voc, R] and its 2x2 covariance.
+    private double openCircuitVolts;
+    private double resistanceOhms;
+    private double p00, p01, p11;
+    private double fixedResistanceOhms = Double.NaN;
+
+    private int    sampleCount = 0;
+    private int    outliersInRow = 0;
+    private double lastVolts;
+    private double lastAmps;
+
+    /**
+     * @param forgetting  weight given to past samples at each update, e.g. 0.995 for a memory of
+     *                    about 200 updates
+     */
+    public BatterySagEstimator(double forgetting) {
+        this.forgetting = forgetting;
+        reset(NOMINAL_OPEN_CIRCUIT_VOLTS, NOMINAL_RESISTANCE_OHMS);
+    }
+
+    public BatterySagEstimator() {
+        this(0.995);
+    }
+
+    /**
+     * Restart from the given estimate, e.g. after swapping batteries.  A fixed resistance stays fixed.
+     */
+    public void reset(double openCircuitVolts, double resistanceOhms) {
+        this.openCircuitVolts = openCircuitVolts;
+        this.resistanceOhms   = isResistanceFixed() ? fixedResistanceOhms : resistanceOhms;
+        this.lastVolts        = openCircuitVolts;
+        p00 = MAX_VOLTS_VARIANCE;
+        p01 = 0.0;
+        p11 = MAX_OHMS_VARIANCE;
+        sampleCount = 0;
+        outliersInRow = 0;
+    }
+
+    /**
+     * Hold R at the given value and learn only Voc, or go back to learning both with NaN.  Learning
+     * R only makes sense when the current estimates are unbiased: from biased ones it converges to
+     * a resistance that mispredicts the sag.
+     */
+    public void setFixedResistance(double ohms) {
+        fixedResistanceOhms = ohms;
+        if (!Double.isNaN(ohms)) resistanceOhms = ohms;
+    }
+
+    public boolean isResistanceFixed() {
+        return !Double.isNaN(fixedResistanceOhms);
+    }
+
+    /**
+     * Add one sample.
+     *
+     * @param volts  measured battery voltage
+     * @param amps   estimated current drawn while that voltage was measured
+     */
+    public void update(double volts, double amps) {
+        lastVolts = volts;
+        lastAmps  = amps;
+        if (sampleCount++ == 0) {
+            openCircuitVolts = clip(volts + resistanceOhms * amps, MIN_VOLTS, MAX_VOLTS);
+            return;
+        }
+
+        // Regressor phi = [1, -I]
+        double phi0 = 1.0;
+        double phi1 = -amps;
+
+        double error = volts - (phi0 * openCircuitVolts + phi1 * resistanceOhms);
+        if (Math.abs(error) > OUTLIER_VOLTS && outliersInRow < MAX_OUTLIERS) {
+            outliersInRow++;
+            return;
+        }
+        outliersInRow = 0;
+
+        if (isResistanceFixed()) {
+            // Scalar least squares on Voc alone, with the regressor 1.
+            double k = p00 / (forgetting + p00);
+            openCircuitVolts = clip(openCircuitVolts + k * error, MIN_VOLTS, MAX_VOLTS);
+            p00 = Math.min(MAX_VOLTS_VARIANCE, (p00 - k * p00) / forgetting);
+            return;
+        }
+
+        double pPhi0 = p00 * phi0 + p01 * phi1;
+        double pPhi1 = p01 * phi0 + p11 * phi1;
+        double denominator = forgetting + phi0 * pPhi0 + phi1 * pPhi1;
+        double k0 = pPhi0 / denominator;
+        double k1 = pPhi1 / denominator;
+
+        openCircuitVolts += k0 * error;
+        resistanceOhms   += k1 * error;
+
+        p00 = (p00 - k0 * pPhi0) / forgetting;
+        p01 = (p01 - k0 * pPhi1) / forgetting;
+        p11 = (p11 - k1 * pPhi1) / forgetting;
+
+        // Without a change in current the covariance grows without bound; cap it so that the
+        // estimate does not jump on the next burst of current, or on one bad sample.  Scaling a
+        // row and column together keeps the covariance positive definite.
+        if (p00 > MAX_VOLTS_VARIANCE) {
+            double scale = Math.sqrt(MAX_VOLTS_VARIANCE / p00);
+            p00 = MAX_VOLTS_VARIANCE;
+            p01 *= scale;
+        }
+        if (p11 > MAX_OHMS_VARIANCE) {
+            double scale = Math.sqrt(MAX_OHMS_VARIANCE / p11);
+            p11 = MAX_OHMS_VARIANCE;
+            p01 *= scale;
+        }
+
+        openCircuitVolts = clip(openCircuitVolts, MIN_VOLTS, MAX_VOLTS);
+        resistanceOhms   = clip(resistanceOhms, MIN_RESISTANCE_OHMS, MAX_RESISTANCE_OHMS);
+    }
+
+    /**
+     * @return the voltage expected while drawing the given current
+     */
+    public double predictVolts(double amps) {
+        return openCircuitVolts - resistanceOhms * amps;
+    }
+
+    /**
+     * @return the largest current that keeps the voltage at or above the given level
+     */
+    public double maxAmps(double minimumVolts) {
+        return Math.max(0.0, (openCircuitVolts - minimumVolts) / resistanceOhms);
+    }
+
+    public double getOpenCircuitVolts() {
+        return openCircuitVolts;
+    }
+
+    public double getResistanceOhms() {
+        return resistanceOhms;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public double getLastVolts() {
+        return lastVolts;
+    }
+
+    public double getLastAmps() {
+        return lastAmps;
+    }
+
+    static double clip(double value, double min, double max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
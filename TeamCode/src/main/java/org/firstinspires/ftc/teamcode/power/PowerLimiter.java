@@ -0,0 +1,356 @@
+package org.firstinspires.ftc.teamcode.power;
+
+import java.util.Locale;
+
+/*
+ * PowerLimiter sits between the code that decides motor powers and the motors themselves, and
+ * scales the powers down when sending them unchanged would pull the battery below a safe voltage.
+ *
+ * Each load (a motor, or a group of motors always commanded together) is registered once with the
+ * current it draws at full power, and a priority.  Every loop:
+ *
+ *   1. set the demands (the powers the rest of the code wants),
+ *   2. call update() with the battery voltage just measured,
+ *   3. send getOutput() to the motors.
+ *
+ * update() first teaches the BatterySagEstimator with the measured voltage and the current drawn by
+ * the powers sent on the previous loop, which were the ones on the wire when the voltage was read,
+ * at the speeds just given: a motor reversing slows down within a loop, and its current drops.
+ * It then predicts the voltage for the new demands.  If that is below the minimum, the current
+ * still available is handed out by priority: the highest priority loads get all they asked for,
+ * the first priority that does not fit is scaled down to what is left, and lower priorities get
+ * nothing.  Loads sharing a priority are scaled together, so both sides of a drive train stay in
+ * step and the robot does not turn when limited.
+ *
+ * Current is estimated from the power, the battery voltage and, when given, the speed of the load
+ * as a fraction of its free speed.  A brushed motor under PWM draws from the battery
+ *
+ *     I = power * stall amps * (power * V / 12 - speed)
+ *
+ * so a motor at full speed draws little, and a motor reversing at full speed draws twice its stall
+ * current.  Without a speed, loads are assumed stalled, which overestimates the current once
+ * moving and underestimates a reversing motor by up to half.  The estimator learns the battery
+ * resistance only once every load has been given a speed: from the stalled estimates it would
+ * learn far too low a resistance (about 0.05 ohm against a true 0.13 to 0.24 in
+ * PowerLimiterSimulation), and stop limiting.  Until then the resistance is held at
+ * NO_SPEED_RESISTANCE_OHMS: three times a tired battery's, to make up for the halved reversing
+ * current as well as for the battery, so the limiter holds back early rather than browning out.
+ * That costs speed, so setSpeed() still matters.  Because the current does not scale linearly
+ * with the power, the scale of a priority is found by bisection, between the scale drawing the
+ * least current and full power.  Loads moving the way they are pushed regenerate at low power, so
+ * when the headroom is used up a priority is given the scale drawing the least current, not zero.
+ *
+ * Without a voltage sensor (update() given NaN) the demands are passed through unchanged.
+ *
+ * Nothing is allocated after the loads are registered.
+ */
+public class PowerLimiter {
+
+    public static final int    MAX_LOADS             = 16;
+    /** REV hubs reset at about 7V; keep a margin for sensor lag and model error. */
+    public static final double DEFAULT_MINIMUM_VOLTS = 8.5;
+
+    static final double NOMINAL_VOLTS        = 12.0;
+    static final int    BISECTION_STEPS      = 20;
+    /** Resistance assumed while some load has no speed; see the class comment. */
+    static final double NO_SPEED_RESISTANCE_OHMS = 0.75;
+
+    private final BatterySagEstimator estimator;
+    private double  minimumVolts;
+    private double  idleAmps = 0.5;
+    private boolean enabled  = true;
+
+    private final String[] names          = new String[MAX_LOADS];
+    private final double[] ampsAtFull     = new double[MAX_LOADS];
+    private final int[]    priorities     = new int[MAX_LOADS];
+    private final double[] demands        = new double[MAX_LOADS];
+    private final double[] speeds         = new double[MAX_LOADS];
+    private final boolean[] speedGiven    = new boolean[MAX_LOADS];
+    private final double[] outputs        = new double[MAX_LOADS];
+    private final double[] scales         = new double[MAX_LOADS];
+    // Load indices, highest priority first.
+    private final int[]    order          = new int[MAX_LOADS];
+    private int loadCount = 0;
+
+    private double outputAmps     = 0;
+    private double demandAmps     = 0;
+    private double predictedVolts = 0;
+    private double unlimitedVolts = 0;
+    private boolean limiting      = false;
+    private int    limitedUpdates = 0;
+    private int    updates        = 0;
+
+    public PowerLimiter(BatterySagEstimator estimator, double minimumVolts) {
+        this.estimator = estimator;
+        this.minimumVolts = minimumVolts;
+        this.predictedVolts = estimator.getOpenCircuitVolts();
+        this.unlimitedVolts = predictedVolts;
+    }
+
+    public PowerLimiter() {
+        this(new BatterySagEstimator(), DEFAULT_MINIMUM_VOLTS);
+    }
+
+    /**
+     * Register a load.
+     *
+     * @param name              name shown in telemetry
+     * @param ampsAtFullPower   current drawn at power 1.0, e.g. the motor stall current
+     * @param priority          loads with a higher priority keep their power longest
+     * @return the index to pass to setDemand() and getOutput()
+     */
+    public int addLoad(String name, double ampsAtFullPower, int priority) {
+        if (loadCount == MAX_LOADS) {
+            throw new IllegalStateException("PowerLimiter supports at most " + MAX_LOADS + " loads");
+        }
+        int index = loadCount++;
+        names[index]      = name;
+        ampsAtFull[index] = ampsAtFullPower;
+        priorities[index] = priority;
+        scales[index]     = 1.0;
+
+        // Insertion into the priority order; stable, so equal priorities keep registration order.
+        int position = index;
+        while (position > 0 && priorities[order[position - 1]] < priority) {
+            order[position] = order[position - 1];
+            position--;
+        }
+        order[position] = index;
+        return index;
+    }
+
+    /**
+     * Current drawn whatever the motors do: hubs, servos, sensors, camera.
+     */
+    public void setIdleAmps(double amps) {
+        this.idleAmps = amps;
+    }
+
+    public void setMinimumVolts(double volts) {
+        this.minimumVolts = volts;
+    }
+
+    public double getMinimumVolts() {
+        return minimumVolts;
+    }
+
+    /**
+     * When disabled, demands are passed through unchanged, but the battery is still learned and
+     * predictions are still made.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setDemand(int load, double power) {
+        demands[load] = power;
+    }
+
+    /**
+     * @param speed  speed of the load as a fraction of its free speed at 12V, signed like the power;
+     *               e.g. DcMotorEx.getVelocity() divided by the free speed in ticks per second
+     */
+    public void setSpeed(int load, double speed) {
+        speeds[load] = speed;
+        speedGiven[load] = true;
+    }
+
+    /**
+     * Estimated battery current drawn by a load when sent the given fraction of its demand.
+     */
+    private double loadAmps(int load, double scale, double volts) {
+        double power = demands[load] * scale;
+        return power * ampsAtFull[load] * (power * volts / NOMINAL_VOLTS - speeds[load]);
+    }
+
+    private double groupAmps(int start, int end, double scale, double volts) {
+        double amps = 0;
+        for (int j = start; j < end; j++) {
+            amps += loadAmps(order[j], scale, volts);
+        }
+        return amps;
+    }
+
+    /**
+     * Learn from the measured voltage, then compute the outputs for the current demands.
+     *
+     * @param measuredVolts  battery voltage read this loop, while the previous outputs were applied,
+     *                       or NaN if there is no voltage sensor: the demands are then passed
+     *                       through unchanged
+     */
+    public void update(double measuredVolts) {
+        updates++;
+        if (Double.isNaN(measuredVolts) || Double.isInfinite(measuredVolts) || measuredVolts <= 0) {
+            passThrough();
+            return;
+        }
+        // The previous outputs are still applied, but the loads have sped up or slowed down since,
+        // and their current with them: use the speeds just set.
+        outputAmps = idleAmps;
+        boolean allSpeeds = true;
+        for (int i = 0; i < loadCount; i++) {
+            outputAmps += outputs[i] * ampsAtFull[i] * (outputs[i] * measuredVolts / NOMINAL_VOLTS - speeds[i]);
+            allSpeeds &= speedGiven[i];
+        }
+        estimator.setFixedResistance(allSpeeds ? Double.NaN : NO_SPEED_RESISTANCE_OHMS);
+        estimator.update(measuredVolts, outputAmps);
+
+        double volts = measuredVolts;
+        demandAmps = idleAmps;
+        for (int i = 0; i < loadCount; i++) {
+            demandAmps += loadAmps(i, 1.0, volts);
+        }
+        unlimitedVolts = estimator.predictVolts(demandAmps);
+
+        // Negative when even the idle current takes the battery below the minimum.
+        double available = (estimator.getOpenCircuitVolts() - minimumVolts) / estimator.getResistanceOhms() - idleAmps;
+        limiting = enabled && unlimitedVolts < minimumVolts;
+
+        if (!limiting) {
+            for (int i = 0; i < loadCount; i++) {
+                scales[i] = 1.0;
+            }
+        } else {
+            limitedUpdates++;
+            int start = 0;
+            while (start < loadCount) {
+                // [start, end) in order[] share a priority.
+                int priority = priorities[order[start]];
+                int end = start;
+                while (end < loadCount && priorities[order[end]] == priority) {
+                    end++;
+                }
+
+                double scale;
+                double full = groupAmps(start, end, 1.0, volts);
+                if (full <= available) {
+                    scale = 1.0;
+                } else {
+                    // The group current is a * scale^2 - b * scale: a is the current pushed in by
+                    // the power, b comes from loads already moving the way they are pushed, which
+                    // regenerate at low power.  It is lowest at b / 2a, and rises from there to
+                    // full at 1.
+                    double a = 0, b = 0;
+                    for (int j = start; j < end; j++) {
+                        int load = order[j];
+                        a += demands[load] * demands[load] * ampsAtFull[load] * volts / NOMINAL_VOLTS;
+                        b += demands[load] * ampsAtFull[load] * speeds[load];
+                    }
+                    double lowest = (a > 0) ? Math.max(0.0, Math.min(1.0, b / (2 * a))) : 0.0;
+                    if (groupAmps(start, end, lowest, volts) > available) {
+                        // Nothing fits, eg: the headroom is already used up: draw as little as
+                        // possible, which for a regenerating group still gives some power back.
+                        scale = lowest;
+                    } else {
+                        // One crossing of the available current, between lowest and 1.
+                        double low = lowest, high = 1.0;
+                        for (int step = 0; step < BISECTION_STEPS; step++) {
+                            double middle = 0.5 * (low + high);
+                            if (groupAmps(start, end, middle, volts) <= available) {
+                                low = middle;
+                            } else {
+                                high = middle;
+                            }
+                        }
+                        scale = low;
+                    }
+                }
+                available -= groupAmps(start, end, scale, volts);
+                for (int j = start; j < end; j++) {
+                    scales[order[j]] = scale;
+                }
+                start = end;
+            }
+        }
+
+        outputAmps = idleAmps;
+        for (int i = 0; i < loadCount; i++) {
+            outputs[i] = demands[i] * scales[i];
+            outputAmps += loadAmps(i, scales[i], volts);
+        }
+        predictedVolts = estimator.predictVolts(outputAmps);
+    }
+
+    private void passThrough() {
+        limiting = false;
+        demandAmps = idleAmps;
+        for (int i = 0; i < loadCount; i++) {
+            scales[i] = 1.0;
+            outputs[i] = demands[i];
+            demandAmps += loadAmps(i, 1.0, NOMINAL_VOLTS);
+        }
+        outputAmps = demandAmps;
+        predictedVolts = Double.NaN;
+        unlimitedVolts = Double.NaN;
+    }
+
+    /**
+     * @return the power to send to the load
+     */
+    public double getOutput(int load) {
+        return outputs[load];
+    }
+
+    /**
+     * @return the fraction of its demand the load was given, from 0 to 1
+     */
+    public double getScale(int load) {
+        return scales[load];
+    }
+
+    public String getName(int load) {
+        return names[load];
+    }
+
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return the voltage expected with the outputs
+     */
+    public double getPredictedVolts() {
+        return predictedVolts;
+    }
+
+    /**
+     * @return the voltage expected had the demands been sent unchanged
+     */
+    public double getUnlimitedVolts() {
+        return unlimitedVolts;
+    }
+
+    public double getOutputAmps() {
+        return outputAmps;
+    }
+
+    public double getDemandAmps() {
+        return demandAmps;
+    }
+
+    public boolean isLimiting() {
+        return limiting;
+    }
+
+    /**
+     * @return the fraction of updates in which the outputs were scaled down
+     */
+    public double getLimitedFraction() {
+        return updates == 0 ? 0 : (double) limitedUpdates / updates;
+    }
+
+    public BatterySagEstimator getEstimator() {
+        return estimator;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Voc %.2fV  R %.3f ohm  predicted %.2fV (unlimited %.2fV)  %.1fA%s",
+                estimator.getOpenCircuitVolts(), estimator.getResistanceOhms(),
+                predictedVolts, unlimitedVolts, outputAmps, limiting ? "  LIMITING" : "");
+    }
+}
@@ -0,0 +1,483 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/*
+ * AllocationMonitor counts the bytes a control loop allocates in each cycle and the garbage
+ * collections that happen while it runs, to tell how much of the loop's jitter is the collector's.
+ *
+ * Call cycle() once per loop.  Each call closes a cycle: its time, the bytes the loop thread
+ * allocated in it, the collections that ran during it, and the time they blocked the program.  A
+ * cycle longer than cycleBudgetMillis has overrun.  It is counted as a collection overrun if a
+ * collection ran during it, and as a blocked overrun if a collection blocked the program during it.
+ * A cycle that allocated more than spikeBytes is an allocation spike.
+ *
+ * A collection overrun is a hint, not proof, that the collector made the cycle late: ART collects
+ * concurrently, pausing the loop only briefly, and a collection that ran alongside a cycle slowed by
+ * something else counts too.  A blocked overrun is stronger evidence: the runtime reports the time
+ * of the collections that threads had to wait for, though not which threads waited, nor the short
+ * pauses of concurrent collections.  The collection time is the collector's whole work, mostly on
+ * its own thread, and the blocking time is the part of it the program waited for.
+ *
+ *     AllocationMonitor monitor = new AllocationMonitor(counters, profiler, new AllocationMonitor.Parameters());
+ *     waitForStart();
+ *     monitor.start();
+ *     while (opModeIsActive()) {
+ *         ...
+ *         monitor.cycle();
+ *     }
+ *     RobotLog.ii(TAG, monitor.summary());
+ *
+ * Given a Profiler, the monitor blames each overrun and spike on a section: the section whose own
+ * time was furthest above its average in that cycle, and the section that allocated most itself.
+ * Profiler.setMemoryCounters() is called with the monitor's counters so that it counts bytes by
+ * section.  The longest maxEvents of the overruns and spikes are kept for summary().
+ *
+ * cycle() does not allocate.  requireBudget() checks the allocations of a piece of code, for
+ * simulations and tests run on a desktop JVM.
+ */
+public class AllocationMonitor {
+
+    public static class Parameters {
+        /** A cycle longer than this has overrun */
+        public double cycleBudgetMillis = 20.0;
+        /** A cycle that allocates more than this is an allocation spike */
+        public long   spikeBytes = 16 * 1024;
+        /** Number of overruns and spikes kept for summary(): the longest are kept */
+        public int    maxEvents = 16;
+    }
+
+    // Why a cycle was kept as an event
+    static final int OVERRUN    = 1;
+    static final int COLLECTION = 2;
+    static final int SPIKE      = 4;
+    static final int BLOCKED    = 8;
+
+    private final MemoryCounters counters;
+    private final Profiler profiler;
+    private final Parameters parameters;
+    private final long budgetNanos;
+
+    // The end of the last cycle
+    private boolean started = false;
+    private long lastNanos;
+    private long lastBytes;
+    private long lastCollections;
+    private long lastCollectionMillis;
+    private long lastBlockingMillis;
+
+    // Totals
+    private long cycles = 0;
+    private long totalNanos = 0;
+    private long totalBytes = 0;
+    private long maxBytes = 0;
+    private long cleanCycles = 0;
+    private final long[] histogram = new long[Profiler.BUCKETS];
+    private long collections = 0;
+    private long collectionMillis = 0;
+    private long blockingMillis = 0;
+    private long overruns = 0;
+    private long collectionOverruns = 0;
+    private long blockedOverruns = 0;
+    private long spikes = 0;
+
+    // The last cycle
+    private long cycleNanos;
+    private long cycleBytes;
+    private long cycleCollections;
+    private long cycleBlockingMillis;
+
+    // Each section's own time and bytes: the profiler's totals at the end of the last cycle, and the
+    // sums over the cycles seen by the monitor.
+    private final long[] lastSelfNanos = new long[Profiler.MAX_SECTIONS];
+    private final long[] lastSelfBytes = new long[Profiler.MAX_SECTIONS];
+    private final long[] sumSelfNanos  = new long[Profiler.MAX_SECTIONS];
+
+    // The longest overruns and spikes so far
+    private final long[] eventCycles;
+    private final long[] eventNanos;
+    private final long[] eventBytes;
+    private final long[] eventCollections;
+    private final long[] eventBlockingMillis;
+    private final int[]  eventReasons;
+    private final int[]  eventSlowSections;
+    private final long[] eventSlowExcess;
+    private final int[]  eventAllocSections;
+    private final long[] eventAllocBytes;
+    private int eventCount = 0;
+
+    /**
+     * @param profiler the profiler timing the loop's sections, or null
+     */
+    public AllocationMonitor(MemoryCounters counters, Profiler profiler, Parameters parameters) {
+        this.counters = counters;
+        this.profiler = profiler;
+        this.parameters = parameters;
+        this.budgetNanos = (long) (parameters.cycleBudgetMillis * 1e6);
+        int n = Math.max(1, parameters.maxEvents);
+        eventCycles        = new long[n];
+        eventNanos         = new long[n];
+        eventBytes         = new long[n];
+        eventCollections   = new long[n];
+        eventBlockingMillis = new long[n];
+        eventReasons       = new int[n];
+        eventSlowSections  = new int[n];
+        eventSlowExcess    = new long[n];
+        eventAllocSections = new int[n];
+        eventAllocBytes    = new long[n];
+        if (profiler != null) {
+            profiler.setMemoryCounters(counters);
+        }
+    }
+
+    /**
+     * Start the first cycle.  Optional: without it, the first call to cycle() starts it.
+     */
+    public void start() {
+        lastCollections = counters.collections();
+        lastCollectionMillis = counters.collectionMillis();
+        lastBlockingMillis = counters.blockingMillis();
+        if (profiler != null) {
+            for (int s = 0; s < profiler.getSectionCount(); s++) {
+                lastSelfNanos[s] = profiler.getSelfNanos(s);
+                lastSelfBytes[s] = profiler.getSelfBytes(s);
+            }
+        }
+        lastNanos = System.nanoTime();
+        lastBytes = counters.allocatedBytes();
+        started = true;
+    }
+
+    /**
+     * End a cycle and start the next.  Call from the loop's thread, once per loop.
+     */
+    public void cycle() {
+        long bytes = counters.allocatedBytes();
+        long now = System.nanoTime();
+        if (!started) {
+            start();
+            return;
+        }
+        cycleNanos = now - lastNanos;
+        cycleBytes = bytes >= 0 && lastBytes >= 0 ? bytes - lastBytes : 0;
+
+        // The counters may allocate reading the collections: that is left out of the next cycle.
+        long gcs = counters.collections();
+        long gcMillis = counters.collectionMillis();
+        long blockedMillis = counters.blockingMillis();
+        cycleCollections = gcs >= 0 && lastCollections >= 0 ? Math.max(0, gcs - lastCollections) : 0;
+        if (gcMillis >= 0 && lastCollectionMillis >= 0) {
+            collectionMillis += Math.max(0, gcMillis - lastCollectionMillis);
+        }
+        cycleBlockingMillis = blockedMillis >= 0 && lastBlockingMillis >= 0
+                ? Math.max(0, blockedMillis - lastBlockingMillis) : 0;
+        lastCollections = gcs;
+        lastCollectionMillis = gcMillis;
+        lastBlockingMillis = blockedMillis;
+
+        cycles++;
+        totalNanos += cycleNanos;
+        totalBytes += cycleBytes;
+        if (cycleBytes > maxBytes) maxBytes = cycleBytes;
+        if (cycleBytes == 0) cleanCycles++;
+        histogram[Profiler.bucket(cycleBytes)]++;
+        collections += cycleCollections;
+        blockingMillis += cycleBlockingMillis;
+
+        int reasons = 0;
+        if (cycleNanos > budgetNanos) {
+            reasons |= OVERRUN;
+            overruns++;
+            if (cycleCollections > 0) {
+                reasons |= COLLECTION;
+                collectionOverruns++;
+            }
+            if (cycleBlockingMillis > 0) {
+                reasons |= BLOCKED;
+                blockedOverruns++;
+            }
+        }
+        if (cycleBytes > parameters.spikeBytes) {
+            reasons |= SPIKE;
+            spikes++;
+        }
+        blame(reasons);
+
+        lastNanos = now;
+        lastBytes = counters.allocatedBytes();
+    }
+
+    /**
+     * Find the sections to blame for the last cycle, and keep it as an event if there is a reason.
+     */
+    private void blame(int reasons) {
+        int slowSection = -1, allocSection = -1;
+        long slowExcess = 0, allocBytes = 0;
+        if (profiler != null) {
+            for (int s = 0; s < profiler.getSectionCount(); s++) {
+                long selfNanos = profiler.getSelfNanos(s);
+                long selfBytes = profiler.getSelfBytes(s);
+                // Negative after the profiler was reset: start counting again from here.
+                long nanos = Math.max(0, selfNanos - lastSelfNanos[s]);
+                long bytes = Math.max(0, selfBytes - lastSelfBytes[s]);
+                lastSelfNanos[s] = selfNanos;
+                lastSelfBytes[s] = selfBytes;
+
+                long excess = nanos - (cycles > 1 ? sumSelfNanos[s] / (cycles - 1) : 0);
+                sumSelfNanos[s] += nanos;
+                if (excess > slowExcess) {
+                    slowExcess = excess;
+                    slowSection = s;
+                }
+                if (bytes > allocBytes) {
+                    allocBytes = bytes;
+                    allocSection = s;
+                }
+            }
+        }
+        if (reasons == 0) return;
+
+        // Take a free slot, or the shortest event's if this cycle is longer.
+        int i = eventCount;
+        if (eventCount < eventCycles.length) {
+            eventCount++;
+        } else {
+            i = 0;
+            for (int e = 1; e < eventCount; e++) {
+                if (eventNanos[e] < eventNanos[i]) i = e;
+            }
+            if (eventNanos[i] >= cycleNanos) return;
+        }
+        eventCycles[i]        = cycles;
+        eventNanos[i]         = cycleNanos;
+        eventBytes[i]         = cycleBytes;
+        eventCollections[i]   = cycleCollections;
+        eventBlockingMillis[i] = cycleBlockingMillis;
+        eventReasons[i]       = reasons;
+        eventSlowSections[i]  = slowSection;
+        eventSlowExcess[i]    = slowExcess;
+        eventAllocSections[i] = allocSection;
+        eventAllocBytes[i]    = allocBytes;
+    }
+
+    /**
+     * Forget all cycles and events.  The next call to cycle() starts a new first cycle.
+     */
+    public void reset() {
+        started = false;
+        cycles = totalNanos = totalBytes = maxBytes = cleanCycles = 0;
+        collections = collectionMillis = blockingMillis = 0;
+        overruns = collectionOverruns = blockedOverruns = spikes = 0;
+        cycleNanos = cycleBytes = cycleCollections = cycleBlockingMillis = 0;
+        eventCount = 0;
+        Arrays.fill(histogram, 0);
+        Arrays.fill(sumSelfNanos, 0);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Results
+    //----------------------------------------------------------------------------------------------
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return bytes allocated in the last cycle
+     */
+    public long getLastBytes() {
+        return cycleBytes;
+    }
+
+    /**
+     * @return length of the last cycle, in milliseconds
+     */
+    public double getLastMillis() {
+        return cycleNanos / 1e6;
+    }
+
+    /**
+     * @return true if the last cycle overran while a collection ran, which does not mean the
+     *         collection made it overrun
+     */
+    public boolean isLastCollectionOverrun() {
+        return cycleNanos > budgetNanos && cycleCollections > 0;
+    }
+
+    /**
+     * @return true if the last cycle overran while a collection blocked the program
+     */
+    public boolean isLastBlockedOverrun() {
+        return cycleNanos > budgetNanos && cycleBlockingMillis > 0;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public double getMeanBytes() {
+        return cycles == 0 ? 0 : totalBytes / (double) cycles;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Estimate a percentile of the bytes allocated per cycle, to within 25%.
+     *
+     * @param fraction eg: 0.99 for the 99th percentile
+     */
+    public double getPercentileBytes(double fraction) {
+        if (cycles == 0) return 0;
+        long rank = (long) Math.ceil(fraction * cycles);
+        long seen = 0;
+        for (int b = 0; b < Profiler.BUCKETS; b++) {
+            if (seen + histogram[b] >= rank) {
+                double low = Profiler.bucketLow(b);
+                double within = low + (Profiler.bucketLow(b + 1) - low) * (rank - seen) / histogram[b];
+                return Math.min(within, maxBytes);
+            }
+            seen += histogram[b];
+        }
+        return maxBytes;
+    }
+
+    /**
+     * @return cycles that allocated nothing
+     */
+    public long getCleanCycles() {
+        return cleanCycles;
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    /**
+     * @return time the runtime spent collecting while the monitor ran, in milliseconds, including
+     *         concurrent collection alongside the loop: not the time the loop was paused
+     */
+    public long getCollectionMillis() {
+        return collectionMillis;
+    }
+
+    /**
+     * @return time the program waited for collections while the monitor ran, in milliseconds
+     */
+    public long getBlockingMillis() {
+        return blockingMillis;
+    }
+
+    /**
+     * @return cycles longer than cycleBudgetMillis
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return cycles longer than cycleBudgetMillis during which a collection ran; see the class
+     *         comment for what that does and does not say
+     */
+    public long getCollectionOverruns() {
+        return collectionOverruns;
+    }
+
+    /**
+     * @return cycles longer than cycleBudgetMillis during which a collection blocked the program
+     */
+    public long getBlockedOverruns() {
+        return blockedOverruns;
+    }
+
+    /**
+     * @return cycles that allocated more than spikeBytes
+     */
+    public long getSpikes() {
+        return spikes;
+    }
+
+    /**
+     * @return the totals, and the longest overruns and spikes with the sections blamed for them
+     */
+    public String summary() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%d cycles, %.2f ms each: allocated %s, %s per cycle (p50 %s, p99 %s, max %s), %d cycles allocated nothing%n",
+                cycles, cycles == 0 ? 0 : totalNanos / 1e6 / cycles, size(totalBytes), size((long) getMeanBytes()),
+                size((long) getPercentileBytes(0.5)), size((long) getPercentileBytes(0.99)), size(maxBytes), cleanCycles));
+        out.append(String.format(Locale.US, "%d collections, %d ms collecting, %d ms blocking; %d cycles over %.1f ms, %d of them during a collection, %d blocked by one; %d cycles over %s%n",
+                collections, collectionMillis, blockingMillis, overruns, parameters.cycleBudgetMillis,
+                collectionOverruns, blockedOverruns, spikes, size(parameters.spikeBytes)));
+        if (eventCount == 0) return out.toString();
+        Integer[] order = new Integer[eventCount];
+        for (int e = 0; e < eventCount; e++) order[e] = e;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override public int compare(Integer a, Integer b) {
+                return Long.compare(eventCycles[a], eventCycles[b]);
+            }
+        });
+
+        out.append(String.format(Locale.US, "%8s %8s %9s %3s %8s  %-26s %-28s %s%n",
+                "cycle", "ms", "bytes", "gc", "gc block", "why", "slowest section", "most allocating section"));
+        for (int i : order) {
+            int reasons = eventReasons[i];
+            String why = ((reasons & OVERRUN) != 0 ? "overrun " : "")
+                    + ((reasons & COLLECTION) != 0 ? "gc " : "")
+                    + ((reasons & BLOCKED) != 0 ? "blocked " : "")
+                    + ((reasons & SPIKE) != 0 ? "spike" : "");
+            String slow = eventSlowSections[i] < 0 ? "-" : String.format(Locale.US, "%s (+%.2f ms)",
+                    profiler.getSectionName(eventSlowSections[i]), eventSlowExcess[i] / 1e6);
+            String alloc = eventAllocSections[i] < 0 ? "-" : String.format(Locale.US, "%s (%s)",
+                    profiler.getSectionName(eventAllocSections[i]), size(eventAllocBytes[i]));
+            out.append(String.format(Locale.US, "%8d %8.2f %9s %3d %8s  %-26s %-28s %s%n",
+                    eventCycles[i], eventNanos[i] / 1e6, size(eventBytes[i]), eventCollections[i],
+                    eventBlockingMillis[i] + " ms", why.trim(), slow, alloc));
+        }
+        return out.toString();
+    }
+
+    static String size(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Budgets
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Check that a piece of code allocates no more than a budget, eg: that a control update
+     * allocates nothing.  The code is run in three rounds of runs, and the round that allocated least
+     * counts, so that what the JIT compiler allocates while warming up is left out.
+     *
+     * @param name     named in the error
+     * @param maxBytes the budget per run
+     * @return the bytes allocated per run
+     * @throws AssertionError if the code allocates more than the budget
+     * @throws IllegalStateException if the counters cannot count allocated bytes
+     */
+    public static double requireBudget(MemoryCounters counters, String name, double maxBytes, int runs, Runnable task) {
+        long least = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long before = counters.allocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                task.run();
+            }
+            long after = counters.allocatedBytes();
+            if (before < 0 || after < 0) {
+                throw new IllegalStateException("this runtime does not count allocated bytes");
+            }
+            least = Math.min(least, after - before);
+        }
+        double perRun = least / (double) runs;
+        if (perRun > maxBytes) {
+            throw new AssertionError(String.format(Locale.US, "%s allocates %.1f bytes per run, over its budget of %.1f",
+                    name, perRun, maxBytes));
+        }
+        return perRun;
+    }
+}
@@ -0,0 +1,77 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import android.os.Debug;
+
+/*
+ * AndroidMemoryCounters reads allocation and garbage collection counts from the Android runtime on
+ * the Robot Controller.
+ *
+ * The thread's bytes come from Debug.getThreadAllocSize(), deprecated since API 23 with no
+ * replacement: Debug.getRuntimeStat() only has the whole app's counts, and allocation tracking keeps
+ * a stack trace per object.  ART still counts them, so the deprecation warnings are suppressed.
+ *
+ * Counting allocations is off by default, and is turned on for as long as this is open: it makes
+ * every allocation in the app a little slower, so close() it when done.  The runtime counts
+ * collections of all kinds, and their time, through Debug.getRuntimeStat(), which returns strings:
+ * collections(), collectionMillis() and blockingMillis() allocate a few bytes each.  AllocationMonitor reads them
+ * outside the bytes it counts.
+ *
+ * ART collects concurrently, on its own thread, and stops the app's threads only for short pauses.
+ * art.gc.gc-time is the collector's whole time, concurrent work included, so collectionMillis() is
+ * far more than the time the loop was held up.  blockingMillis() is art.gc.blocking-gc-time, the
+ * time of the collections that threads had to wait for: those run because an allocation found the
+ * heap full, and explicit ones.  The short pauses of concurrent collections are not in it.
+ *
+ * The runtime counts a thread's bytes in an int, which wraps after 2 GB: allocatedBytes() extends it
+ * to a long, which only works if it is always called from the same thread.
+ */
+public class AndroidMemoryCounters implements MemoryCounters, AutoCloseable {
+
+    private int  lastBytes = 0;
+    private long totalBytes = 0;
+
+    @SuppressWarnings("deprecation")
+    public AndroidMemoryCounters() {
+        Debug.startAllocCounting();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public long allocatedBytes() {
+        int bytes = Debug.getThreadAllocSize();
+        totalBytes += bytes - lastBytes;
+        lastBytes = bytes;
+        return totalBytes;
+    }
+
+    @Override
+    public long collections() {
+        return stat("art.gc.gc-count");
+    }
+
+    @Override
+    public long collectionMillis() {
+        return stat("art.gc.gc-time");
+    }
+
+    @Override
+    public long blockingMillis() {
+        return stat("art.gc.blocking-gc-time");
+    }
+
+    private static long stat(String name) {
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void close() {
+        Debug.stopAllocCounting();
+    }
+}
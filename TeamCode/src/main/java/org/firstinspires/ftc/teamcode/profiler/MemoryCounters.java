@@ -0,0 +1,35 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+/*
+ * MemoryCounters reads what the runtime counts of allocation and garbage collection: the bytes the
+ * calling thread has allocated, the collections so far, and the time they held up the program.  AndroidMemoryCounters reads them on the
+ * Robot Controller, and JvmMemoryCounters, in the test sources, in simulations and benchmarks on a
+ * desktop JVM.
+ */
+public interface MemoryCounters {
+
+    /**
+     * Must not allocate.
+     *
+     * @return bytes allocated by the calling thread so far, or -1 if the runtime does not count them
+     */
+    long allocatedBytes();
+
+    /**
+     * @return number of garbage collections so far, or -1 if the runtime does not count them
+     */
+    long collections();
+
+    /**
+     * @return time spent collecting garbage so far, in milliseconds, or -1 if unknown.  This is the
+     *         collector's work, most of it done on its own thread alongside the program, not the time
+     *         the program was paused.
+     */
+    long collectionMillis();
+
+    /**
+     * @return time the program's threads spent stopped or waiting for garbage collections so far, in
+     *         milliseconds, or -1 if unknown
+     */
+    long blockingMillis();
+}
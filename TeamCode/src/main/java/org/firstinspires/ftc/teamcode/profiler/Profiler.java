@@ -0,0 +1,489 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/*
+ * Profiler times the sections of a loop (eg: the bulk read, the I2C reads, vision polling and
+ * telemetry), to tell which of them makes the loop slow.
+ *
+ * Sections are registered once, normally during INIT, and then entered and exited by index:
+ *
+ *     Profiler profiler = Profiler.getInstance();
+ *     int bulkRead = profiler.section("bulk read");
+ *     ...
+ *     profiler.enter(bulkRead);
+ *     hub.clearBulkCache();
+ *     ...
+ *     profiler.exit(bulkRead);
+ *
+ * Sections may be nested.  enter() and exit() record System.nanoTime() into a preallocated ring of
+ * the last RING_SIZE events, and exit() adds the section's duration to its histogram and to the
+ * total of its call stack (eg: "loop;sensors;imu").  Neither allocates.  From those, summary()
+ * shows each section's count, mean and percentiles, writeFoldedStacks() writes the stacks in the
+ * format flame graph tools read, and writeChromeTrace() writes the events in the ring as JSON for
+ * chrome://tracing or https://ui.perfetto.dev.
+ *
+ * Each section's self time, the part not spent in sections inside it, is kept too.  Given
+ * MemoryCounters, the profiler also counts the bytes each section allocates itself, which is how an
+ * AllocationMonitor tells which section caused an allocation spike.
+ *
+ * While disabled, enter() and exit() return after reading one field, so the calls can stay in
+ * competition code.  A Profiler must only be used from one thread: give other threads their own.
+ */
+public class Profiler {
+
+    public static final int MAX_SECTIONS = 256;
+    public static final int MAX_STACKS   = 1024;
+    public static final int MAX_DEPTH    = 32;
+    public static final int RING_SIZE    = 1 << 16;
+
+    // Durations are counted in buckets: four for each power of 2 nanoseconds, so that every bucket
+    // is at most a quarter as wide as the durations in it.  The last bucket is over 9 minutes.
+    static final int BUCKETS = 160;
+
+    private static final Profiler theInstance = new Profiler("main");
+
+    private final String name;
+    private boolean enabled = false;
+
+    // Sections
+    private final String[] sectionNames = new String[MAX_SECTIONS];
+    private int sectionCount = 0;
+    private final long[] counts    = new long[MAX_SECTIONS];
+    private final long[] totals    = new long[MAX_SECTIONS];
+    private final long[] maxima    = new long[MAX_SECTIONS];
+    private final long[] histogram = new long[MAX_SECTIONS * BUCKETS];
+    private final long[] selfTotals = new long[MAX_SECTIONS];
+    private final long[] selfBytes  = new long[MAX_SECTIONS];
+    private MemoryCounters memory = null;
+
+    // Call stacks, interned as they are first seen: stack s is stackSection[s] called from
+    // stackParent[s].  Stack 0 is the empty stack at the root.
+    private final int[]  stackParent  = new int[MAX_STACKS];
+    private final int[]  stackSection = new int[MAX_STACKS];
+    private final long[] stackTotals  = new long[MAX_STACKS];
+    private int stackCount = 1;
+    // Open hash of (parent, section) to stack, with 2^STACK_HASH_BITS entries, well above MAX_STACKS.
+    static final int STACK_HASH_BITS = 12;
+    private final int[] stackTable = new int[1 << STACK_HASH_BITS];
+    private int overflows = 0;
+
+    // Sections being timed
+    private final int[]  openSections = new int[MAX_DEPTH];
+    // The stack of each open section, or -1 - its caller's stack if there was no room for a new one.
+    private final int[]  openStacks   = new int[MAX_DEPTH];
+    private final long[] openTimes    = new long[MAX_DEPTH];
+    private final long[] openChildTimes = new long[MAX_DEPTH];
+    private final long[] openBytes      = new long[MAX_DEPTH];
+    private final long[] openChildBytes = new long[MAX_DEPTH];
+    private int depth = 0;
+    private int mismatches = 0;
+
+    // Event ring: code is the section times 2, plus 1 for an exit.
+    private final long[] eventTimes = new long[RING_SIZE];
+    private final int[]  eventCodes = new int[RING_SIZE];
+    private long eventCount = 0;
+
+    public static Profiler getInstance() {
+        return theInstance;
+    }
+
+    /**
+     * @param name shown as the thread name in Chrome traces
+     */
+    public Profiler(String name) {
+        this.name = name;
+        Arrays.fill(stackTable, -1);
+        stackParent[0] = -1;
+        stackSection[0] = -1;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Recording
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Register a section, or look up the index of an existing section with the same name.
+     *
+     * @throws IllegalStateException if MAX_SECTIONS sections are already registered
+     */
+    public int section(String name) {
+        for (int i = 0; i < sectionCount; i++) {
+            if (sectionNames[i].equals(name)) return i;
+        }
+        if (sectionCount == MAX_SECTIONS) {
+            throw new IllegalStateException("too many profiler sections, can't add " + name);
+        }
+        sectionNames[sectionCount] = name;
+        return sectionCount++;
+    }
+
+    /**
+     * Start timing a section.
+     */
+    public void enter(int section) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        if (depth == MAX_DEPTH) {
+            mismatches++;
+            return;
+        }
+        int parent = depth == 0 ? 0 : openStacks[depth - 1];
+        if (parent < 0) parent = -1 - parent;
+        openSections[depth] = section;
+        openStacks[depth] = stack(parent, section);
+        openTimes[depth] = now;
+        openChildTimes[depth] = 0;
+        if (memory != null) {
+            openBytes[depth] = memory.allocatedBytes();
+            openChildBytes[depth] = 0;
+        }
+        depth++;
+        record(now, section << 1);
+    }
+
+    /**
+     * Stop timing a section.  Sections must be exited in the reverse order they were entered: a
+     * section left open inside this one is closed here too, and counted in getMismatches().
+     */
+    public void exit(int section) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        int level = depth - 1;
+        while (level >= 0 && openSections[level] != section) {
+            level--;
+        }
+        if (level < 0) {
+            // Not open: entered before the profiler was enabled, or exited twice.
+            mismatches++;
+            return;
+        }
+        long bytes = memory != null ? memory.allocatedBytes() : 0;
+        while (depth > level) {
+            depth--;
+            int s = openSections[depth];
+            long duration = now - openTimes[depth];
+            counts[s]++;
+            totals[s] += duration;
+            if (duration > maxima[s]) maxima[s] = duration;
+            histogram[s * BUCKETS + bucket(duration)]++;
+            if (openStacks[depth] >= 0) stackTotals[openStacks[depth]] += duration;
+            selfTotals[s] += duration - openChildTimes[depth];
+            if (depth > 0) openChildTimes[depth - 1] += duration;
+            if (memory != null) {
+                long allocated = bytes - openBytes[depth];
+                selfBytes[s] += allocated - openChildBytes[depth];
+                if (depth > 0) openChildBytes[depth - 1] += allocated;
+            }
+            if (depth != level) mismatches++;
+            record(now, (s << 1) | 1);
+        }
+    }
+
+    private void record(long now, int code) {
+        int i = (int) (eventCount & (RING_SIZE - 1));
+        eventTimes[i] = now;
+        eventCodes[i] = code;
+        eventCount++;
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < 4) return nanos < 0 ? 0 : (int) nanos;
+        int power = 63 - Long.numberOfLeadingZeros(nanos);
+        int quarter = (int) (nanos >>> (power - 2)) & 3;
+        return Math.min(BUCKETS - 1, 4 * (power - 1) + quarter);
+    }
+
+    /**
+     * @return the shortest duration in a bucket
+     */
+    static long bucketLow(int bucket) {
+        if (bucket < 4) return bucket;
+        int power = bucket / 4 + 1;
+        return (long) (4 + bucket % 4) << (power - 2);
+    }
+
+    /**
+     * @return the stack for section called from parent, interned if new
+     */
+    private int stack(int parent, int section) {
+        int mask = stackTable.length - 1;
+        int i = ((parent * MAX_SECTIONS + section) * 0x9E3779B1) >>> (32 - STACK_HASH_BITS);
+        while (true) {
+            int s = stackTable[i];
+            if (s < 0) break;
+            if (stackParent[s] == parent && stackSection[s] == section) return s;
+            i = (i + 1) & mask;
+        }
+        if (stackCount == MAX_STACKS) {
+            // Out of room: the time will show as the caller's own.
+            overflows++;
+            return -1 - parent;
+        }
+        int s = stackCount++;
+        stackParent[s] = parent;
+        stackSection[s] = section;
+        stackTable[i] = s;
+        return s;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Control
+    //----------------------------------------------------------------------------------------------
+
+    public void setEnabled(boolean enabled) {
+        if (!enabled) depth = 0;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Count the bytes each section allocates, from now on.  Reading the counters makes enter() and
+     * exit() slower, by as long as the counters take to read.  Sections open when this is called are
+     * forgotten.
+     *
+     * @param memory the counters, or null to stop counting
+     */
+    public void setMemoryCounters(MemoryCounters memory) {
+        depth = 0;
+        this.memory = memory;
+    }
+
+    public MemoryCounters getMemoryCounters() {
+        return memory;
+    }
+
+    /**
+     * Forget all timings and events.  Sections stay registered.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(totals, 0);
+        Arrays.fill(maxima, 0);
+        Arrays.fill(histogram, 0);
+        Arrays.fill(selfTotals, 0);
+        Arrays.fill(selfBytes, 0);
+        Arrays.fill(stackTotals, 0);
+        Arrays.fill(stackTable, -1);
+        stackCount = 1;
+        depth = 0;
+        eventCount = 0;
+        mismatches = 0;
+        overflows = 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    public String getSectionName(int section) {
+        return sectionNames[section];
+    }
+
+    /**
+     * @return number of times the section was exited
+     */
+    public long getCount(int section) {
+        return counts[section];
+    }
+
+    /**
+     * @return total time spent in the section, in nanoseconds
+     */
+    public long getTotalNanos(int section) {
+        return totals[section];
+    }
+
+    /**
+     * @return time spent in the section and not in sections inside it, in nanoseconds
+     */
+    public long getSelfNanos(int section) {
+        return selfTotals[section];
+    }
+
+    /**
+     * @return bytes allocated in the section and not in sections inside it, or 0 if the profiler
+     *         has no MemoryCounters
+     */
+    public long getSelfBytes(int section) {
+        return selfBytes[section];
+    }
+
+    public long getMaxNanos(int section) {
+        return maxima[section];
+    }
+
+    /**
+     * @return mean time spent in the section, in milliseconds
+     */
+    public double getMeanMillis(int section) {
+        return counts[section] == 0 ? 0 : totals[section] / 1e6 / counts[section];
+    }
+
+    /**
+     * Estimate a percentile of the section's durations from its histogram.
+     *
+     * @param fraction eg: 0.99 for the 99th percentile
+     * @return the duration in milliseconds, exact to within 25%
+     */
+    public double getPercentileMillis(int section, double fraction) {
+        long n = counts[section];
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(fraction * n);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            long inBucket = histogram[section * BUCKETS + b];
+            if (seen + inBucket >= rank) {
+                // Interpolate within the bucket, and never beyond the largest duration seen.
+                double low = bucketLow(b);
+                double within = low + (bucketLow(b + 1) - low) * (rank - seen) / inBucket;
+                return Math.min(within, maxima[section]) / 1e6;
+            }
+            seen += inBucket;
+        }
+        return maxima[section] / 1e6;
+    }
+
+    /**
+     * @return exits that did not match the innermost open section, and enters beyond MAX_DEPTH
+     */
+    public int getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * @return number of events recorded, including those the ring no longer holds
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Reports
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @return a table of every section that was timed, slowest total first
+     */
+    public String summary() {
+        Integer[] order = new Integer[sectionCount];
+        for (int i = 0; i < sectionCount; i++) order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override public int compare(Integer a, Integer b) {
+                return Long.compare(totals[b], totals[a]);
+            }
+        });
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-24s %8s %10s %9s %9s %9s %9s",
+                "section", "count", "total ms", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        out.append(memory != null ? String.format(Locale.US, " %11s%n", "self B/call") : String.format(Locale.US, "%n"));
+        for (int s : order) {
+            if (counts[s] == 0) continue;
+            out.append(String.format(Locale.US, "%-24s %8d %10.1f %9.3f %9.3f %9.3f %9.3f",
+                    sectionNames[s], counts[s], totals[s] / 1e6, getMeanMillis(s),
+                    getPercentileMillis(s, 0.5), getPercentileMillis(s, 0.99), maxima[s] / 1e6));
+            out.append(memory != null ? String.format(Locale.US, " %11d%n", selfBytes[s] / counts[s]) : String.format(Locale.US, "%n"));
+        }
+        if (mismatches > 0 || overflows > 0) {
+            out.append(String.format(Locale.US, "%d mismatched enter/exit, %d stacks over the limit%n",
+                    mismatches, overflows));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write one line per call stack, with the time spent in its innermost section and not in
+     * sections called from it, in nanoseconds: "loop;sensors;imu 1234567".  This is the input of
+     * flamegraph.pl, speedscope and similar flame graph tools.
+     */
+    public void writeFoldedStacks(Appendable out) throws IOException {
+        long[] self = Arrays.copyOf(stackTotals, stackCount);
+        for (int s = 1; s < stackCount; s++) {
+            if (stackParent[s] > 0) self[stackParent[s]] -= stackTotals[s];
+        }
+        StringBuilder path = new StringBuilder();
+        for (int s = 1; s < stackCount; s++) {
+            if (self[s] <= 0) continue;
+            path.setLength(0);
+            appendPath(path, s);
+            out.append(path).append(' ').append(Long.toString(self[s])).append('\n');
+        }
+    }
+
+    private void appendPath(StringBuilder path, int stack) {
+        if (stackParent[stack] > 0) {
+            appendPath(path, stackParent[stack]);
+            path.append(';');
+        }
+        path.append(sectionNames[stackSection[stack]].replace(';', ',').replace(' ', '_'));
+    }
+
+    /**
+     * Write the sections in the event ring in the Chrome trace event format, one complete event
+     * per section, in microseconds from the oldest event.  Sections cut off by the start of the ring,
+     * or still open, are left out.
+     */
+    public void writeChromeTrace(Appendable out) throws IOException {
+        long count = Math.min(eventCount, RING_SIZE);
+        long first = eventCount - count;
+        long origin = count == 0 ? 0 : eventTimes[(int) (first & (RING_SIZE - 1))];
+        int[]  sections = new int[MAX_DEPTH];
+        long[] starts   = new long[MAX_DEPTH];
+        int level = 0;
+        boolean comma = false;
+
+        out.append("{\"traceEvents\":[\n");
+        out.append(String.format(Locale.US,
+                "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":1,\"args\":{\"name\":\"%s\"}}",
+                jsonEscape(name)));
+        comma = true;
+        for (long e = first; e < eventCount; e++) {
+            int i = (int) (e & (RING_SIZE - 1));
+            int section = eventCodes[i] >> 1;
+            if ((eventCodes[i] & 1) == 0) {
+                if (level < MAX_DEPTH) {
+                    sections[level] = section;
+                    starts[level] = eventTimes[i];
+                }
+                level++;
+            } else {
+                if (level == 0) continue;   // entered before the oldest event
+                level--;
+                if (level >= MAX_DEPTH || sections[level] != section) continue;
+                if (comma) out.append(",\n");
+                out.append(String.format(Locale.US,
+                        "{\"name\":\"%s\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":%.3f,\"dur\":%.3f}",
+                        jsonEscape(sectionNames[section]), (starts[level] - origin) / 1e3,
+                        (eventTimes[i] - starts[level]) / 1e3));
+                comma = true;
+            }
+        }
+        out.append("\n],\"displayTimeUnit\":\"ms\"}\n");
+    }
+
+    static String jsonEscape(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,325 @@
+package org.firstinspires.ftc.teamcode.servo;
+
+import org.firstinspires.ftc.teamcode.control.MotionProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * ServoMotionService moves servos along smooth profiles on its own thread, so that the control loop
+ * only says where each servo should go, and never waits for it to get there.
+ *
+ * A servo told to go to a position goes there as fast as it can, which jerks the mechanism and loads
+ * the servo; stepping the position from the loop with sleep() in between, as ConceptScanServo does,
+ * holds up everything else.  Instead, moveTo() plans a MotionProfile from where the servo is now, at
+ * its speed now, within the servo's Limits, and returns at once with the time the servo will arrive.
+ * Every periodMillis, the service thread works out where each servo should be, and sends the position
+ * only when it has changed by a whole quantum: sending a position takes a hub transaction, and
+ * positions closer than a quantum make no difference to the servo.
+ *
+ *     ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+ *     int hand = service.add("hand", new ServoOutput(handServo), new ServoMotionService.Limits(), 0.5);
+ *     service.start();
+ *     ...
+ *     service.moveTo(hand, 0.9);
+ *     ...
+ *     if (service.isArrived(hand)) ...
+ *     ...
+ *     service.close();
+ *
+ * update() does the work of the service thread once: call it from the loop instead of start(), or
+ * from a simulation with its own clock.
+ */
+public class ServoMotionService {
+
+    /**
+     * Something that takes a servo position, eg: a ServoOutput.
+     */
+    public interface Output {
+        void setPosition(double position);
+    }
+
+    public static class Parameters {
+        /** Time between updates of the servos */
+        public double periodMillis = 10.0;
+    }
+
+    /**
+     * How a servo may move, in servo position units (0 to 1 for the whole range).
+     */
+    public static class Limits {
+        /** Positions per second */
+        public double maxVelocity = 1.0;
+        /** Positions per second per second */
+        public double maxAcceleration = 4.0;
+        /** Smallest change of position worth sending to the servo */
+        public double quantum = 0.002;
+        public double minPosition = 0.0;
+        public double maxPosition = 1.0;
+    }
+
+    private static class Channel {
+        final String name;
+        final Output output;
+        final Limits limits;
+        // Guarded by this channel.
+        final MotionProfile profile = new MotionProfile();
+        // Only used by the thread running update().
+        double lastCommand = Double.NaN;
+        volatile double command = Double.NaN;
+        volatile int writes = 0;
+
+        Channel(String name, Output output, Limits limits, double position) {
+            this.name = name;
+            this.output = output;
+            this.limits = limits;
+            profile.reset(position);
+        }
+    }
+
+    private final Parameters parameters;
+    private final List<Channel> channels = new ArrayList<>();
+    private Thread worker;
+    private volatile boolean running = false;
+    private volatile long updates = 0;
+
+    public ServoMotionService(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Add a servo.  Call before start().
+     *
+     * @param position where the servo is, or should go straight away
+     * @return the servo's channel, to pass to moveTo()
+     */
+    public int add(String name, Output output, Limits limits, double position) {
+        if (worker != null) {
+            throw new IllegalStateException("Servos must be added before start()");
+        }
+        channels.add(new Channel(name, output, limits, position));
+        return channels.size() - 1;
+    }
+
+    /**
+     * Start moving the servos.
+     */
+    public void start() {
+        if (channels.isEmpty()) {
+            throw new IllegalStateException("No servos to move");
+        }
+        running = true;
+        worker = new Thread(new Runnable() {
+            @Override public void run() {
+                workerLoop();
+            }
+        }, "servo motion");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop moving the servos, where they are.
+     */
+    public void close() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join();
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Control loop side
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Send a servo to a position, from wherever it is now.  Never blocks.
+     *
+     * @param target clipped to the servo's minimum and maximum positions
+     * @return when the servo will arrive, on the System.nanoTime() clock
+     */
+    public long moveTo(int channel, double target) {
+        return moveTo(channel, target, System.nanoTime());
+    }
+
+    /**
+     * Send a servo to a position, as of a time on the System.nanoTime() clock.
+     */
+    public long moveTo(int channel, double target, long nowNanos) {
+        Channel c = channels.get(channel);
+        Limits limits = c.limits;
+        target = Math.max(limits.minPosition, Math.min(limits.maxPosition, target));
+        synchronized (c) {
+            MotionProfile profile = c.profile;
+            if (target == profile.getTarget()) {
+                return profile.getArrivalNanos();
+            }
+            profile.plan(profile.getPosition(nowNanos), profile.getVelocity(nowNanos), target,
+                    limits.maxVelocity, limits.maxAcceleration, nowNanos);
+            return profile.getArrivalNanos();
+        }
+    }
+
+    /**
+     * Stop a servo as soon as it can without jerking: it slows down and stays where it stops.
+     *
+     * @return when it will have stopped
+     */
+    public long halt(int channel) {
+        Channel c = channels.get(channel);
+        long now = System.nanoTime();
+        double stop;
+        synchronized (c) {
+            double velocity = c.profile.getVelocity(now);
+            stop = c.profile.getPosition(now) + velocity * Math.abs(velocity) / (2 * c.limits.maxAcceleration);
+        }
+        return moveTo(channel, stop, now);
+    }
+
+    /**
+     * @return true once the servo has finished its last move
+     */
+    public boolean isArrived(int channel) {
+        return getArrivalNanos(channel) - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return when the servo will finish its last move, on the System.nanoTime() clock
+     */
+    public long getArrivalNanos(int channel) {
+        Channel c = channels.get(channel);
+        synchronized (c) {
+            return c.profile.getArrivalNanos();
+        }
+    }
+
+    /**
+     * @return time until the servo finishes its last move, in milliseconds, or 0 if it has
+     */
+    public double getRemainingMillis(int channel) {
+        return Math.max(0, (getArrivalNanos(channel) - System.nanoTime()) / 1e6);
+    }
+
+    /**
+     * Wait for a servo to finish its moves, eg: between the steps of an autonomous.
+     *
+     * @return true if it arrived, false if the time ran out first
+     */
+    public boolean awaitArrival(int channel, double timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + (long) (timeoutMillis * 1e6);
+        while (true) {
+            // Checked again after each wait, in case the servo was sent somewhere else meanwhile.
+            long now = System.nanoTime();
+            long remaining = getArrivalNanos(channel) - now;
+            if (remaining <= 0) return true;
+            if (deadline - now <= 0) return false;
+            LockSupport.parkNanos(Math.min(remaining, deadline - now));
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    public double getTarget(int channel) {
+        Channel c = channels.get(channel);
+        synchronized (c) {
+            return c.profile.getTarget();
+        }
+    }
+
+    /**
+     * @return where the profile has the servo now: the servo itself lags behind a little
+     */
+    public double getPosition(int channel) {
+        Channel c = channels.get(channel);
+        synchronized (c) {
+            return c.profile.getPosition(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return the last position sent to the servo, or NaN if none was
+     */
+    public double getCommand(int channel) {
+        return channels.get(channel).command;
+    }
+
+    /**
+     * @return number of positions sent to the servo
+     */
+    public int getWrites(int channel) {
+        return channels.get(channel).writes;
+    }
+
+    public String getName(int channel) {
+        return channels.get(channel).name;
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        long now = System.nanoTime();
+        for (Channel c : channels) {
+            double target, remaining;
+            synchronized (c) {
+                target = c.profile.getTarget();
+                remaining = Math.max(0, (c.profile.getArrivalNanos() - now) / 1e6);
+            }
+            out.append(String.format(Locale.US, "%s: at %.3f, going to %.3f, %.0f ms to go, %d writes%n",
+                    c.name, c.command, target, remaining, c.writes));
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Service thread
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Send each servo the position its profile has for now, if it has changed by a quantum, or the
+     * target itself once the servo has arrived.
+     */
+    public void update(long nowNanos) {
+        for (Channel c : channels) {
+            double position;
+            boolean done;
+            synchronized (c) {
+                position = c.profile.getPosition(nowNanos);
+                done = c.profile.isDone(nowNanos);
+            }
+            double command = done ? position : c.limits.quantum * Math.round(position / c.limits.quantum);
+            command = Math.max(c.limits.minPosition, Math.min(c.limits.maxPosition, command));
+            if (command != c.lastCommand) {
+                // Outside the lock: a write takes a hub transaction, and moveTo() must not wait for it.
+                c.output.setPosition(command);
+                c.lastCommand = command;
+                c.command = command;
+                c.writes++;
+            }
+        }
+        updates++;
+    }
+
+    private void workerLoop() {
+        long period = (long) (parameters.periodMillis * 1e6);
+        long next = System.nanoTime();
+        while (running) {
+            update(System.nanoTime());
+            next += period;
+            long now = System.nanoTime();
+            if (next - now < 0) {
+                // Fell behind, eg: a slow write: skip the missed updates rather than rush them.
+                next = now;
+            }
+            LockSupport.parkNanos(next - now);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.firstinspires.ftc.teamcode.servo;
+
+import com.qualcomm.robotcore.hardware.Servo;
+
+/*
+ * ServoOutput lets a ServoMotionService move a Servo, in its own scaled range if it has one.
+ */
+public class ServoOutput implements ServoMotionService.Output {
+
+    private final Servo servo;
+
+    public ServoOutput(Servo servo) {
+        this.servo = servo;
+    }
+
+    @Override
+    public void setPosition(double position) {
+        servo.setPosition(position);
+    }
+}
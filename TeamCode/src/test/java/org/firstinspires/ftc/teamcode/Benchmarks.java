@@ -0,0 +1,49 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/*
+ * Benchmarks runs the benchmarks and simulations in src/test on the development machine's JVM.
+ *
+ * They are not unit tests: they take from seconds to minutes, and their numbers depend on the
+ * machine, so they are left out of "gradlew test" and only run on demand:
+ *
+ *     ./gradlew :TeamCode:benchmark                                        (all of them)
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=planner.PlannerBenchmark   (a comma separated list)
+ *
+ * Names are relative to the org.firstinspires.ftc.teamcode package.  Each one is a class with a main().
+ */
+public class Benchmarks {
+
+    static final String[] ALL = {
+            "hardware.InitBenchmark",
+            "capture.FrameRecorderBenchmark",
+            "power.PowerLimiterSimulation",
+            "odometry.DeadWheelSimulation",
+            "path.PathFollowerBenchmark",
+            "planner.PlannerBenchmark",
+            "color.ColorClassifierBenchmark",
+            "distance.DistanceServiceSimulation",
+            "profiler.ProfilerBenchmark",
+            "profiler.AllocationMonitorSimulation",
+            "servo.ServoMotionSimulation",
+            "mechanism.MechanismSimulation",
+            "vision.VisionTunerBenchmark",
+    };
+
+    public static void main(String[] args) throws Throwable {
+        String[] names = (args.length > 0) ? args : ALL;
+        for (String name : names) {
+            System.out.println("=== " + name);
+            Method main = Class.forName(Benchmarks.class.getPackage().getName() + "." + name.trim())
+                    .getMethod("main", String[].class);
+            try {
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            System.out.println();
+        }
+    }
+}
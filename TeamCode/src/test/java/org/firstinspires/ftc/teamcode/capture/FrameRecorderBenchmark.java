@@ -0,0 +1,201 @@
+package org.firstinspires.ftc.teamcode.capture;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * FrameRecorderBenchmark feeds synthetic 640x480 camera frames into a FrameRecorder at a fixed
+ * frame rate, and reports how long the producer side takes (this is the cost the vision pipeline
+ * sees), how many frames were dropped, and how long encoding takes on the worker.
+ * It then reads the recording back and checks the first recorded frame against the original.
+ *
+ * The producer cost is given both as elapsed time and as the producer thread's CPU time.  When the
+ * machine has fewer cores than busy threads the encoder can be scheduled in the middle of a copy,
+ * and the elapsed time then includes however long the encoder ran.
+ *
+ * The recording directory starts with stale segments from an "earlier recording", which must be
+ * pruned along with the new ones.
+ *
+ * Not part of the unit tests (see FrameRecorderTest).  Run it on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=capture.FrameRecorderBenchmark
+ *
+ * or from the test classpath with arguments:  FrameRecorderBenchmark [seconds] [fps] [channels] [directory]
+ */
+public class FrameRecorderBenchmark {
+
+    static final int WIDTH  = 640;
+    static final int HEIGHT = 480;
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+        double fps     = args.length > 1 ? Double.parseDouble(args[1]) : 30;
+        int channels   = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        File directory = args.length > 3 ? new File(args[3]) : new File(System.getProperty("java.io.tmpdir"), "frame-recorder-benchmark");
+        System.out.print(run(directory, seconds, fps, channels));
+    }
+
+    public static String run(File directory, double seconds, double fps, int channels) throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        for (File old : FrameRecording.listSegments(directory)) {
+            //noinspection ResultOfMethodCallIgnored
+            old.delete();
+        }
+
+        // Small segments, so that the recording rolls over and has to prune.
+        FrameRecorder.Parameters parameters = new FrameRecorder.Parameters();
+        parameters.maxSegmentBytes = 1L << 20;
+        parameters.maxSegments = 4;
+        File[] stale = new File[parameters.maxSegments];
+        for (int i = 0; i < stale.length; i++) {
+            stale[i] = writeEmptySegment(directory, i);
+        }
+
+        FrameRecorder recorder = new FrameRecorder(directory, parameters);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        byte[] frame = new byte[WIDTH * HEIGHT * channels];
+        Random random = new Random(1);
+        int frames = (int) (seconds * fps);
+        long periodNanos = (long) (1.0e9 / fps);
+        long worstNanos = 0, totalNanos = 0, cpuNanos = 0;
+        int copies = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < frames; i++) {
+            makeFrame(frame, channels, i, random);
+
+            long cpuStart = threads.getCurrentThreadCpuTime();
+            long captureNanos = System.nanoTime();
+            boolean recorded = recorder.record(frame, WIDTH, HEIGHT, channels, captureNanos);
+            long elapsed = System.nanoTime() - captureNanos;
+            if (recorded) {
+                cpuNanos += threads.getCurrentThreadCpuTime() - cpuStart;
+                worstNanos = Math.max(worstNanos, elapsed);
+                totalNanos += elapsed;
+                copies++;
+            }
+
+            long sleep = start + (i + 1) * periodNanos - System.nanoTime();
+            if (sleep > 0) Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+        }
+        recorder.close();
+
+        // Read back, and check the first recorded frame against the original.
+        int read = 0;
+        long lastNanos = 0;
+        boolean ordered = true;
+        int firstNumber = -1;
+        byte[] first = null;
+        FrameRecording.Frame last = null;
+        List<File> segments = FrameRecording.listSegments(directory);
+        try (FrameRecording recording = new FrameRecording(segments)) {
+            FrameRecording.Frame f;
+            while ((f = recording.next()) != null) {
+                if (read == 0) {
+                    firstNumber = f.frameNumber;
+                    first = f.pixels.clone();
+                }
+                ordered &= f.captureNanos > lastNanos;
+                lastNanos = f.captureNanos;
+                read++;
+                last = f;
+            }
+        }
+        boolean firstMatches = false;
+        if (last != null) {
+            Random replay = new Random(1);
+            for (int i = 0; i <= firstNumber; i++) {
+                makeFrame(frame, channels, i, replay);
+            }
+            firstMatches = last.channels == channels && matchesDownscaled(first, last.width, last.height, last.downscale, frame, channels);
+        }
+        boolean pruned = segments.size() <= parameters.maxSegments && !stale[0].exists();
+
+        if (!firstMatches || !ordered || !pruned || read == 0) {
+            throw new AssertionError(String.format(Locale.US,
+                    "recording is wrong: %d frames read, first frame %s, timestamps %s, %d segments kept",
+                    read, firstMatches ? "matches" : "differs", ordered ? "increasing" : "out of order", segments.size()));
+        }
+
+        double rawMiB = (double) recorder.getFramesWritten() * WIDTH * HEIGHT * channels / 1048576.0;
+        return String.format(Locale.US,
+                "%d frames at %.0f fps, %dx%dx%d downscaled by %d, %d cores%n" +
+                "recorder:        %s%n" +
+                "producer cost:   %.3f ms mean, %.3f ms worst elapsed; %.3f ms mean CPU%n" +
+                "compression:     %.1f MiB raw -> %.1f MiB on disk%n" +
+                "read back:       %d frames from frame %d, timestamps increasing, last frame %dx%dx%d, first frame matches%n" +
+                "pruning:         %d segments kept, stale segments from an earlier recording removed%n",
+                frames, fps, WIDTH, HEIGHT, channels, parameters.downscale, Runtime.getRuntime().availableProcessors(),
+                recorder,
+                totalNanos / 1.0e6 / copies, worstNanos / 1.0e6, cpuNanos / 1.0e6 / copies,
+                rawMiB, recorder.getBytesWritten() / 1048576.0,
+                read, firstNumber, last.width, last.height, last.channels,
+                segments.size());
+    }
+
+    /**
+     * Write a segment holding only a header, as if left by an earlier recording.
+     */
+    static File writeEmptySegment(File directory, int number) throws IOException {
+        File file = new File(directory, String.format(Locale.US, "%s%d-%04d%s",
+                FrameRecorder.SEGMENT_PREFIX, 1000000000000L + number, number, FrameRecorder.SEGMENT_SUFFIX));
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(FrameRecorder.MAGIC);
+            out.writeInt(FrameRecorder.FORMAT_VERSION);
+            out.writeLong(0);
+            out.writeLong(0);
+        }
+        return file;
+    }
+
+    /**
+     * Compare a decoded frame with a box filtered copy of the original.
+     */
+    static boolean matchesDownscaled(byte[] decoded, int width, int height, int scale, byte[] original, int channels) {
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int c = 0; c < channels; c++) {
+                    int sum = 0;
+                    for (int dy = 0; dy < scale; dy++) {
+                        for (int dx = 0; dx < scale; dx++) {
+                            sum += original[((y * scale + dy) * WIDTH + x * scale + dx) * channels + c] & 0xFF;
+                        }
+                    }
+                    if ((decoded[i++] & 0xFF) != sum / (scale * scale)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A smooth background with a moving bright square and some sensor noise, and an opaque alpha
+     * channel if there is a fourth channel.
+     */
+    static void makeFrame(byte[] frame, int channels, int index, Random random) {
+        int squareX = (index * 7) % (WIDTH - 80);
+        int squareY = (index * 3) % (HEIGHT - 80);
+        int i = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean inSquare = x >= squareX && x < squareX + 80 && y >= squareY && y < squareY + 80;
+                int noise = random.nextInt(8);
+                frame[i++] = (byte) (inSquare ? 230 : (x * 255 / WIDTH) + noise);
+                frame[i++] = (byte) (inSquare ? 40  : (y * 255 / HEIGHT) + noise);
+                frame[i++] = (byte) (inSquare ? 40  : 128 + noise);
+                if (channels == 4) frame[i++] = (byte) 255;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.firstinspires.ftc.teamcode.capture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrameRecorderTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("frame-recorder-test").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    /** Offer the frame until the recorder has allocated its slots and accepts it. */
+    private static void recordFirst(FrameRecorder recorder, byte[] pixels, int width, int height, int channels, long captureNanos)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + 5000000000L;
+        while (!recorder.record(pixels, width, height, channels, captureNanos)) {
+            if (System.nanoTime() > deadline) fail("the recorder never allocated its slots");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void framesAreReadBackDownscaled() throws IOException, InterruptedException {
+        FrameRecorder.Parameters parameters = new FrameRecorder.Parameters();
+        parameters.downscale = 2;
+        FrameRecorder recorder = new FrameRecorder(directory, parameters);
+
+        // 4x2 single channel frame: each 2x2 block averages to one output pixel.
+        byte[] first  = { 10, 20, (byte) 200, (byte) 202,
+                          30, 40, (byte) 204, (byte) 206 };
+        byte[] second = { 1, 1, 9, 9,
+                          1, 1, 9, 9 };
+        recordFirst(recorder, first, 4, 2, 1, 1000);
+        assertTrue(recorder.record(second, 4, 2, 1, 2000));
+        recorder.close();
+
+        assertNull(recorder.getLastError());
+        assertEquals(2, recorder.getFramesWritten());
+        assertEquals(recorder.getFramesOffered(), recorder.getFramesDropped() + recorder.getFramesWritten());
+
+        FrameRecording recording = new FrameRecording(FrameRecording.listSegments(directory));
+        try {
+            FrameRecording.Frame frame = recording.next();
+            int firstNumber = frame.frameNumber;
+            assertEquals(recorder.getFramesOffered() - 2, firstNumber);
+            assertEquals(1000, frame.captureNanos);
+            assertEquals(2, frame.width);
+            assertEquals(1, frame.height);
+            assertEquals(2, frame.downscale);
+            assertArrayEquals(new byte[] { 25, (byte) 203 }, frame.pixels);
+
+            frame = recording.next();
+            assertEquals(firstNumber + 1, frame.frameNumber);
+            assertArrayEquals(new byte[] { 1, 9 }, frame.pixels);
+
+            assertNull(recording.next());
+        } finally {
+            recording.close();
+        }
+    }
+
+    @Test
+    public void framesLargerThanTheFirstAreDropped() throws IOException, InterruptedException {
+        FrameRecorder recorder = new FrameRecorder(directory, new FrameRecorder.Parameters());
+        recordFirst(recorder, new byte[4 * 4 * 3], 4, 4, 3, 0);
+
+        assertFalse(recorder.record(new byte[8 * 4 * 3], 8, 4, 3, 1));
+        assertFalse(recorder.record(new byte[4 * 4 * 4], 4, 4, 4, 2));
+        recorder.close();
+
+        assertEquals(1, recorder.getFramesWritten());
+        assertEquals(recorder.getFramesOffered(), recorder.getFramesDropped() + recorder.getFramesWritten());
+    }
+
+    @Test
+    public void framesAfterAWriteErrorAreCountedAsDropped() throws IOException, InterruptedException {
+        FrameRecorder recorder = new FrameRecorder(directory, new FrameRecorder.Parameters());
+        // The first segment can't be created once its directory is gone.
+        assertTrue(directory.delete());
+
+        byte[] pixels = new byte[4 * 4];
+        recordFirst(recorder, pixels, 4, 4, 1, 0);
+        for (int i = 1; i <= 3; i++) {
+            recorder.record(pixels, 4, 4, 1, i);
+        }
+        recorder.close();
+
+        assertNotNull(recorder.getLastError());
+        assertEquals(0, recorder.getFramesWritten());
+        assertEquals(recorder.getFramesOffered(), recorder.getFramesDropped());
+    }
+
+    @Test
+    public void oldestSegmentsAreDeleted() throws IOException, InterruptedException {
+        // Two segments left by an earlier recording.
+        for (String name : new String[] { "frames-1-0000.rec", "frames-1-0001.rec" }) {
+            new FileOutputStream(new File(directory, name)).close();
+        }
+        FrameRecorder.Parameters parameters = new FrameRecorder.Parameters();
+        parameters.maxSegmentBytes = 1;     // one frame per segment
+        parameters.maxSegments = 2;
+        FrameRecorder recorder = new FrameRecorder(directory, parameters);
+
+        byte[] pixels = new byte[4 * 4];
+        recordFirst(recorder, pixels, 4, 4, 1, 0);
+        for (int i = 1; i <= 2; i++) {
+            // Wait for the previous frame so none is dropped for lack of a slot.
+            while (recorder.getFramesWritten() < i) Thread.sleep(1);
+            assertTrue(recorder.record(pixels, 4, 4, 1, i));
+        }
+        recorder.close();
+
+        assertEquals(3, recorder.getFramesWritten());
+        List<File> segments = FrameRecording.listSegments(directory);
+        assertEquals(2, segments.size());
+        assertFalse(new File(directory, "frames-1-0000.rec").exists());
+        assertFalse(new File(directory, "frames-1-0001.rec").exists());
+
+        FrameRecording recording = new FrameRecording(segments);
+        try {
+            assertEquals(1, recording.next().captureNanos);
+            assertEquals(2, recording.next().captureNanos);
+            assertNull(recording.next());
+        } finally {
+            recording.close();
+        }
+    }
+}
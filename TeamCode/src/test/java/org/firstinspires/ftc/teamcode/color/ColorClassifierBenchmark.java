@@ -0,0 +1,322 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * ColorClassifierBenchmark compares ColorClassifier's table with converting each color to HSV and
+ * comparing thresholds, as SensorColor and ConceptVisionColorLocator users do.
+ *
+ * It reports how long the tables take to build and how often they agree with the exact comparison,
+ * the time per color sensor reading and per 640x480 camera frame, and, with a simulated color
+ * sensor watching game pieces go by under light that varies tenfold, how often each approach gives
+ * the right class.
+ *
+ * ColorClassifierTest covers the classifier and the filter; run the comparison on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=color.ColorClassifierBenchmark
+ */
+public class ColorClassifierBenchmark {
+
+    static final int WIDTH  = 640;
+    static final int HEIGHT = 480;
+
+    static ColorClassifier classes(int bits, float minimumValue) {
+        return new ColorClassifier.Builder()
+                .add("red",    340,  20, 0.45f, minimumValue)
+                .add("yellow",  35,  75, 0.45f, minimumValue)
+                .add("blue",   190, 250, 0.45f, minimumValue)
+                .bits(bits)
+                .build();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static String tables() {
+        StringBuilder out = new StringBuilder();
+        Random random = new Random(3);
+        float[] colors = new float[3 * 1000000];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextFloat();
+        }
+        float[] hsv = new float[3];
+        for (int bits = 4; bits <= 7; bits++) {
+            long best = Long.MAX_VALUE;
+            ColorClassifier classifier = null;
+            for (int run = 0; run < 5; run++) {
+                long t0 = System.nanoTime();
+                classifier = classes(bits, 0.1f);
+                best = Math.min(best, System.nanoTime() - t0);
+            }
+            int agree = 0, classified = 0;
+            for (int i = 0; i < colors.length; i += 3) {
+                int exact = classifier.classifyExact(colors[i], colors[i + 1], colors[i + 2], hsv);
+                if (classifier.classify(colors[i], colors[i + 1], colors[i + 2]) == exact) {
+                    agree++;
+                }
+                if (exact != ColorClassifier.NONE) {
+                    classified++;
+                }
+            }
+            out.append(String.format(Locale.US, "%d bits: table %6d KB, built in %7.2f ms, agrees with HSV thresholds on %.2f%% of random colors (%.0f%% of them in a class)%n",
+                    bits, classifier.getTableSize() / 1024, best / 1e6, 100.0 * agree / (colors.length / 3),
+                    100.0 * classified / (colors.length / 3)));
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static String readings() {
+        ColorClassifier classifier = classes(ColorClassifier.DEFAULT_BITS, 0.1f);
+        Random random = new Random(4);
+        float[] colors = new float[3 * 4096];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextFloat();
+        }
+        float[] hsv = new float[3];
+        long bestExact = Long.MAX_VALUE, bestTable = Long.MAX_VALUE;
+        int sum = 0;
+        final int passes = 200;
+        for (int run = 0; run < 10; run++) {
+            long t0 = System.nanoTime();
+            for (int pass = 0; pass < passes; pass++) {
+                for (int i = 0; i < colors.length; i += 3) {
+                    sum += classifier.classifyExact(colors[i], colors[i + 1], colors[i + 2], hsv);
+                }
+            }
+            long t1 = System.nanoTime();
+            for (int pass = 0; pass < passes; pass++) {
+                for (int i = 0; i < colors.length; i += 3) {
+                    sum += classifier.classify(colors[i], colors[i + 1], colors[i + 2]);
+                }
+            }
+            long t2 = System.nanoTime();
+            bestExact = Math.min(bestExact, t1 - t0);
+            bestTable = Math.min(bestTable, t2 - t1);
+        }
+        double calls = passes * colors.length / 3.0;
+        return String.format(Locale.US, "per reading: HSV thresholds %5.1f ns, table %5.1f ns (%.1fx)  [%d]%n",
+                bestExact / calls, bestTable / calls, (double) bestExact / bestTable, sum & 1);
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * A gray field mat with red, yellow and blue pieces on it, and some noise.
+     */
+    static byte[] frame() {
+        byte[] pixels = new byte[WIDTH * HEIGHT * 3];
+        Random random = new Random(5);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = 110, g = 115, b = 120;
+                if (x > 60 && x < 220 && y > 200 && y < 300) {
+                    r = 190; g = 40; b = 35;
+                } else if (x > 260 && x < 420 && y > 200 && y < 300) {
+                    r = 210; g = 180; b = 30;
+                } else if (x > 460 && x < 620 && y > 200 && y < 300) {
+                    r = 30; g = 60; b = 180;
+                }
+                int i = 3 * (y * WIDTH + x);
+                pixels[i]     = (byte) clip(r + random.nextGaussian() * 12);
+                pixels[i + 1] = (byte) clip(g + random.nextGaussian() * 12);
+                pixels[i + 2] = (byte) clip(b + random.nextGaussian() * 12);
+            }
+        }
+        return pixels;
+    }
+
+    static int clip(double value) {
+        return (int) Math.min(Math.max(value, 0), 255);
+    }
+
+    static String frames() {
+        ColorClassifier classifier = classes(ColorClassifier.DEFAULT_BITS, 0.1f);
+        byte[] pixels = frame();
+        int[] exactCounts = new int[classifier.getClassCount() + 1];
+        int[] counts = new int[classifier.getClassCount() + 1];
+        float[] hsv = new float[3];
+        StringBuilder out = new StringBuilder();
+
+        long bestExact = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            Arrays.fill(exactCounts, 0);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < pixels.length; i += 3) {
+                exactCounts[classifier.classifyExact((pixels[i] & 0xff) / 255f, (pixels[i + 1] & 0xff) / 255f,
+                        (pixels[i + 2] & 0xff) / 255f, hsv)]++;
+            }
+            bestExact = Math.min(bestExact, System.nanoTime() - t0);
+        }
+        out.append(String.format(Locale.US, "640x480 frame, HSV thresholds:     %6.2f ms, %6.1f Mpixel/s%n",
+                bestExact / 1e6, WIDTH * HEIGHT * 1e3 / bestExact));
+
+        for (int decimation = 1; decimation <= 4; decimation *= 2) {
+            long best = Long.MAX_VALUE;
+            int pixelsPerRow = WIDTH / decimation;
+            for (int run = 0; run < 20; run++) {
+                Arrays.fill(counts, 0);
+                long t0 = System.nanoTime();
+                for (int y = 0; y < HEIGHT; y += decimation) {
+                    classifier.count(pixels, 3 * y * WIDTH, pixelsPerRow, 3 * decimation, counts);
+                }
+                best = Math.min(best, System.nanoTime() - t0);
+            }
+            StringBuilder shares = new StringBuilder();
+            int total = pixelsPerRow * (HEIGHT / decimation);
+            for (int id = 0; id < counts.length; id++) {
+                shares.append(String.format(Locale.US, " %s %.1f%% (%.1f%%)", classifier.getName(id),
+                        100.0 * counts[id] / total, 100.0 * exactCounts[id] / (WIDTH * HEIGHT)));
+            }
+            out.append(String.format(Locale.US, "640x480 frame, table, 1 pixel in %d: %6.2f ms, %6.1f Mpixel/s;%s%n",
+                    decimation * decimation, best / 1e6, WIDTH * HEIGHT * 1e3 / best, shares));
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static final float[][] REFLECTANCE = {
+            { 0.30f, 0.32f, 0.33f },    // field mat: none
+            { 0.55f, 0.22f, 0.16f },    // red
+            { 0.60f, 0.50f, 0.14f },    // yellow
+            { 0.12f, 0.22f, 0.55f },    // blue
+    };
+
+    static final int   READINGS       = 3000;
+    static final float READING_SECONDS = 0.020f;
+    static final int   SETTLE         = 4;
+
+    /**
+     * What a color sensor sees: segments of field mat and game pieces, with a mixed reading at each
+     * edge, under light that varies tenfold.
+     */
+    static class Scene {
+        final int[]   truth = new int[READINGS];
+        final float[] red   = new float[READINGS];
+        final float[] green = new float[READINGS];
+        final float[] blue  = new float[READINGS];
+        int changes = 0;
+
+        Scene(long seed) {
+            Random random = new Random(seed);
+            int current = 0, left = 0, previous = 0;
+            for (int i = 0; i < READINGS; i++) {
+                boolean edge = false;
+                if (left == 0) {
+                    previous = current;
+                    current = random.nextInt(REFLECTANCE.length);
+                    left = 15 + random.nextInt(60);
+                    edge = current != previous;
+                    if (edge) {
+                        changes++;
+                    }
+                }
+                left--;
+                truth[i] = current;
+                double t = i * READING_SECONDS;
+                float light = (float) (0.003 * Math.pow(10, 1.5 * (0.5 + 0.5 * Math.sin(2 * Math.PI * t / 7))));
+                float[] r = REFLECTANCE[current], q = REFLECTANCE[previous];
+                float mix = edge ? 0.5f : 1f;
+                red[i]   = light * (mix * r[0] + (1 - mix) * q[0]);
+                green[i] = light * (mix * r[1] + (1 - mix) * q[1]);
+                blue[i]  = light * (mix * r[2] + (1 - mix) * q[2]);
+            }
+        }
+    }
+
+    static Random noise;
+
+    /**
+     * A normalized reading: raw value plus noise, in steps of 1/16384, times the gain, clipped at 1.
+     */
+    static float sense(float raw, float gain) {
+        float counts = Math.round(Math.max(0, raw + (float) noise.nextGaussian() * 0.0003f) * 16384);
+        return Math.min(1f, counts / 16384 * gain);
+    }
+
+    interface Method {
+        int classify(float red, float green, float blue, float[] hsv);
+        float gain();
+    }
+
+    /**
+     * @return the share of settled readings given the right class
+     */
+    static double score(StringBuilder out, String name, Scene scene, Method method) {
+        float[] hsv = new float[3];
+        int correct = 0, counted = 0, changes = 0, last = -1, sinceEdge = SETTLE;
+        for (int i = 0; i < READINGS; i++) {
+            float gain = method.gain();
+            int id = method.classify(sense(scene.red[i], gain), sense(scene.green[i], gain), sense(scene.blue[i], gain), hsv);
+            if (i > 0 && scene.truth[i] != scene.truth[i - 1]) {
+                sinceEdge = 0;
+            }
+            // Give every method a few readings to catch up after an edge.
+            if (sinceEdge++ >= SETTLE) {
+                counted++;
+                if (id == scene.truth[i]) {
+                    correct++;
+                }
+            }
+            if (last >= 0 && id != last) {
+                changes++;
+            }
+            last = id;
+        }
+        out.append(String.format(Locale.US, "  %-34s %5.1f%% right, %4d changes of class for %d real ones%n",
+                name, 100.0 * correct / counted, changes, scene.changes));
+        return (double) correct / counted;
+    }
+
+    static String sensor() {
+        Scene scene = new Scene(6);
+        StringBuilder out = new StringBuilder("simulated color sensor, light varying tenfold, 50 readings/s for 60 s:\n");
+        // Thresholds for a fixed gain must accept dim readings.
+        final ColorClassifier dim = classes(ColorClassifier.DEFAULT_BITS, 0.004f);
+        final ColorClassifier bright = classes(ColorClassifier.DEFAULT_BITS, 0.1f);
+
+        noise = new Random(7);
+        double thresholds = score(out, "fixed gain 2, HSV thresholds", scene, new Method() {
+            public int classify(float r, float g, float b, float[] hsv) { return dim.classifyExact(r, g, b, hsv); }
+            public float gain() { return 2; }
+        });
+        noise = new Random(7);
+        score(out, "fixed gain 2, table", scene, new Method() {
+            public int classify(float r, float g, float b, float[] hsv) { return dim.classify(r, g, b); }
+            public float gain() { return 2; }
+        });
+
+        for (final int window : new int[] { 1, 5 }) {
+            ColorSensorFilter.Parameters parameters = new ColorSensorFilter.Parameters();
+            parameters.voteWindow = window;
+            final ColorSensorFilter filter = new ColorSensorFilter(bright, parameters);
+            noise = new Random(7);
+            double filtered = score(out, window == 1 ? "auto gain, table" : "auto gain, table, vote of " + window, scene, new Method() {
+                public int classify(float r, float g, float b, float[] hsv) { return filter.update(r, g, b); }
+                public float gain() { return filter.getGain(); }
+            });
+            if (filtered <= thresholds) {
+                throw new AssertionError(String.format(Locale.US, "ColorSensorFilter with a vote of %d is right %.1f%% of the time, "
+                        + "HSV thresholds %.1f%%", window, 100 * filtered, 100 * thresholds));
+            }
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    public static String run() {
+        // Warm up.
+        tables();
+        readings();
+        frames();
+        return tables() + readings() + frames() + sensor();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,141 @@
+package org.firstinspires.ftc.teamcode.color;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColorClassifierTest {
+
+    private final ColorClassifier classifier = ColorClassifierBenchmark.classes(ColorClassifier.DEFAULT_BITS, 0.1f);
+    private final int red    = classifier.getId("red");
+    private final int yellow = classifier.getId("yellow");
+    private final int blue   = classifier.getId("blue");
+
+    @Test
+    public void classesAreNumberedInTheOrderAdded() {
+        assertEquals(3, classifier.getClassCount());
+        assertEquals(1, red);
+        assertEquals("blue", classifier.getName(blue));
+        assertEquals("none", classifier.getName(ColorClassifier.NONE));
+        assertEquals(ColorClassifier.NONE, classifier.getId("green"));
+    }
+
+    @Test
+    public void tableMatchesHsvThresholdsAwayFromBoundaries() {
+        float[] hsv = new float[3];
+        assertEquals(red,    classifier.classify(0.8f, 0.1f, 0.1f));
+        assertEquals(red,    classifier.classify(0.8f, 0.1f, 0.3f));    // hue 345, across 0
+        assertEquals(yellow, classifier.classify(0.8f, 0.7f, 0.1f));
+        assertEquals(blue,   classifier.classify(0.1f, 0.3f, 0.8f));
+        assertEquals(ColorClassifier.NONE, classifier.classify(0.5f, 0.5f, 0.5f));   // gray
+        assertEquals(ColorClassifier.NONE, classifier.classify(0.05f, 0.01f, 0.01f)); // too dark
+        assertEquals(ColorClassifier.NONE, classifier.classifyExact(0.05f, 0.01f, 0.01f, hsv));
+    }
+
+    @Test
+    public void overlappingRangesGoToTheFirstClass() {
+        ColorClassifier overlapping = new ColorClassifier.Builder()
+                .add("orange", 10, 40, 0.5f, 0.1f)
+                .add("yellow", 30, 70, 0.5f, 0.1f)
+                .build();
+
+        assertEquals(1, overlapping.classify(0.9f, 0.6f, 0.1f));    // hue 36
+        assertEquals(2, overlapping.classify(0.9f, 0.9f, 0.1f));    // hue 60
+    }
+
+    @Test
+    public void dimColorsKeepTheirHue() {
+        ColorClassifier dim = ColorClassifierBenchmark.classes(ColorClassifier.DEFAULT_BITS, 0.004f);
+
+        assertEquals(red,    dim.classify(0.02f, 0.006f, 0.005f));
+        assertEquals(yellow, dim.classify(0.02f, 0.017f, 0.005f));
+        assertEquals(blue,   dim.classify(0.005f, 0.008f, 0.02f));
+    }
+
+    @Test
+    public void byteAndFloatChannelsAgree() {
+        Random random = new Random(1);
+        byte[] pixels = new byte[3 * 1000];
+        random.nextBytes(pixels);
+        int[] expected = new int[classifier.getClassCount() + 1];
+        for (int i = 0; i < pixels.length; i += 3) {
+            int r = pixels[i] & 0xff, g = pixels[i + 1] & 0xff, b = pixels[i + 2] & 0xff;
+            int id = classifier.classify(r, g, b);
+            assertEquals(id, classifier.classify(r / 255f, g / 255f, b / 255f));
+            assertEquals(id, classifier.classifyColor(0xff000000 | (r << 16) | (g << 8) | b));
+            expected[id]++;
+        }
+
+        int[] counts = new int[classifier.getClassCount() + 1];
+        classifier.count(pixels, 0, pixels.length / 3, 3, counts);
+
+        assertArrayEquals(expected, counts);
+    }
+
+    @Test
+    public void voteOnlyChangesOnAMajority() {
+        ColorVote vote = new ColorVote(5, 3);
+
+        assertEquals(ColorClassifier.NONE, vote.add(red));
+        assertEquals(ColorClassifier.NONE, vote.add(red));
+        assertEquals(red, vote.add(red));
+        assertEquals(red, vote.add(blue));
+        assertEquals(red, vote.add(blue));
+        // The oldest red drops out of the window.
+        assertEquals(blue, vote.add(blue));
+        assertEquals(0.6f, vote.getAgreement(), 1e-6f);
+
+        vote.reset();
+        assertEquals(ColorClassifier.NONE, vote.getStable());
+    }
+
+    @Test
+    public void filterRaisesTheGainForDimReadingsAndLowersItWhenClipped() {
+        ColorSensorFilter filter = new ColorSensorFilter(classifier);
+        assertTrue(filter.isGainChanged());
+
+        // Dim: the gain goes up by at most maximumGainStep, and the reading is not classified.
+        filter.update(0.01f, 0.002f, 0.002f);
+        assertFalse(filter.isClassified());
+        assertEquals(16f, filter.getGain(), 1e-6f);
+
+        // On target: classified, gain left alone.
+        filter.update(0.5f, 0.1f, 0.1f);
+        assertTrue(filter.isClassified());
+        assertFalse(filter.isGainChanged());
+        assertEquals(red, filter.getLatest());
+
+        // Clipped: not classified, gain down.
+        filter.update(1f, 0.3f, 0.3f);
+        assertFalse(filter.isClassified());
+        assertEquals(2f, filter.getGain(), 1e-6f);
+        assertEquals(2, filter.getUnclassifiedCount());
+    }
+
+    @Test
+    public void simulatedSensorIsMostlyRight() {
+        ColorClassifierBenchmark.Scene scene = new ColorClassifierBenchmark.Scene(6);
+        StringBuilder out = new StringBuilder();
+        final ColorClassifier dim = ColorClassifierBenchmark.classes(ColorClassifier.DEFAULT_BITS, 0.004f);
+        final ColorSensorFilter filter = new ColorSensorFilter(classifier);
+
+        ColorClassifierBenchmark.noise = new Random(7);
+        double fixed = ColorClassifierBenchmark.score(out, "fixed gain 2, table", scene, new ColorClassifierBenchmark.Method() {
+            public int classify(float r, float g, float b, float[] hsv) { return dim.classify(r, g, b); }
+            public float gain() { return 2; }
+        });
+        ColorClassifierBenchmark.noise = new Random(7);
+        double filtered = ColorClassifierBenchmark.score(out, "auto gain, table, vote of 5", scene, new ColorClassifierBenchmark.Method() {
+            public int classify(float r, float g, float b, float[] hsv) { return filter.update(r, g, b); }
+            public float gain() { return filter.getGain(); }
+        });
+
+        assertTrue(out.toString(), fixed > 0.80);
+        assertTrue(out.toString(), filtered > 0.95);
+    }
+}
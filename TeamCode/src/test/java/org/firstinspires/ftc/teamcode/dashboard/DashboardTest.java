@@ -0,0 +1,187 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fi.iki.elonen.NanoHTTPD;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DashboardTest {
+
+    private final Dashboard dashboard = new Dashboard();
+
+    /** One decoded DashboardStream message. */
+    private static class Message {
+        int kind;
+        int schemaVersion;
+        long sequence;
+        int[] channels;
+        float[] values;
+    }
+
+    private static Message read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        int length = in.readUnsignedShort();
+        Message message = new Message();
+        message.kind = in.readUnsignedByte();
+        message.schemaVersion = in.readUnsignedShort();
+        message.sequence = in.readInt() & 0xFFFFFFFFL;
+        in.readInt();
+        int count = in.readUnsignedShort();
+        assertEquals("message length", DashboardStream.HEADER_BYTES - 2 + count * DashboardStream.VALUE_BYTES, length);
+        message.channels = new int[count];
+        message.values = new float[count];
+        for (int i = 0; i < count; i++) {
+            message.channels[i] = in.readUnsignedShort();
+            message.values[i] = in.readFloat();
+        }
+        return message;
+    }
+
+    @Test
+    public void firstMessageIsKeyFrameWithEveryChannel() throws IOException {
+        int a = dashboard.channel("a");
+        int b = dashboard.channel("b");
+        dashboard.put(a, 1.5);
+        dashboard.put(b, -2);
+        dashboard.publish();
+
+        Message message = read(dashboard.openStream("", 1000));
+
+        assertEquals(DashboardStream.KIND_KEY_FRAME, message.kind);
+        assertEquals(2, message.schemaVersion);
+        assertEquals(1, message.sequence);
+        assertArrayEquals(new int[] {a, b}, message.channels);
+        assertArrayEquals(new float[] {1.5f, -2f}, message.values, 0);
+    }
+
+    @Test
+    public void deltaFrameOnlyCarriesChangedValues() throws IOException {
+        int a = dashboard.channel("a");
+        int b = dashboard.channel("b");
+        int c = dashboard.channel("c");
+        DashboardStream stream = dashboard.openStream(null, 1000);
+        dashboard.put(a, 1);
+        dashboard.put(b, 2);
+        dashboard.put(c, Double.NaN);
+        dashboard.publish();
+        read(stream);
+
+        dashboard.put(b, 3);
+        dashboard.publish();
+        Message message = read(stream);
+
+        assertEquals(DashboardStream.KIND_DELTA, message.kind);
+        assertEquals(2, message.sequence);
+        assertArrayEquals(new int[] {b}, message.channels);
+        assertArrayEquals(new float[] {3f}, message.values, 0);
+
+        dashboard.publish();
+        message = read(stream);
+        assertEquals(DashboardStream.KIND_DELTA, message.kind);
+        assertEquals("an unchanged NaN is not sent again", 0, message.channels.length);
+    }
+
+    @Test
+    public void streamOnlySendsSubscribedChannels() throws IOException {
+        dashboard.channel("pose.x");
+        dashboard.channel("loop.ms");
+        dashboard.channel("pose.y");
+        dashboard.channel("drive.left");
+        dashboard.publish();
+
+        Message message = read(dashboard.openStream(" pose , drive", 1000));
+
+        assertArrayEquals(new int[] {0, 2, 3}, message.channels);
+    }
+
+    @Test
+    public void resetSendsKeyFrameOfTheNewChannels() throws IOException {
+        dashboard.channel("old.a");
+        dashboard.channel("old.b");
+        DashboardStream stream = dashboard.openStream("new", 1000);
+        dashboard.publish();
+        assertEquals(0, read(stream).channels.length);
+
+        dashboard.reset();
+        int a = dashboard.channel("new.a");
+        dashboard.put(a, 7);
+        dashboard.publish();
+        Message message = read(stream);
+
+        assertEquals(DashboardStream.KIND_KEY_FRAME, message.kind);
+        assertEquals(4, message.schemaVersion);
+        assertArrayEquals(new int[] {a}, message.channels);
+        assertArrayEquals(new float[] {7f}, message.values, 0);
+    }
+
+    @Test
+    public void schemaListsChannelsAndGains() {
+        dashboard.channel("pose.x");
+        dashboard.channel("say \"hi\"\n");
+        dashboard.gain("kP", 0.25);
+        dashboard.gain("broken", Double.POSITIVE_INFINITY);
+
+        assertEquals("{\"version\":2,\"channels\":[\"pose.x\",\"say \\\"hi\\\"\\u000a\"],\"gains\":{\"kP\":0.25,\"broken\":null}}",
+                dashboard.schemaJson());
+    }
+
+    @Test
+    public void gainIsChangedThroughTheWebHandler() throws IOException {
+        Gain kP = dashboard.gain("heading.kP", 0.02);
+
+        NanoHTTPD.Response response = post(NanoHTTPD.Method.POST, "heading.kP", "0.05");
+
+        assertEquals(NanoHTTPD.Response.Status.OK, response.getStatus());
+        assertEquals(0.05, kP.get(), 0);
+        assertEquals(dashboard.schemaJson(), body(response));
+        assertEquals(0.05, dashboard.gain("heading.kP", 0.02).get(), 0);
+    }
+
+    @Test
+    public void badGainRequestsAreRejected() {
+        Gain kP = dashboard.gain("heading.kP", 0.02);
+
+        assertEquals(NanoHTTPD.Response.Status.METHOD_NOT_ALLOWED, post(NanoHTTPD.Method.GET, "heading.kP", "0.05").getStatus());
+        assertEquals(NanoHTTPD.Response.Status.NOT_FOUND, post(NanoHTTPD.Method.POST, "heading.kD", "0.05").getStatus());
+        assertEquals(NanoHTTPD.Response.Status.BAD_REQUEST, post(NanoHTTPD.Method.POST, "heading.kP", "fast").getStatus());
+        assertEquals(NanoHTTPD.Response.Status.BAD_REQUEST, post(NanoHTTPD.Method.POST, "heading.kP", "Infinity").getStatus());
+        assertEquals(NanoHTTPD.Response.Status.BAD_REQUEST, post(NanoHTTPD.Method.POST, "heading.kP", "NaN").getStatus());
+        assertEquals(NanoHTTPD.Response.Status.BAD_REQUEST, post(NanoHTTPD.Method.POST, null, "0.05").getStatus());
+        assertEquals(0.02, kP.get(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonFiniteGainIsRejected() {
+        dashboard.gain("kP", 0.02);
+        dashboard.setGain("kP", Double.NaN);
+    }
+
+    private NanoHTTPD.Response post(NanoHTTPD.Method method, String name, String value) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (name != null) parameters.put("name", Collections.singletonList(name));
+        parameters.put("value", Collections.singletonList(value));
+        return DashboardWebHandlers.postGain(dashboard, method, parameters);
+    }
+
+    private static String body(NanoHTTPD.Response response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream data = response.getData();
+        byte[] buffer = new byte[256];
+        int count;
+        while ((count = data.read(buffer)) > 0) {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toString("UTF-8");
+    }
+}
@@ -0,0 +1,208 @@
+package org.firstinspires.ftc.teamcode.dashboard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * LocalDashboardServer is a small stand-in for the robot controller's web server, so the dashboard
+ * page, the stream encoding and live gain tuning can be worked on with no robot.  It serves the
+ * same URLs as Dashboard.
+ *
+ * It lives with the tests and is not part of the robot controller app.  Run it on the development
+ * machine with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=dashboard.LocalDashboardServer
+ *
+ * and browse to http://localhost:8080/dashboard.  main() also starts a simulated robot which drives
+ * a figure eight at 100 Hz and holds its heading with a P controller whose gain is tunable.
+ */
+public class LocalDashboardServer {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final Dashboard dashboard;
+    private final ServerSocket serverSocket;
+
+    public LocalDashboardServer(Dashboard dashboard, int port) throws IOException {
+        this.dashboard = dashboard;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept connections on a background thread, one thread per connection.
+     */
+    public void start() {
+        Thread acceptor = new Thread(new Runnable() {
+            @Override public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        Thread connection = new Thread(new Runnable() {
+                            @Override public void run() {
+                                handle(socket);
+                            }
+                        }, "dashboard connection");
+                        connection.setDaemon(true);
+                        connection.start();
+                    } catch (IOException e) {
+                        // socket closed
+                    }
+                }
+            }
+        }, "dashboard server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII));
+            String requestLine = reader.readLine();
+            if (requestLine == null) return;
+            // Headers are not needed; skip to the blank line.
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) { }
+
+            String[] parts = requestLine.split(" ");
+            String method = parts[0];
+            String target = parts.length > 1 ? parts[1] : "/";
+            String path = target;
+            Map<String, String> parameters = new HashMap<>();
+            int query = target.indexOf('?');
+            if (query >= 0) {
+                path = target.substring(0, query);
+                for (String pair : target.substring(query + 1).split("&")) {
+                    int equals = pair.indexOf('=');
+                    if (equals > 0) {
+                        parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                                       URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                    }
+                }
+            }
+
+            OutputStream out = socket.getOutputStream();
+            if (path.equals(Dashboard.ROOT) || path.equals(Dashboard.ROOT + "/")) {
+                sendChunked(out, "text/html", Dashboard.openPage());
+            } else if (path.equals(Dashboard.ROOT + "/schema")) {
+                sendText(out, 200, "application/json", dashboard.schemaJson());
+            } else if (path.equals(Dashboard.ROOT + "/stream")) {
+                double hz = Math.min(Dashboard.MAX_RATE_HZ,
+                        Dashboard.parseDouble(parameters.get("hz"), Dashboard.DEFAULT_RATE_HZ));
+                sendChunked(out, "application/octet-stream", dashboard.openStream(parameters.get("channels"), hz));
+            } else if (path.equals(Dashboard.ROOT + "/gains") && method.equals("POST")) {
+                String name = parameters.get("name");
+                double value = Dashboard.parseDouble(parameters.get("value"), Double.NaN);
+                if (name == null || !Double.isFinite(value) || !dashboard.setGain(name, value)) {
+                    sendText(out, 400, "text/plain", "bad gain update");
+                } else {
+                    sendText(out, 200, "application/json", dashboard.schemaJson());
+                }
+            } else {
+                sendText(out, 404, "text/plain", "not found");
+            }
+        } catch (IOException e) {
+            // browser went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static void sendText(OutputStream out, int status, String mimeType, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        String header = String.format(Locale.US,
+                "HTTP/1.1 %d %s\r\nContent-Type: %s\r\nContent-Length: %d\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n",
+                status, status == 200 ? "OK" : "Error", mimeType, bytes.length);
+        out.write(header.getBytes(ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static void sendChunked(OutputStream out, String mimeType, InputStream body) throws IOException {
+        try {
+            String header = "HTTP/1.1 200 OK\r\nContent-Type: " + mimeType +
+                    "\r\nTransfer-Encoding: chunked\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n";
+            out.write(header.getBytes(ASCII));
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = body.read(buffer)) > 0) {
+                out.write(Integer.toHexString(count).getBytes(ASCII));
+                out.write('\r');
+                out.write('\n');
+                out.write(buffer, 0, count);
+                out.write('\r');
+                out.write('\n');
+                out.flush();
+            }
+            out.write("0\r\n\r\n".getBytes(ASCII));
+            out.flush();
+        } finally {
+            body.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        Dashboard dashboard = Dashboard.getInstance();
+        LocalDashboardServer server = new LocalDashboardServer(dashboard, port);
+        server.start();
+        System.out.println("dashboard at http://localhost:" + server.getPort() + Dashboard.ROOT);
+
+        // Simulated robot: a figure eight, with a P controller holding the heading along the path.
+        int poseX    = dashboard.channel("pose.x");
+        int poseY    = dashboard.channel("pose.y");
+        int poseH    = dashboard.channel("pose.heading");
+        int loopMs   = dashboard.channel("loop.ms");
+        int left     = dashboard.channel("drive.left");
+        int right    = dashboard.channel("drive.right");
+        int error    = dashboard.channel("heading.error");
+        int pTerm    = dashboard.channel("heading.p");
+        Gain kP = dashboard.gain("heading.kP", 0.02);
+
+        double heading = 0;
+        long last = System.nanoTime();
+        for (double t = 0; ; t += 0.01) {
+            double x = 48 * Math.sin(t / 4);
+            double y = 24 * Math.sin(t / 2);
+            double target = Math.toDegrees(Math.atan2(6 * Math.cos(t / 2), 12 * Math.cos(t / 4)));
+            double headingError = ((target - heading + 540) % 360) - 180;
+            double turn = Math.max(-1, Math.min(1, kP.get() * headingError));
+            heading += turn * 20;
+
+            long now = System.nanoTime();
+            dashboard.put(poseX, x);
+            dashboard.put(poseY, y);
+            dashboard.put(poseH, heading);
+            dashboard.put(loopMs, (now - last) / 1.0e6);
+            dashboard.put(left, 0.5 + turn);
+            dashboard.put(right, 0.5 - turn);
+            dashboard.put(error, headingError);
+            dashboard.put(pTerm, turn);
+            dashboard.publish();
+            last = now;
+
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.firstinspires.ftc.teamcode.distance;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * DistanceServiceSimulation runs a 100 Hz control loop with three simulated time-of-flight sensors,
+ * first reading them on demand inside the loop, as SensorREV2mDistance does, then through a
+ * DistanceService.
+ *
+ * Two sensors face a wall the robot drives up to, and one looks sideways.  Each read takes
+ * READ_MILLIS, with normally distributed noise, an occasional wild reading (multipath), and nothing
+ * in range while the side sensor looks past an opening.  A read started less than CROSSTALK_MILLIS
+ * after another sensor's read may see that sensor's light and come back wrong, which is what
+ * happens when sensors are read back to back.
+ *
+ * For each, it reports how long the loop waits for distances, and how far they are from the truth:
+ * both at the time the loop uses them, and at the time the service says they stand for.
+ *
+ * DistanceServiceTest covers the service and the filter; run the comparison on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=distance.DistanceServiceSimulation
+ */
+public class DistanceServiceSimulation {
+
+    static final double READ_MILLIS      = 2.5;
+    static final double CROSSTALK_MILLIS = 1.5;
+    static final double NOISE_INCHES     = 0.3;
+    static final double OUTLIER_CHANCE   = 0.04;
+    static final double LOOP_MILLIS      = 10.0;
+    static final double RUN_SECONDS      = 4.0;
+    // Errors larger than this would upset an alignment controller.
+    static final double BAD_INCHES       = 2.0;
+
+    static final String[] NAMES = { "front left", "front right", "side" };
+
+    /**
+     * The simulated field: what each sensor should read at a given time.
+     */
+    static class World {
+        final long startNanos = System.nanoTime();
+        long lastReadEnd = 0;
+        int  lastSensor = -1;
+
+        double seconds(long nanos) {
+            return (nanos - startNanos) / 1e9;
+        }
+
+        /**
+         * @return the true distance, or NaN if nothing is in range
+         */
+        double truth(int sensor, long nanos) {
+            double t = seconds(nanos);
+            switch (sensor) {
+                case 0:  return Math.max(6, 36 - 12 * t) + 0.5;
+                case 1:  return Math.max(6, 36 - 12 * t) - 0.5;
+                default: return t > 1.5 && t < 2.2 ? Double.NaN : 10 + 2 * Math.sin(Math.PI * t);
+            }
+        }
+    }
+
+    static class SimulatedSensor implements DistanceService.Source {
+        final World  world;
+        final int    index;
+        final Random random;
+        int crosstalk = 0;
+
+        SimulatedSensor(World world, int index) {
+            this.world = world;
+            this.index = index;
+            this.random = new Random(10 + index);
+        }
+
+        @Override
+        public double readInches() {
+            long start = System.nanoTime();
+            boolean interfered;
+            synchronized (world) {
+                interfered = world.lastSensor != index && world.lastSensor >= 0
+                        && start - world.lastReadEnd < CROSSTALK_MILLIS * 1e6;
+            }
+            long end = start + (long) (READ_MILLIS * 1e6);
+            long remaining;
+            while ((remaining = end - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+            synchronized (world) {
+                world.lastReadEnd = System.nanoTime();
+                world.lastSensor = index;
+            }
+
+            double truth = world.truth(index, start + (end - start) / 2);
+            if (Double.isNaN(truth)) {
+                return Double.NaN;
+            }
+            if (interfered && random.nextDouble() < 0.5) {
+                crosstalk++;
+                return Math.max(0, truth + 20 * (random.nextDouble() - 0.5));
+            }
+            if (random.nextDouble() < OUTLIER_CHANCE) {
+                return 80 * random.nextDouble();
+            }
+            return truth + NOISE_INCHES * random.nextGaussian();
+        }
+    }
+
+    static class Errors {
+        double sumSquares = 0;
+        double max = 0;
+        int count = 0;
+        int bad = 0;
+
+        void add(double error) {
+            if (Double.isNaN(error)) return;
+            sumSquares += error * error;
+            max = Math.max(max, Math.abs(error));
+            count++;
+            if (Math.abs(error) > BAD_INCHES) bad++;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "rms %5.2f in, max %5.2f in, %3d over %.0f in",
+                    Math.sqrt(sumSquares / Math.max(1, count)), max, bad, BAD_INCHES);
+        }
+    }
+
+    static double percentile99(long[] nanos, int count) {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.99 * count) - 1] / 1e6;
+    }
+
+    static void waitUntil(long nanos) {
+        long remaining;
+        while ((remaining = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static String onDemand() {
+        World world = new World();
+        SimulatedSensor[] sensors = new SimulatedSensor[NAMES.length];
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = new SimulatedSensor(world, i);
+        }
+        Errors errors = new Errors();
+        long[] waits = new long[(int) (RUN_SECONDS * 1000 / LOOP_MILLIS) + 10];
+        long waitNanos = 0;
+        int loops = 0, crosstalk = 0;
+
+        double[] inches = new double[sensors.length];
+        long next = System.nanoTime();
+        while (world.seconds(next) < RUN_SECONDS) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sensors.length; i++) {
+                inches[i] = sensors[i].readInches();
+            }
+            long now = System.nanoTime();
+            waitNanos += now - start;
+            waits[loops] = now - start;
+            for (int i = 0; i < sensors.length; i++) {
+                errors.add(inches[i] - world.truth(i, now));
+            }
+            loops++;
+            next += (long) (LOOP_MILLIS * 1e6);
+            waitUntil(next);
+        }
+        for (SimulatedSensor sensor : sensors) {
+            crosstalk += sensor.crosstalk;
+        }
+        return String.format(Locale.US, "read in the loop:   waits %6.3f ms per loop (p99 %6.3f), %d loops;  error %s;  %d crossed readings%n",
+                waitNanos / 1e6 / loops, percentile99(waits, loops), loops, errors, crosstalk);
+    }
+
+    static String service() throws InterruptedException {
+        World world = new World();
+        SimulatedSensor[] sensors = new SimulatedSensor[NAMES.length];
+        DistanceService service = new DistanceService(new DistanceService.Parameters());
+        for (int i = 0; i < sensors.length; i++) {
+            sensors[i] = new SimulatedSensor(world, i);
+            service.add(NAMES[i], sensors[i], i < 2 ? 2 : 1);
+        }
+        service.start();
+
+        DistanceService.Reading reading = new DistanceService.Reading();
+        Errors atUse = new Errors(), atStamp = new Errors();
+        double blockedConfidence = 0, clearConfidence = 0;
+        int blockedCount = 0, clearCount = 0, loops = 0, crosstalk = 0;
+        long[] waits = new long[(int) (RUN_SECONDS * 1000 / LOOP_MILLIS) + 10];
+        long getNanos = 0, ageNanos = 0, ages = 0;
+
+        long next = System.nanoTime() + 200_000_000L;   // let the filters fill
+        waitUntil(next);
+        while (world.seconds(next) < RUN_SECONDS) {
+            for (int i = 0; i < sensors.length; i++) {
+                long start = System.nanoTime();
+                boolean valid = service.get(i, reading);
+                long now = System.nanoTime();
+                getNanos += now - start;
+                waits[loops] += now - start;
+
+                double truth = world.truth(i, now);
+                if (valid && reading.confidence > 0.3) {
+                    atUse.add(reading.distance - truth);
+                    atStamp.add(reading.distance - world.truth(i, reading.nanos));
+                    ageNanos += now - reading.nanos;
+                    ages++;
+                }
+                if (i == 2) {
+                    if (Double.isNaN(truth)) {
+                        blockedConfidence += reading.confidence;
+                        blockedCount++;
+                    } else {
+                        clearConfidence += reading.confidence;
+                        clearCount++;
+                    }
+                }
+            }
+            loops++;
+            next += (long) (LOOP_MILLIS * 1e6);
+            waitUntil(next);
+        }
+        service.close();
+        for (SimulatedSensor sensor : sensors) {
+            crosstalk += sensor.crosstalk;
+        }
+        if (crosstalk > 0) {
+            throw new AssertionError("DistanceService started " + crosstalk + " reads within another sensor's crosstalk time");
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "DistanceService:    waits %6.3f ms per loop (p99 %6.3f), %d loops;  error %s;  %d crossed readings%n",
+                getNanos / 1e6 / loops, percentile99(waits, loops), loops, atUse, crosstalk));
+        out.append(String.format(Locale.US, "                    error at the reading's time %s;  distances %.1f ms old on average%n",
+                atStamp, ageNanos / 1e6 / Math.max(1, ages)));
+        out.append(String.format(Locale.US, "                    side sensor confidence %.2f while it sees something, %.2f while it looks past the opening%n",
+                clearConfidence / Math.max(1, clearCount), blockedConfidence / Math.max(1, blockedCount)));
+        out.append(String.format(Locale.US, "                    %.1f rounds per second; %s",
+                service.getCycles() / RUN_SECONDS, service.toString().trim().replace("\n", "; ")));
+        return out.toString();
+    }
+
+    public static String run() throws InterruptedException {
+        return onDemand() + service() + "\n";
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,161 @@
+package org.firstinspires.ftc.teamcode.distance;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DistanceServiceTest {
+
+    static final long MILLIS = 1_000_000L;
+
+    //----------------------------------------------------------------------------------------------
+    // DistanceFilter, with simulated times
+    //----------------------------------------------------------------------------------------------
+
+    @Test
+    public void wildReadingIsRejected() {
+        DistanceFilter filter = new DistanceFilter();
+        double[] readings = { 10.0, 10.2, 9.8, 10.0, 50.0 };
+        for (int i = 0; i < readings.length; i++) {
+            filter.update(readings[i], i * 10 * MILLIS);
+        }
+
+        assertEquals(10.0, filter.getDistance(), 1e-9);
+        assertEquals(4, filter.getInliers());
+        assertEquals(1, filter.getOutlierCount());
+        // The average time of the four kept readings.
+        assertEquals(15 * MILLIS, filter.getNanos());
+        assertEquals(0.8, filter.getConfidence(), 1e-9);
+    }
+
+    @Test
+    public void missedReadingsLowerTheConfidence() {
+        DistanceFilter filter = new DistanceFilter();
+        filter.update(20.0, 0);
+        filter.update(Double.NaN, 10 * MILLIS);
+        filter.update(20.0, 20 * MILLIS);
+        assertTrue(filter.update(Double.POSITIVE_INFINITY, 30 * MILLIS));
+
+        assertEquals(20.0, filter.getDistance(), 1e-9);
+        assertEquals(0.5, filter.getConfidence(), 1e-9);
+    }
+
+    @Test
+    public void oldReadingsAreDropped() {
+        DistanceFilter filter = new DistanceFilter();
+        filter.update(20.0, 0);
+        assertTrue(filter.update(Double.NaN, 100 * MILLIS));
+
+        assertFalse(filter.update(Double.NaN, 300 * MILLIS));
+        assertTrue(Double.isNaN(filter.getDistance()));
+        assertEquals(0, filter.getConfidence(), 0);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // DistanceService, with sources that record their reads
+    //----------------------------------------------------------------------------------------------
+
+    private final List<String> reads = new ArrayList<>();
+    private final List<long[]> times = new ArrayList<>();
+
+    private DistanceService.Source source(final String name, final double inches) {
+        return new DistanceService.Source() {
+            @Override public double readInches() {
+                long start = System.nanoTime();
+                synchronized (reads) {
+                    reads.add(name);
+                    times.add(new long[] { start, System.nanoTime() });
+                }
+                return inches;
+            }
+        };
+    }
+
+    private void awaitReads(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 5000 * MILLIS;
+        while (true) {
+            synchronized (reads) {
+                if (reads.size() >= count) return;
+            }
+            if (System.nanoTime() > deadline) fail("the service stopped reading");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void sensorsAreReadInWeightedTurns() throws InterruptedException {
+        DistanceService.Parameters parameters = new DistanceService.Parameters();
+        parameters.guardMillis = 0;
+        DistanceService service = new DistanceService(parameters);
+        service.add("a", source("a", 1), 2);
+        service.add("b", source("b", 2), 2);
+        service.add("c", source("c", 3), 1);
+        service.start();
+        awaitReads(10);
+        service.close();
+
+        assertEquals("[a, b, c, a, b, a, b, c, a, b]", reads.subList(0, 10).toString());
+    }
+
+    @Test
+    public void readsAreSeparatedByTheGuardTime() throws InterruptedException {
+        DistanceService.Parameters parameters = new DistanceService.Parameters();
+        parameters.guardMillis = 1.5;
+        DistanceService service = new DistanceService(parameters);
+        service.add("a", source("a", 1), 1);
+        service.add("b", source("b", 2), 1);
+        service.start();
+        awaitReads(20);
+        service.close();
+
+        for (int i = 1; i < times.size(); i++) {
+            long gap = times.get(i)[0] - times.get(i - 1)[1];
+            assertTrue("gap " + gap + " ns before read " + i, gap >= 1.5 * MILLIS);
+        }
+    }
+
+    @Test
+    public void getCopiesTheLatestDistance() throws InterruptedException {
+        DistanceService service = new DistanceService(new DistanceService.Parameters());
+        int front = service.add("front", source("front", 12.5), 1);
+        int broken = service.add("broken", new DistanceService.Source() {
+            @Override public double readInches() {
+                throw new IllegalStateException("unplugged");
+            }
+        }, 1);
+        DistanceService.Reading reading = new DistanceService.Reading();
+        assertFalse(service.get(front, reading));
+
+        service.start();
+        awaitReads(3);
+        service.close();
+
+        assertTrue(service.get(front, reading));
+        assertEquals(12.5, reading.distance, 0);
+        assertEquals(12.5, service.getDistance(front), 0);
+        assertTrue(reading.reads >= 3);
+        assertTrue(reading.confidence > 0 && reading.confidence <= 1);
+
+        assertFalse(service.get(broken, reading));
+        assertTrue(service.getFailures(broken) >= 2);
+        assertEquals("broken", service.getName(broken));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sensorsCannotBeAddedAfterStart() throws InterruptedException {
+        DistanceService service = new DistanceService(new DistanceService.Parameters());
+        service.add("front", source("front", 12.5), 1);
+        service.start();
+        try {
+            service.add("late", source("late", 1), 1);
+        } finally {
+            service.close();
+        }
+    }
+}
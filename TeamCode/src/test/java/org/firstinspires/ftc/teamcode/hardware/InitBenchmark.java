@@ -0,0 +1,190 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * InitBenchmark measures INIT time for a typical robot on simulated buses, comparing:
+ *
+ *   sequential    every setup call one after another, as in RobotHardware.init() and
+ *                 the OctoSwerveDrive constructor in SensorOctoQuadAdv
+ *   orchestrated  the same calls through InitOrchestrator, on the first INIT after power-up
+ *                 (device configuration still has to be written)
+ *   re-init       InitOrchestrator on a later INIT, when the configuration already matches
+ *
+ * The simulated robot has four drive motors on each of two hubs, an IMU on an I2C port of the
+ * Control Hub and an OctoQuad with 16 configuration registers and a flash save on an I2C port of the
+ * Expansion Hub.  I2C traffic goes through the hub, so it queues with that hub's motor traffic.
+ * Motor direction is not modelled: DcMotorImpl keeps it in software, so it costs no transaction.
+ * The encoder reset is a hub command of its own, which leaves the run mode alone.
+ * The intake motor is set up during INIT by the sequential case, but is wrapped in a LazyDevice by
+ * the orchestrated cases, so its setup is not paid until the intake is first used.
+ *
+ * Not part of the unit tests, run it on demand:  ./gradlew :TeamCode:benchmark -Pbenchmark=hardware.InitBenchmark
+ */
+public class InitBenchmark {
+
+    static final long HUB_TRANSACTION_US = 2000;
+    static final long I2C_TRANSACTION_US = 1500;
+
+    static final int MOTORS_PER_HUB         = 4;
+    static final int IMU_INIT_TRANSACTIONS  = 40;
+    static final int OCTOQUAD_REGISTERS     = 16;
+    static final int OCTOQUAD_FLASH_TRANSACTIONS = 50;
+
+    // Simulated motor registers
+    static final int MODE    = 0;
+    static final int BRAKE   = 1;
+    static final int ENCODER = 2;
+    static final int RUN     = 1;
+
+    private final SimulatedBus controlHub   = new SimulatedBus("Control Hub",   HUB_TRANSACTION_US);
+    private final SimulatedBus expansionHub = new SimulatedBus("Expansion Hub", HUB_TRANSACTION_US);
+
+    private final SimulatedBus.Device[] motors = new SimulatedBus.Device[2 * MOTORS_PER_HUB];
+    private final SimulatedBus.Device   imu;
+    private final SimulatedBus.Device   octoQuad;
+    private final SimulatedBus.Device   intakeMotor;
+    private final LazyDevice<SimulatedBus.Device> intake;
+
+    public InitBenchmark() {
+        for (int i = 0; i < motors.length; i++) {
+            SimulatedBus bus = (i < MOTORS_PER_HUB) ? controlHub : expansionHub;
+            motors[i] = bus.new Device(3, 0);
+        }
+        imu = controlHub.new Device(1, 0, I2C_TRANSACTION_US);
+        octoQuad = expansionHub.new Device(OCTOQUAD_REGISTERS, OCTOQUAD_FLASH_TRANSACTIONS, I2C_TRANSACTION_US);
+        intakeMotor = expansionHub.new Device(3, 0);
+        intake = new LazyDevice<>(new LazyDevice.Factory<SimulatedBus.Device>() {
+            @Override public SimulatedBus.Device create() {
+                try {
+                    setupIntake();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return intakeMotor;
+            }
+        });
+    }
+
+    /** Every setup call in order, with no checks, on the calling thread. */
+    double runSequential() throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < motors.length; i++) {
+            motors[i].write(ENCODER, 0);
+            motors[i].write(MODE, RUN);
+            motors[i].write(BRAKE, 1);
+        }
+        initializeImu();
+        for (int r = 0; r < OCTOQUAD_REGISTERS; r++) {
+            octoQuad.write(r, octoQuadValue(r));
+        }
+        octoQuad.saveToFlash();
+        setupIntake();
+        return (System.nanoTime() - start) / 1.0e6;
+    }
+
+    /**
+     * The same setup as a dependency graph.  The run mode and brake writes are skipped if the motor
+     * was last written with the same value, which costs no transaction.  The encoder reset is always
+     * done.  The OctoQuad is checked with one block read, which can skip 16 writes and the flash save.
+     */
+    InitOrchestrator.Report runOrchestrated() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+
+        for (int i = 0; i < motors.length; i++) {
+            final SimulatedBus.Device motor = motors[i];
+            String bus = motor.getBus().getName();
+            init.addStep("motor " + i + " reset", bus, new InitOrchestrator.Action() {
+                @Override public void run() throws InterruptedException { motor.write(ENCODER, 0); }
+            });
+            init.addStep("motor " + i + " run", bus, new InitOrchestrator.Action() {
+                @Override public void run() throws InterruptedException { motor.write(MODE, RUN); }
+            }).skipIf(new InitOrchestrator.Check() {
+                @Override public boolean isSatisfied() { return Integer.valueOf(RUN).equals(motor.lastWritten(MODE)); }
+            });
+            init.addStep("motor " + i + " brake", bus, new InitOrchestrator.Action() {
+                @Override public void run() throws InterruptedException { motor.write(BRAKE, 1); }
+            }).skipIf(new InitOrchestrator.Check() {
+                @Override public boolean isSatisfied() { return Integer.valueOf(1).equals(motor.lastWritten(BRAKE)); }
+            });
+        }
+
+        init.addStep("imu", controlHub.getName(), new InitOrchestrator.Action() {
+            @Override public void run() throws InterruptedException { initializeImu(); }
+        });
+
+        // Read the whole configuration at once, then only write the registers that differ, and only
+        // save to flash if at least one of them did.
+        final int[] current = new int[OCTOQUAD_REGISTERS];
+        final AtomicBoolean octoQuadChanged = new AtomicBoolean(false);
+        init.addStep("octoquad read", expansionHub.getName(), new InitOrchestrator.Action() {
+            @Override public void run() throws InterruptedException { octoQuad.readBlock(0, current); }
+        });
+        String[] octoQuadWrites = new String[OCTOQUAD_REGISTERS];
+        for (int r = 0; r < OCTOQUAD_REGISTERS; r++) {
+            final int register = r;
+            octoQuadWrites[r] = "octoquad " + r;
+            init.addStep(octoQuadWrites[r], expansionHub.getName(), new InitOrchestrator.Action() {
+                @Override public void run() throws InterruptedException {
+                    octoQuad.write(register, octoQuadValue(register));
+                    octoQuadChanged.set(true);
+                }
+            }).dependsOn("octoquad read").skipIf(new InitOrchestrator.Check() {
+                @Override public boolean isSatisfied() { return current[register] == octoQuadValue(register); }
+            });
+        }
+        init.addStep("octoquad flash", expansionHub.getName(), new InitOrchestrator.Action() {
+            @Override public void run() throws InterruptedException { octoQuad.saveToFlash(); }
+        }).dependsOn(octoQuadWrites).skipIf(new InitOrchestrator.Check() {
+            @Override public boolean isSatisfied() { return !octoQuadChanged.get(); }
+        });
+
+        return init.run();
+    }
+
+    private void initializeImu() throws InterruptedException {
+        for (int i = 0; i < IMU_INIT_TRANSACTIONS; i++) {
+            imu.write(0, i);
+        }
+    }
+
+    private void setupIntake() throws InterruptedException {
+        intakeMotor.write(ENCODER, 0);
+        intakeMotor.write(MODE, RUN);
+        intakeMotor.write(BRAKE, 1);
+    }
+
+    private static int octoQuadValue(int register) {
+        return 100 + register;
+    }
+
+    public static String run() throws InterruptedException {
+        // Each case gets a freshly powered-up robot, except re-init which reuses the orchestrated one.
+        double sequential = new InitBenchmark().runSequential();
+
+        InitBenchmark robot = new InitBenchmark();
+        InitOrchestrator.Report first  = robot.runOrchestrated();
+        InitOrchestrator.Report second = robot.runOrchestrated();
+
+        // First use of the intake, outside of INIT.
+        long start = System.nanoTime();
+        robot.intake.get();
+        double intakeFirstUse = (System.nanoTime() - start) / 1.0e6;
+
+        if (first.totalMilliseconds >= sequential || second.totalMilliseconds >= first.totalMilliseconds) {
+            throw new AssertionError(String.format(Locale.US, "orchestrated INIT is not faster: %.1f, %.1f then %.1f ms",
+                    sequential, first.totalMilliseconds, second.totalMilliseconds));
+        }
+        return String.format(Locale.US,
+                "sequential:   %7.1f ms%n" +
+                "orchestrated: %7.1f ms  (%s)%n" +
+                "re-init:      %7.1f ms  (%s)%n" +
+                "deferred intake setup on first use: %.1f ms%n",
+                sequential, first.totalMilliseconds, first, second.totalMilliseconds, second, intakeFirstUse);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.print(run());
+    }
+}
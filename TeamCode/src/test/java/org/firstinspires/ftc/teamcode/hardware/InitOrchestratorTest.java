@@ -0,0 +1,141 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InitOrchestratorTest {
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    private InitOrchestrator.Action record(final String name) {
+        return new InitOrchestrator.Action() {
+            @Override public void run() { log.add(name); }
+        };
+    }
+
+    private static InitOrchestrator.Check satisfied(final boolean value) {
+        return new InitOrchestrator.Check() {
+            @Override public boolean isSatisfied() { return value; }
+        };
+    }
+
+    @Test
+    public void stepsOnOneBusRunInTheOrderAdded() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("a", "hub", record("a"));
+        init.addStep("b", "hub", record("b"));
+        init.addStep("c", "hub", record("c"));
+
+        InitOrchestrator.Report report = init.run();
+
+        assertEquals(Arrays.asList("a", "b", "c"), log);
+        assertEquals(3, report.stepsRun);
+        assertEquals(0, report.stepsSkipped);
+        assertEquals(1, report.busCount);
+    }
+
+    @Test
+    public void stepsOnDifferentBusesRunInParallel() throws InterruptedException {
+        // Each step waits for the other one to start, which only works if they run at the same time.
+        final CountDownLatch bothStarted = new CountDownLatch(2);
+        final AtomicInteger met = new AtomicInteger();
+        InitOrchestrator.Action meet = new InitOrchestrator.Action() {
+            @Override public void run() throws InterruptedException {
+                bothStarted.countDown();
+                if (bothStarted.await(5, TimeUnit.SECONDS)) met.incrementAndGet();
+            }
+        };
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("control", "Control Hub", meet);
+        init.addStep("expansion", "Expansion Hub", meet);
+
+        InitOrchestrator.Report report = init.run();
+
+        assertEquals(2, met.get());
+        assertEquals(2, report.busCount);
+    }
+
+    @Test
+    public void dependencyOnAnotherBusIsWaitedFor() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("read", "Expansion Hub", record("read")).dependsOn("slow");
+        init.addStep("slow", "Control Hub", new InitOrchestrator.Action() {
+            @Override public void run() throws InterruptedException {
+                Thread.sleep(20);
+                log.add("slow");
+            }
+        });
+
+        init.run();
+
+        assertEquals(Arrays.asList("slow", "read"), log);
+    }
+
+    @Test
+    public void satisfiedCheckSkipsTheAction() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        InitOrchestrator.Step skipped = init.addStep("brake", "hub", record("brake")).skipIf(satisfied(true));
+        InitOrchestrator.Step written = init.addStep("mode", "hub", record("mode")).skipIf(satisfied(false));
+
+        InitOrchestrator.Report report = init.run();
+
+        assertEquals(Collections.singletonList("mode"), log);
+        assertTrue(skipped.wasSkipped());
+        assertFalse(written.wasSkipped());
+        assertEquals(1, report.stepsRun);
+        assertEquals(1, report.stepsSkipped);
+    }
+
+    @Test
+    public void failureNamesTheStepAndStopsTheRest() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("imu", "hub", new InitOrchestrator.Action() {
+            @Override public void run() { throw new IllegalStateException("no response"); }
+        });
+        init.addStep("after", "hub", record("after"));
+        init.addStep("dependent", "other", record("dependent")).dependsOn("imu");
+
+        try {
+            init.run();
+            fail("expected the step failure to be thrown");
+        } catch (RuntimeException e) {
+            assertEquals("init step \"imu\" failed", e.getMessage());
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(Collections.<String>emptyList(), log);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNameIsRejected() {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("a", "hub", record("a"));
+        init.addStep("a", "hub", record("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDependencyIsRejected() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("a", "hub", record("a")).dependsOn("missing");
+        init.run();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void dependencyCycleIsRejected() throws InterruptedException {
+        InitOrchestrator init = new InitOrchestrator();
+        init.addStep("a", "hub", record("a")).dependsOn("b");
+        init.addStep("b", "other", record("b")).dependsOn("a");
+        init.run();
+    }
+}
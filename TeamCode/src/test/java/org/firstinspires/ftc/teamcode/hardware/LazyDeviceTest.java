@@ -0,0 +1,32 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyDeviceTest {
+
+    @Test
+    public void deviceIsCreatedOnceOnFirstUse() {
+        final AtomicInteger created = new AtomicInteger();
+        LazyDevice<Object> device = new LazyDevice<>(new LazyDevice.Factory<Object>() {
+            @Override public Object create() {
+                created.incrementAndGet();
+                return new Object();
+            }
+        });
+
+        assertFalse(device.isInitialized());
+        assertEquals(0, created.get());
+
+        Object first = device.get();
+        assertTrue(device.isInitialized());
+        assertSame(first, device.get());
+        assertEquals(1, created.get());
+    }
+}
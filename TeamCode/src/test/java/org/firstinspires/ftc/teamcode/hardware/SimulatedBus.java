@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode.hardware;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * SimulatedBus stands in for a hub when measuring INIT time off the robot.
+ *
+ * Like the real hardware, the hub only carries one transaction at a time, whether it is for a motor
+ * or goes out through one of the hub's I2C ports: all of them are queued through the same Lynx
+ * module.  Each transaction takes a fixed time for its device.  Devices hold a bank of registers;
+ * reading or writing a register, reading a block of registers, or saving the registers to flash,
+ * each cost one or more transactions.  Like the SDK, a device also remembers the values last written
+ * to it, which can be looked up without a transaction.
+ */
+public class SimulatedBus {
+
+    private final String name;
+    private final long   transactionNanos;
+    private int          transactionCount = 0;
+
+    /**
+     * @param name               bus name, used as the InitOrchestrator bus
+     * @param transactionMicros  time taken by a transaction to a device on the hub itself, eg: a motor
+     */
+    public SimulatedBus(String name, long transactionMicros) {
+        this.name = name;
+        this.transactionNanos = transactionMicros * 1000;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Perform one transaction: holds the bus for the transaction time.
+     */
+    public void transaction() throws InterruptedException {
+        transaction(transactionNanos);
+    }
+
+    synchronized void transaction(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        transactionCount++;
+    }
+
+    /**
+     * A device on the bus, with a bank of integer registers.
+     */
+    public class Device {
+        private final int[] registers;
+        private final Integer[] written;
+        private final int   flashSaveTransactions;
+        private final long  deviceTransactionNanos;
+
+        /**
+         * A device on the hub itself, eg: a motor.
+         *
+         * @param registerCount          number of registers
+         * @param flashSaveTransactions  transactions taken by saveToFlash()
+         */
+        public Device(int registerCount, int flashSaveTransactions) {
+            this(registerCount, flashSaveTransactions, transactionNanos / 1000);
+        }
+
+        /**
+         * A device with its own transaction time, eg: on one of the hub's I2C ports.
+         */
+        public Device(int registerCount, int flashSaveTransactions, long transactionMicros) {
+            this.registers = new int[registerCount];
+            this.written = new Integer[registerCount];
+            this.flashSaveTransactions = flashSaveTransactions;
+            this.deviceTransactionNanos = transactionMicros * 1000;
+        }
+
+        public SimulatedBus getBus() {
+            return SimulatedBus.this;
+        }
+
+        public int read(int register) throws InterruptedException {
+            synchronized (SimulatedBus.this) {
+                transaction(deviceTransactionNanos);
+                return registers[register];
+            }
+        }
+
+        /**
+         * Read consecutive registers in one transaction.
+         */
+        public void readBlock(int first, int[] values) throws InterruptedException {
+            synchronized (SimulatedBus.this) {
+                transaction(deviceTransactionNanos);
+                System.arraycopy(registers, first, values, 0, values.length);
+            }
+        }
+
+        public void write(int register, int value) throws InterruptedException {
+            synchronized (SimulatedBus.this) {
+                transaction(deviceTransactionNanos);
+                registers[register] = value;
+                written[register] = value;
+            }
+        }
+
+        /**
+         * The value last written to a register through this object, as the SDK remembers the run mode
+         * and zero power behavior it last wrote to a motor.  Costs no transaction.
+         *
+         * @return the value, or null if the register has not been written yet
+         */
+        public Integer lastWritten(int register) {
+            synchronized (SimulatedBus.this) {
+                return written[register];
+            }
+        }
+
+        public void saveToFlash() throws InterruptedException {
+            for (int i = 0; i < flashSaveTransactions; i++) {
+                transaction(deviceTransactionNanos);
+            }
+        }
+    }
+}
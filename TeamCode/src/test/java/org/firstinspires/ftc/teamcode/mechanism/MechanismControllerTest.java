@@ -0,0 +1,145 @@
+package org.firstinspires.ftc.teamcode.mechanism;
+
+import org.firstinspires.ftc.teamcode.profiler.AllocationMonitor;
+import org.firstinspires.ftc.teamcode.profiler.JvmMemoryCounters;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MechanismControllerTest {
+
+    static final long   ORIGIN = 1_000_000_000L;
+    static final long   PERIOD = 20_000_000L;
+    static final double VOLTS  = MechanismSimulation.BATTERY_VOLTS;
+
+    private final MechanismController controller = new MechanismController(MechanismSimulation.armParameters());
+
+    /**
+     * Run the controller on a simulated arm for some loops.
+     *
+     * @return the time after the last loop
+     */
+    private long drive(SimulatedMechanism arm, long now, int loops) {
+        for (int i = 0; i < loops; i++, now += PERIOD) {
+            double power = controller.update(arm.read(), VOLTS, now);
+            arm.step(power * VOLTS, PERIOD / 1e9);
+        }
+        return now;
+    }
+
+    @Test
+    public void riccatiSolvesTheEquation() {
+        // P = 1 + P - P^2 / (1 + P), so P = golden ratio.
+        double[][] p = Matrices.riccati(Matrices.identity(1), Matrices.identity(1), Matrices.identity(1), 1);
+
+        assertEquals((1 + Math.sqrt(5)) / 2, p[0][0], 1e-9);
+    }
+
+    @Test
+    public void gainsAreStabilizing() {
+        double[] k = controller.getFeedbackGains();
+        double[] l = controller.getObserverGains();
+
+        assertTrue(k[0] > 0 && k[1] > 0);
+        assertTrue(l[0] > 0 && l[0] < 1);
+        assertTrue(l[2] > 0);
+    }
+
+    @Test
+    public void heavyArmSettlesOnItsGoal() {
+        SimulatedMechanism arm = MechanismSimulation.heavyArm();
+        controller.reset(arm.getPosition());
+        controller.setGoal(1.0);
+        long now = drive(arm, ORIGIN, 100);
+
+        assertEquals(1.0, arm.getPosition(), MechanismSimulation.TOLERANCE);
+        assertTrue(controller.isAtTarget(MechanismSimulation.TOLERANCE, now));
+        assertFalse(controller.isLimited());
+        // Heavier than the controller's kG: the disturbance holds it up.  Static friction holds the
+        // rest, so the estimate is less than the extra weight.
+        assertTrue(controller.getDisturbance() < 0);
+    }
+
+    @Test
+    public void goalPastTheSoftLimitStopsAtIt() {
+        SimulatedMechanism arm = MechanismSimulation.heavyArm();
+        controller.reset(arm.getPosition());
+        controller.setGoal(2.0);
+        drive(arm, ORIGIN, 150);
+
+        assertEquals(1.5, controller.getTarget(), 0);
+        assertTrue(controller.isLimited());
+        assertTrue("arm at " + arm.getPosition(), arm.getPosition() < 1.5 + MechanismSimulation.TOLERANCE);
+    }
+
+    @Test
+    public void interlockHoldsTheGoalBack() {
+        final boolean[] liftUp = { true };
+        controller.addInterlock(new MechanismController.Interlock() {
+            @Override public void limit(double[] range) {
+                if (liftUp[0]) range[0] = Math.max(range[0], 0.6);
+            }
+        });
+        controller.reset(1.0);
+        controller.setGoal(0.0);
+        controller.update(1.0, VOLTS, ORIGIN);
+        assertEquals(0.6, controller.getTarget(), 0);
+        assertTrue(controller.isLimited());
+
+        liftUp[0] = false;
+        controller.update(1.0, VOLTS, ORIGIN + PERIOD);
+        assertEquals(0.0, controller.getTarget(), 0);
+        assertFalse(controller.isLimited());
+    }
+
+    @Test
+    public void armAndLiftNeverCollide() {
+        // Throws if the arm is ever folded with the lift up.
+        MechanismSimulation.interlocks();
+    }
+
+    @Test
+    public void nominalVoltageIsAssumedWithoutASensor() {
+        MechanismController.Parameters p = MechanismSimulation.armParameters();
+        double[] batteries = { p.nominalVoltage, Double.NaN, Double.POSITIVE_INFINITY, 0 };
+        MechanismController[] controllers = new MechanismController[batteries.length];
+        for (int c = 0; c < controllers.length; c++) {
+            controllers[c] = new MechanismController(p);
+            controllers[c].reset(0);
+            controllers[c].setGoal(1);
+        }
+        long now = ORIGIN;
+        for (int i = 0; i < 10; i++, now += PERIOD) {
+            double expected = controllers[0].update(0, batteries[0], now);
+            assertTrue(expected != 0);
+            for (int c = 1; c < controllers.length; c++) {
+                assertEquals("battery " + batteries[c], expected, controllers[c].update(0, batteries[c], now), 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void interlocksAreLimited() {
+        for (int i = 0; i <= MechanismController.MAX_INTERLOCKS; i++) {
+            controller.addInterlock(new MechanismController.Interlock() {
+                @Override public void limit(double[] range) {
+                }
+            });
+        }
+    }
+
+    @Test
+    public void updateDoesNotAllocate() {
+        controller.reset(0);
+        final long[] nanos = { ORIGIN };
+        AllocationMonitor.requireBudget(new JvmMemoryCounters(), "MechanismController.update()", 0, 10_000, new Runnable() {
+            @Override public void run() {
+                nanos[0] += PERIOD;
+                if ((nanos[0] / PERIOD & 63) == 0) controller.setGoal(1 - controller.getGoal());
+                controller.update(0.5, VOLTS, nanos[0]);
+            }
+        });
+    }
+}
@@ -0,0 +1,313 @@
+package org.firstinspires.ftc.teamcode.mechanism;
+
+import org.firstinspires.ftc.teamcode.profiler.AllocationMonitor;
+import org.firstinspires.ftc.teamcode.profiler.JvmMemoryCounters;
+
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * MechanismSimulation tries MechanismController on a simulated arm, and benchmarks it.
+ *
+ * The arm is 30% heavier than the controller was tuned for (it holds a game element), with more
+ * friction, and is read through a 1/428 radian encoder in a loop of 20 ms give or take 5.  It is sent
+ * through a list of moves, the last one past its soft limit, three ways:
+ *
+ *  - fixed power: ARM_UP_POWER or ARM_DOWN_POWER until the arm is at the goal, then nothing, as a
+ *    driver does with RobotHardware.setArmPower(),
+ *  - a PD controller on the angle, without feedforward,
+ *  - MechanismController.
+ *
+ * For each move, it reports how long until the arm stays within TOLERANCE of the goal ("--" if it
+ * never does before the next move), how far it overshoots, and where it has sagged to by the end.
+ *
+ * Then it runs an arm on a lift with interlocks between them: the arm may not fold down while the
+ * lift is up, and the lift may not go up while the arm is folded.  It checks that the two never get
+ * into the forbidden state, even when told to, and that both get to their goals once allowed.
+ *
+ * Last, it times update(), checks that it allocates nothing, and times making a controller, which
+ * solves the LQR and Kalman Riccati equations.
+ *
+ * MechanismControllerTest covers the controller, with interlocks() among its checks; run the whole
+ * comparison and the benchmark on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=mechanism.MechanismSimulation
+ */
+public class MechanismSimulation {
+
+    static final double LOOP_MILLIS   = 20.0;
+    static final double JITTER_MILLIS = 5.0;
+    static final double BATTERY_VOLTS = 12.5;
+    static final double TOLERANCE     = 0.03;
+    static final double TICK          = 1.0 / 428;
+
+    static final double ARM_UP_POWER   =  0.45;
+    static final double ARM_DOWN_POWER = -0.45;
+    static final double PD_P = 10.0;
+    static final double PD_D = 0.5;
+
+    // Moves: at this time in seconds, go to this angle.  The soft limit is 1.5.
+    static final double[][] MOVES = {
+        { 0.0, 1.0 },
+        { 1.5, 0.2 },
+        { 3.0, 1.4 },
+        { 4.5, 2.0 },
+    };
+    static final double RUN_SECONDS = 6.0;
+
+    static MechanismController.Parameters armParameters() {
+        MechanismController.Parameters p = new MechanismController.Parameters();
+        p.arm = true;
+        p.kS = 0.3;
+        p.kG = 1.5;
+        p.kV = 1.2;
+        p.kA = 0.08;
+        p.minPosition = -0.6;
+        p.maxPosition = 1.5;
+        return p;
+    }
+
+    static SimulatedMechanism heavyArm() {
+        MechanismController.Parameters p = armParameters();
+        return new SimulatedMechanism(true, 1.5 * p.kS, 1.3 * p.kG, p.kV, 1.2 * p.kA, -0.7, 2.2, TICK, -0.6);
+    }
+
+    interface Strategy {
+        /** @return the power to send */
+        double power(double goal, double measured, double dt, long nanos);
+    }
+
+    static String run(String name, Strategy strategy) {
+        SimulatedMechanism arm = heavyArm();
+        Random random = new Random(2);
+        double[] settled = new double[MOVES.length];
+        double[] overshoot = new double[MOVES.length];
+        double[] sag = new double[MOVES.length];
+        double maxPosition = Double.NEGATIVE_INFINITY;
+        int move = -1;
+        double t = 0;
+        long origin = 1_000_000_000L;
+        while (t < RUN_SECONDS) {
+            if (move + 1 < MOVES.length && t >= MOVES[move + 1][0]) {
+                move++;
+                settled[move] = Double.NaN;
+                overshoot[move] = 0;
+            }
+            double goal = MOVES[move][1];
+            double measured = arm.read();
+            double dt = (LOOP_MILLIS + JITTER_MILLIS * (2 * random.nextDouble() - 1)) / 1000;
+            double power = Math.max(-1, Math.min(1, strategy.power(goal, measured, dt, origin + (long) (t * 1e9))));
+            arm.step(power * BATTERY_VOLTS, dt);
+            t += dt;
+
+            // The goal as the arm may reach it: the soft limit holds the last move back.
+            double reachable = Math.min(goal, 1.5);
+            double error = arm.getPosition() - reachable;
+            double direction = Math.signum(reachable - (move == 0 ? -0.6 : Math.min(MOVES[move - 1][1], 1.5)));
+            overshoot[move] = Math.max(overshoot[move], direction * error);
+            if (Math.abs(error) > TOLERANCE) {
+                settled[move] = Double.NaN;
+            } else if (Double.isNaN(settled[move])) {
+                settled[move] = t - MOVES[move][0];
+            }
+            sag[move] = error;
+            maxPosition = Math.max(maxPosition, arm.getPosition());
+        }
+
+        StringBuilder times = new StringBuilder(), overshoots = new StringBuilder(), sags = new StringBuilder();
+        for (int m = 0; m < MOVES.length; m++) {
+            times.append(Double.isNaN(settled[m]) ? "  -- " : String.format(Locale.US, "%4.2f ", settled[m]));
+            overshoots.append(String.format(Locale.US, "%4.2f ", overshoot[m]));
+            sags.append(String.format(Locale.US, "%+5.2f ", sag[m]));
+        }
+        return String.format(Locale.US, "%-13s settles %s s;  overshoots %s rad;  ends %s rad off;  highest %.2f rad%n",
+                name, times, overshoots, sags, maxPosition);
+    }
+
+    static String arm() {
+        StringBuilder out = new StringBuilder();
+        for (double[] m : MOVES) {
+            out.append(String.format(Locale.US, "%.1f s: to %.1f rad;  ", m[0], m[1]));
+        }
+        out.append(String.format(Locale.US, "(soft limit 1.5)%n"));
+
+        out.append(run("fixed power", new Strategy() {
+            @Override public double power(double goal, double measured, double dt, long nanos) {
+                if (measured < goal - TOLERANCE && measured < 1.5) return ARM_UP_POWER;
+                if (measured > goal + TOLERANCE) return ARM_DOWN_POWER;
+                return 0;
+            }
+        }));
+        out.append(run("PD", new Strategy() {
+            double last = Double.NaN;
+            @Override public double power(double goal, double measured, double dt, long nanos) {
+                goal = Math.min(goal, 1.5);
+                double velocity = Double.isNaN(last) ? 0 : (measured - last) / dt;
+                last = measured;
+                return (PD_P * (goal - measured) - PD_D * velocity) / BATTERY_VOLTS;
+            }
+        }));
+        final MechanismController controller = new MechanismController(armParameters());
+        controller.reset(-0.6);
+        final double[] holding = { 0 };
+        out.append(run("controller", new Strategy() {
+            @Override public double power(double goal, double measured, double dt, long nanos) {
+                controller.setGoal(goal);
+                double power = controller.update(measured, BATTERY_VOLTS, nanos);
+                if (goal == MOVES[1][1]) holding[0] = controller.getDisturbance();
+                return power;
+            }
+        }));
+        double[] k = controller.getFeedbackGains();
+        double[] l = controller.getObserverGains();
+        out.append(String.format(Locale.US, "              LQR gains %.1f V/rad, %.2f V/(rad/s);  observer gains %.3f %.3f %.3f;  disturbance holding at %.1f rad %.2f V (the extra weight alone: %.2f V)%n",
+                k[0], k[1], l[0], l[1], l[2], MOVES[1][1], holding[0], -0.3 * armParameters().kG * Math.cos(MOVES[1][1])));
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Interlocks
+    //----------------------------------------------------------------------------------------------
+
+    static final double ARM_CLEAR  = 0.6;     // rad: the arm is folded below this
+    static final double LIFT_CLEAR = 3.0;     // in: the lift is up above this
+    static final double ARM_MARGIN  = 0.05;
+    static final double LIFT_MARGIN = 0.5;
+
+    static String interlocks() {
+        MechanismController.Parameters armParameters = armParameters();
+        final MechanismController arm = new MechanismController(armParameters);
+        MechanismController.Parameters liftParameters = new MechanismController.Parameters();
+        liftParameters.arm = false;
+        liftParameters.kS = 0.4;
+        liftParameters.kG = 0.9;
+        liftParameters.kV = 0.5;
+        liftParameters.kA = 0.02;
+        liftParameters.maxVelocity = 20;
+        liftParameters.maxAcceleration = 80;
+        liftParameters.minPosition = 0;
+        liftParameters.maxPosition = 24;
+        liftParameters.qPosition = 0.2;
+        liftParameters.qVelocity = 5;
+        liftParameters.modelPosition = 0.01;
+        liftParameters.modelVelocity = 0.5;
+        liftParameters.measurementNoise = 0.02;
+        final MechanismController lift = new MechanismController(liftParameters);
+
+        arm.addInterlock(new MechanismController.Interlock() {
+            @Override public void limit(double[] range) {
+                // Keep the arm up while the lift is up.
+                if (lift.getPosition() > LIFT_CLEAR + LIFT_MARGIN || lift.getTarget() > LIFT_CLEAR) {
+                    range[0] = Math.max(range[0], ARM_CLEAR);
+                }
+            }
+        });
+        lift.addInterlock(new MechanismController.Interlock() {
+            @Override public void limit(double[] range) {
+                // Keep the lift down while the arm is folded, or folding.
+                if (arm.getPosition() < ARM_CLEAR - ARM_MARGIN || arm.getTarget() < ARM_CLEAR) {
+                    range[1] = Math.min(range[1], LIFT_CLEAR);
+                }
+            }
+        });
+
+        SimulatedMechanism armPlant = new SimulatedMechanism(true, 0.3, 1.5, 1.2, 0.08, -0.7, 2.2, TICK, 0);
+        SimulatedMechanism liftPlant = new SimulatedMechanism(false, 0.4, 0.9, 0.5, 0.02, 0, 25, 1.0 / 120, 0);
+        arm.reset(0);
+        lift.reset(0);
+
+        // At this time in seconds: arm goal, lift goal.
+        double[][] commands = {
+            { 0.0, 0.0, 12.0 },     // lift up with the arm folded: the lift must wait
+            { 1.5, 1.2, 12.0 },     // unfold the arm: the lift may go up
+            { 3.5, 0.0, 12.0 },     // fold the arm with the lift up: the arm must wait
+            { 5.0, 0.0, 0.0 },      // lift down: the arm may fold
+        };
+        StringBuilder states = new StringBuilder();
+        int command = -1, violations = 0;
+        double t = 0;
+        long origin = 1_000_000_000L;
+        while (t < 7.0) {
+            if (command + 1 < commands.length && t >= commands[command + 1][0]) {
+                if (command >= 0) {
+                    states.append(String.format(Locale.US, "  %.1f s: arm %.2f rad, lift %.1f in%n",
+                            t, armPlant.getPosition(), liftPlant.getPosition()));
+                }
+                command++;
+                arm.setGoal(commands[command][1]);
+                lift.setGoal(commands[command][2]);
+            }
+            long now = origin + (long) (t * 1e9);
+            double armPower = arm.update(armPlant.read(), BATTERY_VOLTS, now);
+            double liftPower = lift.update(liftPlant.read(), BATTERY_VOLTS, now);
+            double dt = LOOP_MILLIS / 1000;
+            for (int i = 0; i < 20; i++) {
+                armPlant.step(armPower * BATTERY_VOLTS, dt / 20);
+                liftPlant.step(liftPower * BATTERY_VOLTS, dt / 20);
+                if (armPlant.getPosition() < ARM_CLEAR - 2 * ARM_MARGIN && liftPlant.getPosition() > LIFT_CLEAR + 2 * LIFT_MARGIN) {
+                    violations++;
+                }
+            }
+            t += dt;
+        }
+        states.append(String.format(Locale.US, "  %.1f s: arm %.2f rad, lift %.1f in%n",
+                t, armPlant.getPosition(), liftPlant.getPosition()));
+        if (violations > 0) {
+            throw new AssertionError("the arm was folded with the lift up for " + violations + " steps");
+        }
+        return String.format(Locale.US, "%ninterlocks: arm below %.1f rad with the lift above %.1f in for %d of %d steps; before each command:%n%s",
+                ARM_CLEAR, LIFT_CLEAR, violations, (int) (7.0 / (LOOP_MILLIS / 1000)) * 20, states);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Benchmark
+    //----------------------------------------------------------------------------------------------
+
+    static volatile double sink;
+
+    static String benchmark() {
+        final MechanismController controller = new MechanismController(armParameters());
+        final Random random = new Random(4);
+        final int count = 1 << 12;
+        final double[] measurements = new double[count];
+        for (int i = 0; i < count; i++) {
+            measurements[i] = 0.5 * Math.sin(i * 0.01) + 0.001 * random.nextGaussian();
+        }
+        final long[] nanos = { 1_000_000_000L };
+        final int[] index = { 0 };
+        Runnable update = new Runnable() {
+            @Override public void run() {
+                int i = index[0]++ & (count - 1);
+                if (i == 0) controller.setGoal(-controller.getGoal() + 0.5);
+                nanos[0] += 20_000_000L;
+                sink = controller.update(measurements[i], BATTERY_VOLTS, nanos[0]);
+            }
+        };
+
+        int runs = 2_000_000;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) update.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double bytes = AllocationMonitor.requireBudget(new JvmMemoryCounters(), "MechanismController.update()", 0, 100_000, update);
+
+        long init = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            sink = new MechanismController(armParameters()).getFeedbackGains()[0];
+            init = Math.min(init, System.nanoTime() - start);
+        }
+        return String.format(Locale.US, "%nupdate(): %.0f ns, %.1f bytes allocated;  making a controller (LQR and Kalman gains): %.2f ms%n",
+                best / (double) runs, bytes, init / 1e6);
+    }
+
+    public static String run() {
+        return arm() + interlocks() + benchmark();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,83 @@
+package org.firstinspires.ftc.teamcode.mechanism;
+
+/*
+ * SimulatedMechanism is an arm or a slide driven by a DC motor, for simulations: the motor's voltage
+ * against back EMF, inertia, gravity and friction, between two hard stops, read through an encoder.
+ *
+ * It follows the same equation as MechanismController's model, with its own constants, so that a
+ * controller can be tried on a mechanism that is heavier or stickier than it was tuned for.  A
+ * mechanism at rest stays at rest until the voltage, less gravity, overcomes static friction.
+ */
+public class SimulatedMechanism {
+
+    static final double STEP_SECONDS = 0.0005;
+
+    final boolean arm;
+    final double kS, kG, kV, kA;
+    final double minPosition, maxPosition;
+    /** Encoder resolution, in position units per tick */
+    final double tick;
+
+    double position;
+    double velocity = 0;
+
+    public SimulatedMechanism(boolean arm, double kS, double kG, double kV, double kA,
+                              double minPosition, double maxPosition, double tick, double position) {
+        this.arm = arm;
+        this.kS = kS;
+        this.kG = kG;
+        this.kV = kV;
+        this.kA = kA;
+        this.minPosition = minPosition;
+        this.maxPosition = maxPosition;
+        this.tick = tick;
+        this.position = position;
+    }
+
+    /**
+     * Run for some time with a voltage across the motor.
+     */
+    public void step(double volts, double seconds) {
+        for (double t = 0; t < seconds; t += STEP_SECONDS) {
+            double dt = Math.min(STEP_SECONDS, seconds - t);
+            double gravity = kG * (arm ? Math.cos(position) : 1);
+            double drive = volts - gravity;
+            double acceleration;
+            if (velocity == 0 && Math.abs(drive) <= kS) {
+                acceleration = 0;
+            } else {
+                double friction = kS * Math.signum(velocity != 0 ? velocity : drive);
+                acceleration = (drive - kV * velocity - friction) / kA;
+            }
+            double next = velocity + acceleration * dt;
+            // Friction stops the mechanism rather than reversing it.
+            if (velocity != 0 && Math.signum(next) != Math.signum(velocity) && Math.abs(drive) <= kS) {
+                next = 0;
+            }
+            velocity = next;
+            position += velocity * dt;
+            if (position < minPosition) {
+                position = minPosition;
+                velocity = Math.max(0, velocity);
+            } else if (position > maxPosition) {
+                position = maxPosition;
+                velocity = Math.min(0, velocity);
+            }
+        }
+    }
+
+    /**
+     * @return the position as the encoder reads it
+     */
+    public double read() {
+        return tick * Math.floor(position / tick);
+    }
+
+    public double getPosition() {
+        return position;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+}
@@ -0,0 +1,84 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeadWheelLocalizerTest {
+
+    static final double INCHES_PER_TICK      = 0.001;
+    static final double TRACK_WIDTH          = 10.0;
+    static final double PERPENDICULAR_OFFSET = -4.5;
+    static final long   SECOND               = 1000000000L;
+
+    private final DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+
+    private static int ticks(double inches) {
+        return (int) Math.round(inches / INCHES_PER_TICK);
+    }
+
+    @Test
+    public void firstUpdateOnlyRecordsTheCounts() {
+        localizer.update(1000, 2000, 3000, 0);
+
+        assertEquals(0, localizer.getX(), 0);
+        assertEquals(0, localizer.getUpdateCount());
+    }
+
+    @Test
+    public void drivesStraight() {
+        localizer.setPose(1, 2, Math.PI / 2);
+        localizer.update(0, 0, 0, 0);
+        localizer.update(ticks(10), ticks(10), 0, SECOND);
+
+        assertEquals(1, localizer.getX(), 1e-9);
+        assertEquals(12, localizer.getY(), 1e-9);
+        assertEquals(Math.PI / 2, localizer.getHeading(), 1e-9);
+        assertEquals(10, localizer.getForwardVelocity(), 1e-9);
+    }
+
+    @Test
+    public void turnsInPlace() {
+        // 0.1 rad: each side moves 0.5 inch, and the pod behind the center swings 0.45 inch right.
+        localizer.update(0, 0, 0, 0);
+        localizer.update(ticks(-0.5), ticks(0.5), ticks(PERPENDICULAR_OFFSET * 0.1), SECOND);
+
+        assertEquals(0, localizer.getX(), 1e-9);
+        assertEquals(0, localizer.getY(), 1e-9);
+        assertEquals(0.1, localizer.getHeading(), 1e-9);
+        assertEquals(0.1, localizer.getAngularVelocity(), 1e-9);
+    }
+
+    @Test
+    public void quarterCircleInOneUpdateIsExact() {
+        // Radius 20 to the left: from (0, 0) facing +X to (20, 20) facing +Y.
+        double radius = 20, turn = Math.PI / 2;
+        localizer.update(0, 0, 0, 0);
+        localizer.update(ticks((radius - TRACK_WIDTH / 2) * turn), ticks((radius + TRACK_WIDTH / 2) * turn),
+                ticks(PERPENDICULAR_OFFSET * turn), SECOND);
+
+        assertEquals(20, localizer.getX(), 1e-3);
+        assertEquals(20, localizer.getY(), 1e-3);
+        assertEquals(turn, localizer.getHeading(), 1e-4);
+    }
+
+    @Test
+    public void countsWrapAround() {
+        int start = Integer.MAX_VALUE - 10;
+        localizer.update(start, start, 0, 0);
+        localizer.update(start + 20, start + 20, 0, SECOND);
+
+        assertEquals(20 * INCHES_PER_TICK, localizer.getX(), 1e-12);
+    }
+
+    @Test
+    public void predictUsesTheMeasuredVelocities() {
+        localizer.update(0, 0, 0, 0, 0, 0, 0);
+        localizer.update(ticks(1), ticks(1), 0, ticks(12), ticks(12), 0, SECOND);
+
+        Pose pose = localizer.predict(SECOND + SECOND / 2, new Pose());
+        assertEquals(1 + 12 * 0.5, pose.x, 1e-9);
+        assertEquals(0, pose.y, 1e-9);
+        assertEquals(1, localizer.getX(), 1e-9);
+    }
+}
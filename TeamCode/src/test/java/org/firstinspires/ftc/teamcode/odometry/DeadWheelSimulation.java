@@ -0,0 +1,244 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * DeadWheelSimulation checks DeadWheelLocalizer's accuracy and cost off the robot.
+ *
+ * A robot drives, strafes and turns at once along a smooth path for a minute, integrated exactly at
+ * 10kHz.  Simulated pods turn with it and are read like an OctoQuad: whole counts, starting close to
+ * Integer.MAX_VALUE so that they wrap, with velocities measured over 25ms intervals.  Slip makes a pod
+ * under-read for a moment now and then, as a pod lifting over a field tile seam does.  The localizer is
+ * updated at a jittery loop rate, and compared with the true pose and with a plain (Euler)
+ * integration of the same counts.
+ *
+ * The timing section runs update() in a tight loop and measures its time, and the bytes it allocates
+ * (which must be zero).
+ *
+ * DeadWheelLocalizerTest covers the localizer's behavior; this report is run on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=odometry.DeadWheelSimulation
+ */
+public class DeadWheelSimulation {
+
+    static final double INCHES_PER_TICK      = Math.PI * 35.0 / 25.4 / 8192;
+    static final double TRACK_WIDTH          = 13.0;
+    static final double PERPENDICULAR_OFFSET = -4.5;
+    static final double RUN_SECONDS          = 60.0;
+    static final double STEP_SECONDS         = 1e-4;
+    static final double VELOCITY_INTERVAL    = OctoQuadOdometry.VELOCITY_SAMPLE_INTERVAL_MS / 1000.0;
+
+    static class Result {
+        double finalError;
+        double maxError;
+        double finalHeadingError;
+        double eulerFinalError;
+        double eulerMaxError;
+        double wrapDifference;
+        double predictionError;
+        double holdError;
+        int    updates;
+    }
+
+    /**
+     * @param loopMillis    average time between localizer updates
+     * @param slipPerSecond average number of slip events per pod per second
+     */
+    static Result simulate(double loopMillis, double slipPerSecond, long seed) {
+        Random random = new Random(seed);
+        Result result = new Result();
+
+        DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        DeadWheelLocalizer unwrapped = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        Pose predicted = new Pose();
+
+        // Truth.
+        double x = 0, y = 0, heading = 0;
+        // Pod travel as read (slip included), inches.
+        double[] pod = new double[3];
+        double[] slipRemaining = new double[3];
+        long wrapOffset = Integer.MAX_VALUE - 20000L;
+
+        // OctoQuad velocity measurement: counts over the last complete interval.
+        long[] intervalStart = new long[3];
+        long[] velocityCounts = new long[3];
+        double nextInterval = VELOCITY_INTERVAL;
+
+        // Euler integration of the same counts.
+        double ex = 0, ey = 0, eHeading = 0;
+        long[] lastCounts = new long[3];
+
+        double nextRead = 0;
+        double predictAt = -1;
+        double readX = 0, readY = 0;
+        double predictionSquares = 0, holdSquares = 0;
+        int predictions = 0;
+
+        long steps = Math.round(RUN_SECONDS / STEP_SECONDS);
+        for (long step = 0; step <= steps; step++) {
+            double t = step * STEP_SECONDS;
+            long[] counts = new long[3];
+            for (int i = 0; i < 3; i++) {
+                counts[i] = (long) Math.floor(pod[i] / INCHES_PER_TICK);
+            }
+
+            if (t >= nextInterval) {
+                for (int i = 0; i < 3; i++) {
+                    velocityCounts[i] = counts[i] - intervalStart[i];
+                    intervalStart[i] = counts[i];
+                }
+                nextInterval += VELOCITY_INTERVAL;
+            }
+
+            // Halfway between reads, compare the prediction with the truth.
+            if (predictAt >= 0 && t >= predictAt) {
+                // Compare motion since the update, so that errors already in the pose do not count.
+                localizer.predict(nanos(t), predicted);
+                double dp = Math.hypot((predicted.x - localizer.getX()) - (x - readX), (predicted.y - localizer.getY()) - (y - readY));
+                double dh = Math.hypot(x - readX, y - readY);
+                predictionSquares += dp * dp;
+                holdSquares += dh * dh;
+                predictions++;
+                predictAt = -1;
+            }
+
+            if (t >= nextRead) {
+                double scale = 1.0 / VELOCITY_INTERVAL;
+                localizer.update(
+                        (int) (counts[0] + wrapOffset), (int) (counts[1] + wrapOffset), (int) (counts[2] + wrapOffset),
+                        (short) velocityCounts[0] * scale, (short) velocityCounts[1] * scale, (short) velocityCounts[2] * scale,
+                        nanos(t));
+                unwrapped.update((int) counts[0], (int) counts[1], (int) counts[2], nanos(t));
+
+                double dl = (counts[0] - lastCounts[0]) * INCHES_PER_TICK;
+                double dr = (counts[1] - lastCounts[1]) * INCHES_PER_TICK;
+                double dp = (counts[2] - lastCounts[2]) * INCHES_PER_TICK;
+                System.arraycopy(counts, 0, lastCounts, 0, 3);
+                double dTheta = (dr - dl) / TRACK_WIDTH;
+                double forward = 0.5 * (dl + dr);
+                double leftward = dp - PERPENDICULAR_OFFSET * dTheta;
+                ex += forward * Math.cos(eHeading) - leftward * Math.sin(eHeading);
+                ey += forward * Math.sin(eHeading) + leftward * Math.cos(eHeading);
+                eHeading += dTheta;
+
+                double error = Math.hypot(localizer.getX() - x, localizer.getY() - y);
+                result.finalError = error;
+                result.finalHeadingError = Math.toDegrees(Math.abs(Pose.normalizeRadians(localizer.getHeading() - heading)));
+                result.maxError = Math.max(result.maxError, error);
+                result.eulerFinalError = Math.hypot(ex - x, ey - y);
+                result.eulerMaxError = Math.max(result.eulerMaxError, result.eulerFinalError);
+                result.wrapDifference = Math.max(result.wrapDifference,
+                        Math.hypot(localizer.getX() - unwrapped.getX(), localizer.getY() - unwrapped.getY()));
+
+                double loop = loopMillis * (0.6 + 0.8 * random.nextDouble()) / 1000.0;
+                predictAt = t + loop / 2;
+                readX = x;
+                readY = y;
+                nextRead = t + loop;
+            }
+
+            // True motion: driving, strafing and turning together.
+            double forwardSpeed = 40.0 * Math.sin(0.5 * t) + 10.0;
+            double leftSpeed    = 25.0 * Math.sin(0.31 * t + 1.0);
+            double turnRate     = 2.5 * Math.sin(0.7 * t);
+
+            double dTheta = turnRate * STEP_SECONDS;
+            double s = Math.abs(dTheta) < 1e-9 ? 1.0 : Math.sin(dTheta) / dTheta;
+            double c = Math.abs(dTheta) < 1e-9 ? 0.0 : (1.0 - Math.cos(dTheta)) / dTheta;
+            double rx = (s * forwardSpeed - c * leftSpeed) * STEP_SECONDS;
+            double ry = (c * forwardSpeed + s * leftSpeed) * STEP_SECONDS;
+            x += Math.cos(heading) * rx - Math.sin(heading) * ry;
+            y += Math.sin(heading) * rx + Math.cos(heading) * ry;
+            heading += dTheta;
+
+            double[] travel = {
+                    (forwardSpeed - turnRate * TRACK_WIDTH / 2) * STEP_SECONDS,
+                    (forwardSpeed + turnRate * TRACK_WIDTH / 2) * STEP_SECONDS,
+                    (leftSpeed + turnRate * PERPENDICULAR_OFFSET) * STEP_SECONDS,
+            };
+            for (int i = 0; i < 3; i++) {
+                if (slipRemaining[i] <= 0 && random.nextDouble() < slipPerSecond * STEP_SECONDS) {
+                    slipRemaining[i] = 0.05;
+                }
+                if (slipRemaining[i] > 0) {
+                    slipRemaining[i] -= STEP_SECONDS;
+                    travel[i] *= 0.7;
+                }
+                pod[i] += travel[i];
+            }
+        }
+
+        result.predictionError = Math.sqrt(predictionSquares / predictions);
+        result.holdError = Math.sqrt(holdSquares / predictions);
+        result.updates = (int) localizer.getUpdateCount();
+        return result;
+    }
+
+    static long nanos(double seconds) {
+        return Math.round(seconds * 1e9);
+    }
+
+    static String timing() {
+        DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, TRACK_WIDTH, PERPENDICULAR_OFFSET);
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean canCountBytes = threads instanceof com.sun.management.ThreadMXBean;
+        long threadId = Thread.currentThread().getId();
+
+        final int iterations = 10_000_000;
+        double best = Double.MAX_VALUE;
+        long allocated = 0;
+        for (int round = 0; round < 5; round++) {
+            long bytesBefore = canCountBytes ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+            int left = Integer.MAX_VALUE - 1000, right = left, perpendicular = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                left += 37;
+                right += 41 + (i & 7);
+                perpendicular -= 5;
+                localizer.update(left, right, perpendicular, 1480.0, 1650.0, -200.0, start + i * 10_000_000L);
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = canCountBytes ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId) : 0;
+            best = Math.min(best, (double) elapsed / iterations);
+            allocated = bytesAfter - bytesBefore;
+        }
+        if (canCountBytes && allocated != 0) {
+            throw new AssertionError("update() allocated " + allocated + " bytes");
+        }
+        return String.format(Locale.US, "update(): %.0f ns, %s bytes allocated over %,d updates (pose %s)%n",
+                best, canCountBytes ? Long.toString(allocated) : "unknown", iterations, localizer.getPose(new Pose()));
+    }
+
+    public static String run() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-28s %9s %9s %9s %11s %11s %10s %10s%n",
+                "60s path, inches / degrees", "final", "max", "heading", "euler final", "euler max", "predicted", "held"));
+        double[][] cases = {
+                // loop ms, slips per pod per second
+                { 10, 0.0 },
+                { 10, 0.5 },
+                { 30, 0.0 },
+                { 30, 0.5 },
+        };
+        for (double[] c : cases) {
+            Result r = simulate(c[0], c[1], 7);
+            out.append(String.format(Locale.US, "%-28s %9.3f %9.3f %9.3f %11.3f %11.3f %10.4f %10.4f%n",
+                    String.format(Locale.US, "loop %2.0fms, slip %.1f/s", c[0], c[1]),
+                    r.finalError, r.maxError, r.finalHeadingError, r.eulerFinalError, r.eulerMaxError,
+                    r.predictionError, r.holdError));
+            if (r.wrapDifference > 1e-9) {
+                out.append(String.format(Locale.US, "  counts wrapping changed the pose by %.6f inches%n", r.wrapDifference));
+            }
+        }
+        out.append("final/max: position error at updates.  predicted/held: RMS error in the motion since the last\n");
+        out.append("update, halfway to the next, using predict() or the last pose.  Pods cannot see their own slip.\n");
+        out.append(timing());
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
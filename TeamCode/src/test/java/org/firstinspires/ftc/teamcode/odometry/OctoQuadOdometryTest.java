@@ -0,0 +1,148 @@
+package org.firstinspires.ftc.teamcode.odometry;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OctoQuadOdometryTest {
+
+    static final double INCHES_PER_TICK = 0.01;
+
+    /**
+     * Stands in for an OctoQuad: keeps the channel parameters, counts writes and flash saves, and
+     * returns queued encoder data.  Built as a proxy, so only the methods used here need handling.
+     */
+    static class FakeOctoQuad implements InvocationHandler {
+        final OctoQuad.EncoderDirection[] directions = new OctoQuad.EncoderDirection[OctoQuad.NUM_ENCODERS];
+        final int[] intervals = new int[OctoQuad.NUM_ENCODERS];
+        final ArrayDeque<int[]> reads = new ArrayDeque<>();
+        int writes = 0;
+        int saves  = 0;
+
+        FakeOctoQuad() {
+            for (int i = 0; i < OctoQuad.NUM_ENCODERS; i++) {
+                directions[i] = OctoQuad.EncoderDirection.FORWARD;
+                intervals[i] = 50;
+            }
+        }
+
+        OctoQuad proxy() {
+            return (OctoQuad) Proxy.newProxyInstance(OctoQuad.class.getClassLoader(), new Class<?>[] { OctoQuad.class }, this);
+        }
+
+        /** Queue one read: positions and velocities of channels 0, 1 and 2. */
+        void queue(int left, int right, int perpendicular, int velocity) {
+            reads.add(new int[] { left, right, perpendicular, velocity });
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getSingleEncoderDirection":
+                    return directions[(Integer) args[0]];
+                case "setSingleEncoderDirection":
+                    directions[(Integer) args[0]] = (OctoQuad.EncoderDirection) args[1];
+                    writes++;
+                    return null;
+                case "getSingleVelocitySampleInterval":
+                    return intervals[(Integer) args[0]];
+                case "setSingleVelocitySampleInterval":
+                    intervals[(Integer) args[0]] = (Integer) args[1];
+                    writes++;
+                    return null;
+                case "saveParametersToFlash":
+                    saves++;
+                    return null;
+                case "readAllEncoderData":
+                    OctoQuad.EncoderDataBlock block = (OctoQuad.EncoderDataBlock) args[0];
+                    int[] read = reads.remove();
+                    for (int i = 0; i < 3; i++) {
+                        block.positions[i] = read[i];
+                        block.velocities[i] = (short) read[3];
+                    }
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private final FakeOctoQuad fake = new FakeOctoQuad();
+    private final DeadWheelLocalizer localizer = new DeadWheelLocalizer(INCHES_PER_TICK, 10, 0);
+    private final OctoQuadOdometry odometry = new OctoQuadOdometry(fake.proxy(), 0, 1, 2, localizer);
+
+    @Test
+    public void configureOnlySavesWhenSomethingChanged() {
+        assertTrue(odometry.configure(true, false, false));
+        assertEquals(OctoQuad.EncoderDirection.REVERSE, fake.directions[0]);
+        assertEquals(OctoQuad.EncoderDirection.FORWARD, fake.directions[1]);
+        assertEquals(OctoQuadOdometry.VELOCITY_SAMPLE_INTERVAL_MS, fake.intervals[2]);
+        assertEquals(1 + 3, fake.writes);
+        assertEquals(1, fake.saves);
+
+        assertFalse(odometry.configure(true, false, false));
+        assertEquals(4, fake.writes);
+        assertEquals(1, fake.saves);
+
+        assertTrue(odometry.configure(true, false, true));
+        assertEquals(5, fake.writes);
+        assertEquals(2, fake.saves);
+    }
+
+    @Test
+    public void corruptReadAndTheOneAfterAreRejected() {
+        fake.queue(0, 0, 0, 0);
+        fake.queue(100, 100, 0, 0);
+        fake.queue(200, 200, 0, 0);
+        fake.queue(200, 0x40000000, 0, 0);   // a flipped bit
+        fake.queue(300, 300, 0, 0);
+        fake.queue(400, 400, 0, 0);
+
+        assertFalse("the first read has nothing to be checked against", odometry.update());
+        assertTrue(odometry.update());
+        assertTrue(odometry.update());
+        assertFalse(odometry.update());
+        assertFalse(odometry.update());
+        assertTrue(odometry.update());
+
+        assertEquals(2, odometry.getRejectedReads());
+        // The localizer started at the second read, and went on from 200 to 400 past the bad read.
+        assertEquals(300 * INCHES_PER_TICK, localizer.getX(), 1e-9);
+        assertEquals(0, localizer.getHeading(), 1e-9);
+    }
+
+    @Test
+    public void corruptFirstReadIsNotUsedAsTheStart() {
+        fake.queue(-123456789, 5, 5, 0);
+        fake.queue(0, 0, 0, 0);
+        fake.queue(50, 50, 0, 0);
+        fake.queue(150, 150, 0, 0);
+
+        assertFalse(odometry.update());
+        assertFalse(odometry.update());
+        assertTrue(odometry.update());
+        assertTrue(odometry.update());
+
+        assertEquals(1, odometry.getRejectedReads());
+        assertEquals(100 * INCHES_PER_TICK, localizer.getX(), 1e-9);
+    }
+
+    @Test
+    public void impossibleVelocityIsRejected() {
+        fake.queue(0, 0, 0, 0);
+        fake.queue(10, 10, 10, Short.MAX_VALUE);
+
+        odometry.update();
+        assertFalse(odometry.update());
+        assertEquals(1, odometry.getRejectedReads());
+    }
+}
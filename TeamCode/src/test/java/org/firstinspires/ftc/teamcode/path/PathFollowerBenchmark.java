@@ -0,0 +1,174 @@
+package org.firstinspires.ftc.teamcode.path;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/*
+ * PathFollowerBenchmark follows the same figure-eight path, cut into 10 to 10,000 segments, with a
+ * simulated robot, and reports how long PurePursuitFollower.update() takes, compared with finding
+ * the nearest segment by looking at every one of them.
+ *
+ * The figure-eight crosses itself in the middle, where a follower that only looked for the nearest
+ * segment would jump to the other branch.  The robot is simulated at 50 loops per second, going
+ * through DriveMixer and back, so that power saturation slows it down like a real one.  One run
+ * shoves the robot 20 inches sideways halfway, right on the crossing, to exercise the recovery
+ * search: the robot must rejoin the branch it was on, and still drive the second half of the path.
+ *
+ * PurePursuitFollowerTest covers the follower and the index; run the timings on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=path.PathFollowerBenchmark
+ */
+public class PathFollowerBenchmark {
+
+    static final double LOOP_SECONDS = 0.020;
+    static final double MAX_SPEED    = 50.0;
+    static final double TURN_RADIUS  = 12.0;
+
+    /**
+     * A figure-eight 110 inches wide and 60 high, starting and ending at its crossing point.
+     */
+    static Path figureEight(int segments) {
+        Path.Builder builder = new Path.Builder(0, 0);
+        for (int i = 1; i <= segments; i++) {
+            double t = 2 * Math.PI * i / segments;
+            builder.lineTo(55 * Math.sin(t), 60 * Math.sin(t) * Math.cos(t));
+        }
+        return builder.build();
+    }
+
+    static class Result {
+        double nanosPerUpdate;
+        double nanosPerLinearScan;
+        double maxCrossTrack;
+        double seconds;
+        boolean finished;
+        int recoveries;
+        long bytesAllocated;
+    }
+
+    static Result follow(Path path, PurePursuitFollower.Drive drive, boolean shove) {
+        PurePursuitFollower.Parameters parameters = new PurePursuitFollower.Parameters();
+        parameters.drive = drive;
+        PurePursuitFollower follower = new PurePursuitFollower(path, parameters);
+        DriveMixer mixer = new DriveMixer(MAX_SPEED, TURN_RADIUS);
+        double[] powers = new double[4];
+
+        int maxLoops = (int) (4 * path.getLength() / parameters.maxSpeed / LOOP_SECONDS) + 500;
+        double[] xs = new double[maxLoops];
+        double[] ys = new double[maxLoops];
+
+        Result result = new Result();
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = allocation != null ? allocation.getThreadAllocatedBytes(threadId) : 0;
+
+        double x = path.getStartX(), y = path.getStartY();
+        double heading = Math.atan2(path.directionY[0], path.directionX[0]);
+        long updateNanos = 0;
+        boolean shoved = false;
+        int loops = 0;
+        while (loops < maxLoops && !follower.isFinished()) {
+            if (shove && !shoved && follower.getDistanceAlong() > path.getLength() / 2) {
+                x -= 20 * Math.sin(heading);
+                y += 20 * Math.cos(heading);
+                shoved = true;
+            }
+            xs[loops] = x;
+            ys[loops] = y;
+
+            long start = System.nanoTime();
+            follower.update(x, y, heading);
+            updateNanos += System.nanoTime() - start;
+            if (!shove || shoved) {
+                result.maxCrossTrack = Math.max(result.maxCrossTrack, shove ? 0 : follower.getCrossTrackError());
+            }
+
+            // Through the mixer and back: what the wheels actually deliver.
+            double forward, left, turn;
+            if (drive == PurePursuitFollower.Drive.TANK) {
+                mixer.tank(follower.getForward(), follower.getTurn(), powers);
+                forward = (powers[DriveMixer.LEFT] + powers[DriveMixer.RIGHT]) / 2 * MAX_SPEED;
+                left    = 0;
+                turn    = (powers[DriveMixer.RIGHT] - powers[DriveMixer.LEFT]) / 2 * MAX_SPEED / TURN_RADIUS;
+            } else {
+                mixer.mecanum(follower.getForward(), follower.getLeft(), follower.getTurn(), powers);
+                forward = (powers[DriveMixer.LEFT_FRONT] + powers[DriveMixer.RIGHT_FRONT] + powers[DriveMixer.LEFT_BACK] + powers[DriveMixer.RIGHT_BACK]) / 4 * MAX_SPEED;
+                left    = (-powers[DriveMixer.LEFT_FRONT] + powers[DriveMixer.RIGHT_FRONT] + powers[DriveMixer.LEFT_BACK] - powers[DriveMixer.RIGHT_BACK]) / 4 * MAX_SPEED;
+                turn    = (-powers[DriveMixer.LEFT_FRONT] + powers[DriveMixer.RIGHT_FRONT] - powers[DriveMixer.LEFT_BACK] + powers[DriveMixer.RIGHT_BACK]) / 4 * MAX_SPEED / TURN_RADIUS;
+            }
+            double midHeading = heading + turn * LOOP_SECONDS / 2;
+            x += (forward * Math.cos(midHeading) - left * Math.sin(midHeading)) * LOOP_SECONDS;
+            y += (forward * Math.sin(midHeading) + left * Math.cos(midHeading)) * LOOP_SECONDS;
+            heading += turn * LOOP_SECONDS;
+            loops++;
+        }
+        long bytesAfter = allocation != null ? allocation.getThreadAllocatedBytes(threadId) : 0;
+        // Less what measuring itself allocates.
+        long probe = allocation != null ? allocation.getThreadAllocatedBytes(threadId) - bytesAfter : 0;
+        result.bytesAllocated = allocation != null ? bytesAfter - bytesBefore - probe : -1;
+        result.nanosPerUpdate = (double) updateNanos / loops;
+        result.seconds = loops * LOOP_SECONDS;
+        result.finished = follower.isFinished();
+        result.recoveries = follower.getRecoveries();
+
+        // The same positions, with the nearest segment found by looking at all of them.
+        long start = System.nanoTime();
+        double sink = 0;
+        for (int i = 0; i < loops; i++) {
+            double best = Double.MAX_VALUE;
+            for (int s = 0; s < path.segmentCount; s++) {
+                best = Math.min(best, path.distanceSquared(s, xs[i], ys[i]));
+            }
+            sink += best;
+        }
+        result.nanosPerLinearScan = (double) (System.nanoTime() - start) / loops + (sink < 0 ? 1 : 0);
+        return result;
+    }
+
+    public static String run() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-28s %10s %12s %10s %8s %9s %10s%n",
+                "segments", "update ns", "scan-all ns", "max error", "time s", "recovery", "allocated"));
+        Object[][] cases = {
+                { 10,     PurePursuitFollower.Drive.HOLONOMIC, false },
+                { 100,    PurePursuitFollower.Drive.HOLONOMIC, false },
+                { 1000,   PurePursuitFollower.Drive.HOLONOMIC, false },
+                { 10000,  PurePursuitFollower.Drive.HOLONOMIC, false },
+                { 1000,   PurePursuitFollower.Drive.TANK,      false },
+                { 10000,  PurePursuitFollower.Drive.TANK,      false },
+                { 1000,   PurePursuitFollower.Drive.HOLONOMIC, true },
+        };
+        for (Object[] c : cases) {
+            int segments = (Integer) c[0];
+            PurePursuitFollower.Drive drive = (PurePursuitFollower.Drive) c[1];
+            boolean shove = (Boolean) c[2];
+            Path path = figureEight(segments);
+            // Warm up the JIT, then keep the fastest of a few runs, which are otherwise identical.
+            for (int i = 0; i < 3; i++) {
+                follow(path, drive, shove);
+            }
+            Result r = follow(path, drive, shove);
+            for (int i = 0; i < 4; i++) {
+                Result again = follow(path, drive, shove);
+                r.nanosPerUpdate = Math.min(r.nanosPerUpdate, again.nanosPerUpdate);
+                r.nanosPerLinearScan = Math.min(r.nanosPerLinearScan, again.nanosPerLinearScan);
+                r.bytesAllocated = Math.min(r.bytesAllocated, again.bytesAllocated);
+            }
+            String name = String.format(Locale.US, "%6d %s%s", segments, drive.name().toLowerCase(Locale.US), shove ? ", shoved" : "");
+            out.append(String.format(Locale.US, "%-28s %10.0f %12.0f %10s %8s %9d %10d%n",
+                    name, r.nanosPerUpdate, r.nanosPerLinearScan,
+                    shove ? "-" : String.format(Locale.US, "%.2f in", r.maxCrossTrack),
+                    r.finished ? String.format(Locale.US, "%.1f", r.seconds) : "DNF",
+                    r.recoveries, r.bytesAllocated));
+        }
+        out.append("allocated: fewest bytes allocated by a whole run (follower, mixer and robot); the JIT\n");
+        out.append("occasionally allocates a few bytes of its own while recompiling.\n");
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
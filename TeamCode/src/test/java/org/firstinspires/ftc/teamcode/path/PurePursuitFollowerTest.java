@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.teamcode.path;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PurePursuitFollowerTest {
+
+    private static Path straight(double length, int segments) {
+        Path.Builder builder = new Path.Builder(0, 0);
+        for (int i = 1; i <= segments; i++) {
+            builder.lineTo(length * i / segments, 0);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void indexFindsTheSameSegmentAsLookingAtEveryOne() {
+        Path path = PathFollowerBenchmark.figureEight(500);
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            double x = -70 + 140 * random.nextDouble();
+            double y = -45 + 90 * random.nextDouble();
+            double best = Double.MAX_VALUE;
+            for (int s = 0; s < path.segmentCount; s++) {
+                best = Math.min(best, path.distanceSquared(s, x, y));
+            }
+
+            path.index.nearest(x, y, 0, path.segmentCount - 1, Double.MAX_VALUE);
+
+            assertEquals(best, path.index.foundDistanceSquared, 1e-9);
+        }
+    }
+
+    @Test
+    public void indexGivesUpBeyondMaxDistance() {
+        Path path = straight(100, 100);
+
+        path.index.nearest(50, 20, 0, path.segmentCount - 1, 10);
+        assertEquals(-1, path.index.foundSegment);
+
+        path.index.nearest(50.5, 5, 0, path.segmentCount - 1, 10);
+        assertEquals(50, path.index.foundSegment);
+    }
+
+    @Test
+    public void walkFindsTheNearestSegmentAhead() {
+        Path path = straight(100, 1000);
+
+        path.index.nearestAlong(37.05, 0.5, 100, path.segmentCount - 1);
+
+        assertEquals(370, path.index.foundSegment);
+        assertEquals(0.25, path.index.foundDistanceSquared, 1e-9);
+    }
+
+    @Test
+    public void followsTheFigureEightWithoutLosingThePath() {
+        for (PurePursuitFollower.Drive drive : PurePursuitFollower.Drive.values()) {
+            PathFollowerBenchmark.Result result = PathFollowerBenchmark.follow(PathFollowerBenchmark.figureEight(1000), drive, false);
+
+            assertTrue(drive + " finished", result.finished);
+            assertEquals(drive + " recoveries", 0, result.recoveries);
+            assertTrue(drive + " cross track error " + result.maxCrossTrack, result.maxCrossTrack < 6);
+        }
+    }
+
+    @Test
+    public void shovedRobotRejoinsTheBranchItWasOn() {
+        PathFollowerBenchmark.Result result = PathFollowerBenchmark.follow(PathFollowerBenchmark.figureEight(1000), PurePursuitFollower.Drive.HOLONOMIC, true);
+
+        assertTrue(result.finished);
+        assertTrue(result.recoveries > 0);
+    }
+
+    @Test
+    public void recoverySearchWidensWhileTheRobotStaysFarOff() {
+        Path path = straight(100, 1000);
+        PurePursuitFollower.Parameters parameters = new PurePursuitFollower.Parameters();
+        PurePursuitFollower follower = new PurePursuitFollower(path, parameters);
+        follower.update(0, 0, 0);
+        follower.update(10, 0, 0);
+        int segment = follower.getSegment();
+
+        // 40 inches off is beyond the first recovery search (24 inches) and within the second.
+        follower.update(10, 40, 0);
+        assertEquals(1, follower.getRecoveries());
+        assertEquals(segment, follower.getSegment());
+        assertEquals(Math.sqrt(path.distanceSquared(segment, 10, 40)), follower.getCrossTrackError(), 1e-9);
+
+        follower.update(11, 40, 0);
+        assertEquals(2, follower.getRecoveries());
+        assertEquals(40, follower.getCrossTrackError(), 1e-9);
+        assertEquals(11, follower.getDistanceAlong(), 1e-9);
+
+        // Back on the path, it carries on from where it left it.
+        follower.update(12, 0, 0);
+        assertEquals(2, follower.getRecoveries());
+        assertEquals(0, follower.getCrossTrackError(), 1e-9);
+        assertEquals(12, follower.getDistanceAlong(), 1e-9);
+    }
+}
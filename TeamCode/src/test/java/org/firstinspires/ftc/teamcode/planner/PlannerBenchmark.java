@@ -0,0 +1,219 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * PlannerBenchmark times the planners on a sparse and a dense field, at 2 inch and 1 inch cells.
+ *
+ * The sparse field has only the central structure.  The dense one adds 16 scattered game elements,
+ * which, once grown by the robot's 9 inch radius, block half the field and leave a maze of gaps.
+ *
+ *   - A* and Theta*: 200 random routes between free cells, planned from scratch.
+ *   - cache: the same routes through FieldPlanner twice, then again after an obstacle is added.
+ *   - replanning: the robot drives across the field while an opposing robot crosses its route,
+ *     both moving every loop.  Each loop, D* Lite repairs the route; for comparison A* plans it
+ *     from scratch, and the two costs are checked to be the same.
+ *
+ * PlannerTest covers the planners; run the timings on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=planner.PlannerBenchmark
+ */
+public class PlannerBenchmark {
+
+    static final double ROBOT_RADIUS = 9.0;
+
+    static OccupancyGrid field(double cellSize, boolean dense, long seed) {
+        OccupancyGrid grid = new OccupancyGrid(cellSize, ROBOT_RADIUS);
+        // Central structure.
+        grid.addRectangle(-22, -14.5, 22, 14.5);
+        if (dense) {
+            Random random = new Random(seed);
+            for (int i = 0; i < 16; i++) {
+                double x = -60 + 120 * random.nextDouble();
+                double y = -60 + 120 * random.nextDouble();
+                // Keep the corners used by the replanning run clear.
+                if (Math.abs(Math.abs(x) - 50) < 15 && Math.abs(Math.abs(y) - 50) < 15) {
+                    continue;
+                }
+                grid.addCircle(x, y, 1.5 + random.nextDouble());
+            }
+        }
+        return grid;
+    }
+
+    static String plans(OccupancyGrid grid, String name) {
+        Random random = new Random(11);
+        int pairs = 200;
+        int[] starts = new int[pairs], goals = new int[pairs];
+        for (int i = 0; i < pairs; i++) {
+            do {
+                starts[i] = random.nextInt(grid.cellCount);
+            } while (grid.isBlocked(starts[i]));
+            do {
+                goals[i] = random.nextInt(grid.cellCount);
+            } while (grid.isBlocked(goals[i]));
+        }
+
+        GridPlanner planner = new GridPlanner(grid);
+        double[] aStar = new double[3], thetaStar = new double[3];
+        double aLength = 0, thetaLength = 0;
+        int found = 0;
+        for (int round = 0; round < 3; round++) {
+            aLength = thetaLength = 0;
+            found = 0;
+            long worst = 0, total = 0;
+            for (int i = 0; i < pairs; i++) {
+                long t0 = System.nanoTime();
+                int n = planner.plan(starts[i], goals[i], false);
+                long t = System.nanoTime() - t0;
+                total += t;
+                worst = Math.max(worst, t);
+                if (n > 0) {
+                    found++;
+                    aLength += planner.getLength();
+                }
+            }
+            aStar[0] = total / 1e3 / pairs;
+            aStar[1] = worst / 1e3;
+            total = worst = 0;
+            for (int i = 0; i < pairs; i++) {
+                long t0 = System.nanoTime();
+                int n = planner.plan(starts[i], goals[i], true);
+                long t = System.nanoTime() - t0;
+                total += t;
+                worst = Math.max(worst, t);
+                if (n > 0) {
+                    thetaLength += planner.getLength();
+                }
+            }
+            thetaStar[0] = total / 1e3 / pairs;
+            thetaStar[1] = worst / 1e3;
+        }
+
+        FieldPlanner fieldPlanner = new FieldPlanner(grid, pairs);
+        long[] passes = new long[3];
+        for (int pass = 0; pass < 3; pass++) {
+            if (pass == 2) {
+                // Something appears in a corner: most routes are unaffected.
+                grid.addCircle(-60, 60, 3);
+            }
+            long t0 = System.nanoTime();
+            for (int i = 0; i < pairs; i++) {
+                fieldPlanner.route(grid.x(starts[i]), grid.y(starts[i]), grid.x(goals[i]), grid.y(goals[i]));
+            }
+            passes[pass] = System.nanoTime() - t0;
+        }
+
+        return String.format(Locale.US,
+                "%-22s A* %7.1f us (max %7.1f)  Theta* %7.1f us (max %7.1f), %.1f%% shorter  " +
+                "cache: miss %6.1f us, hit %5.2f us, recheck %5.2f us (%d rechecked, %d replanned)  routes %d/%d%n",
+                name, aStar[0], aStar[1], thetaStar[0], thetaStar[1], 100 * (1 - thetaLength / aLength),
+                passes[0] / 1e3 / pairs, passes[1] / 1e3 / pairs, passes[2] / 1e3 / pairs,
+                fieldPlanner.getRechecks(), fieldPlanner.getMisses() - pairs, found, pairs);
+    }
+
+    static String replanning(OccupancyGrid grid, String name) {
+        IncrementalPlanner incremental = new IncrementalPlanner(grid);
+        GridPlanner scratch = new GridPlanner(grid);
+
+        double robotX = -50, robotY = -50;
+        int goal = grid.nearestFree(grid.cell(50, 50));
+        int opponent = grid.addCircle(40, -60, 9);
+        double opponentX = 40, opponentY = -60;
+
+        // First plans vary a lot from one to the next on a desktop JVM: take the median of a few.
+        long[] firsts = new long[9];
+        for (int i = 0; i < firsts.length; i++) {
+            long t0 = System.nanoTime();
+            incremental.plan(grid.nearestFree(grid.cell(robotX, robotY)), goal);
+            firsts[i] = System.nanoTime() - t0;
+        }
+        Arrays.sort(firsts);
+        long initial = firsts[firsts.length / 2];
+
+        long[] incrementalTimes = new long[400], scratchTimes = new long[400];
+        long t0;
+        long expanded = 0;
+        int loops = 0, mismatches = 0, blocked = 0;
+        while (loops < 400 && Math.hypot(robotX - 50, robotY - 50) > 3) {
+            // The opponent drives diagonally across the field, through the robot's route.
+            opponentX -= 0.6;
+            opponentY += 0.6;
+            grid.moveCircle(opponent, opponentX, opponentY);
+
+            int start = grid.nearestFree(grid.cell(robotX, robotY));
+            incremental.setStart(start);
+            t0 = System.nanoTime();
+            int count = incremental.replan();
+            incrementalTimes[loops] = System.nanoTime() - t0;
+            expanded += incremental.getExpanded();
+
+            t0 = System.nanoTime();
+            scratch.plan(start, goal, false);
+            scratchTimes[loops] = System.nanoTime() - t0;
+            if (Math.abs(scratch.getCost() - incremental.getCost()) > 1e-3 * Math.max(1.0, scratch.getCost())) {
+                mismatches++;
+            }
+
+            loops++;
+            if (count < 2) {
+                blocked++;
+                continue;
+            }
+            // Drive 1 inch towards the next waypoint.
+            int next = incremental.getWaypoints()[1];
+            double dx = grid.x(next) - robotX, dy = grid.y(next) - robotY;
+            double d = Math.hypot(dx, dy);
+            double step = Math.min(1.0, d);
+            robotX += dx / d * step;
+            robotY += dy / d * step;
+        }
+        grid.remove(opponent);
+        if (mismatches > 0) {
+            throw new AssertionError(name + ": D* Lite and A* disagree on the cost in " + mismatches + " loops");
+        }
+
+        return String.format(Locale.US,
+                "%-22s D* Lite: first plan %7.1f us, repair %6.1f us (p99 %7.1f), %5.0f cells/loop;  " +
+                "A* from scratch %6.1f us (p99 %7.1f);  %d loops, %d without route, %d cost mismatches%n",
+                name, initial / 1e3, mean(incrementalTimes, loops), percentile99(incrementalTimes, loops), (double) expanded / loops,
+                mean(scratchTimes, loops), percentile99(scratchTimes, loops), loops, blocked, mismatches);
+    }
+
+    static double mean(long[] nanos, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += nanos[i];
+        }
+        return total / 1e3 / count;
+    }
+
+    static double percentile99(long[] nanos, int count) {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) Math.ceil(0.99 * count) - 1)] / 1e3;
+    }
+
+    public static String run() {
+        StringBuilder out = new StringBuilder();
+        for (double cellSize : new double[] { 2.0, 1.0 }) {
+            for (boolean dense : new boolean[] { false, true }) {
+                String name = String.format(Locale.US, "%s, %.0f in cells", dense ? "dense" : "sparse", cellSize);
+                // Warm up the JIT, then measure on a fresh grid.
+                for (int i = 0; i < 5; i++) {
+                    plans(field(cellSize, dense, 5), name);
+                    replanning(field(cellSize, dense, 5), name);
+                }
+                out.append(plans(field(cellSize, dense, 5), name));
+                out.append(replanning(field(cellSize, dense, 5), name));
+            }
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,110 @@
+package org.firstinspires.ftc.teamcode.planner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlannerTest {
+
+    private static OccupancyGrid field() {
+        return PlannerBenchmark.field(2.0, false, 0);
+    }
+
+    private static void assertClear(OccupancyGrid grid, int[] cells, int count) {
+        for (int i = 1; i < count; i++) {
+            assertTrue("leg " + i + " is clear", grid.lineOfSight(cells[i - 1], cells[i]));
+        }
+    }
+
+    @Test
+    public void openFieldRouteIsAStraightLine() {
+        OccupancyGrid grid = field();
+        GridPlanner planner = new GridPlanner(grid);
+        int start = grid.cell(-51, 51), goal = grid.cell(51, 51);
+
+        assertEquals(2, planner.plan(start, goal, false));
+        assertEquals(102, planner.getLength(), 1e-9);
+    }
+
+    @Test
+    public void routesGoAroundTheStructure() {
+        OccupancyGrid grid = field();
+        GridPlanner planner = new GridPlanner(grid);
+        int start = grid.cell(-51, 1), goal = grid.cell(51, 1);
+
+        int count = planner.plan(start, goal, false);
+        assertTrue(count > 2);
+        assertClear(grid, planner.getWaypoints(), count);
+        double aStar = planner.getLength();
+
+        count = planner.plan(start, goal, true);
+        assertTrue(count > 2);
+        assertClear(grid, planner.getWaypoints(), count);
+        assertTrue(planner.getLength() > 102);
+        assertTrue("Theta* " + planner.getLength() + ", A* " + aStar, planner.getLength() <= aStar + 1e-9);
+    }
+
+    @Test
+    public void enclosedGoalHasNoRoute() {
+        OccupancyGrid grid = field();
+        grid.addRectangle(30, 30, 70, 31);
+        grid.addRectangle(30, 69, 70, 70);
+        grid.addRectangle(30, 30, 31, 70);
+        grid.addRectangle(69, 30, 70, 70);
+        GridPlanner planner = new GridPlanner(grid);
+        int goal = grid.cell(51, 51);
+        assertFalse(grid.isBlocked(goal));
+
+        assertEquals(0, planner.plan(grid.cell(-51, -51), goal, true));
+        assertEquals(0, planner.plan(grid.cell(-51, -51), grid.cell(0, 0), true));
+    }
+
+    @Test
+    public void repairedRouteCostsTheSameAsPlanningFromScratch() {
+        OccupancyGrid grid = PlannerBenchmark.field(2.0, true, 5);
+        IncrementalPlanner incremental = new IncrementalPlanner(grid);
+        GridPlanner scratch = new GridPlanner(grid);
+        int start = grid.nearestFree(grid.cell(-50, -50));
+        int goal = grid.nearestFree(grid.cell(50, 50));
+        assertTrue(incremental.plan(start, goal) > 0);
+
+        // An opponent crosses the field diagonally while the robot stays put.
+        int opponent = grid.addCircle(40, -60, 9);
+        for (int i = 1; i <= 100; i++) {
+            grid.moveCircle(opponent, 40 - i, -60 + i);
+            int count = incremental.replan();
+            scratch.plan(start, goal, false);
+
+            assertEquals("loop " + i, scratch.getWaypointCount() > 0, count > 0);
+            assertEquals("loop " + i, scratch.getCost(), incremental.getCost(), 1e-3 * scratch.getCost());
+        }
+    }
+
+    @Test
+    public void fieldPlannerReusesRoutesWhileTheyAreClear() {
+        OccupancyGrid grid = field();
+        FieldPlanner planner = new FieldPlanner(grid, 4);
+
+        int count = planner.route(-51, 1, 51, 1);
+        assertTrue(count > 2);
+        assertEquals(-51, planner.getWaypointX(0), 0);
+        assertEquals(1, planner.getWaypointY(count - 1), 0);
+        planner.route(-51, 1, 51, 1);
+        assertEquals(1, planner.getMisses());
+        assertEquals(1, planner.getHits());
+
+        // Far from the route: checked and reused.
+        grid.addCircle(-60, -60, 2);
+        planner.route(-51, 1, 51, 1);
+        assertEquals(1, planner.getRechecks());
+        assertEquals(1, planner.getMisses());
+
+        // On the route: planned again.
+        int[] cells = planner.getPlanner().getWaypoints();
+        grid.addCircle(grid.x(cells[1]), grid.y(cells[1]), 2);
+        planner.route(-51, 1, 51, 1);
+        assertEquals(2, planner.getMisses());
+    }
+}
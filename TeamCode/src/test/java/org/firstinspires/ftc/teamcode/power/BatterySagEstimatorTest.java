@@ -0,0 +1,58 @@
+package org.firstinspires.ftc.teamcode.power;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatterySagEstimatorTest {
+
+    /** Feed samples from V = voc - ohms * I, with the current sweeping from 0 to 30A and back. */
+    private static void feed(BatterySagEstimator estimator, double voc, double ohms, int samples) {
+        for (int i = 0; i < samples; i++) {
+            double amps = 15 + 15 * Math.sin(i * 0.1);
+            estimator.update(voc - ohms * amps, amps);
+        }
+    }
+
+    @Test
+    public void learnsOpenCircuitVoltsAndResistance() {
+        BatterySagEstimator estimator = new BatterySagEstimator();
+        feed(estimator, 12.8, 0.18, 400);
+
+        assertEquals(12.8, estimator.getOpenCircuitVolts(), 0.02);
+        assertEquals(0.18, estimator.getResistanceOhms(), 0.005);
+        assertEquals(12.8 - 0.18 * 20, estimator.predictVolts(20), 0.05);
+        assertEquals((12.8 - 8.5) / 0.18, estimator.maxAmps(8.5), 0.5);
+    }
+
+    @Test
+    public void fixedResistanceOnlyLearnsOpenCircuitVolts() {
+        BatterySagEstimator estimator = new BatterySagEstimator();
+        estimator.setFixedResistance(0.5);
+        for (int i = 0; i < 400; i++) {
+            estimator.update(12.4, 0);
+        }
+        assertEquals(12.4, estimator.getOpenCircuitVolts(), 0.01);
+        assertEquals(0.5, estimator.getResistanceOhms(), 0);
+
+        estimator.reset(13.0, 0.25);
+        assertEquals(0.5, estimator.getResistanceOhms(), 0);
+
+        estimator.setFixedResistance(Double.NaN);
+        feed(estimator, 12.8, 0.18, 400);
+        assertEquals(0.18, estimator.getResistanceOhms(), 0.005);
+    }
+
+    @Test
+    public void singleOutlierIsIgnored() {
+        BatterySagEstimator estimator = new BatterySagEstimator();
+        feed(estimator, 12.8, 0.18, 400);
+        double volts = estimator.getOpenCircuitVolts();
+        double ohms = estimator.getResistanceOhms();
+
+        estimator.update(5.0, 1.0);
+
+        assertEquals(volts, estimator.getOpenCircuitVolts(), 0);
+        assertEquals(ohms, estimator.getResistanceOhms(), 0);
+    }
+}
@@ -0,0 +1,182 @@
+package org.firstinspires.ftc.teamcode.power;
+
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * PowerLimiterSimulation drives a simulated robot through a hard sequence of moves, with and without
+ * the PowerLimiter, and reports how low the battery voltage went and how many brownouts there were.
+ *
+ * The robot has four drive motors, an arm held up against gravity and an intake.  The driver
+ * reverses the drive at full power every 1.5 seconds while moving the arm and running the intake,
+ * which is about the worst a match can ask of a battery.
+ *
+ * A brownout is the battery dropping below BROWNOUT_VOLTS: the hubs reset, and the motors are
+ * unpowered until RESET_SECONDS later.
+ *
+ * Given the motor speeds, the limiter keeps the battery above its minimum voltage throughout.
+ * Given only the powers, it holds the resistance at PowerLimiter.NO_SPEED_RESISTANCE_OHMS and limits
+ * much more often, which avoids the brownouts at the cost of drive speed.
+ *
+ * PowerLimiterTest checks the brownouts; run the full report on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=power.PowerLimiterSimulation
+ */
+public class PowerLimiterSimulation {
+
+    static final double BROWNOUT_VOLTS  = 7.0;
+    static final double RESET_SECONDS   = 1.5;
+    static final double LOOP_SECONDS    = 0.020;
+    static final double STEP_SECONDS    = 0.001;
+    static final double RUN_SECONDS     = 30.0;
+    static final double SENSOR_NOISE    = 0.03;
+
+    static final double DRIVE_STALL_AMPS  = 9.2;
+    static final double ARM_STALL_AMPS    = 9.2;
+    static final double INTAKE_STALL_AMPS = 8.5;
+
+    static class Result {
+        double minimumVolts = Double.MAX_VALUE;
+        int    brownouts;
+        double secondsBelowMinimum;
+        double driveTravel;
+        double armTravel;
+        double intakeTravel;
+        double limitedFraction;
+        double estimatedOhms;
+        double seriesOhms;
+        double worstPredictionError;
+    }
+
+    static Result simulate(double stateOfCharge, double wiringOhms, boolean limit, boolean useSpeed, long seed) {
+        Random noise = new Random(seed);
+        SimulatedBattery battery = new SimulatedBattery(stateOfCharge, 3.0, wiringOhms, 0.8, 6);
+        SimulatedBattery.Motor[] drive = new SimulatedBattery.Motor[4];
+        for (int i = 0; i < drive.length; i++) {
+            drive[i] = battery.addMotor(DRIVE_STALL_AMPS, 0.15, 0.02);
+        }
+        SimulatedBattery.Motor arm    = battery.addMotor(ARM_STALL_AMPS, 0.10, 0.30);
+        SimulatedBattery.Motor intake = battery.addMotor(INTAKE_STALL_AMPS, 0.05, 0.05);
+
+        // The limiter is told the stall currents from the motor data sheets, and knows nothing
+        // else about the battery.
+        PowerLimiter limiter = new PowerLimiter();
+        limiter.setEnabled(limit);
+        limiter.setIdleAmps(0.8);
+        int leftLoad   = limiter.addLoad("drive.left",  2 * DRIVE_STALL_AMPS, 1);
+        int rightLoad  = limiter.addLoad("drive.right", 2 * DRIVE_STALL_AMPS, 1);
+        int armLoad    = limiter.addLoad("arm",         ARM_STALL_AMPS,       2);
+        int intakeLoad = limiter.addLoad("intake",      INTAKE_STALL_AMPS,    0);
+
+        Result result = new Result();
+        double resetUntil = -1;
+        boolean browned = false;
+        double predicted = Double.NaN;
+
+        int loops = (int) Math.round(RUN_SECONDS / LOOP_SECONDS);
+        int stepsPerLoop = (int) Math.round(LOOP_SECONDS / STEP_SECONDS);
+        for (int loop = 0; loop < loops; loop++) {
+            double t = loop * LOOP_SECONDS;
+            boolean running = t >= resetUntil;
+
+            double measured = battery.getVolts() + noise.nextGaussian() * SENSOR_NOISE;
+            if (!Double.isNaN(predicted) && running) {
+                result.worstPredictionError = Math.max(result.worstPredictionError, Math.abs(predicted - battery.getVolts()));
+            }
+
+            double drivePower  = ((int) (t / 1.5)) % 2 == 0 ? 1.0 : -1.0;
+            double armPower    = (t % 4.0) < 1.0 ? 1.0 : 0.35;
+            double intakePower = (t % 5.0) < 3.0 ? 1.0 : 0.0;
+            if (!running) {
+                // The hubs are restarting and the motors are off.
+                drivePower = armPower = intakePower = 0;
+            }
+            limiter.setDemand(leftLoad, drivePower);
+            limiter.setDemand(rightLoad, drivePower);
+            limiter.setDemand(armLoad, armPower);
+            limiter.setDemand(intakeLoad, intakePower);
+            if (useSpeed) {
+                // As from DcMotorEx.getVelocity() over the free speed.
+                limiter.setSpeed(leftLoad, drive[0].getSpeed());
+                limiter.setSpeed(rightLoad, drive[2].getSpeed());
+                limiter.setSpeed(armLoad, arm.getSpeed());
+                limiter.setSpeed(intakeLoad, intake.getSpeed());
+            }
+            limiter.update(measured);
+            predicted = limiter.getPredictedVolts();
+
+            double left = 0, right = 0, armOut = 0, intakeOut = 0;
+            if (running) {
+                left      = limiter.getOutput(leftLoad);
+                right     = limiter.getOutput(rightLoad);
+                armOut    = limiter.getOutput(armLoad);
+                intakeOut = limiter.getOutput(intakeLoad);
+            }
+            drive[0].setPower(left);
+            drive[1].setPower(left);
+            drive[2].setPower(right);
+            drive[3].setPower(right);
+            arm.setPower(armOut);
+            intake.setPower(intakeOut);
+
+            for (int step = 0; step < stepsPerLoop; step++) {
+                battery.step(STEP_SECONDS);
+                double volts = battery.getVolts();
+                result.minimumVolts = Math.min(result.minimumVolts, volts);
+                if (volts < limiter.getMinimumVolts()) {
+                    result.secondsBelowMinimum += STEP_SECONDS;
+                }
+                if (volts < BROWNOUT_VOLTS && !browned) {
+                    result.brownouts++;
+                    browned = true;
+                    resetUntil = t + (step + 1) * STEP_SECONDS + RESET_SECONDS;
+                    for (SimulatedBattery.Motor motor : drive) motor.setPower(0);
+                    arm.setPower(0);
+                    intake.setPower(0);
+                } else if (volts >= BROWNOUT_VOLTS) {
+                    browned = false;
+                }
+            }
+        }
+
+        for (SimulatedBattery.Motor motor : drive) {
+            result.driveTravel += motor.getTravel() / drive.length;
+        }
+        result.armTravel       = arm.getTravel();
+        result.intakeTravel    = intake.getTravel();
+        result.limitedFraction = limiter.getLimitedFraction();
+        result.estimatedOhms   = limiter.getEstimator().getResistanceOhms();
+        result.seriesOhms      = battery.seriesOhms();
+        return result;
+    }
+
+    static String format(String name, Result result) {
+        return String.format(Locale.US,
+                "%-26s min %5.2fV  brownouts %2d  below min %5.2fs  drive %5.1f  arm %5.1f  intake %5.1f  limited %3.0f%%  R est %.3f (series %.3f)  worst prediction error %.2fV%n",
+                name, result.minimumVolts, result.brownouts, result.secondsBelowMinimum,
+                result.driveTravel, result.armTravel, result.intakeTravel, 100 * result.limitedFraction,
+                result.estimatedOhms, result.seriesOhms, result.worstPredictionError);
+    }
+
+    public static String run() {
+        StringBuilder out = new StringBuilder();
+        double[][] batteries = {
+                // state of charge, wiring ohms
+                { 1.0,  0.03 },
+                { 0.5,  0.05 },
+                { 0.2,  0.08 },
+        };
+        for (double[] b : batteries) {
+            String label = String.format(Locale.US, "charge %3.0f%%, wiring %.2f", 100 * b[0], b[1]);
+            out.append(label).append(':').append(String.format("%n"));
+            out.append(format("  no limiter", simulate(b[0], b[1], false, true, 1)));
+            out.append(format("  limiter, power only", simulate(b[0], b[1], true, false, 1)));
+            out.append(format("  limiter, power and speed", simulate(b[0], b[1], true, true, 1)));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,93 @@
+package org.firstinspires.ftc.teamcode.power;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PowerLimiterTest {
+
+    @Test
+    public void passesThroughWithoutVoltageSensor() {
+        PowerLimiter limiter = new PowerLimiter();
+        int load = limiter.addLoad("drive", 20, 1);
+        limiter.update(12.5);
+        limiter.setDemand(load, -1.0);
+        limiter.setSpeed(load, 1.0);
+        limiter.update(Double.NaN);
+
+        assertEquals(-1.0, limiter.getOutput(load), 0);
+        assertFalse(limiter.isLimiting());
+        assertTrue(Double.isNaN(limiter.getPredictedVolts()));
+    }
+
+    @Test
+    public void currentIsSharedOutByPriority() {
+        PowerLimiter limiter = new PowerLimiter();
+        int arm    = limiter.addLoad("arm",         10, 2);
+        int left   = limiter.addLoad("drive.left",  20, 1);
+        int right  = limiter.addLoad("drive.right", 20, 1);
+        int intake = limiter.addLoad("intake",      10, 0);
+        for (int load = 0; load < limiter.getLoadCount(); load++) {
+            limiter.setDemand(load, 1.0);
+            limiter.setSpeed(load, 0.0);
+        }
+        // First sample: sets Voc to 13V plus the idle sag, and keeps the nominal resistance.
+        limiter.update(13.0);
+
+        assertTrue(limiter.isLimiting());
+        assertEquals(1.0, limiter.getOutput(arm), 0);
+        assertEquals(limiter.getOutput(left), limiter.getOutput(right), 0);
+        // The drive gets what the arm leaves: 20 * s^2 * 13/12 per side, for 7.17A in all.
+        assertEquals(0.4067, limiter.getOutput(left), 1e-3);
+        // The intake only gets the bisection's last few milliamps.
+        assertEquals(0.0, limiter.getOutput(intake), 0.01);
+        assertEquals(PowerLimiter.DEFAULT_MINIMUM_VOLTS, limiter.getPredictedVolts(), 1e-3);
+        assertTrue(limiter.getUnlimitedVolts() < PowerLimiter.DEFAULT_MINIMUM_VOLTS);
+    }
+
+    @Test
+    public void disabledLimiterStillPredicts() {
+        PowerLimiter limiter = new PowerLimiter();
+        int drive = limiter.addLoad("drive", 40, 1);
+        limiter.setEnabled(false);
+        limiter.setDemand(drive, 1.0);
+        limiter.setSpeed(drive, 0.0);
+        limiter.update(13.0);
+
+        assertFalse(limiter.isLimiting());
+        assertEquals(1.0, limiter.getOutput(drive), 0);
+        assertTrue(limiter.getUnlimitedVolts() < PowerLimiter.DEFAULT_MINIMUM_VOLTS);
+    }
+
+    @Test
+    public void resistanceIsHeldUntilEveryLoadHasASpeed() {
+        PowerLimiter limiter = new PowerLimiter();
+        int left  = limiter.addLoad("drive.left",  20, 1);
+        int right = limiter.addLoad("drive.right", 20, 1);
+        limiter.setSpeed(left, 0.5);
+        limiter.update(12.5);
+
+        assertTrue(limiter.getEstimator().isResistanceFixed());
+        assertEquals(PowerLimiter.NO_SPEED_RESISTANCE_OHMS, limiter.getEstimator().getResistanceOhms(), 0);
+
+        limiter.setSpeed(right, 0.5);
+        limiter.update(12.5);
+        assertFalse(limiter.getEstimator().isResistanceFixed());
+    }
+
+    @Test
+    public void simulatedMatchHasNoBrownouts() {
+        double[][] batteries = { { 1.0, 0.03 }, { 0.5, 0.05 }, { 0.2, 0.08 } };
+        for (double[] b : batteries) {
+            String label = "charge " + b[0];
+            PowerLimiterSimulation.Result result = PowerLimiterSimulation.simulate(b[0], b[1], true, true, 1);
+            assertEquals(label, 0, result.brownouts);
+            assertTrue(label, result.secondsBelowMinimum <= 0.05);
+        }
+        // Without speeds the fixed resistance still protects a charged battery.
+        assertEquals(0, PowerLimiterSimulation.simulate(1.0, 0.03, true, false, 1).brownouts);
+        assertTrue(PowerLimiterSimulation.simulate(1.0, 0.03, false, true, 1).brownouts > 0);
+    }
+}
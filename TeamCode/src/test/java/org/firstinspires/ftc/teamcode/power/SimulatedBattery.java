@@ -0,0 +1,156 @@
+package org.firstinspires.ftc.teamcode.power;
+
+/*
+ * SimulatedBattery models a 12V NiMH pack and the motors it drives, for testing PowerLimiter off the
+ * robot.
+ *
+ * The battery has an open circuit voltage falling with its state of charge, an internal resistance
+ * rising as it empties, wiring resistance, and a polarisation (RC) term that makes the voltage keep
+ * sagging under a sustained load and recover slowly afterwards.  That last term is not part of the
+ * BatterySagEstimator model, on purpose.
+ *
+ * Motors are brushed DC motors driven by PWM: their current depends on the battery voltage and on
+ * their back EMF, so a motor reversing at full speed draws about twice its stall current.  The
+ * battery voltage and the motor currents are solved together at each step.
+ */
+public class SimulatedBattery {
+
+    static final double NOMINAL_VOLTS = 12.0;
+
+    private final double capacityAmpHours;
+    private final double wiringOhms;
+    private final double polarisationOhms;
+    private final double polarisationSeconds;
+    private final double idleAmps;
+
+    private double stateOfCharge;
+    private double polarisationVolts = 0;
+    private double volts;
+    private double amps;
+
+    private final Motor[] motors;
+    private int motorCount = 0;
+
+    /**
+     * A motor connected to the battery.
+     */
+    public class Motor {
+        final double stallAmps;
+        final double seconds;
+        final double loadFraction;
+        double power = 0;
+        double speed = 0;
+        double travel = 0;
+
+        Motor(double stallAmps, double seconds, double loadFraction) {
+            this.stallAmps = stallAmps;
+            this.seconds = seconds;
+            this.loadFraction = loadFraction;
+        }
+
+        public void setPower(double power) {
+            this.power = Math.max(-1.0, Math.min(1.0, power));
+        }
+
+        /**
+         * @return speed as a fraction of the free speed at 12V
+         */
+        public double getSpeed() {
+            return speed;
+        }
+
+        /**
+         * @return distance moved, in seconds at free speed
+         */
+        public double getTravel() {
+            return travel;
+        }
+
+        double currentAt(double batteryVolts) {
+            return stallAmps * (power * batteryVolts / NOMINAL_VOLTS - speed);
+        }
+    }
+
+    /**
+     * @param stateOfCharge     1.0 for a freshly charged pack
+     * @param capacityAmpHours  3.0 for the standard FTC pack
+     * @param wiringOhms        switch, fuse, connectors and wires
+     * @param idleAmps          current drawn by the hubs and everything that is not a motor
+     * @param maxMotors         number of motors that will be added
+     */
+    public SimulatedBattery(double stateOfCharge, double capacityAmpHours, double wiringOhms, double idleAmps, int maxMotors) {
+        this.stateOfCharge = stateOfCharge;
+        this.capacityAmpHours = capacityAmpHours;
+        this.wiringOhms = wiringOhms;
+        this.polarisationOhms = 0.04;
+        this.polarisationSeconds = 3.0;
+        this.idleAmps = idleAmps;
+        this.motors = new Motor[maxMotors];
+        this.volts = openCircuitVolts();
+    }
+
+    /**
+     * @param stallAmps     current at stall, at 12V
+     * @param seconds       mechanical time constant: time to reach 63% of free speed
+     * @param loadFraction  constant opposing torque (e.g. gravity on an arm), as a fraction of stall
+     */
+    public Motor addMotor(double stallAmps, double seconds, double loadFraction) {
+        Motor motor = new Motor(stallAmps, seconds, loadFraction);
+        motors[motorCount++] = motor;
+        return motor;
+    }
+
+    public double openCircuitVolts() {
+        return 11.8 + 1.6 * stateOfCharge;
+    }
+
+    /**
+     * @return internal resistance plus wiring; the polarisation term comes on top of this
+     */
+    public double seriesOhms() {
+        return 0.10 + 0.08 * (1.0 - stateOfCharge) + wiringOhms;
+    }
+
+    /**
+     * Advance the simulation.
+     */
+    public void step(double seconds) {
+        // Battery current is I = sum(p * Im) + idle, with Im = stall * (p * V / 12 - s), so
+        // I = a * V - b + idle, and V = Voc - vp - R * I can be solved directly for V.
+        double a = 0, b = 0;
+        for (int i = 0; i < motorCount; i++) {
+            Motor motor = motors[i];
+            a += motor.power * motor.power * motor.stallAmps / NOMINAL_VOLTS;
+            b += motor.power * motor.stallAmps * motor.speed;
+        }
+        double r = seriesOhms();
+        volts = (openCircuitVolts() - polarisationVolts - r * (idleAmps - b)) / (1.0 + r * a);
+        volts = Math.max(0.0, volts);
+        amps = a * volts - b + idleAmps;
+
+        for (int i = 0; i < motorCount; i++) {
+            Motor motor = motors[i];
+            double torque = motor.currentAt(volts) / motor.stallAmps - motor.loadFraction;
+            motor.speed += torque * seconds / motor.seconds;
+            motor.travel += Math.abs(motor.speed) * seconds;
+        }
+
+        polarisationVolts += (amps * polarisationOhms - polarisationVolts) * seconds / polarisationSeconds;
+        stateOfCharge -= amps * seconds / 3600.0 / capacityAmpHours;
+    }
+
+    /**
+     * @return terminal voltage, as seen by the hubs
+     */
+    public double getVolts() {
+        return volts;
+    }
+
+    public double getAmps() {
+        return amps;
+    }
+
+    public double getStateOfCharge() {
+        return stateOfCharge;
+    }
+}
@@ -0,0 +1,250 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import org.firstinspires.ftc.teamcode.color.ColorClassifier;
+import org.firstinspires.ftc.teamcode.distance.DistanceFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * AllocationMonitorSimulation shows what an AllocationMonitor finds in a control loop, on a desktop
+ * JVM.
+ *
+ * First it checks allocation budgets with AllocationMonitor.requireBudget(), the way a test would:
+ * code that must not allocate (profiling a section, monitoring a cycle, filtering a distance,
+ * classifying a color) and, to show a failed check, a telemetry line built with String.format().
+ *
+ * Then it runs a simulated loop, made of busy waits, twice.  The first time the loop allocates the
+ * way OpModes usually do: a new angles object for each IMU read, a new array of encoder positions,
+ * a new list of detections from vision, String.format() for telemetry, and a new buffer for each
+ * camera frame kept for a recording of the last few seconds.  The second time it reuses all of them.
+ * For each, it shows the monitor's summary: bytes per cycle, the collections and the time they
+ * blocked the loop, the cycles that overran while one ran, and the sections blamed for them.
+ *
+ * How many collections happen, and how long they pause, depends on the JVM and its heap: the
+ * Robot Controller's heap is far smaller than a desktop's, and collects more often.
+ *
+ * AllocationMonitorTest covers the monitor and the budgets; run this simulation on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=profiler.AllocationMonitorSimulation
+ */
+public class AllocationMonitorSimulation {
+
+    static final int    LOOPS        = 600;
+    static final double BUDGET_MILLIS = 6.0;
+    static final int    FRAME_BYTES  = 640 * 480;
+    static final int    KEPT_FRAMES  = 60;
+
+    static volatile Object sink;
+
+    //----------------------------------------------------------------------------------------------
+    // Budgets
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @param fits false for the example that is meant to fail; any other failure is rethrown
+     */
+    static String budget(MemoryCounters counters, String name, double maxBytes, boolean fits, Runnable task) {
+        try {
+            double perRun = AllocationMonitor.requireBudget(counters, name, maxBytes, 100_000, task);
+            return String.format(Locale.US, "  %-32s %8.1f bytes per run, within %.0f%n", name, perRun, maxBytes);
+        } catch (AssertionError e) {
+            if (fits) throw e;
+            return String.format(Locale.US, "  %-32s FAILED: %s%n", name, e.getMessage());
+        }
+    }
+
+    static String budgets(MemoryCounters counters) {
+        final Profiler profiler = new Profiler("budget");
+        final int section = profiler.section("section");
+        profiler.setMemoryCounters(counters);
+        profiler.setEnabled(true);
+
+        final AllocationMonitor monitor = new AllocationMonitor(counters, profiler, new AllocationMonitor.Parameters());
+
+        final DistanceFilter filter = new DistanceFilter();
+        final Random random = new Random(3);
+        final long[] nanos = { 0 };
+
+        final ColorClassifier classifier = new ColorClassifier.Builder()
+                .add("red", 340, 20, 0.4f, 0.2f)
+                .add("blue", 200, 250, 0.4f, 0.2f)
+                .build();
+        final int[] rgb = { 0 };
+
+        StringBuilder out = new StringBuilder("allocation budgets:\n");
+        out.append(budget(counters, "Profiler enter() and exit()", 0, true, new Runnable() {
+            @Override public void run() {
+                profiler.enter(section);
+                profiler.exit(section);
+            }
+        }));
+        out.append(budget(counters, "AllocationMonitor.cycle()", 0, true, new Runnable() {
+            @Override public void run() {
+                profiler.enter(section);
+                profiler.exit(section);
+                monitor.cycle();
+            }
+        }));
+        out.append(budget(counters, "DistanceFilter.update()", 0, true, new Runnable() {
+            @Override public void run() {
+                nanos[0] += 20_000_000L;
+                filter.update(20 + random.nextGaussian(), nanos[0]);
+            }
+        }));
+        out.append(budget(counters, "ColorClassifier.classify()", 0, true, new Runnable() {
+            @Override public void run() {
+                rgb[0] += 0x010203;
+                sink = classifier.classify(rgb[0] >> 16 & 0xFF, rgb[0] >> 8 & 0xFF, rgb[0] & 0xFF);
+            }
+        }));
+        out.append(budget(counters, "String.format() telemetry line", 0, false, new Runnable() {
+            @Override public void run() {
+                sink = String.format(Locale.US, "%.1f in, %.0f%%", random.nextDouble(), random.nextDouble());
+            }
+        }));
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Simulated loop
+    //----------------------------------------------------------------------------------------------
+
+    static void work(double micros) {
+        long end = System.nanoTime() + (long) (micros * 1e3);
+        while (System.nanoTime() < end) {
+            // Spin
+        }
+    }
+
+    /** Stands for YawPitchRollAngles. */
+    static class Angles {
+        double yaw, pitch, roll;
+        long   nanos;
+    }
+
+    /** Stands for AprilTagDetection. */
+    static class Detection {
+        int id;
+        double[] pose = new double[6];
+    }
+
+    static class Loop {
+        final boolean reuse;
+        final Profiler profiler = new Profiler("loop");
+        final int main      = profiler.section("loop");
+        final int bulkRead  = profiler.section("bulk read");
+        final int imu       = profiler.section("imu");
+        final int odometry  = profiler.section("odometry");
+        final int vision    = profiler.section("vision");
+        final int recorder  = profiler.section("recorder");
+        final int telemetry = profiler.section("telemetry");
+        final Random random = new Random(5);
+
+        // What the reusing loop keeps between cycles
+        final Angles angles = new Angles();
+        final int[] positions = new int[8];
+        final List<Detection> detections = new ArrayList<>();
+        final StringBuilder lines = new StringBuilder(512);
+        // The recording: the last KEPT_FRAMES frames, as buffers that are reused or replaced.
+        final byte[][] frames = new byte[KEPT_FRAMES][];
+        int frame = 0;
+
+        Loop(boolean reuse) {
+            this.reuse = reuse;
+            for (int i = 0; i < 3; i++) detections.add(new Detection());
+            for (int i = 0; i < KEPT_FRAMES; i++) frames[i] = new byte[FRAME_BYTES];
+        }
+
+        void cycle(int loop) {
+            profiler.enter(main);
+
+            profiler.enter(bulkRead);
+            work(400);
+            profiler.exit(bulkRead);
+
+            profiler.enter(imu);
+            work(900);
+            Angles a = reuse ? angles : new Angles();
+            a.yaw = random.nextDouble();
+            a.nanos = System.nanoTime();
+            sink = a;
+            profiler.exit(imu);
+
+            profiler.enter(odometry);
+            work(300);
+            int[] p = reuse ? positions : new int[8];
+            p[loop & 7] = loop;
+            sink = p;
+            profiler.exit(odometry);
+
+            profiler.enter(vision);
+            work(100);
+            List<Detection> found = detections;
+            if (!reuse) {
+                found = new ArrayList<>();
+                for (int i = 0; i < 3; i++) found.add(new Detection());
+            }
+            found.get(loop % 3).id = loop;
+            sink = found;
+            profiler.exit(vision);
+
+            profiler.enter(recorder);
+            byte[] buffer = reuse ? frames[frame] : new byte[FRAME_BYTES];
+            buffer[loop % FRAME_BYTES] = (byte) loop;
+            frames[frame] = buffer;
+            frame = (frame + 1) % KEPT_FRAMES;
+            profiler.exit(recorder);
+
+            profiler.enter(telemetry);
+            work(200);
+            if (reuse) {
+                lines.setLength(0);
+                lines.append("heading ").append((int) (1000 * a.yaw)).append(" mrad\n")
+                     .append("x ").append(p[0]).append(" y ").append(p[1]).append('\n');
+                sink = lines;
+            } else {
+                sink = String.format(Locale.US, "heading %.1f deg%nx %d y %d%ntags %d%n",
+                        a.yaw, p[0], p[1], found.size());
+            }
+            profiler.exit(telemetry);
+
+            profiler.exit(main);
+        }
+    }
+
+    static String simulate(MemoryCounters counters, boolean reuse) {
+        Loop loop = new Loop(reuse);
+        AllocationMonitor.Parameters parameters = new AllocationMonitor.Parameters();
+        parameters.cycleBudgetMillis = BUDGET_MILLIS;
+        parameters.maxEvents = 8;
+        AllocationMonitor monitor = new AllocationMonitor(counters, loop.profiler, parameters);
+
+        // Warm up, so the JIT compiler's work is not in the results.
+        loop.profiler.setEnabled(true);
+        for (int i = 0; i < 100; i++) {
+            loop.cycle(i);
+        }
+        loop.profiler.reset();
+        monitor.start();
+        for (int i = 0; i < LOOPS; i++) {
+            loop.cycle(i);
+            monitor.cycle();
+        }
+        loop.profiler.setEnabled(false);
+
+        return String.format(Locale.US, "%n%s loop, %d loops, %.0f ms budget:%n%s%n%s",
+                reuse ? "reusing" : "allocating", LOOPS, BUDGET_MILLIS, monitor.summary(), loop.profiler.summary());
+    }
+
+    public static String run() {
+        MemoryCounters counters = new JvmMemoryCounters();
+        return budgets(counters) + simulate(counters, false) + simulate(counters, true);
+    }
+
+    public static void main(String[] args) {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,239 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AllocationMonitorTest {
+
+    static final double BUDGET_MILLIS = 50.0;
+
+    private final FakeMemoryCounters counters = new FakeMemoryCounters();
+    private final Profiler profiler = new Profiler("test");
+    private final int sensors = profiler.section("sensors");
+    private final int vision  = profiler.section("vision");
+
+    private AllocationMonitor monitor(long spikeBytes) {
+        AllocationMonitor.Parameters parameters = new AllocationMonitor.Parameters();
+        parameters.cycleBudgetMillis = BUDGET_MILLIS;
+        parameters.spikeBytes = spikeBytes;
+        AllocationMonitor monitor = new AllocationMonitor(counters, profiler, parameters);
+        monitor.start();
+        return monitor;
+    }
+
+    /** Make the current cycle overrun. */
+    private static void overrun() {
+        long end = System.nanoTime() + (long) (1.2 * BUDGET_MILLIS * 1e6);
+        while (System.nanoTime() < end) {
+            // Spin
+        }
+    }
+
+    @Test
+    public void bytesAreCountedPerCycle() {
+        AllocationMonitor monitor = monitor(1000);
+        counters.bytes += 100;
+        monitor.cycle();
+        monitor.cycle();
+        counters.bytes += 300;
+        monitor.cycle();
+
+        assertEquals(3, monitor.getCycles());
+        assertEquals(300, monitor.getLastBytes());
+        assertEquals(400, monitor.getTotalBytes());
+        assertEquals(300, monitor.getMaxBytes());
+        assertEquals(1, monitor.getCleanCycles());
+        assertEquals(400 / 3.0, monitor.getMeanBytes(), 1e-9);
+        assertEquals(0, monitor.getSpikes());
+    }
+
+    @Test
+    public void firstCycleOnlyStartsWithoutStart() {
+        AllocationMonitor monitor = new AllocationMonitor(counters, null, new AllocationMonitor.Parameters());
+        counters.bytes += 100;
+        monitor.cycle();
+        assertEquals(0, monitor.getCycles());
+
+        monitor.cycle();
+        assertEquals(1, monitor.getCycles());
+        assertEquals(0, monitor.getTotalBytes());
+    }
+
+    @Test
+    public void largeAllocationsAreSpikesBlamedOnTheirSection() {
+        AllocationMonitor monitor = monitor(1000);
+        profiler.setEnabled(true);
+        profiler.enter(sensors);
+        counters.bytes += 10;
+        profiler.exit(sensors);
+        profiler.enter(vision);
+        counters.bytes += 4000;
+        profiler.exit(vision);
+        monitor.cycle();
+
+        assertEquals(1, monitor.getSpikes());
+        assertEquals(0, monitor.getOverruns());
+        String summary = monitor.summary();
+        assertTrue(summary, summary.contains("spike"));
+        assertTrue(summary, summary.contains("vision (3.9 KB)"));
+    }
+
+    @Test
+    public void overrunsAreTiedToTheCollectionsDuringThem() {
+        AllocationMonitor monitor = monitor(1000);
+
+        // Fast, with a collection: not an overrun.
+        counters.collections++;
+        counters.collectionMillis += 5;
+        monitor.cycle();
+        assertEquals(0, monitor.getOverruns());
+
+        // Slow, with nothing collected.
+        overrun();
+        monitor.cycle();
+        assertFalse(monitor.isLastCollectionOverrun());
+
+        // Slow, while a concurrent collection ran.
+        counters.collections++;
+        counters.collectionMillis += 8;
+        overrun();
+        monitor.cycle();
+        assertTrue(monitor.isLastCollectionOverrun());
+        assertFalse(monitor.isLastBlockedOverrun());
+
+        // Slow, while a collection blocked the program.
+        counters.collections++;
+        counters.collectionMillis += 12;
+        counters.blockingMillis += 12;
+        overrun();
+        monitor.cycle();
+        assertTrue(monitor.isLastBlockedOverrun());
+
+        assertEquals(3, monitor.getOverruns());
+        assertEquals(2, monitor.getCollectionOverruns());
+        assertEquals(1, monitor.getBlockedOverruns());
+        assertEquals(3, monitor.getCollections());
+        assertEquals(25, monitor.getCollectionMillis());
+        assertEquals(12, monitor.getBlockingMillis());
+        String summary = monitor.summary();
+        assertTrue(summary, summary.contains("12 ms blocking"));
+        assertTrue(summary, summary.contains("overrun gc blocked"));
+    }
+
+    @Test
+    public void overrunsAreBlamedOnTheSlowSection() {
+        AllocationMonitor monitor = monitor(1000);
+        profiler.setEnabled(true);
+        for (int i = 0; i < 5; i++) {
+            profiler.enter(sensors);
+            profiler.exit(sensors);
+            profiler.enter(vision);
+            if (i == 4) overrun();
+            profiler.exit(vision);
+            monitor.cycle();
+        }
+
+        assertEquals(1, monitor.getOverruns());
+        String summary = monitor.summary();
+        assertTrue(summary, summary.contains("vision (+"));
+    }
+
+    @Test
+    public void uncountedCollectionsAreLeftOut() {
+        counters.collections = -1;
+        counters.collectionMillis = -1;
+        counters.blockingMillis = -1;
+        AllocationMonitor monitor = monitor(1000);
+        overrun();
+        monitor.cycle();
+
+        assertEquals(1, monitor.getOverruns());
+        assertEquals(0, monitor.getCollections());
+        assertEquals(0, monitor.getCollectionOverruns());
+        assertEquals(0, monitor.getBlockingMillis());
+    }
+
+    @Test
+    public void resetForgetsEverything() {
+        AllocationMonitor monitor = monitor(10);
+        counters.bytes += 100;
+        counters.collections++;
+        monitor.cycle();
+        monitor.reset();
+
+        assertEquals(0, monitor.getCycles());
+        assertEquals(0, monitor.getSpikes());
+        assertEquals(0, monitor.getCollections());
+        assertEquals(0, monitor.getPercentileBytes(0.99), 0);
+        monitor.cycle();
+        monitor.cycle();
+        assertEquals(1, monitor.getCycles());
+        assertFalse(monitor.summary().contains("spike"));
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Budgets
+    //----------------------------------------------------------------------------------------------
+
+    @Test
+    public void budgetCountsTheLeastAllocatingRound() {
+        final int[] round = { 0 };
+        double perRun = AllocationMonitor.requireBudget(counters, "warming up", 0, 10, new Runnable() {
+            @Override public void run() {
+                // Allocates in the first round only, like code being compiled.
+                if (round[0]++ < 10) counters.bytes += 64;
+            }
+        });
+        assertEquals(0, perRun, 0);
+    }
+
+    @Test
+    public void overBudgetFails() {
+        String message = null;
+        try {
+            AllocationMonitor.requireBudget(counters, "formatting", 8, 10, new Runnable() {
+                @Override public void run() {
+                    counters.bytes += 24;
+                }
+            });
+        } catch (AssertionError e) {
+            message = e.getMessage();
+        }
+        assertTrue(message, message != null && message.startsWith("formatting allocates 24.0 bytes per run"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void budgetNeedsCountedBytes() {
+        counters.bytes = -1;
+        AllocationMonitor.requireBudget(counters, "anything", 0, 10, new Runnable() {
+            @Override public void run() {
+            }
+        });
+    }
+
+    @Test
+    public void profilerAndMonitorDoNotAllocate() {
+        MemoryCounters jvm = new JvmMemoryCounters();
+        final Profiler timed = new Profiler("budget");
+        final int section = timed.section("section");
+        final AllocationMonitor monitor = new AllocationMonitor(jvm, timed, new AllocationMonitor.Parameters());
+        timed.setEnabled(true);
+
+        AllocationMonitor.requireBudget(jvm, "Profiler enter() and exit()", 0, 10_000, new Runnable() {
+            @Override public void run() {
+                timed.enter(section);
+                timed.exit(section);
+            }
+        });
+        AllocationMonitor.requireBudget(jvm, "AllocationMonitor.cycle()", 0, 10_000, new Runnable() {
+            @Override public void run() {
+                timed.enter(section);
+                timed.exit(section);
+                monitor.cycle();
+            }
+        });
+    }
+}
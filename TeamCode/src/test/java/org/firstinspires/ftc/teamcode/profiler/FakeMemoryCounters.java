@@ -0,0 +1,33 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+/*
+ * FakeMemoryCounters returns whatever counts the test sets, so that allocation and collections can
+ * be made to happen exactly where a test wants them.
+ */
+class FakeMemoryCounters implements MemoryCounters {
+
+    long bytes;
+    long collections;
+    long collectionMillis;
+    long blockingMillis;
+
+    @Override
+    public long allocatedBytes() {
+        return bytes;
+    }
+
+    @Override
+    public long collections() {
+        return collections;
+    }
+
+    @Override
+    public long collectionMillis() {
+        return collectionMillis;
+    }
+
+    @Override
+    public long blockingMillis() {
+        return blockingMillis;
+    }
+}
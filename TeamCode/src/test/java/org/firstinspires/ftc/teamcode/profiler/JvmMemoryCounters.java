@@ -0,0 +1,75 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * JvmMemoryCounters reads allocation and garbage collection counts from a desktop JVM's management
+ * beans.  Allocated bytes are only counted on JVMs with com.sun.management (OpenJDK and its builds).
+ *
+ * The collection time is the sum over all collectors, so it includes the time concurrent collectors
+ * spent alongside the program as well as the pauses.  The blocking time leaves out the collectors
+ * named as concurrent (ZGC's and Shenandoah's "Cycles", G1's "Concurrent GC"): the others report
+ * the pauses they stopped the program for.
+ */
+public class JvmMemoryCounters implements MemoryCounters {
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final GarbageCollectorMXBean[] collectors;
+    private final GarbageCollectorMXBean[] stoppingCollectors;
+
+    public JvmMemoryCounters() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+        collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        List<GarbageCollectorMXBean> stopping = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : collectors) {
+            String name = collector.getName();
+            if (!name.contains("Cycles") && !name.contains("Concurrent")) {
+                stopping.add(collector);
+            }
+        }
+        stoppingCollectors = stopping.toArray(new GarbageCollectorMXBean[0]);
+    }
+
+    @Override
+    public long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    @Override
+    public long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long collectionMillis() {
+        return millis(collectors);
+    }
+
+    @Override
+    public long blockingMillis() {
+        return millis(stoppingCollectors);
+    }
+
+    private static long millis(GarbageCollectorMXBean[] collectors) {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
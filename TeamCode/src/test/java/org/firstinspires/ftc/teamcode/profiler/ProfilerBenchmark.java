@@ -0,0 +1,186 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * ProfilerBenchmark measures what Profiler costs, then profiles a simulated robot loop.
+ *
+ * The cost is timed for an enter() and exit() pair around a trivial section, with the profiler
+ * disabled and enabled, against the same loop with no calls at all.
+ *
+ * The simulated loop has the usual sections, made of busy waits: a bulk read, I2C sensor reads
+ * (one of which now and then takes several milliseconds, like an IMU read that has to retry),
+ * vision polling, control and telemetry, which is slow every fifth loop when it is sent.  The
+ * report shows the profiler finding the occasional slow IMU read, the flame graph lines, and checks
+ * that the flame graph adds up to the time spent in the loop and that profiling allocated nothing.
+ *
+ * ProfilerTest covers the profiler's bookkeeping; run the timings on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=profiler.ProfilerBenchmark
+ */
+public class ProfilerBenchmark {
+
+    static final int PAIRS = 20_000_000;
+    static final int LOOPS = 300;
+
+    static volatile long sink;
+
+    static long timePairs(Profiler profiler, int section, boolean calls) {
+        long sum = 0;
+        long start = System.nanoTime();
+        if (calls) {
+            for (int i = 0; i < PAIRS; i++) {
+                profiler.enter(section);
+                sum += i;
+                profiler.exit(section);
+            }
+        } else {
+            for (int i = 0; i < PAIRS; i++) {
+                sum += i;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = sum;
+        return elapsed;
+    }
+
+    static long timeClock() {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < PAIRS; i++) {
+            sum += System.nanoTime();
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = sum;
+        return elapsed;
+    }
+
+    static String overhead() {
+        Profiler profiler = new Profiler("benchmark");
+        int section = profiler.section("pair");
+        long none = Long.MAX_VALUE, disabled = Long.MAX_VALUE, enabled = Long.MAX_VALUE, clock = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            clock = Math.min(clock, timeClock());
+            none = Math.min(none, timePairs(profiler, section, false));
+            profiler.setEnabled(false);
+            disabled = Math.min(disabled, timePairs(profiler, section, true));
+            profiler.setEnabled(true);
+            enabled = Math.min(enabled, timePairs(profiler, section, true));
+            profiler.reset();
+        }
+        return String.format(Locale.US, "enter+exit: disabled %.2f ns, enabled %.1f ns, of which %.1f ns reading the clock twice (a loop iteration alone: %.2f ns)%n",
+                (disabled - none) / (double) PAIRS, (enabled - none) / (double) PAIRS, 2.0 * clock / PAIRS, none / (double) PAIRS);
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static void work(double micros) {
+        long end = System.nanoTime() + (long) (micros * 1e3);
+        while (System.nanoTime() < end) {
+            // Spin: sleeping is not precise enough at this scale.
+        }
+    }
+
+    static void robotLoop(Profiler profiler, Random random, int loop,
+                          int main, int bulkRead, int sensors, int imu, int distance,
+                          int vision, int control, int telemetry) {
+        profiler.enter(main);
+
+        profiler.enter(bulkRead);
+        work(250);
+        profiler.exit(bulkRead);
+
+        profiler.enter(sensors);
+        profiler.enter(imu);
+        work(random.nextDouble() < 0.03 ? 6000 : 900);
+        profiler.exit(imu);
+        profiler.enter(distance);
+        work(300);
+        profiler.exit(distance);
+        profiler.exit(sensors);
+
+        profiler.enter(vision);
+        work(40);
+        profiler.exit(vision);
+
+        profiler.enter(control);
+        work(20);
+        profiler.exit(control);
+
+        profiler.enter(telemetry);
+        work(loop % 5 == 0 ? 1500 : 60);
+        profiler.exit(telemetry);
+
+        profiler.exit(main);
+    }
+
+    static String robot() throws IOException {
+        Profiler profiler = new Profiler("opmode");
+        int main      = profiler.section("loop");
+        int bulkRead  = profiler.section("bulk read");
+        int sensors   = profiler.section("sensors");
+        int imu       = profiler.section("imu");
+        int distance  = profiler.section("distance");
+        int vision    = profiler.section("vision poll");
+        int control   = profiler.section("control");
+        int telemetry = profiler.section("telemetry");
+
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up, then keep the run that allocated least: the JIT allocates now and then.
+        long bytes = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            profiler.reset();
+            profiler.setEnabled(true);
+            Random random = new Random(8);
+            long before = allocation != null ? allocation.getThreadAllocatedBytes(threadId) : 0;
+            for (int loop = 0; loop < LOOPS; loop++) {
+                robotLoop(profiler, random, loop, main, bulkRead, sensors, imu, distance, vision, control, telemetry);
+            }
+            long after = allocation != null ? allocation.getThreadAllocatedBytes(threadId) : 0;
+            bytes = Math.min(bytes, after - before);
+        }
+        profiler.setEnabled(false);
+
+        StringBuilder folded = new StringBuilder();
+        profiler.writeFoldedStacks(folded);
+        long foldedTotal = 0;
+        for (String line : folded.toString().split("\n")) {
+            foldedTotal += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        if (Math.abs(foldedTotal - profiler.getTotalNanos(main)) > profiler.getTotalNanos(main) / 1000) {
+            throw new AssertionError("folded stacks add up to " + foldedTotal + " ns, the loop section to "
+                    + profiler.getTotalNanos(main) + " ns");
+        }
+        if (bytes > 0) {
+            throw new AssertionError("profiling allocated " + bytes + " bytes");
+        }
+        StringBuilder trace = new StringBuilder();
+        profiler.writeChromeTrace(trace);
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%nsimulated loop, %d loops:%n", LOOPS));
+        out.append(profiler.summary());
+        out.append(String.format(Locale.US, "%nfolded stacks (ns):%n%s", folded));
+        out.append(String.format(Locale.US, "folded stacks add up to %.1f ms, the loop section to %.1f ms%n",
+                foldedTotal / 1e6, profiler.getTotalNanos(main) / 1e6));
+        out.append(String.format(Locale.US, "Chrome trace: %d events, %d KB of JSON%n",
+                profiler.getEventCount(), trace.length() / 1024));
+        out.append(String.format(Locale.US, "allocated while profiling: %d bytes%n", bytes));
+        return out.toString();
+    }
+
+    public static String run() throws IOException {
+        return overhead() + robot();
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.print(run());
+    }
+}
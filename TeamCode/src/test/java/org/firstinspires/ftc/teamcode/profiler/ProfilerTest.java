@@ -0,0 +1,159 @@
+package org.firstinspires.ftc.teamcode.profiler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProfilerTest {
+
+    private final Profiler profiler = new Profiler("test");
+    private final int loop    = profiler.section("loop");
+    private final int sensors = profiler.section("sensors");
+    private final int imu     = profiler.section("imu");
+
+    private void oneLoop() {
+        profiler.enter(loop);
+        profiler.enter(sensors);
+        profiler.enter(imu);
+        profiler.exit(imu);
+        profiler.exit(sensors);
+        profiler.enter(imu);
+        profiler.exit(imu);
+        profiler.exit(loop);
+    }
+
+    @Test
+    public void sectionsAreRegisteredOnce() {
+        assertEquals(sensors, profiler.section("sensors"));
+        assertEquals(3, profiler.getSectionCount());
+        assertEquals("imu", profiler.getSectionName(imu));
+    }
+
+    @Test
+    public void disabledProfilerRecordsNothing() {
+        oneLoop();
+
+        assertEquals(0, profiler.getCount(loop));
+        assertEquals(0, profiler.getEventCount());
+    }
+
+    @Test
+    public void nestedSectionsAddUp() {
+        profiler.setEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            oneLoop();
+        }
+
+        assertEquals(10, profiler.getCount(loop));
+        assertEquals(20, profiler.getCount(imu));
+        assertEquals(80, profiler.getEventCount());
+        assertEquals(0, profiler.getMismatches());
+        // Self times split the outer section's time between the sections.
+        assertEquals(profiler.getTotalNanos(loop),
+                profiler.getSelfNanos(loop) + profiler.getSelfNanos(sensors) + profiler.getSelfNanos(imu));
+        assertTrue(profiler.getMaxNanos(imu) <= profiler.getTotalNanos(imu));
+    }
+
+    @Test
+    public void foldedStacksAddUpToTheOuterSection() throws IOException {
+        profiler.setEnabled(true);
+        for (int i = 0; i < 10; i++) {
+            oneLoop();
+        }
+
+        StringBuilder folded = new StringBuilder();
+        profiler.writeFoldedStacks(folded);
+
+        long total = 0;
+        Set<String> stacks = new HashSet<>();
+        for (String line : folded.toString().split("\n")) {
+            int space = line.lastIndexOf(' ');
+            stacks.add(line.substring(0, space));
+            total += Long.parseLong(line.substring(space + 1));
+        }
+        assertEquals(profiler.getTotalNanos(loop), total);
+        for (String stack : stacks) {
+            assertTrue(stack, stack.equals("loop") || stack.equals("loop;sensors")
+                    || stack.equals("loop;sensors;imu") || stack.equals("loop;imu"));
+        }
+        assertTrue(stacks.contains("loop;sensors;imu"));
+    }
+
+    @Test
+    public void mismatchedExitsAreCountedAndCloseInnerSections() {
+        profiler.setEnabled(true);
+        profiler.exit(imu);
+        profiler.enter(loop);
+        profiler.enter(sensors);
+        profiler.exit(loop);
+
+        assertEquals(2, profiler.getMismatches());
+        assertEquals(1, profiler.getCount(sensors));
+        assertEquals(1, profiler.getCount(loop));
+    }
+
+    @Test
+    public void bytesAreCountedWhereTheyWereAllocated() {
+        FakeMemoryCounters memory = new FakeMemoryCounters();
+        profiler.setMemoryCounters(memory);
+        profiler.setEnabled(true);
+
+        profiler.enter(loop);
+        memory.bytes += 100;
+        profiler.enter(imu);
+        memory.bytes += 40;
+        profiler.exit(imu);
+        memory.bytes += 2;
+        profiler.exit(loop);
+
+        assertEquals(102, profiler.getSelfBytes(loop));
+        assertEquals(40, profiler.getSelfBytes(imu));
+        assertTrue(profiler.summary().contains("self B/call"));
+    }
+
+    @Test
+    public void bucketsCoverEveryDurationInOrder() {
+        for (int b = 0; b < Profiler.BUCKETS - 1; b++) {
+            assertEquals(b, Profiler.bucket(Profiler.bucketLow(b)));
+            assertEquals(b, Profiler.bucket(Profiler.bucketLow(b + 1) - 1));
+        }
+        // Every bucket is at most a quarter as wide as the durations in it.
+        for (int b = 4; b < Profiler.BUCKETS - 1; b++) {
+            long low = Profiler.bucketLow(b), width = Profiler.bucketLow(b + 1) - low;
+            assertTrue("bucket " + b, 4 * width <= low);
+        }
+    }
+
+    @Test
+    public void resetForgetsTimingsButKeepsSections() {
+        profiler.setEnabled(true);
+        oneLoop();
+        profiler.reset();
+
+        assertEquals(0, profiler.getCount(loop));
+        assertEquals(0, profiler.getEventCount());
+        assertEquals(3, profiler.getSectionCount());
+        oneLoop();
+        assertEquals(1, profiler.getCount(loop));
+    }
+
+    @Test
+    public void chromeTraceEscapesNames() throws IOException {
+        Profiler quoted = new Profiler("op \"mode\"");
+        int section = quoted.section("a\\b");
+        quoted.setEnabled(true);
+        quoted.enter(section);
+        quoted.exit(section);
+
+        StringBuilder trace = new StringBuilder();
+        quoted.writeChromeTrace(trace);
+
+        assertTrue(trace.toString(), trace.toString().contains("\"args\":{\"name\":\"op \\\"mode\\\"\"}"));
+        assertTrue(trace.toString(), trace.toString().contains("{\"name\":\"a\\\\b\",\"ph\":\"X\""));
+    }
+}
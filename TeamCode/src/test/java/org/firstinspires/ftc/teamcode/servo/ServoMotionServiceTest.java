@@ -0,0 +1,170 @@
+package org.firstinspires.ftc.teamcode.servo;
+
+import org.firstinspires.ftc.teamcode.control.MotionProfile;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServoMotionServiceTest {
+
+    static final long ORIGIN = 1_000_000_000L;
+    static final long MILLIS = 1_000_000L;
+
+    /** Records the positions sent to it. */
+    static class RecordingOutput implements ServoMotionService.Output {
+        final List<Double> positions = new ArrayList<>();
+
+        @Override
+        public synchronized void setPosition(double position) {
+            positions.add(position);
+        }
+
+        synchronized double last() {
+            return positions.get(positions.size() - 1);
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // MotionProfile
+    //----------------------------------------------------------------------------------------------
+
+    @Test
+    public void longMoveIsATrapezoid() {
+        MotionProfile profile = new MotionProfile();
+        profile.plan(0, 0, 1, 1.0, 4.0, ORIGIN);
+
+        // 0.25 s speeding up, 0.75 s cruising, 0.25 s slowing down.
+        assertEquals(ORIGIN + 1250 * MILLIS, profile.getArrivalNanos());
+        assertEquals(4.0, profile.getAcceleration(ORIGIN + 100 * MILLIS), 0);
+        assertEquals(1.0, profile.getVelocity(ORIGIN + 625 * MILLIS), 1e-9);
+        assertEquals(0.5, profile.getPosition(ORIGIN + 625 * MILLIS), 1e-9);
+        assertEquals(-4.0, profile.getAcceleration(ORIGIN + 1200 * MILLIS), 0);
+        assertEquals(1.0, profile.getPosition(profile.getArrivalNanos()), 0);
+        assertTrue(profile.isDone(profile.getArrivalNanos()));
+    }
+
+    @Test
+    public void shortMoveIsATriangle() {
+        MotionProfile profile = new MotionProfile();
+        profile.plan(0.5, 0, 0.4, 1.0, 4.0, ORIGIN);
+
+        double peak = Math.sqrt(4.0 * 0.1);
+        assertEquals(2 * peak / 4.0, (profile.getArrivalNanos() - ORIGIN) / 1e9, 1e-9);
+        assertEquals(-peak, profile.getVelocity(ORIGIN + (long) (peak / 4.0 * 1e9)), 1e-6);
+    }
+
+    @Test
+    public void reversingSlowsToAStopWithoutJumps() {
+        MotionProfile profile = new MotionProfile();
+        profile.plan(0, 0, 1, 1.0, 4.0, ORIGIN);
+        long reverse = ORIGIN + 500 * MILLIS;
+        profile.plan(profile.getPosition(reverse), profile.getVelocity(reverse), 0.1, 1.0, 4.0, reverse);
+
+        double lastVelocity = 1.0;
+        for (long t = reverse; t <= profile.getArrivalNanos() + 10 * MILLIS; t += MILLIS) {
+            double velocity = profile.getVelocity(t);
+            assertTrue("velocity " + velocity, Math.abs(velocity) <= 1.0 + 1e-9);
+            assertTrue("jump at " + (t - reverse) / MILLIS + " ms",
+                    Math.abs(velocity - lastVelocity) <= 4.0 * 1e-3 + 1e-9);
+            lastVelocity = velocity;
+        }
+        assertEquals(0.1, profile.getPosition(profile.getArrivalNanos()), 0);
+        assertEquals(0, lastVelocity, 0);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // ServoMotionService, on a simulated clock
+    //----------------------------------------------------------------------------------------------
+
+    @Test
+    public void positionsAreSentOncePerQuantumAndTheTargetLast() {
+        RecordingOutput output = new RecordingOutput();
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        ServoMotionService.Limits limits = new ServoMotionService.Limits();
+        int hand = service.add("hand", output, limits, 0.5);
+
+        long arrival = service.moveTo(hand, 0.7001, ORIGIN);
+        for (long t = ORIGIN; t <= arrival + 20 * MILLIS; t += 10 * MILLIS) {
+            service.update(t);
+        }
+
+        List<Double> sent = output.positions;
+        assertEquals(0.7001, output.last(), 0);
+        assertEquals(sent.size(), service.getWrites(hand));
+        // At most one write per quantum of the move, each a whole number of quanta but the last.
+        assertTrue(sent.size() + " writes", sent.size() <= 0.2001 / limits.quantum + 2);
+        for (int i = 0; i < sent.size() - 1; i++) {
+            double quanta = sent.get(i) / limits.quantum;
+            assertEquals(Math.round(quanta), quanta, 1e-6);
+            if (i > 0) assertTrue(sent.get(i) > sent.get(i - 1));
+        }
+
+        // Nothing more to send once there.
+        service.update(arrival + 100 * MILLIS);
+        assertEquals(sent.size(), service.getWrites(hand));
+    }
+
+    @Test
+    public void targetsAreClippedAndRepeatsKeepThePlan() {
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        ServoMotionService.Limits limits = new ServoMotionService.Limits();
+        limits.maxPosition = 0.8;
+        int hand = service.add("hand", new RecordingOutput(), limits, 0.5);
+
+        long arrival = service.moveTo(hand, 2.0, ORIGIN);
+        assertEquals(0.8, service.getTarget(hand), 0);
+        assertEquals(arrival, service.moveTo(hand, 0.8, ORIGIN + 100 * MILLIS));
+    }
+
+    @Test
+    public void simulatedServoArrivesWhenPredicted() {
+        // Throws if a move settles away from the arrival time moveTo() returned, or the profile
+        // goes over its limits.
+        ServoMotionSimulation.service();
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // ServoMotionService, on its own thread
+    //----------------------------------------------------------------------------------------------
+
+    @Test
+    public void serviceThreadMovesTheServo() throws InterruptedException {
+        RecordingOutput output = new RecordingOutput();
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        int hand = service.add("hand", output, new ServoMotionService.Limits(), 0.5);
+        service.start();
+        try {
+            service.moveTo(hand, 0.6);
+            assertTrue(service.awaitArrival(hand, 2000));
+            assertTrue(service.isArrived(hand));
+            assertEquals(0, service.getRemainingMillis(hand), 0);
+            // The last write may still be on its way.
+            long deadline = System.nanoTime() + 2000 * MILLIS;
+            while (service.getCommand(hand) != 0.6 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0.6, output.last(), 0);
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    public void haltStopsShortOfTheTarget() {
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        int hand = service.add("hand", new RecordingOutput(), new ServoMotionService.Limits(), 0.0);
+        long arrival = service.moveTo(hand, 1.0);
+
+        assertTrue(service.halt(hand) < arrival);
+        assertTrue(service.getTarget(hand) < 0.5);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void serviceNeedsServos() {
+        new ServoMotionService(new ServoMotionService.Parameters()).start();
+    }
+}
@@ -0,0 +1,270 @@
+package org.firstinspires.ftc.teamcode.servo;
+
+import org.firstinspires.ftc.teamcode.control.MotionProfile;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * ServoMotionSimulation moves a simulated servo through the same list of moves three ways:
+ *
+ *  - jumping: setPosition() straight to each target, as RobotHardware.setHandPositions() does,
+ *  - stepping: INCREMENT every CYCLE_MS with sleep() in between, as ConceptScanServo does,
+ *  - with a ServoMotionService.
+ *
+ * The servo is a position servo with a top speed, whose motor accelerates as hard as it can to
+ * follow the position it is sent: its acceleration stands for the load on its gears and the current
+ * it draws.  One of the moves is changed to a new target halfway, the other way.
+ *
+ * For each, it reports how long the moves take ("--" if the servo had not got there by the next
+ * move), how long the control loop is held up, the positions sent to the servo, and the servo's peak
+ * acceleration over PEAK_WINDOW_MILLIS.  For the service, it also checks that the
+ * arrival times moveTo() returns are when the servo gets there, and that the profile's velocity never
+ * jumps, even when the target changes.  It runs on a simulated clock, then times moveTo() with the
+ * service's thread running.
+ *
+ * ServoMotionServiceTest covers the profiles and the service, with service() among its checks; run
+ * the whole comparison on demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=servo.ServoMotionSimulation
+ */
+public class ServoMotionSimulation {
+
+    // The servo: about 0.25 s over its whole range, unloaded.
+    static final double SERVO_SPEED        = 4.0;     // positions per second
+    static final double SERVO_ACCELERATION = 200.0;   // positions per second per second
+    static final double SERVO_GAIN         = 40.0;    // speed per unit of position error
+
+    static final double STEP_MILLIS   = 1.0;
+    static final double INCREMENT     = 0.01;
+    static final int    CYCLE_MS      = 50;
+    static final double SETTLED       = 0.005;
+    static final int    PEAK_WINDOW_MILLIS = 20;
+
+    // Moves: at this time in seconds, go to this position.
+    static final double[][] MOVES = {
+        { 0.0, 0.9 },
+        { 1.5, 0.1 },
+        { 1.8, 0.6 },     // before the last move is over, back the other way
+        { 3.0, 0.3 },
+        { 4.0, 0.8 },
+    };
+    static final double RUN_SECONDS = 5.5;
+    // How far from the arrival time moveTo() returns the servo may settle.
+    static final double ARRIVAL_TOLERANCE_MILLIS = 30;
+
+    static class SimulatedServo implements ServoMotionService.Output {
+        double command = 0.5;
+        double position = 0.5;
+        double velocity = 0;
+        double peakAcceleration = 0;
+        int writes = 0;
+        final double[] velocities = new double[PEAK_WINDOW_MILLIS];
+        int steps = 0;
+
+        @Override
+        public void setPosition(double position) {
+            command = position;
+            writes++;
+        }
+
+        void step(double dt) {
+            double wanted = Math.max(-SERVO_SPEED, Math.min(SERVO_SPEED, SERVO_GAIN * (command - position)));
+            double acceleration = Math.max(-SERVO_ACCELERATION, Math.min(SERVO_ACCELERATION, (wanted - velocity) / dt));
+            velocity += acceleration * dt;
+            position += velocity * dt;
+            // Over a window, as the steps of the positions sent make the motor twitch in between.
+            int i = steps++ % velocities.length;
+            if (steps > velocities.length) {
+                double window = velocities.length * dt;
+                peakAcceleration = Math.max(peakAcceleration, Math.abs(velocity - velocities[i]) / window);
+            }
+            velocities[i] = velocity;
+        }
+    }
+
+    static long nanos(double seconds) {
+        return (long) (seconds * 1e9);
+    }
+
+    /**
+     * @return the time each move's servo got within SETTLED of its target and stayed there, or NaN
+     */
+    static double[] settleTimes(double[] times, double[] positions, int count) {
+        double[] settled = new double[MOVES.length];
+        for (int m = 0; m < MOVES.length; m++) {
+            double end = m + 1 < MOVES.length ? MOVES[m + 1][0] : RUN_SECONDS;
+            settled[m] = Double.NaN;
+            for (int i = 0; i < count; i++) {
+                if (times[i] < MOVES[m][0] || times[i] >= end) continue;
+                if (Math.abs(positions[i] - MOVES[m][1]) > SETTLED) {
+                    settled[m] = Double.NaN;
+                } else if (Double.isNaN(settled[m])) {
+                    settled[m] = times[i];
+                }
+            }
+        }
+        return settled;
+    }
+
+    static String report(String name, SimulatedServo servo, double[] settled, double blockedSeconds) {
+        StringBuilder moves = new StringBuilder();
+        for (int m = 0; m < MOVES.length; m++) {
+            moves.append(Double.isNaN(settled[m]) ? "   -- " : String.format(Locale.US, "%5.2f ", settled[m] - MOVES[m][0]));
+        }
+        return String.format(Locale.US, "%-9s moves take %s s;  loop held up %5.2f s;  %4d writes;  peak acceleration %5.1f/s^2%n",
+                name, moves, blockedSeconds, servo.writes, servo.peakAcceleration);
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    static String jump() {
+        SimulatedServo servo = new SimulatedServo();
+        int steps = (int) (RUN_SECONDS * 1000 / STEP_MILLIS);
+        double[] times = new double[steps], positions = new double[steps];
+        int move = 0;
+        for (int i = 0; i < steps; i++) {
+            double t = i * STEP_MILLIS / 1000;
+            if (move < MOVES.length && t >= MOVES[move][0]) {
+                servo.setPosition(MOVES[move++][1]);
+            }
+            servo.step(STEP_MILLIS / 1000);
+            times[i] = t;
+            positions[i] = servo.position;
+        }
+        return report("jump", servo, settleTimes(times, positions, steps), 0);
+    }
+
+    static String stepping() {
+        SimulatedServo servo = new SimulatedServo();
+        int steps = (int) (RUN_SECONDS * 1000 / STEP_MILLIS);
+        double[] times = new double[steps], positions = new double[steps];
+        int move = 0;
+        double position = servo.position, target = position;
+        double blocked = 0, nextStep = 0;
+        for (int i = 0; i < steps; i++) {
+            double t = i * STEP_MILLIS / 1000;
+            if (move < MOVES.length && t >= MOVES[move][0]) {
+                target = MOVES[move++][1];
+            }
+            if (t >= nextStep && position != target) {
+                // One step, then sleep(CYCLE_MS): the loop does nothing else meanwhile.
+                position += Math.max(-INCREMENT, Math.min(INCREMENT, target - position));
+                servo.setPosition(position);
+                nextStep = t + CYCLE_MS / 1000.0;
+                blocked += CYCLE_MS / 1000.0;
+            }
+            servo.step(STEP_MILLIS / 1000);
+            times[i] = t;
+            positions[i] = servo.position;
+        }
+        return report("stepping", servo, settleTimes(times, positions, steps), blocked);
+    }
+
+    static String service() {
+        SimulatedServo servo = new SimulatedServo();
+        ServoMotionService.Parameters parameters = new ServoMotionService.Parameters();
+        ServoMotionService.Limits limits = new ServoMotionService.Limits();
+        ServoMotionService service = new ServoMotionService(parameters);
+        int hand = service.add("hand", servo, limits, servo.position);
+
+        int steps = (int) (RUN_SECONDS * 1000 / STEP_MILLIS);
+        double[] times = new double[steps], positions = new double[steps];
+        double[] predicted = new double[MOVES.length];
+        // The same moves planned the way the service plans them, to check the velocity at every step.
+        MotionProfile check = new MotionProfile();
+        check.reset(servo.position);
+        int move = 0, ticks = 0, moved = 0;
+        double lastVelocity = 0, lastCommand = Double.NaN, velocityJump = 0, topSpeed = 0, nextUpdate = 0;
+        long origin = 1_000_000_000L;
+        for (int i = 0; i < steps; i++) {
+            double t = i * STEP_MILLIS / 1000;
+            long now = origin + nanos(t);
+            if (move < MOVES.length && t >= MOVES[move][0]) {
+                predicted[move] = (service.moveTo(hand, MOVES[move][1], now) - origin) / 1e9 - MOVES[move][0];
+                check.plan(check.getPosition(now), check.getVelocity(now), MOVES[move][1],
+                        limits.maxVelocity, limits.maxAcceleration, now);
+                move++;
+            }
+            double velocity = check.getVelocity(now);
+            velocityJump = Math.max(velocityJump, Math.abs(velocity - lastVelocity));
+            topSpeed = Math.max(topSpeed, Math.abs(velocity));
+            lastVelocity = velocity;
+            if (t >= nextUpdate) {
+                service.update(now);
+                // Count the updates that would have sent a position, had it not been quantized.
+                double command = check.getPosition(now);
+                if (command != lastCommand) moved++;
+                lastCommand = command;
+                ticks++;
+                nextUpdate += parameters.periodMillis / 1000;
+            }
+            servo.step(STEP_MILLIS / 1000);
+            times[i] = t;
+            positions[i] = servo.position;
+        }
+        double[] settled = settleTimes(times, positions, steps);
+        for (int m = 0; m < MOVES.length; m++) {
+            double late = 1000 * (settled[m] - MOVES[m][0] - predicted[m]);
+            if (Math.abs(late) > ARRIVAL_TOLERANCE_MILLIS) {
+                throw new AssertionError(String.format(Locale.US, "move %d settled %.0f ms from the arrival time moveTo() returned", m, late));
+            }
+        }
+        if (topSpeed > limits.maxVelocity * 1.001 || velocityJump > limits.maxAcceleration * STEP_MILLIS / 1000 * 1.001) {
+            throw new AssertionError(String.format(Locale.US, "profile went over its limits: top speed %.4f/s, velocity change %.5f/s in %.0f ms",
+                    topSpeed, velocityJump, STEP_MILLIS));
+        }
+
+        StringBuilder out = new StringBuilder(report("service", servo, settled, 0));
+        StringBuilder eta = new StringBuilder();
+        for (int m = 0; m < MOVES.length; m++) {
+            eta.append(Double.isNaN(settled[m]) ? "   -- " : String.format(Locale.US, "%+5.0f ", 1000 * (settled[m] - MOVES[m][0] - predicted[m])));
+        }
+        out.append(String.format(Locale.US, "          servo within %.3f of the target %s ms from the arrival time moveTo() returned%n", SETTLED, eta));
+        out.append(String.format(Locale.US, "          %d updates, %d of them with a new position, %d sent after quantizing to %.3f%n",
+                ticks, moved, servo.writes, limits.quantum));
+        out.append(String.format(Locale.US, "          profile: top speed %.3f/s (limit %.1f), largest velocity change in %.0f ms %.4f/s (limit %.4f)%n",
+                topSpeed, limits.maxVelocity, STEP_MILLIS, velocityJump, limits.maxAcceleration * STEP_MILLIS / 1000));
+        return out.toString();
+    }
+
+    /**
+     * Time the loop's side, with the service thread running.
+     */
+    static String loopCost() throws InterruptedException {
+        ServoMotionService service = new ServoMotionService(new ServoMotionService.Parameters());
+        final int servos = 4;
+        for (int i = 0; i < servos; i++) {
+            service.add("servo " + i, new SimulatedServo(), new ServoMotionService.Limits(), 0.5);
+        }
+        service.start();
+        int calls = 20_000;
+        long[] costs = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            service.moveTo(i % servos, (i * 0.37) % 1.0);
+            service.getRemainingMillis(i % servos);
+            costs[i] = System.nanoTime() - start;
+            if (i % 100 == 0) Thread.sleep(1);
+        }
+        service.close();
+        Arrays.sort(costs);
+        long sum = 0;
+        for (long cost : costs) sum += cost;
+        return String.format(Locale.US, "loop side, %d servos on the service thread: moveTo() and getRemainingMillis() take %.2f us (p99 %.2f us)%n",
+                servos, sum / 1e3 / calls, costs[(int) Math.ceil(0.99 * calls) - 1] / 1e3);
+    }
+
+    public static String run() throws InterruptedException {
+        StringBuilder moves = new StringBuilder();
+        for (double[] m : MOVES) {
+            moves.append(String.format(Locale.US, "%.1f s: to %.1f;  ", m[0], m[1]));
+        }
+        return String.format(Locale.US, "%s%n", moves.toString().trim())
+                + jump() + stepping() + service() + loopCost();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.print(run());
+    }
+}
@@ -0,0 +1,314 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * BlobPipeline finds the biggest blob of a color in a frame, the way ColorBlobLocatorProcessor does,
+ * in plain Java so that VisionTuner can try thousands of settings on a laptop:
+ *
+ *  - crop to the region of interest, given like ImageRegion.asUnityCenterCoordinates()
+ *  - keep one pixel out of decimation in each direction, as ColorClassifierProcessor does
+ *  - box blur, as setBlurSize() does, with an odd kernel
+ *  - convert to YCrCb, and keep the pixels within a ColorBounds, as ColorRange does
+ *  - group them into 8-connected blobs, and pick the largest
+ *
+ * It is close to, not bit for bit, what OpenCV does: borders are replicated rather than reflected,
+ * and a blob's area is its pixel count rather than its contour's area.  Relative costs and what is
+ * found match well enough to rank settings.
+ *
+ * The work is split so that one prepare() serves many colors: prepare() crops, decimates, blurs and
+ * converts, and find() thresholds and groups.  A BlobPipeline keeps its buffers from frame to frame
+ * and is not thread safe: give each thread its own.
+ */
+public class BlobPipeline {
+
+    /**
+     * A box in YCrCb space, with 0 to 255 bounds, as in ColorRange.
+     */
+    public static class ColorBounds {
+        public final String name;
+        public final int yMin, crMin, cbMin;
+        public final int yMax, crMax, cbMax;
+
+        public ColorBounds(String name, int yMin, int crMin, int cbMin, int yMax, int crMax, int cbMax) {
+            this.name = name;
+            this.yMin = yMin;
+            this.crMin = crMin;
+            this.cbMin = cbMin;
+            this.yMax = yMax;
+            this.crMax = crMax;
+            this.cbMax = cbMax;
+        }
+
+        /**
+         * @return the bounds moved by the offsets and clipped to 0 to 255, named after the change
+         */
+        public ColorBounds shift(int yMinOffset, int crMinOffset, int cbMinOffset,
+                                 int yMaxOffset, int crMaxOffset, int cbMaxOffset) {
+            return new ColorBounds(name + String.format(Locale.US, "%+d%+d%+d/%+d%+d%+d",
+                    yMinOffset, crMinOffset, cbMinOffset, yMaxOffset, crMaxOffset, cbMaxOffset),
+                    clip(yMin + yMinOffset), clip(crMin + crMinOffset), clip(cbMin + cbMinOffset),
+                    clip(yMax + yMaxOffset), clip(crMax + crMaxOffset), clip(cbMax + cbMaxOffset));
+        }
+
+        static int clip(int value) {
+            return Math.max(0, Math.min(255, value));
+        }
+
+        /**
+         * @return the Java to make this range for a ColorBlobLocatorProcessor
+         */
+        public String toCode() {
+            return String.format(Locale.US, "new ColorRange(ColorSpace.YCrCb, new Scalar(%d, %d, %d), new Scalar(%d, %d, %d))",
+                    yMin, crMin, cbMin, yMax, crMax, cbMax);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%d %d %d)-(%d %d %d)", name, yMin, crMin, cbMin, yMax, crMax, cbMax);
+        }
+    }
+
+    /** ColorRange's predefined colors */
+    public static final ColorBounds BLUE   = new ColorBounds("BLUE",   16,   0, 155, 255, 127, 255);
+    public static final ColorBounds RED    = new ColorBounds("RED",    32, 176,   0, 255, 255, 132);
+    public static final ColorBounds YELLOW = new ColorBounds("YELLOW", 32, 128,   0, 255, 170, 120);
+    public static final ColorBounds GREEN  = new ColorBounds("GREEN",  32,   0,   0, 255, 120, 133);
+
+    // The prepared image: YCrCb, 3 bytes per pixel, and where it sits in the frame.
+    private byte[] ycrcb = new byte[0];
+    private int width, height;
+    private int left, top, decimation;
+
+    // Scratch
+    private byte[] sampled = new byte[0];
+    private int[] sums = new int[0];
+    private int[] columns = new int[0];
+    private int[] labels = new int[0];
+    private int[] parent = new int[0];
+    private int[] area = new int[0];
+    private int[] minX = new int[0], minY = new int[0], maxX = new int[0], maxY = new int[0];
+
+    /**
+     * Crop, decimate, blur and convert a frame.
+     *
+     * @param roi        left, top, right and bottom, from -1 to 1 with y up, as in
+     *                   ImageRegion.asUnityCenterCoordinates()
+     * @param decimation keep one pixel out of this many in each direction
+     * @param blurSize   box blur kernel size in decimated pixels; even sizes are made odd, 0 or 1 for none
+     */
+    public void prepare(LabelledFrame frame, double[] roi, int decimation, int blurSize) {
+        int x0 = clip((int) Math.round((roi[0] + 1) / 2 * frame.width), frame.width);
+        int y0 = clip((int) Math.round((1 - roi[1]) / 2 * frame.height), frame.height);
+        int x1 = clip((int) Math.round((roi[2] + 1) / 2 * frame.width), frame.width);
+        int y1 = clip((int) Math.round((1 - roi[3]) / 2 * frame.height), frame.height);
+        this.decimation = Math.max(1, decimation);
+        this.left = x0;
+        this.top = y0;
+        this.width = Math.max(0, (x1 - x0 + this.decimation - 1) / this.decimation);
+        this.height = Math.max(0, (y1 - y0 + this.decimation - 1) / this.decimation);
+        int n = width * height;
+        if (ycrcb.length < 3 * n) {
+            ycrcb = new byte[3 * n];
+            sampled = new byte[3 * n];
+            sums = new int[3 * n];
+        }
+
+        byte[] pixels = frame.pixels;
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int i = ((y0 + y * this.decimation) * frame.width + x0) * 3;
+            for (int x = 0; x < width; x++, i += 3 * this.decimation) {
+                sampled[o++] = pixels[i];
+                sampled[o++] = pixels[i + 1];
+                sampled[o++] = pixels[i + 2];
+            }
+        }
+        if (blurSize > 1) {
+            blur(blurSize | 1);
+        }
+
+        for (int i = 0; i < 3 * n; i += 3) {
+            int r = sampled[i] & 0xFF, g = sampled[i + 1] & 0xFF, b = sampled[i + 2] & 0xFF;
+            int luma = (r * 4899 + g * 9617 + b * 1868 + 8192) >> 14;
+            ycrcb[i] = (byte) luma;
+            ycrcb[i + 1] = (byte) ColorBounds.clip((((r - luma) * 11682 + 8192) >> 14) + 128);
+            ycrcb[i + 2] = (byte) ColorBounds.clip((((b - luma) * 9241 + 8192) >> 14) + 128);
+        }
+    }
+
+    static int clip(int value, int limit) {
+        return Math.max(0, Math.min(limit, value));
+    }
+
+    /**
+     * Box blur the sampled image in place, with replicated borders: a horizontal then a vertical
+     * running sum.
+     */
+    private void blur(int size) {
+        int radius = size / 2;
+        int stride = 3 * width;
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            for (int c = 0; c < 3; c++) {
+                int sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    sum += sampled[row + 3 * clip(k, width - 1) + c] & 0xFF;
+                }
+                for (int x = 0; x < width; x++) {
+                    sums[row + 3 * x + c] = sum;
+                    sum += (sampled[row + 3 * Math.min(x + radius + 1, width - 1) + c] & 0xFF)
+                            - (sampled[row + 3 * Math.max(x - radius, 0) + c] & 0xFF);
+                }
+            }
+        }
+        int divisor = size * size;
+        if (columns.length < stride) {
+            columns = new int[stride];
+        }
+        Arrays.fill(columns, 0, stride, 0);
+        for (int k = -radius; k <= radius; k++) {
+            int row = clip(k, height - 1) * stride;
+            for (int column = 0; column < stride; column++) {
+                columns[column] += sums[row + column];
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            int below = Math.min(y + radius + 1, height - 1) * stride;
+            int above = Math.max(y - radius, 0) * stride;
+            for (int column = 0; column < stride; column++) {
+                sampled[row + column] = (byte) ((columns[column] + divisor / 2) / divisor);
+                columns[column] += sums[below + column] - sums[above + column];
+            }
+        }
+    }
+
+    /**
+     * Find the largest blob within some bounds in the prepared image.
+     *
+     * @param minArea the smallest blob counted, in frame pixels
+     * @param box     filled with the blob's left, top, width and height in frame pixels
+     * @return true if a blob was found
+     */
+    public boolean find(ColorBounds bounds, int minArea, int[] box) {
+        int n = width * height;
+        if (labels.length < n) {
+            labels = new int[n];
+        }
+        // Provisional labels are numbered from 1, and the arrays grow if they run out.
+        int maxLabels = n / 4 + 2;
+        if (parent.length < maxLabels) {
+            parent = new int[maxLabels];
+            area = new int[maxLabels];
+            minX = new int[maxLabels];
+            minY = new int[maxLabels];
+            maxX = new int[maxLabels];
+            maxY = new int[maxLabels];
+        }
+
+        // First pass: label each pixel in range from its neighbours above and to the left, and
+        // remember which labels touch.
+        int next = 1;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                int j = 3 * i;
+                int luma = ycrcb[j] & 0xFF, cr = ycrcb[j + 1] & 0xFF, cb = ycrcb[j + 2] & 0xFF;
+                if (luma < bounds.yMin || luma > bounds.yMax || cr < bounds.crMin || cr > bounds.crMax
+                        || cb < bounds.cbMin || cb > bounds.cbMax) {
+                    labels[i] = 0;
+                    continue;
+                }
+                int label = 0;
+                if (x > 0) label = join(label, labels[i - 1]);
+                if (y > 0) {
+                    if (x > 0) label = join(label, labels[i - width - 1]);
+                    label = join(label, labels[i - width]);
+                    if (x < width - 1) label = join(label, labels[i - width + 1]);
+                }
+                if (label == 0) {
+                    if (next == parent.length) {
+                        growLabels();
+                    }
+                    label = next++;
+                    parent[label] = label;
+                }
+                labels[i] = label;
+            }
+        }
+
+        // Second pass: add each pixel to its blob.
+        for (int label = 0; label < next; label++) {
+            area[label] = 0;
+        }
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (labels[i] == 0) continue;
+                int root = root(labels[i]);
+                if (area[root]++ == 0) {
+                    minX[root] = maxX[root] = x;
+                    minY[root] = maxY[root] = y;
+                } else {
+                    if (x < minX[root]) minX[root] = x;
+                    if (x > maxX[root]) maxX[root] = x;
+                    if (y > maxY[root]) maxY[root] = y;
+                }
+            }
+        }
+
+        int best = 0;
+        for (int label = 1; label < next; label++) {
+            if (area[label] > area[best]) best = label;
+        }
+        if (best == 0 || area[best] * decimation * decimation < minArea) {
+            return false;
+        }
+        box[0] = left + minX[best] * decimation;
+        box[1] = top + minY[best] * decimation;
+        box[2] = (maxX[best] - minX[best] + 1) * decimation;
+        box[3] = (maxY[best] - minY[best] + 1) * decimation;
+        return true;
+    }
+
+    private int root(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * @return the label for a pixel touching both labels: 0 for none, merging them if both are set
+     */
+    private int join(int label, int neighbour) {
+        if (neighbour == 0) return label;
+        int b = root(neighbour);
+        if (label == 0) return b;
+        int a = root(label);
+        if (a < b) {
+            parent[b] = a;
+            return a;
+        }
+        parent[a] = b;
+        return b;
+    }
+
+    private void growLabels() {
+        int size = 2 * parent.length;
+        parent = Arrays.copyOf(parent, size);
+        area = new int[size];
+        minX = new int[size];
+        minY = new int[size];
+        maxX = new int[size];
+        maxY = new int[size];
+    }
+
+    /**
+     * @return the size of the last prepared image, in pixels
+     */
+    public int getPreparedPixels() {
+        return width * height;
+    }
+}
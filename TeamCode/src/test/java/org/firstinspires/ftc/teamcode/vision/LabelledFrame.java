@@ -0,0 +1,183 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import org.firstinspires.ftc.teamcode.capture.FrameRecording;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * LabelledFrame is a camera frame with the target a person marked in it by hand, for VisionTuner.
+ *
+ * Frames come from PNG files saved by UtilityCameraFrameCapture, or from a recording made by
+ * UtilityCameraFrameRecorder.  Copy them off the robot into one directory, and list them in a labels
+ * file there, one frame per line: the file name (or "frame:" and the frame number in the recording),
+ * then the target's bounding box in pixels, or "none" when the target is not in view:
+ *
+ *     # frame                                   left  top  width  height
+ *     VisionPortal-CameraFrameCapture-000000.png   141   96     38      40
+ *     VisionPortal-CameraFrameCapture-000001.png   none
+ *     frame:1520                                    70   48     19      20
+ *
+ * Boxes are in the frame's own pixels: a recording is usually downscaled from the camera resolution.
+ * Blank lines and lines starting with # are skipped.
+ */
+public class LabelledFrame {
+
+    public final String name;
+    public final int    width;
+    public final int    height;
+    /** width * height * 3 bytes, RGB, row by row */
+    public final byte[] pixels;
+
+    /** The target's bounding box, in pixels; only meaningful if hasTarget */
+    public boolean hasTarget = false;
+    public int targetLeft, targetTop, targetWidth, targetHeight;
+
+    public LabelledFrame(String name, int width, int height, byte[] pixels) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public LabelledFrame setTarget(int left, int top, int width, int height) {
+        hasTarget = true;
+        targetLeft = left;
+        targetTop = top;
+        targetWidth = width;
+        targetHeight = height;
+        return this;
+    }
+
+    /**
+     * @return this frame shrunk by an integer factor, by averaging, as if the camera had been set
+     *         to a lower resolution.  The target is scaled with it.
+     */
+    public LabelledFrame downscale(int factor) {
+        if (factor == 1) return this;
+        int w = width / factor, h = height / factor;
+        byte[] scaled = new byte[w * h * 3];
+        int area = factor * factor;
+        int o = 0;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                for (int c = 0; c < 3; c++) {
+                    int sum = 0;
+                    for (int dy = 0; dy < factor; dy++) {
+                        int i = ((y * factor + dy) * width + x * factor) * 3 + c;
+                        for (int dx = 0; dx < factor; dx++, i += 3) {
+                            sum += pixels[i] & 0xFF;
+                        }
+                    }
+                    scaled[o++] = (byte) ((sum + area / 2) / area);
+                }
+            }
+        }
+        LabelledFrame frame = new LabelledFrame(name, w, h, scaled);
+        if (hasTarget) {
+            frame.setTarget(targetLeft / factor, targetTop / factor,
+                    Math.max(1, targetWidth / factor), Math.max(1, targetHeight / factor));
+        }
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        return hasTarget
+                ? String.format(Locale.US, "%s %dx%d, target %d %d %d %d", name, width, height,
+                        targetLeft, targetTop, targetWidth, targetHeight)
+                : String.format(Locale.US, "%s %dx%d, no target", name, width, height);
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Loading
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Read a labels file and the frames it lists, from the same directory.
+     */
+    public static List<LabelledFrame> load(File labels) throws IOException {
+        File directory = labels.getAbsoluteFile().getParentFile();
+        List<LabelledFrame> frames = new ArrayList<>();
+        Map<Integer, LabelledFrame> fromRecording = new HashMap<>();
+        List<String[]> recordingLines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(labels), "UTF-8"))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\s+");
+                if (fields.length != 2 && fields.length != 5
+                        || fields.length == 2 && !fields[1].equals("none")) {
+                    throw new IOException(labels + " line " + lineNumber + ": expected a frame and a box, or \"none\"");
+                }
+                if (fields[0].startsWith("frame:")) {
+                    // Read from the recording afterwards, in one pass.
+                    try {
+                        fromRecording.put(Integer.parseInt(fields[0].substring(6)), null);
+                    } catch (NumberFormatException e) {
+                        throw new IOException(labels + " line " + lineNumber + ": bad frame number", e);
+                    }
+                    recordingLines.add(fields);
+                    frames.add(null);
+                } else {
+                    frames.add(label(PngDecoder.read(new File(directory, fields[0])), fields, labels, lineNumber));
+                }
+            }
+        }
+
+        if (!recordingLines.isEmpty()) {
+            try (FrameRecording recording = new FrameRecording(FrameRecording.listSegments(directory))) {
+                FrameRecording.Frame frame;
+                while ((frame = recording.next()) != null) {
+                    if (fromRecording.containsKey(frame.frameNumber) && frame.channels >= 3) {
+                        byte[] rgb = new byte[frame.width * frame.height * 3];
+                        for (int i = 0, o = 0; o < rgb.length; i += frame.channels) {
+                            rgb[o++] = frame.pixels[i];
+                            rgb[o++] = frame.pixels[i + 1];
+                            rgb[o++] = frame.pixels[i + 2];
+                        }
+                        fromRecording.put(frame.frameNumber,
+                                new LabelledFrame("frame:" + frame.frameNumber, frame.width, frame.height, rgb));
+                    }
+                }
+            }
+            int next = 0;
+            for (int i = 0; i < frames.size(); i++) {
+                if (frames.get(i) != null) continue;
+                String[] fields = recordingLines.get(next++);
+                LabelledFrame frame = fromRecording.get(Integer.parseInt(fields[0].substring(6)));
+                if (frame == null) {
+                    throw new IOException(labels + ": " + fields[0] + " is not in the recording in " + directory);
+                }
+                // The same recorded frame may be listed twice; don't share the target.
+                frames.set(i, label(new LabelledFrame(frame.name, frame.width, frame.height, frame.pixels),
+                        fields, labels, 0));
+            }
+        }
+        return frames;
+    }
+
+    static LabelledFrame label(LabelledFrame frame, String[] fields, File labels, int lineNumber) throws IOException {
+        if (fields.length == 5) {
+            try {
+                frame.setTarget(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+            } catch (NumberFormatException e) {
+                throw new IOException(labels + (lineNumber > 0 ? " line " + lineNumber : "") + ": bad box", e);
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,149 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ * PngDecoder reads the PNG files VisionPortal.saveNextFrameRaw() writes (see UtilityCameraFrameCapture)
+ * into RGB bytes, for offline vision tuning.
+ *
+ * It only handles what camera frames need: 8 bits per channel, gray, gray and alpha, RGB or RGBA, not
+ * interlaced.  Alpha is dropped.  It uses java.util.zip only.
+ */
+public final class PngDecoder {
+
+    static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+
+    private PngDecoder() {
+    }
+
+    /**
+     * @return the image as LabelledFrame pixels: width * height * 3 bytes, RGB, row by row
+     */
+    public static LabelledFrame read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            byte[] signature = new byte[SIGNATURE.length];
+            in.readFully(signature);
+            if (!Arrays.equals(signature, SIGNATURE)) {
+                throw new IOException(file + " is not a PNG file");
+            }
+
+            int width = 0, height = 0, channels = 0;
+            byte[] data = new byte[1 << 16];
+            int dataLength = 0;
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length = in.readInt();
+                byte[] type = new byte[4];
+                in.readFully(type);
+                if (length < 0) throw new IOException(file + " is damaged");
+                byte[] chunk = new byte[length];
+                in.readFully(chunk);
+                crc.reset();
+                crc.update(type);
+                crc.update(chunk);
+                if ((int) crc.getValue() != in.readInt()) {
+                    throw new IOException(file + " is damaged");
+                }
+
+                String name = new String(type, "US-ASCII");
+                if (name.equals("IHDR")) {
+                    width = readInt(chunk, 0);
+                    height = readInt(chunk, 4);
+                    int depth = chunk[8], colorType = chunk[9], interlace = chunk[12];
+                    channels = colorType == 0 ? 1 : colorType == 2 ? 3 : colorType == 4 ? 2 : colorType == 6 ? 4 : 0;
+                    if (depth != 8 || channels == 0 || interlace != 0 || width <= 0 || height <= 0) {
+                        throw new IOException(file + ": only 8 bit, non interlaced gray or RGB images are supported");
+                    }
+                } else if (name.equals("IDAT")) {
+                    if (dataLength + length > data.length) {
+                        data = Arrays.copyOf(data, Math.max(2 * data.length, dataLength + length));
+                    }
+                    System.arraycopy(chunk, 0, data, dataLength, length);
+                    dataLength += length;
+                } else if (name.equals("IEND")) {
+                    break;
+                }
+            }
+            if (channels == 0) throw new IOException(file + " has no image header");
+
+            int stride = width * channels;
+            byte[] raw = new byte[(stride + 1) * height];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data, 0, dataLength);
+                int total = 0;
+                while (total < raw.length && !inflater.finished()) {
+                    int count = inflater.inflate(raw, total, raw.length - total);
+                    if (count == 0 && inflater.needsInput()) break;
+                    total += count;
+                }
+                if (total != raw.length) throw new IOException(file + " is truncated");
+            } catch (DataFormatException e) {
+                throw new IOException(file + " is damaged", e);
+            } finally {
+                inflater.end();
+            }
+
+            byte[] image = unfilter(raw, stride, height, channels);
+            LabelledFrame frame = new LabelledFrame(file.getName(), width, height, new byte[width * height * 3]);
+            for (int i = 0, o = 0; i < image.length; i += channels) {
+                if (channels < 3) {
+                    frame.pixels[o++] = image[i];
+                    frame.pixels[o++] = image[i];
+                    frame.pixels[o++] = image[i];
+                } else {
+                    frame.pixels[o++] = image[i];
+                    frame.pixels[o++] = image[i + 1];
+                    frame.pixels[o++] = image[i + 2];
+                }
+            }
+            return frame;
+        }
+    }
+
+    static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Undo the per-row filters, each row preceded by its filter type.
+     */
+    static byte[] unfilter(byte[] raw, int stride, int height, int bytesPerPixel) throws IOException {
+        byte[] image = new byte[stride * height];
+        for (int y = 0; y < height; y++) {
+            int filter = raw[y * (stride + 1)];
+            int in = y * (stride + 1) + 1;
+            int out = y * stride;
+            for (int x = 0; x < stride; x++) {
+                int a = x >= bytesPerPixel ? image[out + x - bytesPerPixel] & 0xFF : 0;
+                int b = y > 0 ? image[out + x - stride] & 0xFF : 0;
+                int c = x >= bytesPerPixel && y > 0 ? image[out + x - stride - bytesPerPixel] & 0xFF : 0;
+                int predicted;
+                switch (filter) {
+                    case 0: predicted = 0; break;
+                    case 1: predicted = a; break;
+                    case 2: predicted = b; break;
+                    case 3: predicted = (a + b) >> 1; break;
+                    case 4: {
+                        int p = a + b - c;
+                        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+                        predicted = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                        break;
+                    }
+                    default: throw new IOException("unknown PNG filter " + filter);
+                }
+                image[out + x] = (byte) (raw[in + x] + predicted);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,528 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * VisionTuner finds the color blob settings that detect a target best, and fastest, on frames from
+ * our own camera under our own lighting.
+ *
+ * It tries every combination of color range, blur size, region of interest, decimation and camera
+ * resolution in Parameters on a set of LabelledFrames, with BlobPipeline standing in for
+ * ColorBlobLocatorProcessor, and scores each on how many frames it gets right and how long it takes
+ * per frame.  Settings that no other beats on both are the Pareto front; the recommendation is the
+ * fastest of them within accuracyTolerance of the most accurate.
+ *
+ * The sweep runs on a ForkJoinPool across all cores.  Settings that only differ in color share the
+ * crop, blur and conversion of each frame, so each task takes one combination of resolution, region,
+ * decimation and blur, prepares every frame once and tries every color on it.  Times taken with all
+ * cores busy run high, so the front is timed again on one thread before anything is recommended.
+ * Times are on the machine running the tuner: a Control Hub is several times slower, but ranks
+ * settings the same way.
+ *
+ * It is a development machine tool, in the test sources with BlobPipeline, LabelledFrame and
+ * PngDecoder, so none of it goes into the Robot Controller app.  It runs on a directory of frames and
+ * a labels file (see LabelledFrame):
+ *
+ *     ./gradlew :TeamCode:tuneVision -Plabels=/path/to/labels.txt [-Pthreads=8]
+ *
+ * It prints the front and the recommended settings, as code for ColorBlobLocatorProcessor.Builder and
+ * VisionPortal.Builder, and writes every result to tuning.csv beside the labels.
+ */
+public class VisionTuner {
+
+    public static class Parameters {
+        /** Color ranges to start from; each is tried as is, and with its bounds moved by rangeOffsets */
+        public BlobPipeline.ColorBounds[] colors = { BlobPipeline.BLUE };
+        /** Offsets tried on each bound of a color range that is not 0 or 255 */
+        public int[] rangeOffsets = { -20, 0, 20 };
+        /** Box blur sizes, in processed pixels; 1 for none */
+        public int[] blurSizes = { 1, 3, 5, 7 };
+        /** Regions of interest, as ImageRegion.asUnityCenterCoordinates(left, top, right, bottom) */
+        public double[][] rois = {
+            { -1.0, 1.0, 1.0, -1.0 },       // the entire frame
+            { -1.0, 0.5, 1.0, -0.5 },       // the middle half, full width
+            { -0.5, 0.5, 0.5, -0.5 },       // the central quarter, as ConceptVisionColorLocator
+        };
+        /** Keep one pixel out of this many in each direction */
+        public int[] decimations = { 1, 2, 3 };
+        /** Camera widths; the frames' width must be a multiple of each */
+        public int[] resolutions = { 640, 320, 160 };
+
+        /** The smallest blob counted, in pixels of the captured frames */
+        public int minArea = 50;
+        /** A detection is right when its box and the labelled box overlap by this much (intersection over union) */
+        public double minOverlap = 0.5;
+        /** Recommend the fastest setting within this much accuracy of the most accurate */
+        public double accuracyTolerance = 0.01;
+        /** Passes over each frame when timing; the fastest counts */
+        public int timingPasses = 3;
+        /** Threads for the sweep; 0 for all cores */
+        public int threads = 0;
+    }
+
+    /**
+     * How one combination of settings did over all the frames.
+     */
+    public static class Result {
+        public final BlobPipeline.ColorBounds color;
+        public final int    width, height;
+        public final double[] roi;
+        public final int    decimation;
+        public final int    blurSize;
+
+        public int    frames;
+        public int    correct;
+        /** Target in view and not found */
+        public int    missed;
+        /** Target not in view, and something found */
+        public int    falseDetections;
+        /** Target in view, and something else found */
+        public int    wrongPlace;
+        /** Sum of the overlap of correct detections */
+        public double overlapSum;
+        public double nanosPerFrame;
+
+        Result(BlobPipeline.ColorBounds color, int width, int height, double[] roi, int decimation, int blurSize) {
+            this.color = color;
+            this.width = width;
+            this.height = height;
+            this.roi = roi;
+            this.decimation = decimation;
+            this.blurSize = blurSize;
+        }
+
+        public double getAccuracy() {
+            return frames > 0 ? (double) correct / frames : 0;
+        }
+
+        public double getMeanOverlap() {
+            return correct > 0 ? overlapSum / correct : 0;
+        }
+
+        /**
+         * @return the settings, as code for ColorBlobLocatorProcessor.Builder and VisionPortal.Builder
+         */
+        public String toCode() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.US, "    .setTargetColorRange(%s)%n", color.toCode()));
+            out.append(String.format(Locale.US, "    .setRoi(ImageRegion.asUnityCenterCoordinates(%.2f, %.2f, %.2f, %.2f))%n",
+                    roi[0], roi[1], roi[2], roi[3]));
+            out.append(String.format(Locale.US, "    .setBlurSize(%d)%n", blurSize));
+            out.append(String.format(Locale.US, "    .setCameraResolution(new Size(%d, %d))%n", width, height));
+            if (decimation > 1) {
+                out.append(String.format(Locale.US, "    decimation %d: a ColorClassifierProcessor with decimation %d, or a camera resolution %d times smaller%n",
+                        decimation, decimation, decimation));
+            }
+            return out.toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%6.1f%% %6d %6d %6d %7.2f %9.3f  %4dx%-4d %5d %4d  %5.2f %5.2f %5.2f %5.2f  %s",
+                    100 * getAccuracy(), missed, falseDetections, wrongPlace, getMeanOverlap(), nanosPerFrame / 1e6,
+                    width, height, decimation, blurSize, roi[0], roi[1], roi[2], roi[3], color);
+        }
+    }
+
+    static final String HEADER =
+            "accuracy missed  false  wrong overlap  ms/frame  resolution decim blur  roi                     color";
+
+    /**
+     * All the results of a sweep, the Pareto front and the recommendation.
+     */
+    public static class Report {
+        public final List<Result> results;
+        /** From fastest to most accurate */
+        public final List<Result> front;
+        public final Result recommended;
+        public final int    frames;
+        public final int    framesWithTarget;
+        public final int    threads;
+        public final double sweepMilliseconds;
+
+        Report(List<Result> results, List<Result> front, Result recommended, int frames, int framesWithTarget,
+               int threads, double sweepMilliseconds) {
+            this.results = results;
+            this.front = front;
+            this.recommended = recommended;
+            this.frames = frames;
+            this.framesWithTarget = framesWithTarget;
+            this.threads = threads;
+            this.sweepMilliseconds = sweepMilliseconds;
+        }
+
+        /**
+         * @return the result for some settings, or null if they were not tried
+         */
+        public Result find(String colorName, int width, double[] roi, int decimation, int blurSize) {
+            for (Result result : results) {
+                if (result.color.name.equals(colorName) && result.width == width && Arrays.equals(result.roi, roi)
+                        && result.decimation == decimation && result.blurSize == blurSize) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.US, "%d frames (%d with the target), %d settings tried on %d threads in %.1f s%n",
+                    frames, framesWithTarget, results.size(), threads, sweepMilliseconds / 1000));
+            out.append(String.format(Locale.US, "Pareto front, timed on one thread:%n%s%n", HEADER));
+            for (Result result : front) {
+                out.append(result).append(String.format(Locale.US, "%n"));
+            }
+            if (recommended != null) {
+                out.append(String.format(Locale.US, "Recommended:%n%s%n%s", recommended, recommended.toCode()));
+            }
+            return out.toString();
+        }
+
+        /**
+         * Write every result, one per line, for a spreadsheet.
+         */
+        public void writeCsv(File file) throws IOException {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                out.write("color,yMin,crMin,cbMin,yMax,crMax,cbMax,width,height,roiLeft,roiTop,roiRight,roiBottom,"
+                        + "decimation,blur,accuracy,missed,falseDetections,wrongPlace,meanOverlap,msPerFrame,pareto\n");
+                for (Result r : results) {
+                    out.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%d,%d,%.4f,%d,%d,%d,%.3f,%.4f,%b%n",
+                            r.color.name, r.color.yMin, r.color.crMin, r.color.cbMin, r.color.yMax, r.color.crMax, r.color.cbMax,
+                            r.width, r.height, r.roi[0], r.roi[1], r.roi[2], r.roi[3], r.decimation, r.blurSize,
+                            r.getAccuracy(), r.missed, r.falseDetections, r.wrongPlace, r.getMeanOverlap(),
+                            r.nanosPerFrame / 1e6, front.contains(r)));
+                }
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    private final Parameters parameters;
+
+    // Set up by tune()
+    private int frameWidth;
+    private List<List<LabelledFrame>> scaled;
+    private BlobPipeline.ColorBounds[] colors;
+    private Result[] results;
+    private int[] groupResolution, groupRoi, groupDecimation, groupBlur;
+
+    private final ThreadLocal<BlobPipeline> pipelines = new ThreadLocal<BlobPipeline>() {
+        @Override protected BlobPipeline initialValue() {
+            return new BlobPipeline();
+        }
+    };
+
+    public VisionTuner(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return every color range to try: each of Parameters.colors with each combination of offsets
+     *         on its movable bounds
+     */
+    public BlobPipeline.ColorBounds[] expandColors() {
+        List<BlobPipeline.ColorBounds> expanded = new ArrayList<>();
+        for (BlobPipeline.ColorBounds color : parameters.colors) {
+            int[] bounds = { color.yMin, color.crMin, color.cbMin, color.yMax, color.crMax, color.cbMax };
+            int[] choices = new int[6];
+            for (int i = 0; i < 6; i++) {
+                choices[i] = bounds[i] == 0 || bounds[i] == 255 ? 1 : parameters.rangeOffsets.length;
+            }
+            int[] pick = new int[6];
+            int[] offsets = new int[6];
+            while (true) {
+                boolean original = true;
+                for (int i = 0; i < 6; i++) {
+                    offsets[i] = choices[i] == 1 ? 0 : parameters.rangeOffsets[pick[i]];
+                    original &= offsets[i] == 0;
+                }
+                expanded.add(original ? color
+                        : color.shift(offsets[0], offsets[1], offsets[2], offsets[3], offsets[4], offsets[5]));
+                int i = 0;
+                while (i < 6 && ++pick[i] == choices[i]) {
+                    pick[i++] = 0;
+                }
+                if (i == 6) break;
+            }
+        }
+        return expanded.toArray(new BlobPipeline.ColorBounds[0]);
+    }
+
+    /**
+     * Try every combination of settings on the frames.  All the frames must be the same size.
+     */
+    public Report tune(List<LabelledFrame> frames) throws InterruptedException {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("No frames to tune on");
+        }
+        Parameters p = parameters;
+        frameWidth = frames.get(0).width;
+        int frameHeight = frames.get(0).height;
+        int withTarget = 0;
+        for (LabelledFrame frame : frames) {
+            if (frame.width != frameWidth || frame.height != frameHeight) {
+                throw new IllegalArgumentException("Frames are not all the same size: " + frame);
+            }
+            if (frame.hasTarget) withTarget++;
+        }
+
+        // Shrink the frames to each resolution, as the camera would.
+        scaled = new ArrayList<>(p.resolutions.length);
+        for (int r = 0; r < p.resolutions.length; r++) {
+            if (p.resolutions[r] <= 0 || frameWidth % p.resolutions[r] != 0) {
+                throw new IllegalArgumentException("Frames " + frameWidth + " wide can't be scaled to " + p.resolutions[r]);
+            }
+            List<LabelledFrame> resolution = new ArrayList<>(frames.size());
+            for (LabelledFrame frame : frames) {
+                resolution.add(frame.downscale(frameWidth / p.resolutions[r]));
+            }
+            scaled.add(resolution);
+        }
+
+        colors = expandColors();
+        int groups = p.resolutions.length * p.rois.length * p.decimations.length * p.blurSizes.length;
+        groupResolution = new int[groups];
+        groupRoi = new int[groups];
+        groupDecimation = new int[groups];
+        groupBlur = new int[groups];
+        results = new Result[groups * colors.length];
+        int g = 0;
+        for (int r = 0; r < p.resolutions.length; r++) {
+            for (int roi = 0; roi < p.rois.length; roi++) {
+                for (int d = 0; d < p.decimations.length; d++) {
+                    for (int b = 0; b < p.blurSizes.length; b++, g++) {
+                        groupResolution[g] = r;
+                        groupRoi[g] = roi;
+                        groupDecimation[g] = d;
+                        groupBlur[g] = b;
+                        for (int c = 0; c < colors.length; c++) {
+                            results[g * colors.length + c] = new Result(colors[c], p.resolutions[r],
+                                    frameHeight * p.resolutions[r] / frameWidth, p.rois[roi],
+                                    p.decimations[d], p.blurSizes[b]);
+                        }
+                    }
+                }
+            }
+        }
+
+        int threads = p.threads > 0 ? p.threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new SweepTask(0, groups));
+        } finally {
+            pool.shutdown();
+        }
+        double sweepMilliseconds = (System.nanoTime() - start) / 1e6;
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        List<Result> all = new ArrayList<>(Arrays.asList(results));
+        List<Result> front = pareto(all);
+        // Time the front again without the other threads in the way.
+        for (Result result : front) {
+            retime(result);
+        }
+        front = pareto(front);
+
+        Result best = front.get(front.size() - 1);
+        Result recommended = best;
+        for (Result result : front) {
+            if (result.getAccuracy() >= best.getAccuracy() - p.accuracyTolerance) {
+                recommended = result;
+                break;
+            }
+        }
+        return new Report(all, front, recommended, frames.size(), withTarget, threads, sweepMilliseconds);
+    }
+
+    /**
+     * @return the results no other is both faster and at least as accurate as, fastest first
+     */
+    public static List<Result> pareto(List<Result> results) {
+        List<Result> sorted = new ArrayList<>(results);
+        Collections.sort(sorted, new Comparator<Result>() {
+            @Override public int compare(Result a, Result b) {
+                int byTime = Double.compare(a.nanosPerFrame, b.nanosPerFrame);
+                return byTime != 0 ? byTime : Double.compare(b.getAccuracy(), a.getAccuracy());
+            }
+        });
+        List<Result> front = new ArrayList<>();
+        double bestAccuracy = -1;
+        for (Result result : sorted) {
+            if (result.getAccuracy() > bestAccuracy) {
+                front.add(result);
+                bestAccuracy = result.getAccuracy();
+            }
+        }
+        return front;
+    }
+
+    //----------------------------------------------------------------------------------------------
+    // Sweep
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Evaluates a range of groups, splitting it in two until each task has one.
+     */
+    class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from, to;
+
+        SweepTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                evaluate(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SweepTask(from, middle), new SweepTask(middle, to));
+            }
+        }
+    }
+
+    /**
+     * Try every color with one combination of resolution, region, decimation and blur.  Only touches
+     * that group's results.
+     */
+    void evaluate(int group) {
+        Parameters p = parameters;
+        BlobPipeline pipeline = pipelines.get();
+        List<LabelledFrame> frames = scaled.get(groupResolution[group]);
+        double[] roi = p.rois[groupRoi[group]];
+        int decimation = p.decimations[groupDecimation[group]];
+        int blurSize = p.blurSizes[groupBlur[group]];
+        int minArea = minArea(frames.get(0));
+        int[] box = new int[4];
+        long[] nanos = new long[colors.length];
+
+        for (LabelledFrame frame : frames) {
+            long prepare = Long.MAX_VALUE;
+            for (int pass = 0; pass < p.timingPasses; pass++) {
+                long t0 = System.nanoTime();
+                pipeline.prepare(frame, roi, decimation, blurSize);
+                prepare = Math.min(prepare, System.nanoTime() - t0);
+            }
+            for (int c = 0; c < colors.length; c++) {
+                long find = Long.MAX_VALUE;
+                boolean found = false;
+                for (int pass = 0; pass < p.timingPasses; pass++) {
+                    long t0 = System.nanoTime();
+                    found = pipeline.find(colors[c], minArea, box);
+                    find = Math.min(find, System.nanoTime() - t0);
+                }
+                nanos[c] += prepare + find;
+                score(results[group * colors.length + c], frame, found, box);
+            }
+        }
+        for (int c = 0; c < colors.length; c++) {
+            results[group * colors.length + c].nanosPerFrame = (double) nanos[c] / frames.size();
+        }
+    }
+
+    /**
+     * Time one result's settings again, on this thread.
+     */
+    void retime(Result result) {
+        Parameters p = parameters;
+        BlobPipeline pipeline = pipelines.get();
+        List<LabelledFrame> frames = null;
+        for (int r = 0; r < p.resolutions.length; r++) {
+            if (p.resolutions[r] == result.width) frames = scaled.get(r);
+        }
+        int minArea = minArea(frames.get(0));
+        int[] box = new int[4];
+        long total = 0;
+        for (LabelledFrame frame : frames) {
+            long best = Long.MAX_VALUE;
+            for (int pass = 0; pass < p.timingPasses; pass++) {
+                long t0 = System.nanoTime();
+                pipeline.prepare(frame, result.roi, result.decimation, result.blurSize);
+                pipeline.find(result.color, minArea, box);
+                best = Math.min(best, System.nanoTime() - t0);
+            }
+            total += best;
+        }
+        result.nanosPerFrame = (double) total / frames.size();
+    }
+
+    /**
+     * @return Parameters.minArea in the pixels of a scaled frame
+     */
+    int minArea(LabelledFrame scaledFrame) {
+        double shrink = (double) scaledFrame.width / frameWidth;
+        return Math.max(1, (int) Math.round(parameters.minArea * shrink * shrink));
+    }
+
+    void score(Result result, LabelledFrame frame, boolean found, int[] box) {
+        result.frames++;
+        if (!frame.hasTarget) {
+            if (found) result.falseDetections++;
+            else result.correct++;
+            return;
+        }
+        if (!found) {
+            result.missed++;
+            return;
+        }
+        double overlap = overlap(box, frame);
+        if (overlap >= parameters.minOverlap) {
+            result.correct++;
+            result.overlapSum += overlap;
+        } else {
+            result.wrongPlace++;
+        }
+    }
+
+    /**
+     * @return the intersection over union of a box and a frame's target
+     */
+    static double overlap(int[] box, LabelledFrame frame) {
+        int x0 = Math.max(box[0], frame.targetLeft);
+        int y0 = Math.max(box[1], frame.targetTop);
+        int x1 = Math.min(box[0] + box[2], frame.targetLeft + frame.targetWidth);
+        int y1 = Math.min(box[1] + box[3], frame.targetTop + frame.targetHeight);
+        double intersection = Math.max(0, x1 - x0) * (double) Math.max(0, y1 - y0);
+        double union = (double) box[2] * box[3] + (double) frame.targetWidth * frame.targetHeight - intersection;
+        return union > 0 ? intersection / union : 0;
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: VisionTuner labels.txt [threads]");
+            System.exit(2);
+        }
+        File labels = new File(args[0]);
+        Parameters parameters = new Parameters();
+        parameters.threads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        List<LabelledFrame> frames = LabelledFrame.load(labels);
+        Report report = new VisionTuner(parameters).tune(frames);
+        System.out.print(report);
+        File csv = new File(labels.getAbsoluteFile().getParentFile(), "tuning.csv");
+        report.writeCsv(csv);
+        System.out.println("All results in " + csv);
+    }
+}
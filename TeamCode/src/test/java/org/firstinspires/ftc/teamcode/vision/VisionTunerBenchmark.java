@@ -0,0 +1,217 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/*
+ * VisionTunerBenchmark runs VisionTuner on synthetic 640x480 frames of a blue game piece on the
+ * field, and reports what it recommends against ConceptVisionColorLocator's settings, then how the
+ * sweep speeds up with the number of threads.
+ *
+ * The frames are hard on fixed settings: the light varies from frame to frame and across each frame,
+ * the piece's shaded side is darker, a blue alliance line runs along the bottom of most frames, the
+ * piece is often outside the central quarter and sometimes not in view, and the sensor is noisy.
+ * They go through the same path as real frames: written as PNG files with a labels file, then read
+ * back with LabelledFrame.load().
+ *
+ * VisionTunerTest covers the tuner on a few of these frames; run the full sweep and the scaling on
+ * demand with
+ *
+ *     ./gradlew :TeamCode:benchmark -Pbenchmark=vision.VisionTunerBenchmark
+ */
+public class VisionTunerBenchmark {
+
+    static final int WIDTH  = 640;
+    static final int HEIGHT = 480;
+
+    /** ConceptVisionColorLocator's region: the central quarter */
+    static final double[] SAMPLE_ROI = { -0.5, 0.5, 0.5, -0.5 };
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        File directory = args.length > 1 ? new File(args[1])
+                : new File(System.getProperty("java.io.tmpdir"), "vision-tuner-benchmark");
+        System.out.print(run(directory, frames));
+    }
+
+    public static String run(File directory, int count) throws IOException, InterruptedException {
+        StringBuilder out = new StringBuilder();
+        List<LabelledFrame> originals = makeFrames(count, new Random(40));
+        File labels = write(directory, originals);
+        List<LabelledFrame> frames = LabelledFrame.load(labels);
+        for (int i = 0; i < frames.size(); i++) {
+            if (!Arrays.equals(frames.get(i).pixels, originals.get(i).pixels)
+                    || frames.get(i).hasTarget != originals.get(i).hasTarget) {
+                throw new AssertionError("frame " + i + " did not read back as written");
+            }
+        }
+        out.append(String.format(Locale.US, "%d frames written to %s and read back intact%n%n", frames.size(), directory));
+
+        // The full sweep.
+        VisionTuner.Parameters parameters = new VisionTuner.Parameters();
+        parameters.timingPasses = 2;
+        VisionTuner.Report report = new VisionTuner(parameters).tune(frames);
+        out.append(report);
+        VisionTuner.Result sample = report.find(BlobPipeline.BLUE.name, 320, SAMPLE_ROI, 1, 5);
+        out.append(String.format(Locale.US, "ConceptVisionColorLocator's settings (BLUE, 320x240, central quarter, blur 5):%n%s%n%s%n",
+                VisionTuner.HEADER, sample));
+        if (report.recommended.getAccuracy() < sample.getAccuracy()) {
+            throw new AssertionError("the recommended settings do worse than ConceptVisionColorLocator's: " + report.recommended);
+        }
+
+        // Scaling, on a smaller sweep.
+        int cores = Runtime.getRuntime().availableProcessors();
+        VisionTuner.Parameters small = new VisionTuner.Parameters();
+        small.blurSizes = new int[] { 1, 5 };
+        small.decimations = new int[] { 1, 2 };
+        small.resolutions = new int[] { 640, 320 };
+        small.timingPasses = 1;
+        List<LabelledFrame> some = frames.subList(0, Math.min(frames.size(), 16));
+        out.append(String.format(Locale.US, "%nScaling: %d settings on %d frames, %d cores available%n",
+                new VisionTuner(small).expandColors().length * small.rois.length * small.blurSizes.length
+                        * small.decimations.length * small.resolutions.length, some.size(), cores));
+        out.append(String.format(Locale.US, "threads    sweep   speedup  efficiency%n"));
+        double single = 0;
+        for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+            small.threads = threads;
+            double best = Double.MAX_VALUE;
+            for (int run = 0; run < 2; run++) {
+                best = Math.min(best, new VisionTuner(small).tune(some).sweepMilliseconds);
+            }
+            if (threads == 1) single = best;
+            out.append(String.format(Locale.US, "%7d %7.2f s %8.2fx %10.0f%%%s%n", threads, best / 1000, single / best,
+                    100 * single / best / threads, threads > cores ? "   (more threads than cores)" : ""));
+        }
+        return out.toString();
+    }
+
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Make frames of a blue piece on the field under uneven light, with their labels.
+     */
+    static List<LabelledFrame> makeFrames(int count, Random random) {
+        List<LabelledFrame> frames = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            byte[] pixels = new byte[WIDTH * HEIGHT * 3];
+            double light = 0.45 + 0.8 * random.nextDouble();
+            double slope = 0.5 * random.nextDouble();
+            boolean line = random.nextDouble() < 0.7;
+            boolean piece = random.nextDouble() < 0.8;
+            int size = 40 + random.nextInt(40);
+            int left = (int) (WIDTH * 0.08) + random.nextInt((int) (WIDTH * 0.84) - size);
+            int top = (int) (HEIGHT * 0.28) + random.nextInt((int) (HEIGHT * 0.44) - size);
+            double noise = 14 + 10 * random.nextDouble();
+
+            int i = 0;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    // Gray mat tiles, blue alliance line, then the piece with a darker lower half.
+                    int r = 112, g = 110, b = 118;
+                    if ((x / 160 + y / 160) % 2 == 0) {
+                        r -= 8;
+                        g -= 8;
+                        b -= 8;
+                    }
+                    if (line && y >= HEIGHT - 40 && y < HEIGHT - 14) {
+                        r = 30;
+                        g = 62;
+                        b = 175;
+                    }
+                    if (piece && x >= left && x < left + size && y >= top && y < top + size) {
+                        double shade = y < top + size / 2 ? 1.0 : 0.6;
+                        r = (int) (35 * shade);
+                        g = (int) (70 * shade);
+                        b = (int) (200 * shade);
+                    }
+                    double gain = light * (1 - slope * x / WIDTH);
+                    pixels[i++] = (byte) clip(r * gain + noise * random.nextGaussian());
+                    pixels[i++] = (byte) clip(g * gain + noise * random.nextGaussian());
+                    pixels[i++] = (byte) clip(b * gain + noise * random.nextGaussian());
+                }
+            }
+            LabelledFrame frame = new LabelledFrame(String.format(Locale.US, "synthetic-%03d.png", n), WIDTH, HEIGHT, pixels);
+            if (piece) {
+                frame.setTarget(left, top, size, size);
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    static int clip(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /**
+     * Write frames as PNG files, and a labels file listing them.
+     *
+     * @return the labels file
+     */
+    static File write(File directory, List<LabelledFrame> frames) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't make " + directory);
+        }
+        File labels = new File(directory, "labels.txt");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(labels), "UTF-8")) {
+            out.write("# frame  left top width height, or none\n");
+            for (LabelledFrame frame : frames) {
+                writePng(new File(directory, frame.name), frame);
+                out.write(frame.hasTarget
+                        ? String.format(Locale.US, "%s %d %d %d %d%n", frame.name, frame.targetLeft, frame.targetTop,
+                                frame.targetWidth, frame.targetHeight)
+                        : String.format(Locale.US, "%s none%n", frame.name));
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Write an RGB PNG file, with no row filters.
+     */
+    static void writePng(File file, LabelledFrame frame) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed, new Deflater(Deflater.BEST_SPEED))) {
+            int stride = frame.width * 3;
+            for (int y = 0; y < frame.height; y++) {
+                deflater.write(0);
+                deflater.write(frame.pixels, y * stride, stride);
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(PngDecoder.SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream h = new DataOutputStream(header);
+            h.writeInt(frame.width);
+            h.writeInt(frame.height);
+            h.write(new byte[] { 8, 2, 0, 0, 0 });
+            chunk(out, "IHDR", header.toByteArray());
+            chunk(out, "IDAT", compressed.toByteArray());
+            chunk(out, "IEND", new byte[0]);
+        }
+    }
+
+    static void chunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] name = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(name);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,142 @@
+package org.firstinspires.ftc.teamcode.vision;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class VisionTunerTest {
+
+    static final int FRAMES = 12;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("vision-tuner-test").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        directory.delete();
+    }
+
+    private static VisionTuner.Result result(double accuracy, double millis) {
+        VisionTuner.Result result = new VisionTuner.Result(BlobPipeline.BLUE, 320, 240,
+                new double[] { -1, 1, 1, -1 }, 1, 1);
+        result.frames = 100;
+        result.correct = (int) Math.round(100 * accuracy);
+        result.nanosPerFrame = millis * 1e6;
+        return result;
+    }
+
+    @Test
+    public void framesAreReadBackAsWritten() throws IOException {
+        List<LabelledFrame> originals = VisionTunerBenchmark.makeFrames(3, new Random(40));
+        originals.get(1).hasTarget = false;
+        List<LabelledFrame> frames = LabelledFrame.load(VisionTunerBenchmark.write(directory, originals));
+
+        assertEquals(3, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            LabelledFrame frame = frames.get(i), original = originals.get(i);
+            assertArrayEquals(original.pixels, frame.pixels);
+            assertEquals(original.hasTarget, frame.hasTarget);
+            if (original.hasTarget) {
+                assertEquals(original.targetLeft, frame.targetLeft);
+                assertEquals(original.targetHeight, frame.targetHeight);
+            }
+        }
+    }
+
+    @Test
+    public void pipelineFindsABlockOfColor() {
+        byte[] pixels = new byte[64 * 48 * 3];
+        Arrays.fill(pixels, (byte) 110);
+        for (int y = 10; y < 20; y++) {
+            for (int x = 30; x < 42; x++) {
+                int i = 3 * (64 * y + x);
+                pixels[i] = 30;
+                pixels[i + 1] = 60;
+                pixels[i + 2] = (byte) 200;
+            }
+        }
+        LabelledFrame frame = new LabelledFrame("block", 64, 48, pixels);
+        BlobPipeline pipeline = new BlobPipeline();
+        int[] box = new int[4];
+
+        pipeline.prepare(frame, new double[] { -1, 1, 1, -1 }, 1, 1);
+        assertTrue(pipeline.find(BlobPipeline.BLUE, 10, box));
+        assertArrayEquals(new int[] { 30, 10, 12, 10 }, box);
+        assertFalse(pipeline.find(BlobPipeline.RED, 10, box));
+
+        // Outside the region of interest: the left 40%.
+        pipeline.prepare(frame, new double[] { -1, 1, -0.2, -1 }, 1, 1);
+        assertFalse(pipeline.find(BlobPipeline.BLUE, 10, box));
+    }
+
+    @Test
+    public void overlapIsIntersectionOverUnion() {
+        LabelledFrame frame = new LabelledFrame("f", 100, 100, new byte[100 * 100 * 3]).setTarget(10, 10, 20, 20);
+
+        assertEquals(1.0, VisionTuner.overlap(new int[] { 10, 10, 20, 20 }, frame), 1e-12);
+        assertEquals(200.0 / 600.0, VisionTuner.overlap(new int[] { 20, 10, 20, 20 }, frame), 1e-12);
+        assertEquals(0.0, VisionTuner.overlap(new int[] { 50, 50, 5, 5 }, frame), 0);
+    }
+
+    @Test
+    public void paretoFrontKeepsOnlyUnbeatenResults() {
+        VisionTuner.Result fast = result(0.70, 1), slow = result(0.90, 5), beaten = result(0.80, 6);
+        VisionTuner.Result middle = result(0.85, 2);
+        List<VisionTuner.Result> results = new ArrayList<>(Arrays.asList(slow, beaten, fast, middle));
+
+        List<VisionTuner.Result> front = VisionTuner.pareto(results);
+
+        assertEquals(Arrays.asList(fast, middle, slow), front);
+    }
+
+    @Test
+    public void recommendedSettingsBeatTheSampleOnes() throws InterruptedException {
+        List<LabelledFrame> frames = VisionTunerBenchmark.makeFrames(FRAMES, new Random(40));
+        VisionTuner.Parameters parameters = new VisionTuner.Parameters();
+        parameters.rangeOffsets = new int[] { -20, 0 };
+        parameters.blurSizes = new int[] { 1, 5 };
+        parameters.rois = new double[][] { { -1.0, 1.0, 1.0, -1.0 }, VisionTunerBenchmark.SAMPLE_ROI };
+        parameters.decimations = new int[] { 1, 2 };
+        parameters.resolutions = new int[] { 320, 160 };
+        parameters.timingPasses = 1;
+        parameters.threads = 2;
+
+        VisionTuner.Report report = new VisionTuner(parameters).tune(frames);
+
+        assertEquals(new VisionTuner(parameters).expandColors().length * 2 * 2 * 2 * 2, report.results.size());
+        assertEquals(FRAMES, report.frames);
+        VisionTuner.Result sample = report.find(BlobPipeline.BLUE.name, 320, VisionTunerBenchmark.SAMPLE_ROI, 1, 5);
+        assertNotNull(sample);
+        assertNotNull(report.recommended);
+        double best = report.front.get(report.front.size() - 1).getAccuracy();
+        assertTrue(report.recommended.getAccuracy() >= best - parameters.accuracyTolerance);
+        assertTrue(report.toString(), report.recommended.getAccuracy() >= 0.9);
+        assertTrue(report.toString(), report.recommended.getAccuracy() > sample.getAccuracy());
+    }
+}